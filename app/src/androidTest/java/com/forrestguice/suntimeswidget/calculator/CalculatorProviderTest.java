@@ -146,6 +146,7 @@ import static com.forrestguice.suntimeswidget.calculator.core.CalculatorProvider
 import static com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract.QUERY_SUNPOS_PROJECTION;
 import static com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract.QUERY_SUN_PROJECTION;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -334,6 +335,38 @@ public class CalculatorProviderTest
         test_cursorHasColumns("QUERY_SUN", cursor2, projection2);
     }
 
+    /**
+     * test_query_sun_range; range results are computed a window at a time (RangeCursor)
+     */
+    @Test
+    public void test_query_sun_range()
+    {
+        ContentResolver resolver = mockContext.getContentResolver();
+        assertTrue("Unable to getContentResolver!", resolver != null);
+
+        Uri uri = Uri.parse("content://" + AUTHORITY + "/" + QUERY_SUN + "/" + TEST_DATE0.getTimeInMillis() + "-" + TEST_DATE1.getTimeInMillis());
+        String[] projection = new String[] { COLUMN_SUN_NOON };
+        Cursor cursor = resolver.query(uri, projection, null, null, null);
+        assertNotNull(cursor);
+        assertEquals(366, cursor.getCount());    // 2018-01-01 .. 2019-01-01 (inclusive)
+
+        Calendar day = (Calendar) TEST_DATE0.clone();
+        cursor.moveToFirst();
+        while (!cursor.isAfterLast())
+        {
+            Calendar noon = sunCalculator.getSolarNoonCalendarForDate(day);
+            assertEquals(noon.getTimeInMillis(), cursor.getLong(0));
+            day.add(Calendar.DAY_OF_YEAR, 1);
+            cursor.moveToNext();
+        }
+
+        assertTrue(cursor.moveToPosition(1));    // move back to a previous window
+        day.setTimeInMillis(TEST_DATE0.getTimeInMillis());
+        day.add(Calendar.DAY_OF_YEAR, 1);
+        assertEquals(sunCalculator.getSolarNoonCalendarForDate(day).getTimeInMillis(), cursor.getLong(0));
+        cursor.close();
+    }
+
     public void test_suntimes(Cursor cursor, SuntimesCalculator calculator, Calendar date)
     {
         if (cursor != null)
@@ -0,0 +1,278 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Calendar;
+
+import static com.forrestguice.suntimeswidget.calculator.SuntimesMoonData.FIELD_ALL;
+import static com.forrestguice.suntimeswidget.calculator.SuntimesMoonData.FIELD_ILLUMINATION;
+import static com.forrestguice.suntimeswidget.calculator.SuntimesMoonData.FIELD_MIDNIGHT;
+import static com.forrestguice.suntimeswidget.calculator.SuntimesMoonData.FIELD_NOON;
+import static com.forrestguice.suntimeswidget.calculator.SuntimesMoonData.FIELD_PHASES;
+import static com.forrestguice.suntimeswidget.calculator.SuntimesMoonData.FIELD_PHASE_OF_DAY;
+import static com.forrestguice.suntimeswidget.calculator.SuntimesMoonData.FIELD_RISESET;
+import static com.forrestguice.suntimeswidget.calculator.SuntimesMoonData.FIELD_RISESET_TODAY;
+import static com.forrestguice.suntimeswidget.calculator.SuntimesMoonData.FIELD_RISESET_TOMORROW;
+import static com.forrestguice.suntimeswidget.calculator.SuntimesMoonData.FIELD_RISESET_YESTERDAY;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class SuntimesMoonDataTest
+{
+    private Context context;
+
+    @Before
+    public void setup() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    protected SuntimesMoonData createData(int dayOfMonth)
+    {
+        SuntimesMoonData data = new SuntimesMoonData(context, 0);
+        data.setLocation(new Location("test", "39.7392", "-104.9903", "1600"));
+        Calendar date = Calendar.getInstance(data.timezone());
+        date.set(2022, Calendar.MARCH, dayOfMonth, 12, 0, 0);
+        data.setTodayIs(date);
+        return data;
+    }
+
+    /**
+     * @return data for the given day with every field evaluated (the equivalent of a full calculation)
+     */
+    protected SuntimesMoonData createReference(int dayOfMonth)
+    {
+        SuntimesMoonData data = createData(dayOfMonth);
+        data.calculate();
+        data.require(FIELD_ALL);
+        assertTrue(data.isEvaluated(FIELD_ALL));
+        return data;
+    }
+
+    @Test
+    public void test_require()
+    {
+        SuntimesMoonData reference = createReference(20);
+        int[] fields = new int[] { FIELD_RISESET_YESTERDAY, FIELD_RISESET_TODAY, FIELD_RISESET_TOMORROW, FIELD_MIDNIGHT, FIELD_NOON, FIELD_ILLUMINATION, FIELD_PHASES, FIELD_PHASE_OF_DAY };
+        for (int field : fields)
+        {
+            SuntimesMoonData data = createData(20);
+            data.require(field);
+            assertFalse("not calculated; require does nothing", data.isEvaluated(field));
+
+            data.calculate();
+            assertFalse(data.isEvaluated(field));
+            data.require(field);
+            assertTrue(data.isEvaluated(field));
+            assertEquals("only " + field + " and its dependencies", field | dependencies(field), evaluatedFields(data));
+            assertSameResults(reference, data);    // (the remaining fields are evaluated on access)
+            assertTrue(data.isEvaluated(FIELD_ALL));
+        }
+    }
+
+    @Test
+    public void test_require_dependencies()
+    {
+        SuntimesMoonData data = createData(20);
+        data.calculate();
+        data.require(FIELD_ILLUMINATION);
+        assertTrue(data.isEvaluated(FIELD_ILLUMINATION | FIELD_NOON));
+        assertFalse(data.isEvaluated(FIELD_PHASES));
+        assertFalse(data.isEvaluated(FIELD_MIDNIGHT));
+
+        data = createData(20);
+        data.calculate();
+        data.require(FIELD_PHASE_OF_DAY);
+        assertTrue(data.isEvaluated(FIELD_PHASE_OF_DAY | FIELD_PHASES));
+        assertFalse(data.isEvaluated(FIELD_RISESET_TODAY));
+        assertFalse(data.isEvaluated(FIELD_NOON));
+    }
+
+    @Test
+    public void test_invalidate()
+    {
+        SuntimesMoonData data = createReference(20);
+        data.invalidate(FIELD_NOON);
+        assertFalse(data.isEvaluated(FIELD_NOON));
+        assertFalse("depends on noon", data.isEvaluated(FIELD_ILLUMINATION));
+        assertTrue(data.isEvaluated(FIELD_RISESET | FIELD_MIDNIGHT | FIELD_PHASES | FIELD_PHASE_OF_DAY));
+
+        data = createReference(20);
+        data.invalidate(FIELD_PHASES);
+        assertFalse(data.isEvaluated(FIELD_PHASES));
+        assertFalse("depends on phases", data.isEvaluated(FIELD_PHASE_OF_DAY));
+        assertTrue(data.isEvaluated(FIELD_RISESET | FIELD_MIDNIGHT | FIELD_NOON | FIELD_ILLUMINATION));
+
+        data = createReference(20);
+        data.invalidate(FIELD_RISESET_TODAY);
+        assertEquals(FIELD_ALL & ~FIELD_RISESET_TODAY, evaluatedFields(data));
+        assertSameResults(createReference(20), data);
+
+        data.invalidate(FIELD_ALL);
+        assertEquals(0, evaluatedFields(data));
+        assertSameResults(createReference(20), data);
+    }
+
+    @Test
+    public void test_shiftRiseSet()
+    {
+        assertEquals(0, SuntimesMoonData.shiftRiseSet(0));
+        assertEquals(0, SuntimesMoonData.shiftRiseSet(FIELD_RISESET_YESTERDAY));
+        assertEquals(FIELD_RISESET_YESTERDAY, SuntimesMoonData.shiftRiseSet(FIELD_RISESET_TODAY));
+        assertEquals(FIELD_RISESET_TODAY, SuntimesMoonData.shiftRiseSet(FIELD_RISESET_TOMORROW));
+        assertEquals(FIELD_RISESET_YESTERDAY | FIELD_RISESET_TODAY, SuntimesMoonData.shiftRiseSet(FIELD_ALL));
+    }
+
+    @Test
+    public void test_advanceDay()
+    {
+        assertFalse(createData(20).advanceDay());    // (not calculated)
+
+        SuntimesMoonData data = createReference(20);
+        assertTrue(data.advanceDay());
+        assertEquals(FIELD_RISESET_YESTERDAY | FIELD_RISESET_TODAY, evaluatedFields(data));
+        assertSameResults(createReference(21), data);
+
+        for (int i=22; i<50; i++)    // (across a month of phases)
+        {
+            assertTrue(data.advanceDay());
+            assertSameResults(createReference(i), data);
+        }
+
+        data = createData(20);
+        data.calculate();
+        data.require(FIELD_RISESET_TODAY | FIELD_PHASES);    // partially evaluated
+        assertTrue(data.advanceDay());
+        assertEquals(FIELD_RISESET_YESTERDAY, evaluatedFields(data));
+        assertSameResults(createReference(21), data);
+    }
+
+    @Test
+    public void test_calculate_previous()
+    {
+        SuntimesMoonData previous = createReference(20);
+
+        SuntimesMoonData data = createData(20);
+        assertTrue(data.calculate(previous));    // same day
+        assertEquals(FIELD_RISESET, evaluatedFields(data));
+        assertSameResults(createReference(20), data);
+
+        data = createData(21);
+        assertTrue(data.calculate(previous));    // next day
+        assertEquals(FIELD_RISESET_YESTERDAY | FIELD_RISESET_TODAY, evaluatedFields(data));
+        assertSameResults(createReference(21), data);
+
+        data = createData(22);
+        assertFalse(data.calculate(previous));   // not adjacent; calculated instead
+        assertEquals(0, evaluatedFields(data));
+        assertSameResults(createReference(22), data);
+
+        previous = createData(20);
+        previous.calculate();
+        previous.require(FIELD_RISESET_TOMORROW);
+        data = createData(21);
+        assertTrue(data.calculate(previous));    // partially evaluated previous
+        assertEquals(FIELD_RISESET_TODAY, evaluatedFields(data));
+        assertSameResults(createReference(21), data);
+    }
+
+    @Test
+    public void test_copy()
+    {
+        SuntimesMoonData data = createData(20);
+        data.calculate();
+        data.require(FIELD_RISESET_TODAY | FIELD_PHASES);
+
+        SuntimesMoonData copy = new SuntimesMoonData(data);
+        assertEquals(evaluatedFields(data), evaluatedFields(copy));
+        assertSameResults(createReference(20), copy);
+        assertEquals("evaluating the copy doesn't evaluate the original", FIELD_RISESET_TODAY | FIELD_PHASES, evaluatedFields(data));
+        assertSameResults(createReference(20), data);
+
+        copy = new SuntimesMoonData(data);    // (fully evaluated)
+        assertTrue(copy.isEvaluated(FIELD_ALL));
+        assertTrue(copy.advanceDay());
+        assertSameResults(createReference(21), copy);
+        assertSameResults(createReference(20), data);    // (advancing the copy doesn't change the original)
+    }
+
+    protected static int dependencies(int field)
+    {
+        for (int i=0; i<SuntimesMoonData.FIELDS.length; i++) {
+            if (SuntimesMoonData.FIELDS[i] == field) {
+                return SuntimesMoonData.DEPENDENCIES[i];
+            }
+        }
+        return 0;
+    }
+
+    protected static int evaluatedFields(SuntimesMoonData data)
+    {
+        int evaluated = 0;
+        for (int field : SuntimesMoonData.FIELDS) {
+            if (data.isEvaluated(field)) {
+                evaluated |= field;
+            }
+        }
+        return evaluated;
+    }
+
+    protected static void assertSameResults(SuntimesMoonData expected, SuntimesMoonData actual)
+    {
+        assertEquals(expected.calendar().getTimeInMillis(), actual.calendar().getTimeInMillis());
+        assertSameTime("moonrise yesterday", expected.moonriseCalendarYesterday(), actual.moonriseCalendarYesterday());
+        assertSameTime("moonrise today", expected.moonriseCalendarToday(), actual.moonriseCalendarToday());
+        assertSameTime("moonrise tomorrow", expected.moonriseCalendarTomorrow(), actual.moonriseCalendarTomorrow());
+        assertSameTime("moonset yesterday", expected.moonsetCalendarYesterday(), actual.moonsetCalendarYesterday());
+        assertSameTime("moonset today", expected.moonsetCalendarToday(), actual.moonsetCalendarToday());
+        assertSameTime("moonset tomorrow", expected.moonsetCalendarTomorrow(), actual.moonsetCalendarTomorrow());
+        assertSameTime("noon today", expected.getLunarNoonToday(), actual.getLunarNoonToday());
+        assertSameTime("noon tomorrow", expected.getLunarNoonTomorrow(), actual.getLunarNoonTomorrow());
+        assertSameTime("midnight today", expected.getLunarMidnightToday(), actual.getLunarMidnightToday());
+        assertSameTime("midnight tomorrow", expected.getLunarMidnightTomorrow(), actual.getLunarMidnightTomorrow());
+        assertEquals(expected.getMoonIlluminationToday(), actual.getMoonIlluminationToday());
+        assertEquals(expected.getMoonIlluminationTomorrow(), actual.getMoonIlluminationTomorrow());
+        for (SuntimesCalculator.MoonPhase phase : SuntimesCalculator.MoonPhase.values()) {
+            assertSameTime(phase.name(), expected.moonPhaseCalendar(phase), actual.moonPhaseCalendar(phase));
+        }
+        assertEquals(expected.getMoonPhaseToday(), actual.getMoonPhaseToday());
+        assertEquals(expected.getMoonPhaseTomorrow(), actual.getMoonPhaseTomorrow());
+        assertEquals(expected.getMoonPhaseNext(), actual.getMoonPhaseNext());
+    }
+
+    protected static void assertSameTime(String message, Calendar expected, Calendar actual)
+    {
+        assertEquals(message, expected == null, actual == null);
+        if (expected != null) {
+            assertEquals(message, expected.getTimeInMillis(), actual.getTimeInMillis());
+        }
+    }
+}
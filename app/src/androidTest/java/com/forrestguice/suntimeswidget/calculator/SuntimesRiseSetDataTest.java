@@ -0,0 +1,205 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.settings.WidgetSettings;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class SuntimesRiseSetDataTest
+{
+    public static final TimeZone TIMEZONE = TimeZone.getTimeZone("America/Denver");    // DST begins 2022-03-13
+    public static final Location LOCATION = new Location("test", "39.7392", "-104.9903", "1600");
+    public static final int FIRST_DAY = 10, LAST_DAY = 16;
+
+    private Context context;
+
+    @Before
+    public void setup() {
+        context = InstrumentationRegistry.getTargetContext();
+    }
+
+    protected Calendar day(int dayOfMonth)
+    {
+        Calendar date = Calendar.getInstance(TIMEZONE);
+        date.set(2022, Calendar.MARCH, dayOfMonth, 12, 0, 0);
+        return date;
+    }
+
+    protected SuntimesRiseSetData createData(int dayOfMonth, WidgetSettings.TimeMode timeMode, WidgetSettings.CompareMode compareMode)
+    {
+        SuntimesRiseSetData data = new SuntimesRiseSetData(context, 0);
+        data.setLocation(LOCATION);
+        data.setTimeZoneMode(WidgetSettings.TimezoneMode.CUSTOM_TIMEZONE);
+        data.setTimezone(TIMEZONE);
+        data.setTimeMode(timeMode);
+        data.setCompareMode(compareMode);
+        data.setTodayIs(day(dayOfMonth));
+        return data;
+    }
+
+    protected SuntimesRiseSetData createReference(int dayOfMonth, WidgetSettings.TimeMode timeMode, WidgetSettings.CompareMode compareMode)
+    {
+        SuntimesRiseSetData data = createData(dayOfMonth, timeMode, compareMode);
+        data.calculate();
+        assertTrue(data.isCalculated());
+        return data;
+    }
+
+    protected SuntimesRiseSetDataset createDataset(int dayOfMonth)
+    {
+        SuntimesRiseSetDataset dataset = new SuntimesRiseSetDataset(context, 0);
+        dataset.setLocation(LOCATION);
+        dataset.setTimeZone(context, TIMEZONE);
+        dataset.setTodayIs(day(dayOfMonth));
+        return dataset;
+    }
+
+    protected static void assertSameResults(String tag, SuntimesRiseSetData expected, SuntimesRiseSetData data)
+    {
+        assertTrue(tag, data.isCalculated());
+        assertEquals(tag, 0, SuntimesData.daysBetween(expected.calendar(), data.calendar()));
+        assertEquals(tag, 0, SuntimesData.daysBetween(expected.getOtherCalendar(), data.getOtherCalendar()));
+        assertEquals(tag, 0, SuntimesData.daysBetween(expected.todayIs(), data.todayIs()));
+        assertTrue(tag + ": " + Arrays.toString(expected.getResults()) + " != " + Arrays.toString(data.getResults()), Arrays.equals(expected.getResults(), data.getResults()));
+        assertEquals(tag, expected.dayLengthToday(), data.dayLengthToday());
+        assertEquals(tag, expected.dayLengthOther(), data.dayLengthOther());
+    }
+
+    @Test
+    public void test_advanceDay()
+    {
+        for (WidgetSettings.CompareMode compareMode : new WidgetSettings.CompareMode[] { WidgetSettings.CompareMode.TOMORROW, WidgetSettings.CompareMode.YESTERDAY })
+        {
+            for (WidgetSettings.TimeMode timeMode : new WidgetSettings.TimeMode[] { WidgetSettings.TimeMode.OFFICIAL, WidgetSettings.TimeMode.CIVIL, WidgetSettings.TimeMode.NOON })
+            {
+                SuntimesRiseSetData data = createData(FIRST_DAY, timeMode, compareMode);
+                assertFalse(data.advanceDay());    // not yet calculated
+                data.calculate();
+                assertSameResults(timeMode + " " + compareMode + " " + FIRST_DAY, createReference(FIRST_DAY, timeMode, compareMode), data);
+
+                for (int i = FIRST_DAY + 1; i <= LAST_DAY; i++)
+                {
+                    assertTrue(data.advanceDay());
+                    assertSameResults(timeMode + " " + compareMode + " " + i, createReference(i, timeMode, compareMode), data);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_advanceDay_todayIs()
+    {
+        Calendar day = day(FIRST_DAY);    // advancing leaves the caller's calendar unchanged
+        SuntimesRiseSetData data = createData(FIRST_DAY, WidgetSettings.TimeMode.OFFICIAL, WidgetSettings.CompareMode.TOMORROW);
+        data.setTodayIs(day);
+        data.calculate();
+        assertTrue(data.advanceDay());
+        assertEquals(FIRST_DAY, day.get(Calendar.DAY_OF_MONTH));
+        assertEquals(FIRST_DAY + 1, data.todayIs().get(Calendar.DAY_OF_MONTH));
+        assertEquals(FIRST_DAY + 1, data.calendar().get(Calendar.DAY_OF_MONTH));
+    }
+
+    @Test
+    public void test_calculate_previous()
+    {
+        for (WidgetSettings.CompareMode compareMode : new WidgetSettings.CompareMode[] { WidgetSettings.CompareMode.TOMORROW, WidgetSettings.CompareMode.YESTERDAY })
+        {
+            SuntimesRiseSetData previous = createReference(FIRST_DAY, WidgetSettings.TimeMode.OFFICIAL, compareMode);
+            for (int i = FIRST_DAY; i <= LAST_DAY; i++)
+            {
+                SuntimesRiseSetData reference = createReference(i, WidgetSettings.TimeMode.OFFICIAL, compareMode);
+
+                SuntimesRiseSetData sameDay = createData(i, WidgetSettings.TimeMode.OFFICIAL, compareMode);
+                assertTrue(sameDay.calculate(reference));    // same day; reused
+                assertSameResults(compareMode + " " + i + " (same day)", reference, sameDay);
+
+                SuntimesRiseSetData data = createData(i, WidgetSettings.TimeMode.OFFICIAL, compareMode);
+                assertTrue(data.calculate(previous));    // day after (or same day); reused
+                assertSameResults(compareMode + " " + i, reference, data);
+                previous = data;
+            }
+
+            SuntimesRiseSetData data = createData(LAST_DAY, WidgetSettings.TimeMode.OFFICIAL, compareMode);
+            assertFalse(data.calculate(createReference(FIRST_DAY, WidgetSettings.TimeMode.OFFICIAL, compareMode)));    // too far apart; recalculated
+            assertSameResults(compareMode + " " + LAST_DAY + " (recalculated)", createReference(LAST_DAY, WidgetSettings.TimeMode.OFFICIAL, compareMode), data);
+
+            SuntimesRiseSetData other = createData(FIRST_DAY + 1, WidgetSettings.TimeMode.CIVIL, compareMode);
+            assertFalse(other.calculate(createReference(FIRST_DAY, WidgetSettings.TimeMode.OFFICIAL, compareMode)));    // different settings; recalculated
+            assertSameResults(compareMode + " " + (FIRST_DAY + 1) + " (civil)", createReference(FIRST_DAY + 1, WidgetSettings.TimeMode.CIVIL, compareMode), other);
+        }
+    }
+
+    @Test
+    public void test_dataset_advanceDay()
+    {
+        SuntimesRiseSetDataset dataset = createDataset(FIRST_DAY);
+        assertFalse(dataset.advanceDay());    // not yet calculated (calculated instead)
+        assertDatasetEquals("" + FIRST_DAY, FIRST_DAY, dataset);
+
+        for (int i = FIRST_DAY + 1; i <= LAST_DAY; i++)
+        {
+            assertTrue(dataset.advanceDay());
+            assertDatasetEquals("" + i, i, dataset);
+        }
+    }
+
+    @Test
+    public void test_dataset_calculateData_previous()
+    {
+        SuntimesRiseSetDataset previous = createDataset(FIRST_DAY);
+        previous.calculateData();
+        for (int i = FIRST_DAY + 1; i <= LAST_DAY; i++)
+        {
+            SuntimesRiseSetDataset dataset = createDataset(i);
+            assertTrue(dataset.calculateData(previous));
+            assertDatasetEquals("" + i, i, dataset);
+            previous = dataset;
+        }
+    }
+
+    protected void assertDatasetEquals(String tag, int dayOfMonth, SuntimesRiseSetDataset dataset)
+    {
+        SuntimesRiseSetDataset reference = createDataset(dayOfMonth);
+        reference.calculateData();
+        assertTrue(tag, dataset.isCalculated());
+        for (String key : reference.getDataModes()) {
+            assertSameResults(tag + " " + key, reference.getData(key), dataset.getData(key));
+        }
+        assertEquals(tag, reference.dayLength(), dataset.dayLength());
+        assertEquals(tag, reference.dayLengthOther(), dataset.dayLengthOther());
+        assertEquals(tag, reference.nightLength(), dataset.nightLength());
+    }
+}
@@ -0,0 +1,178 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculator;
+import com.forrestguice.suntimeswidget.settings.WidgetSettings;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Calendar;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class WidgetDataCacheTest
+{
+    private Context context;
+
+    @Before
+    public void setup()
+    {
+        context = InstrumentationRegistry.getTargetContext();
+        WidgetDataCache.clearCache(context);
+    }
+
+    protected SuntimesRiseSetData createData(int dayOfMonth)
+    {
+        SuntimesRiseSetData data = new SuntimesRiseSetData(context, 0);
+        data.setLocation(new Location("test", "39.7392", "-104.9903", "1600"));
+        Calendar date = Calendar.getInstance(data.timezone());
+        date.set(2022, Calendar.MARCH, dayOfMonth, 12, 0, 0);
+        data.setTodayIs(date);
+        return data;
+    }
+
+    protected void calculate(SuntimesRiseSetData data, boolean withNoon)
+    {
+        data.calculate();
+        if (withNoon)
+        {
+            SuntimesRiseSetData noonData = new SuntimesRiseSetData(data);
+            noonData.setTimeMode(WidgetSettings.TimeMode.NOON);
+            noonData.calculate();
+            data.linkData(noonData);
+        }
+    }
+
+    @Test
+    public void test_key()
+    {
+        SuntimesRiseSetData data = createData(20);
+        data.initCalendars();
+        long key = WidgetDataCache.key(data, false);
+
+        SuntimesRiseSetData other = createData(20);
+        other.initCalendars();
+        assertEquals(key, WidgetDataCache.key(other, false));
+        assertTrue(key != WidgetDataCache.key(data, true));
+
+        other = createData(21);
+        other.initCalendars();
+        assertTrue("different day", key != WidgetDataCache.key(other, false));
+
+        other = createData(20);
+        other.setTimeMode(WidgetSettings.TimeMode.CIVIL);
+        other.initCalendars();
+        assertTrue("different mode", key != WidgetDataCache.key(other, false));
+
+        other = createData(20);
+        Location location = new Location(data.location());
+        location.setUseAltitude(!location.useAltitude());
+        other.setLocation(location);
+        other.initCalendars();
+        assertTrue("different altitude setting", key != WidgetDataCache.key(other, false));
+
+        other = createData(20);
+        other.setLocation(new Location("other label", "39.7392", "-104.9903", "1600"));
+        other.initCalendars();
+        assertEquals("same coordinates", key, WidgetDataCache.key(other, false));
+    }
+
+    @Test
+    public void test_readWrite() throws IOException
+    {
+        long[][] results = new long[][] { { 1, 2, SuntimesBatchCalculator.NO_EVENT, 4 }, { 5, 6, 7, 8 } };
+        File file = File.createTempFile("widgetdata", ".bin", context.getCacheDir());
+        file.deleteOnExit();
+        WidgetDataCache.write(file, 1234, results);
+
+        long[][] results1 = WidgetDataCache.read(file, 1234);
+        assertEquals(results.length, results1.length);
+        for (int i=0; i<results.length; i++) {
+            assertTrue(Arrays.equals(results[i], results1[i]));
+        }
+
+        try {
+            WidgetDataCache.read(file, 4321);
+            fail("expected IOException (bad key)");
+        } catch (IOException e) { /* EMPTY */ }
+    }
+
+    @Test
+    public void test_restoreResults()
+    {
+        SuntimesRiseSetData data = createData(20);
+        calculate(data, false);
+        long[] results = data.getResults();
+
+        SuntimesRiseSetData restored = createData(20);
+        assertFalse(restored.restoreResults(new long[] { 1, 2, 3 }));    // wrong length
+        assertFalse(restored.isCalculated());
+
+        assertTrue(restored.restoreResults(results));
+        assertTrue(restored.isCalculated());
+        assertTrue(Arrays.equals(results, restored.getResults()));
+        assertEquals(data.sunriseCalendarToday().getTimeInMillis(), restored.sunriseCalendarToday().getTimeInMillis());
+        assertEquals(data.sunsetCalendarOther().getTimeInMillis(), restored.sunsetCalendarOther().getTimeInMillis());
+        assertEquals(data.dayLengthToday(), restored.dayLengthToday());
+        assertEquals(data.dayLengthOther(), restored.dayLengthOther());
+    }
+
+    @Test
+    public void test_restore()
+    {
+        for (boolean withNoon : new boolean[] { false, true })
+        {
+            SuntimesRiseSetData data = createData(20);
+            assertFalse(WidgetDataCache.restore(context, createData(20), withNoon));    // not cached
+            calculate(data, withNoon);
+            WidgetDataCache.save(context, data);
+            assertTrue(WidgetDataCache.contains(context, data, withNoon));
+
+            SuntimesRiseSetData restored = createData(20);
+            assertTrue(WidgetDataCache.restore(context, restored, withNoon));
+            assertTrue(Arrays.equals(data.getResults(), restored.getResults()));
+            if (withNoon)
+            {
+                assertNotNull(restored.getLinked());
+                assertTrue(Arrays.equals(data.getLinked().getResults(), restored.getLinked().getResults()));
+            } else assertNull(restored.getLinked());
+
+            assertFalse(WidgetDataCache.restore(context, createData(21), withNoon));    // different day
+            WidgetDataCache.clearCache(context);
+            assertFalse(WidgetDataCache.contains(context, data, withNoon));
+        }
+    }
+}
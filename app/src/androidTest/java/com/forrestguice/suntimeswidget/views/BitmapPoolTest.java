@@ -0,0 +1,123 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@SuppressWarnings("ConstantConditions")
+@RunWith(AndroidJUnit4.class)
+public class BitmapPoolTest
+{
+    @Test
+    public void test_acquireRelease()
+    {
+        BitmapPool pool = new BitmapPool(2);
+        Bitmap b0 = pool.acquire(100, 50, Bitmap.Config.RGB_565);
+        assertEquals(100, b0.getWidth());
+        assertEquals(50, b0.getHeight());
+        assertEquals(1, pool.getNumCreated());
+
+        b0.eraseColor(Color.RED);
+        assertTrue(pool.release(b0));
+        assertTrue(pool.release(b0));    // (released twice; kept once)
+        assertEquals(1, pool.size());
+
+        Bitmap b1 = pool.acquire(100, 50, Bitmap.Config.ARGB_8888);    // different config
+        assertNotSame(b0, b1);
+        Bitmap b2 = pool.acquire(50, 100, Bitmap.Config.RGB_565);      // different size
+        assertNotSame(b0, b2);
+        Bitmap b3 = pool.acquire(100, 50, Bitmap.Config.RGB_565);
+        assertSame(b0, b3);
+        assertEquals(Color.BLACK, b3.getPixel(0, 0));    // cleared
+        assertEquals(3, pool.getNumCreated());
+        assertEquals(1, pool.getNumReused());
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void test_release_limits()
+    {
+        BitmapPool pool = new BitmapPool(2);
+        assertFalse(pool.release(null));
+        assertFalse(pool.release(Bitmap.createBitmap(new int[] { Color.RED }, 1, 1, Bitmap.Config.ARGB_8888)));    // immutable
+
+        Bitmap recycled = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+        recycled.recycle();
+        assertFalse(pool.release(recycled));
+
+        assertTrue(pool.release(Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888)));
+        assertTrue(pool.release(Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888)));
+        assertFalse(pool.release(Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888)));    // full (for this size)
+        assertEquals(2, pool.size());
+
+        for (int i=0; i<4; i++) {
+            pool.release(Bitmap.createBitmap(20 + i, 10, Bitmap.Config.ARGB_8888));
+        }
+        assertEquals(4, pool.size());    // (oldest sizes are evicted)
+        Bitmap b = pool.acquire(10, 10, Bitmap.Config.ARGB_8888);
+        assertEquals(1, pool.getNumCreated());
+
+        pool.clear();
+        assertEquals(0, pool.size());
+        assertFalse(b.isRecycled());
+    }
+
+    /**
+     * Simulates an animation (displayed, pending, and rendering frames; pending frames are sometimes dropped).
+     */
+    @Test
+    public void test_animation()
+    {
+        BitmapPool pool = new BitmapPool();
+        Bitmap displayed = null, pending = null;
+        for (int i=0; i<100; i++)
+        {
+            Bitmap rendering = pool.acquire(320, 160, Bitmap.Config.ARGB_8888);    // render thread
+            assertNotSame(rendering, displayed);
+            assertNotSame(rendering, pending);
+
+            if (pending != null && (i % 3) == 0) {
+                pool.release(pending);    // dropped (replaced before it was delivered)
+            }
+            pending = rendering;
+
+            if ((i % 3) != 2)    // main thread (delivered)
+            {
+                if (displayed != null) {
+                    pool.release(displayed);
+                }
+                displayed = pending;
+                pending = null;
+            }
+        }
+        assertTrue(pool.getNumCreated() <= 3);
+        assertEquals(100, pool.getNumCreated() + pool.getNumReused());
+    }
+}
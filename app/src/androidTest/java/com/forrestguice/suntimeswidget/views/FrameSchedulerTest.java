@@ -0,0 +1,91 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.views;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class FrameSchedulerTest
+{
+    /**
+     * Frames published while the main thread is busy are coalesced; the latest frame is delivered once (at the next vsync).
+     */
+    @Test
+    public void test_publish_delivery() throws InterruptedException
+    {
+        final List<Object> delivered = new ArrayList<>();
+        final List<Boolean> onMainThread = new ArrayList<>();
+        final CountDownLatch deliveredLatch = new CountDownLatch(1);
+        FrameScheduler<Object> scheduler = new FrameScheduler<>(16 * 1000000L, new FrameScheduler.FrameCallback<Object>()
+        {
+            public void onFrame(Object frame)
+            {
+                delivered.add(frame);
+                onMainThread.add(Looper.myLooper() == Looper.getMainLooper());
+                deliveredLatch.countDown();
+            }
+        });
+
+        final CountDownLatch busy = new CountDownLatch(1);
+        new Handler(Looper.getMainLooper()).post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    busy.await(5, TimeUnit.SECONDS);    // (main thread is busy while the frames are published)
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        Object[] frames = new Object[] { "frame0", "frame1", "frame2" };
+        for (Object frame : frames) {
+            scheduler.publish(frame);
+        }
+        busy.countDown();
+
+        assertTrue(deliveredLatch.await(5, TimeUnit.SECONDS));
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        assertEquals(1, delivered.size());
+        assertSame(frames[2], delivered.get(0));
+        assertTrue(onMainThread.get(0));
+
+        FrameScheduler.FrameStats stats = scheduler.getStats();
+        assertEquals(3, stats.published);
+        assertEquals(1, stats.delivered);
+        assertEquals(2, stats.dropped);
+    }
+}
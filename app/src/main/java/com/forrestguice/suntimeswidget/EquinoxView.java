@@ -43,6 +43,7 @@ import android.widget.ImageButton;
 import android.widget.LinearLayout;
 import android.widget.TextView;
 
+import com.forrestguice.suntimeswidget.calculator.SeasonTable;
 import com.forrestguice.suntimeswidget.calculator.SuntimesEquinoxSolsticeDataset;
 import com.forrestguice.suntimeswidget.cards.CardAdapter;
 import com.forrestguice.suntimeswidget.cards.CardLayoutManager;
@@ -741,7 +742,7 @@ public class EquinoxView extends LinearLayout
                 Log.w("EquinoxViewAdapter", "onBindViewHolder: null view holder!");
                 return;
             }
-            SuntimesEquinoxSolsticeDataset dataset = initData(context, position);
+            SuntimesEquinoxSolsticeDataset dataset = initData(context, position, false);
             holder.bindDataToPosition(context, dataset, position, options);
             holder.setSelected(getSelection());
 
@@ -810,15 +811,29 @@ public class EquinoxView extends LinearLayout
          * Initialize data at position (returns cached data if it already exists).
          * @param context
          * @param position
-         * @return
+         * @return calculated data
          */
-        public SuntimesEquinoxSolsticeDataset initData(Context context, int position)
+        public SuntimesEquinoxSolsticeDataset initData(Context context, int position) {
+            return initData(context, position, true);
+        }
+
+        /**
+         * Initialize data at position (returns cached data if it already exists).
+         * @param context
+         * @param position
+         * @param calculate true calculate now (if not yet calculated), false return a placeholder (not calculated) until the SeasonTable has its years
+         * @return data (that may not be calculated)
+         */
+        public SuntimesEquinoxSolsticeDataset initData(Context context, int position, boolean calculate)
         {
             SuntimesEquinoxSolsticeDataset retValue = data.get(position);
             if (retValue == null) {
                 data.put(position, retValue = createData(context, position));   // data is removed in onViewRecycled
                 //Log.d("DEBUG", "add data " + position);
             }
+            if (calculate && !retValue.isCalculated()) {
+                retValue.calculateData();
+            }
             return retValue;
         }
 
@@ -829,10 +844,48 @@ public class EquinoxView extends LinearLayout
 
             SuntimesEquinoxSolsticeDataset retValue = new SuntimesEquinoxSolsticeDataset(context, 0);
             retValue.setTodayIs(date);
-            retValue.calculateData();
+
+            boolean cached = retValue.isCached();
+            int year = date.get(Calendar.YEAR);    // calculate this year and its neighbors ahead of scrolling
+            SeasonTable.prefetch(context, retValue.calculator(), retValue.dataEquinoxSpring.calculatorMode(), year - SeasonTable.PREFETCH_YEARS, year + SeasonTable.PREFETCH_YEARS);
+
+            if (cached || !retValue.isImplemented()) {
+                retValue.calculateData();
+            }    // else a placeholder until the prefetch delivers its years (onPrefetched)
             return retValue;
         }
 
+        private final SeasonTable.SeasonTableListener seasonTableListener = new SeasonTable.SeasonTableListener()
+        {
+            @Override
+            public void onPrefetched(int year)
+            {
+                for (Integer position : data.keySet())
+                {
+                    SuntimesEquinoxSolsticeDataset dataset = data.get(position);
+                    if (!dataset.isCalculated() && dataset.isCached())
+                    {
+                        dataset.calculateData();
+                        notifyItemChanged(position);
+                    }
+                }
+            }
+        };
+
+        @Override
+        public void onAttachedToRecyclerView(RecyclerView recyclerView)
+        {
+            super.onAttachedToRecyclerView(recyclerView);
+            SeasonTable.addListener(seasonTableListener);
+        }
+
+        @Override
+        public void onDetachedFromRecyclerView(RecyclerView recyclerView)
+        {
+            SeasonTable.removeListener(seasonTableListener);
+            super.onDetachedFromRecyclerView(recyclerView);
+        }
+
         public int highlightNote(Context context)
         {
             ArrayList<Pair<Integer,Calendar>> pageInfo = new ArrayList<>();
@@ -34,11 +34,15 @@ import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
 
+import com.forrestguice.suntimeswidget.calculator.core.ElevationCrossingSolver;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+import com.forrestguice.suntimeswidget.calculator.CalculatorStats;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
 import com.forrestguice.suntimeswidget.settings.WidgetTimezones;
 import com.forrestguice.suntimeswidget.themes.SuntimesTheme;
+import com.forrestguice.suntimeswidget.views.BitmapPool;
+import com.forrestguice.suntimeswidget.views.FrameScheduler;
 
 import java.util.Calendar;
 import java.util.TimeZone;
@@ -191,12 +195,14 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
         {
             //Log.d("DEBUG", "updating lightmap on main thread.. " + getWidth() + "x" + getHeight() + " @ " + getNow() + " :: view-" + Integer.toHexString(getColors().hashCode()));
             LightMapTask draw = new LightMapTask();
+            draw.setBitmapPool(bitmapPool);
             Bitmap b = draw.makeBitmap(data, getWidth(), getHeight(), colors);
             drawTaskListener.onFinished(b);
 
         } else {
             drawTask = new LightMapTask();
             drawTask.setListener(drawTaskListener);
+            drawTask.setBitmapPool(bitmapPool);
             drawTask.execute(data, getWidth(), getHeight(), colors, (animated ? 0 : 1), colors.offsetMinutes);
         }
     }
@@ -222,7 +228,7 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
         @Override
         public void onFrame(Bitmap frame, long offsetMinutes) {
             //Log.d(LightMapView.class.getSimpleName(), "LightmapView.updateViews: onFrame: " + Integer.toHexString(getColors().hashCode()));
-            setImageBitmap(frame);
+            setFrame(frame);
             if (mapListener != null) {
                 mapListener.onFrame(frame, offsetMinutes);
             }
@@ -236,13 +242,29 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
         @Override
         public void onFinished(Bitmap frame) {
             //Log.d(LightMapView.class.getSimpleName(), "LightmapView.updateViews: onFinished: " + Integer.toHexString(getColors().hashCode()));
-            setImageBitmap(frame);
+            setFrame(frame);
             if (mapListener != null) {
                 mapListener.onFinished(frame);
             }
         }
     };
 
+    private final BitmapPool bitmapPool = new BitmapPool();
+    private Bitmap frame = null;
+
+    /**
+     * Displays the frame, returning the previous frame to the bitmap pool.
+     */
+    protected void setFrame(Bitmap frame)
+    {
+        Bitmap previous = this.frame;
+        this.frame = frame;
+        setImageBitmap(frame);
+        if (previous != null && previous != frame) {
+            bitmapPool.release(previous);
+        }
+    }
+
     /**
      * @param context a context used to access shared prefs
      */
@@ -321,6 +343,7 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
             //Log.d("DEBUG", "onDetachedFromWindow: cancel task :: view-" + Integer.toHexString(getColors().hashCode()));
             drawTask.cancel(true);
         }
+        bitmapPool.clear();
     }
 
     @Override
@@ -373,11 +396,29 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
         {
             Calendar calendar = Calendar.getInstance(data.timezone());
             calendar.setTimeInMillis(colors.now + (colors.offsetMinutes * 60 * 1000));
-            Calendar event = rising ? data.calculator().getSunriseCalendarForDate(calendar, degrees)
-                    : data.calculator().getSunsetCalendarForDate(calendar, degrees);
-            return ((event != null) ? event.getTimeInMillis() : null);
+
+            SuntimesCalculator calculator = data.calculator();
+            if (data.calculatorMode() != null && data.calculatorMode().hasRequestedFeature(SuntimesCalculator.FEATURE_POSITION))
+            {
+                calendar.set(Calendar.HOUR_OF_DAY, 0);
+                calendar.set(Calendar.MINUTE, 0);
+                calendar.set(Calendar.SECOND, 0);
+                calendar.set(Calendar.MILLISECOND, 0);
+                long startMillis = calendar.getTimeInMillis();
+                calendar.add(Calendar.DAY_OF_YEAR, 1);
+                long endMillis = calendar.getTimeInMillis() - 1;
+
+                long event = solver.findCrossing(new ElevationCrossingSolver.SunElevation(calculator), degrees, startMillis, endMillis, rising);
+                return ((event != ElevationCrossingSolver.NO_CROSSING) ? event : null);
+
+            } else {
+                Calendar event = rising ? calculator.getSunriseCalendarForDate(calendar, degrees)
+                        : calculator.getSunsetCalendarForDate(calendar, degrees);
+                return ((event != null) ? event.getTimeInMillis() : null);
+            }
         } else return null;
     }
+    private final ElevationCrossingSolver solver = new ElevationCrossingSolver();
 
     public void setOffsetMinutes( long value ) {
         colors.offsetMinutes = value;
@@ -410,6 +451,16 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
          */
         @Override
         protected Bitmap doInBackground(Object... params)
+        {
+            int subsystem = CalculatorStats.enter(CalculatorStats.SUBSYSTEM_LIGHTMAP);
+            try {
+                return makeFrames(params);
+            } finally {
+                CalculatorStats.exit(subsystem);
+            }
+        }
+
+        protected Bitmap makeFrames(Object... params)
         {
             int w, h;
             int numFrames = 1;
@@ -435,7 +486,16 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
                 return null;
             }
 
-            long time0 = System.nanoTime();
+            FrameScheduler<Bitmap> scheduler = new FrameScheduler<>(frameDuration, new FrameScheduler.FrameCallback<Bitmap>()
+            {
+                @Override
+                public void onFrame(Bitmap frame)
+                {
+                    if (!isCancelled()) {
+                        onProgressUpdate(frame);
+                    }
+                }
+            });
             Bitmap frame = null;
             colors.offsetMinutes = initialOffset;
 
@@ -468,21 +528,26 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
 
                 frame = makeBitmap(data, w, h, colors);
 
-                long time1 = System.nanoTime();
-                while ((time1 - time0) < frameDuration) {
-                    time1 = System.nanoTime();
+                if (!scheduler.awaitFrame())
+                {
+                    colors.releaseDrawLock();
+                    break;    // cancelled
+                }
+                Bitmap dropped = scheduler.publish(frame);
+                if (dropped != null && bitmapPool != null) {
+                    bitmapPool.release(dropped);
                 }
-
-                publishProgress(frame);
                 if (listener != null) {
                     listener.afterFrame(frame, colors.offsetMinutes);
                 }
                 colors.offsetMinutes += colors.anim_frameOffsetMinutes;
-                time0 = System.nanoTime();
                 i++;
                 colors.releaseDrawLock();
             }
             colors.offsetMinutes -= colors.anim_frameOffsetMinutes;
+            if (numFrames != 1) {
+                Log.d(LightMapTask.class.getSimpleName(), "frames: " + scheduler.getStats());
+            }
 
             //Log.d("DEBUG", "doInBackground: done: " + (data != null ? data.dataActual.sunsetCalendarToday().get(Calendar.DAY_OF_YEAR) : "null"));
             return frame;
@@ -504,7 +569,7 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
 
             this.colors = colors;
             Calendar now = mapTime(data, colors);
-            Bitmap b = Bitmap.createBitmap(w, h, Bitmap.Config.RGB_565);
+            Bitmap b = BitmapPool.acquire(bitmapPool, w, h, Bitmap.Config.RGB_565);
             Canvas c = new Canvas(b);
             Paint p = new Paint(Paint.ANTI_ALIAS_FLAG);
 
@@ -799,6 +864,11 @@ public class LightMapView extends android.support.v7.widget.AppCompatImageView
             }
         }
 
+        private BitmapPool bitmapPool = null;
+        public void setBitmapPool( BitmapPool pool ) {
+            this.bitmapPool = pool;
+        }
+
         private LightMapTaskListener listener = null;
         public void setListener( LightMapTaskListener listener )
         {
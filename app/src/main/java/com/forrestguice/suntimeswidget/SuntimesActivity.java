@@ -683,8 +683,8 @@ public class SuntimesActivity extends AppCompatActivity
             if (action != null && action.equals(SUNTIMES_APP_UPDATE_FULL))
             {
                 Log.d("UpdateAlarms", "onReceive: " + SUNTIMES_APP_UPDATE_FULL);
-                invalidateData(SuntimesActivity.this);
-                calculateData(SuntimesActivity.this);
+                stopTimeTask();
+                advanceData(SuntimesActivity.this);
                 setFullUpdateAlarm(SuntimesActivity.this);
                 updateDialogs(SuntimesActivity.this);
                 updateViews(SuntimesActivity.this);
@@ -1820,6 +1820,18 @@ public class SuntimesActivity extends AppCompatActivity
         initNotes();
     }
 
+    /**
+     * Recalculates after the date changes; the card data is shifted by a day (only the newly exposed day is calculated).
+     */
+    protected void advanceData( Context context )
+    {
+        Pair<SuntimesRiseSetDataset, SuntimesMoonData> cardData = card_adapter.advanceData(context);
+        dataset = cardData.first;
+        dataset_moon = cardData.second;
+
+        initNotes();
+    }
+
     protected void invalidateData( Context context )
     {
         if (dataset != null) {
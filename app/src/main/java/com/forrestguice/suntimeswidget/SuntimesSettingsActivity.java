@@ -542,6 +542,9 @@ public class SuntimesSettingsActivity extends PreferenceActivity
             GeneralPrefsFragment.initPref_calculator(this, moonCalculatorPref, new int[] {SuntimesCalculator.FEATURE_MOON}, WidgetSettings.PREF_DEF_GENERAL_CALCULATOR_MOON);
             GeneralPrefsFragment.loadPref_calculator(this, moonCalculatorPref,"moon");
         }
+
+        //noinspection deprecation
+        GeneralPrefsFragment.initPref_calculatorStats(this, findPreference(AppSettings.PREF_KEY_DEBUG_CALCULATORSTATS + "_show"));
     }
 
     /**
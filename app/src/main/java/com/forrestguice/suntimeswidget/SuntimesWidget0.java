@@ -34,10 +34,12 @@ import android.widget.RemoteViews;
 import android.appwidget.AppWidgetManager;
 import android.appwidget.AppWidgetProvider;
 
+import com.forrestguice.suntimeswidget.calculator.CalculatorStats;
 import com.forrestguice.suntimeswidget.calculator.SuntimesData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetData2;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
+import com.forrestguice.suntimeswidget.calculator.WidgetDataCache;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.getfix.GetFixHelper;
 import com.forrestguice.suntimeswidget.settings.WidgetSettingsImportTask;
@@ -53,6 +55,9 @@ import com.forrestguice.suntimeswidget.settings.WidgetThemes;
 
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static com.forrestguice.suntimeswidget.SuntimesConfigActivity0.EXTRA_RECONFIGURE;
 
@@ -127,6 +132,16 @@ public class SuntimesWidget0 extends AppWidgetProvider
      */
     @Override
     public void onReceive(@NonNull Context context, @NonNull Intent intent)
+    {
+        int subsystem = CalculatorStats.enter(CalculatorStats.SUBSYSTEM_WIDGET);
+        try {
+            handleReceive(context, intent);
+        } finally {
+            CalculatorStats.exit(subsystem);
+        }
+    }
+
+    protected void handleReceive(@NonNull Context context, @NonNull Intent intent)
     {
         super.onReceive(context, intent);
         initLocale(context);
@@ -407,6 +422,8 @@ public class SuntimesWidget0 extends AppWidgetProvider
         for (int appWidgetId : appWidgetIds)
         {
             unsetUpdateAlarm(context, appWidgetId);
+            retainedData.remove(appWidgetId);
+            WidgetDataCache.deleteStats(context, appWidgetId);
             WidgetSettings.deletePrefs(context, appWidgetId);
             WorldMapWidgetSettings.deletePrefs(context, appWidgetId);
         }
@@ -591,17 +608,19 @@ public class SuntimesWidget0 extends AppWidgetProvider
             updateLocationToLastKnown(context, appWidgetId);
         }
 
-        SuntimesRiseSetData data = getRiseSetData(context, appWidgetId);
-        data.calculate();
-
+        SuntimesRiseSetData previous = retainedData.get(appWidgetId);
+        SuntimesRiseSetData data = getRiseSetData(context.getApplicationContext(), appWidgetId);    // (retained; see retainedData)
         boolean showSolarNoon = WidgetSettings.loadShowNoonPref(context, appWidgetId);
-        if (showSolarNoon)
+
+        boolean cached = (previous == null && WidgetDataCache.restore(context, data, showSolarNoon));    // new process; restore results from disk
+        if (!cached)
         {
-            SuntimesRiseSetData noonData = new SuntimesRiseSetData(data);
-            noonData.setTimeMode(WidgetSettings.TimeMode.NOON);
-            noonData.calculate();
-            data.linkData(noonData);
+            calculateData(data, showSolarNoon, previous);    // reuses (or advances) the previous update's results
+            WidgetDataCache.save(context, data);
         }
+        WidgetDataCache.countUpdate(context, appWidgetId, cached);
+        retainedData.put(appWidgetId, data);
+        cacheNextDay(context, appWidgetId, data, showSolarNoon);
 
         layout.prepareForUpdate(context, appWidgetId, data);
 
@@ -633,6 +652,57 @@ public class SuntimesWidget0 extends AppWidgetProvider
         }
     }
 
+    /**
+     * @param data data to calculate
+     * @param showSolarNoon true link (and calculate) noon data
+     * @param previous previously calculated data (or null)
+     */
+    protected static void calculateData(SuntimesRiseSetData data, boolean showSolarNoon, SuntimesRiseSetData previous)
+    {
+        data.calculate(previous);
+        if (showSolarNoon)
+        {
+            SuntimesRiseSetData noonData = new SuntimesRiseSetData(data);
+            noonData.setTimeMode(WidgetSettings.TimeMode.NOON);
+            noonData.calculate(previous != null ? previous.getLinked() : null);
+            data.linkData(noonData);
+        }
+    }
+
+    /**
+     * Calculates the next day (advancing data) and stores it in the WidgetDataCache (if not already cached), so the first
+     * update of that day can be restored without calculating.
+     */
+    protected static void cacheNextDay(Context context, int appWidgetId, SuntimesRiseSetData data, boolean showSolarNoon)
+    {
+        if (data.calendar() == null || data.todayIsNotToday()) {
+            return;    // (a fixed date doesn't advance)
+        }
+        Calendar tomorrow = (Calendar) data.calendar().clone();
+        tomorrow.add(Calendar.DAY_OF_MONTH, 1);
+
+        SuntimesRiseSetData next = getRiseSetData(context, appWidgetId);
+        next.setTodayIs(tomorrow);
+        if (!WidgetDataCache.contains(context, next, showSolarNoon))
+        {
+            calculateData(next, showSolarNoon, data);
+            WidgetDataCache.save(context, next);
+        }
+    }
+
+    /**
+     * The most recent data of each widget (by appWidgetId); retained so the next update only has to calculate the newly exposed day.
+     * Retained data is created with the application context (never the receiver's context).
+     */
+    protected static final int MAX_RETAINED_DATA = 32;
+    protected static final Map<Integer, SuntimesRiseSetData> retainedData = Collections.synchronizedMap(new LinkedHashMap<Integer, SuntimesRiseSetData>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, SuntimesRiseSetData> eldest) {
+            return size() > MAX_RETAINED_DATA;
+        }
+    });
+
     /**
      * getRiseSetData
      */
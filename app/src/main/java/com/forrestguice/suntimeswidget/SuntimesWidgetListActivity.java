@@ -69,6 +69,7 @@ import com.forrestguice.suntimeswidget.calculator.SuntimesData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesEquinoxSolsticeData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesMoonData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetData;
+import com.forrestguice.suntimeswidget.calculator.WidgetDataCache;
 import com.forrestguice.suntimeswidget.settings.AppSettings;
 import com.forrestguice.suntimeswidget.settings.SuntimesBackupLoadTask;
 import com.forrestguice.suntimeswidget.settings.SuntimesBackupRestoreTask;
@@ -780,6 +781,10 @@ public class SuntimesWidgetListActivity extends AppCompatActivity
                 String title = context.getString(R.string.configLabel_widgetList_itemTitle, widgetTitle);
                 String source = ((data == null || data.calculatorMode() == null) ? "def" : data.calculatorMode().getName());
                 String summary = context.getString(widgetSummaryResID, widgetType, source);
+                int updates = WidgetDataCache.getUpdates(context, id);
+                if (updates > 0) {
+                    summary = context.getString(R.string.configLabel_widgetList_itemCacheSummary, summary, WidgetDataCache.getHits(context, id), updates);
+                }
                 items.add(new WidgetListItem(packageName, widgetClass, id, ContextCompat.getDrawable(context, widgetIcon), title, summary, configClass));
             }
             return items;
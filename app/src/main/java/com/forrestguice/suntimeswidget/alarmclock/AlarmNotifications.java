@@ -66,6 +66,7 @@ import com.forrestguice.suntimeswidget.SuntimesActivity;
 import com.forrestguice.suntimeswidget.SuntimesUtils;
 import com.forrestguice.suntimeswidget.alarmclock.ui.AlarmClockActivity;
 import com.forrestguice.suntimeswidget.alarmclock.ui.AlarmDismissActivity;
+import com.forrestguice.suntimeswidget.calculator.CalculatorStats;
 import com.forrestguice.suntimeswidget.calculator.SuntimesClockData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesEquinoxSolsticeData;
@@ -2153,16 +2154,21 @@ public class AlarmNotifications extends BroadcastReceiver
         SolarEvents event = SolarEvents.valueOf(eventID, null);
         ArrayList<Integer> repeatingDays = (item.repeatingDays != null ? item.repeatingDays : AlarmClockItem.everyday());
 
-        if (item.location != null && event != null)
-        {
-            eventTime = updateAlarmTime_solarEvent(context, event, item.location, item.offset, item.repeating, repeatingDays, now);
+        int subsystem = CalculatorStats.enter(CalculatorStats.SUBSYSTEM_ALARMS);
+        try {
+            if (item.location != null && event != null)
+            {
+                eventTime = updateAlarmTime_solarEvent(context, event, item.location, item.offset, item.repeating, repeatingDays, now);
 
-        } else if (eventID != null) {
-            eventTime = updateAlarmTime_addonEvent(context.getContentResolver(), eventID, item.location, item.offset, item.repeating, repeatingDays, now);
+            } else if (eventID != null) {
+                eventTime = updateAlarmTime_addonEvent(context.getContentResolver(), eventID, item.location, item.offset, item.repeating, repeatingDays, now);
 
-        } else {
-            modifyHourMinute = false;    // "clock time" alarms should leave "hour" and "minute" values untouched
-            eventTime = updateAlarmTime_clockTime(item.hour, item.minute, item.timezone, item.location, item.offset, item.repeating, repeatingDays, now);
+            } else {
+                modifyHourMinute = false;    // "clock time" alarms should leave "hour" and "minute" values untouched
+                eventTime = updateAlarmTime_clockTime(item.hour, item.minute, item.timezone, item.location, item.offset, item.repeating, repeatingDays, now);
+            }
+        } finally {
+            CalculatorStats.exit(subsystem);
         }
 
         if (eventTime == null) {
@@ -2222,7 +2228,7 @@ public class AlarmNotifications extends BroadcastReceiver
         Calendar eventTime;
 
         Calendar day = Calendar.getInstance();
-        sunData.setTodayIs(day);
+        sunData.setTodayIs((Calendar) day.clone());    // (a copy; advanceDay advances todayIs on its own)
         sunData.calculate();
         eventTime = (event.isRising() ? sunData.sunriseCalendarToday() : sunData.sunsetCalendarToday());
         if (eventTime != null)
@@ -2246,8 +2252,11 @@ public class AlarmNotifications extends BroadcastReceiver
 
             Log.w("AlarmReceiverItem", "updateAlarmTime: sunEvent advancing by 1 day..");
             day.add(Calendar.DAY_OF_YEAR, 1);
-            sunData.setTodayIs(day);
-            sunData.calculate();
+            if (!sunData.advanceDay())    // (answered from the event table when available; see SunEventTable)
+            {
+                sunData.setTodayIs((Calendar) day.clone());
+                sunData.calculate();
+            }
             eventTime = (event.isRising() ? sunData.sunriseCalendarToday() : sunData.sunsetCalendarToday());
             if (eventTime != null)
             {
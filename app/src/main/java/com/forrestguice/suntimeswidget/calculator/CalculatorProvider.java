@@ -31,14 +31,11 @@ import android.preference.PreferenceManager;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
-import android.util.SparseArray;
 
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
 
 import com.forrestguice.suntimeswidget.BuildConfig;
 import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
@@ -56,6 +53,7 @@ import static com.forrestguice.suntimeswidget.calculator.core.CalculatorProvider
 public class CalculatorProvider extends ContentProvider
 {
     private static final int URIMATCH_CONFIG = 0;
+    private static final int URIMATCH_CONFIG_STATS = 5;
 
     private static final int URIMATCH_SUN = 10;
     private static final int URIMATCH_SUN_FOR_DATE = 20;
@@ -88,6 +86,7 @@ public class CalculatorProvider extends ContentProvider
         uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
 
         uriMatcher.addURI(AUTHORITY, QUERY_CONFIG, URIMATCH_CONFIG);
+        uriMatcher.addURI(AUTHORITY, QUERY_CONFIG_STATS, URIMATCH_CONFIG_STATS);
 
         uriMatcher.addURI(AUTHORITY, QUERY_SUN, URIMATCH_SUN);
         uriMatcher.addURI(AUTHORITY, QUERY_SUN + "/#", URIMATCH_SUN_FOR_DATE);
@@ -152,7 +151,17 @@ public class CalculatorProvider extends ContentProvider
     @Override
     public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection, @Nullable String[] selectionArgs, @Nullable String sortOrder)
     {
-        HashMap<String, String> selectionMap = processSelection(processSelectionArgs(selection, selectionArgs));
+        int subsystem = CalculatorStats.enter(CalculatorStats.SUBSYSTEM_PROVIDER);
+        try {
+            return query(uri, projection, processSelection(processSelectionArgs(selection, selectionArgs)), sortOrder);
+        } finally {
+            CalculatorStats.exit(subsystem);
+        }
+    }
+
+    @Nullable
+    private Cursor query(@NonNull Uri uri, @Nullable String[] projection, HashMap<String, String> selectionMap, @Nullable String sortOrder)
+    {
         long now = Calendar.getInstance().getTimeInMillis();
         long date;
         long[] range;
@@ -166,6 +175,11 @@ public class CalculatorProvider extends ContentProvider
                 retValue = queryConfig(uri, projection, selectionMap, sortOrder);
                 break;
 
+            case URIMATCH_CONFIG_STATS:
+                //Log.d("CalculatorProvider", "URIMATCH_CONFIG_STATS");
+                retValue = queryStats(uri, projection, selectionMap, sortOrder);
+                break;
+
             case URIMATCH_SEASONS:
                 //Log.d("CalculatorProvider", "URIMATCH_SEASONS");
                 retValue = querySeasons(new long[] {now, now}, uri, projection, selectionMap, sortOrder);
@@ -428,233 +442,66 @@ public class CalculatorProvider extends ContentProvider
     private static final String COLUMN_CONFIG_PROVIDER_VERSION_CODE_V2 = "config_pvodier_version_code";    // key has typo in v0-v2; fixed v3
 
     /**
-     * querySun
+     * queryStats
      */
-    private Cursor querySun(long[] range, @NonNull Uri uri, @Nullable String[] projection, HashMap<String, String> selection, @Nullable String sortOrder)
+    private Cursor queryStats(@NonNull Uri uri, @Nullable String[] projection, HashMap<String, String> selection, @Nullable String sortOrder)
     {
-        String[] columns = (projection != null ? projection : QUERY_SUN_PROJECTION);
+        String[] columns = (projection != null ? projection : QUERY_CONFIG_STATS_PROJECTION);
         MatrixCursor retValue = new MatrixCursor(columns);
-        SuntimesCalculator calculator = initSunCalculator(getContext(), selection);
-        if (calculator != null)
-        {
-            Calendar day = Calendar.getInstance(calculator.getTimeZone());
-            day.setTimeInMillis(range[0]);
+        String selectedMethod = selection.get(COLUMN_STATS_METHOD);
+        String selectedSubsystem = selection.get(COLUMN_STATS_SUBSYSTEM);
 
-            Calendar endDay = Calendar.getInstance(calculator.getTimeZone());
-            endDay.setTimeInMillis(range[1] + 1000);      // +1000ms (make range[1] inclusive)
-
-            do {
-                Map<String,SuntimesCalculator.SunPosition> positions = new HashMap<>();
-                SuntimesCalculator.SunPosition position;
+        for (CalculatorStats.Entry entry : CalculatorStats.getEntries())
+        {
+            String subsystem = CalculatorStats.subsystemName(entry.subsystem);
+            if ((selectedMethod != null && !selectedMethod.equals(entry.method))
+                    || (selectedSubsystem != null && !selectedSubsystem.equals(subsystem))) {
+                continue;
+            }
 
-                Calendar calendar;
-                Calendar[] morningBlueHour = null, eveningBlueHour = null;
-                Object[] row = new Object[columns.length];
-                for (int i=0; i<columns.length; i++)
+            Object[] row = new Object[columns.length];
+            for (int i=0; i<columns.length; i++)
+            {
+                switch (columns[i])
                 {
-                    switch (columns[i])
-                    {
-                        case COLUMN_SUN_ACTUAL_RISE:
-                            calendar = calculator.getOfficialSunriseCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-                        case COLUMN_SUN_ACTUAL_SET:
-                            calendar = calculator.getOfficialSunsetCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_CIVIL_RISE:
-                            calendar = calculator.getCivilSunriseCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-                        case COLUMN_SUN_CIVIL_SET:
-                            calendar = calculator.getCivilSunsetCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_NAUTICAL_RISE:
-                            calendar = calculator.getNauticalSunriseCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-                        case COLUMN_SUN_NAUTICAL_SET:
-                            calendar = calculator.getNauticalSunsetCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_ASTRO_RISE:
-                            calendar = calculator.getAstronomicalSunriseCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-                        case COLUMN_SUN_ASTRO_SET:
-                            calendar = calculator.getAstronomicalSunsetCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_NOON:
-                            calendar = calculator.getSolarNoonCalendarForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_GOLDEN_EVENING:
-                            calendar = calculator.getEveningGoldenHourForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-                        case COLUMN_SUN_GOLDEN_MORNING:
-                            calendar =  calculator.getMorningGoldenHourForDate(day);
-                            row[i] = (calendar != null) ? calendar.getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_BLUE8_RISE:
-                            if (morningBlueHour == null) {
-                                morningBlueHour = calculator.getMorningBlueHourForDate(day);
-                            }
-                            row[i] = (morningBlueHour[0] != null) ? morningBlueHour[0].getTimeInMillis() : null;
-                            break;
-                        case COLUMN_SUN_BLUE4_RISE:
-                            if (morningBlueHour == null) {
-                                morningBlueHour = calculator.getMorningBlueHourForDate(day);
-                            }
-                            row[i] = (morningBlueHour[1] != null) ? morningBlueHour[1].getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_BLUE4_SET:
-                            if (eveningBlueHour == null) {
-                                eveningBlueHour = calculator.getEveningBlueHourForDate(day);
-                            }
-                            row[i] = (eveningBlueHour[0] != null) ? eveningBlueHour[0].getTimeInMillis() : null;
-                            break;
-                        case COLUMN_SUN_BLUE8_SET:
-                            if (eveningBlueHour == null) {
-                                eveningBlueHour = calculator.getEveningBlueHourForDate(day);
-                            }
-                            row[i] = (eveningBlueHour[1] != null) ? eveningBlueHour[1].getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_SUN_NOON_AZ: case COLUMN_SUN_NOON_ALT:
-                        case COLUMN_SUN_NOON_RA: case COLUMN_SUN_NOON_DEC:
-                            calendar = calculator.getSolarNoonCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_NOON, columns[i], positions);
-                            break;
-
-                        case COLUMN_SUN_ACTUAL_RISE_AZ: case COLUMN_SUN_ACTUAL_RISE_ALT:
-                        case COLUMN_SUN_ACTUAL_RISE_RA: case COLUMN_SUN_ACTUAL_RISE_DEC:
-                            calendar = calculator.getOfficialSunriseCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_ACTUAL_RISE, columns[i], positions);
-                            break;
-                        case COLUMN_SUN_ACTUAL_SET_AZ: case COLUMN_SUN_ACTUAL_SET_ALT:
-                        case COLUMN_SUN_ACTUAL_SET_RA: case COLUMN_SUN_ACTUAL_SET_DEC:
-                            calendar = calculator.getOfficialSunsetCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_ACTUAL_SET, columns[i], positions);
-                            break;
-
-                        case COLUMN_SUN_CIVIL_RISE_AZ: case COLUMN_SUN_CIVIL_RISE_ALT:
-                        case COLUMN_SUN_CIVIL_RISE_RA: case COLUMN_SUN_CIVIL_RISE_DEC:
-                            calendar = calculator.getCivilSunriseCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_CIVIL_RISE, columns[i], positions);
-                            break;
-                        case COLUMN_SUN_CIVIL_SET_AZ: case COLUMN_SUN_CIVIL_SET_ALT:
-                        case COLUMN_SUN_CIVIL_SET_RA: case COLUMN_SUN_CIVIL_SET_DEC:
-                            calendar = calculator.getCivilSunsetCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_CIVIL_SET, columns[i], positions);
-                            break;
-
-                        case COLUMN_SUN_NAUTICAL_RISE_AZ: case COLUMN_SUN_NAUTICAL_RISE_ALT:
-                        case COLUMN_SUN_NAUTICAL_RISE_RA: case COLUMN_SUN_NAUTICAL_RISE_DEC:
-                            calendar = calculator.getNauticalSunriseCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_NAUTICAL_RISE, columns[i], positions);
-                            break;
-                        case COLUMN_SUN_NAUTICAL_SET_AZ: case COLUMN_SUN_NAUTICAL_SET_ALT:
-                        case COLUMN_SUN_NAUTICAL_SET_RA: case COLUMN_SUN_NAUTICAL_SET_DEC:
-                            calendar = calculator.getNauticalSunsetCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_NAUTICAL_SET, columns[i], positions);
-                            break;
-
-                        case COLUMN_SUN_ASTRO_RISE_AZ: case COLUMN_SUN_ASTRO_RISE_ALT:
-                        case COLUMN_SUN_ASTRO_RISE_RA: case COLUMN_SUN_ASTRO_RISE_DEC:
-                            calendar = calculator.getAstronomicalSunriseCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_ASTRO_RISE, columns[i], positions);
-                            break;
-                        case COLUMN_SUN_ASTRO_SET_AZ: case COLUMN_SUN_ASTRO_SET_ALT:
-                        case COLUMN_SUN_ASTRO_SET_RA: case COLUMN_SUN_ASTRO_SET_DEC:
-                            calendar = calculator.getAstronomicalSunsetCalendarForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_ASTRO_SET, columns[i], positions);
-                            break;
-
-                        case COLUMN_SUN_GOLDEN_MORNING_AZ: case COLUMN_SUN_GOLDEN_MORNING_ALT:
-                        case COLUMN_SUN_GOLDEN_MORNING_RA: case COLUMN_SUN_GOLDEN_MORNING_DEC:
-                            calendar = calculator.getMorningGoldenHourForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_GOLDEN_MORNING, columns[i], positions);
-                            break;
-                        case COLUMN_SUN_GOLDEN_EVENING_AZ: case COLUMN_SUN_GOLDEN_EVENING_ALT:
-                        case COLUMN_SUN_GOLDEN_EVENING_RA: case COLUMN_SUN_GOLDEN_EVENING_DEC:
-                            calendar = calculator.getEveningGoldenHourForDate(day);
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_GOLDEN_EVENING, columns[i], positions);
-                            break;
-
-                        case COLUMN_SUN_BLUE8_RISE_AZ: case COLUMN_SUN_BLUE8_RISE_ALT:
-                        case COLUMN_SUN_BLUE8_RISE_RA: case COLUMN_SUN_BLUE8_RISE_DEC:
-                            calendar = calculator.getMorningBlueHourForDate(day)[0];
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_BLUE8_RISE, columns[i], positions);
-                            break;
-                        case COLUMN_SUN_BLUE8_SET_AZ: case COLUMN_SUN_BLUE8_SET_ALT:
-                        case COLUMN_SUN_BLUE8_SET_RA: case COLUMN_SUN_BLUE8_SET_DEC:
-                            calendar = calculator.getEveningBlueHourForDate(day)[1];
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_BLUE8_SET, columns[i], positions);
-                            break;
-
-                        case COLUMN_SUN_BLUE4_RISE_AZ: case COLUMN_SUN_BLUE4_RISE_ALT:
-                        case COLUMN_SUN_BLUE4_RISE_RA: case COLUMN_SUN_BLUE4_RISE_DEC:
-                            calendar = calculator.getMorningBlueHourForDate(day)[1];
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_BLUE4_RISE, columns[i], positions);
-                            break;
-                        case COLUMN_SUN_BLUE4_SET_AZ: case COLUMN_SUN_BLUE4_SET_ALT:
-                        case COLUMN_SUN_BLUE4_SET_RA: case COLUMN_SUN_BLUE4_SET_DEC:
-                            calendar = calculator.getEveningBlueHourForDate(day)[0];
-                            row[i] = getPositionValueForSunKey(calculator, calendar, COLUMN_SUN_BLUE4_SET, columns[i], positions);
-                            break;
-
-                        default:
-                            row[i] = null;
-                            break;
-                    }
+                    case COLUMN_STATS_METHOD: row[i] = entry.method; break;
+                    case COLUMN_STATS_SUBSYSTEM: row[i] = subsystem; break;
+                    case COLUMN_STATS_COUNT: row[i] = entry.count; break;
+                    case COLUMN_STATS_MEAN: row[i] = (entry.count > 0 ? entry.total / entry.count : 0); break;
+                    case COLUMN_STATS_P50: row[i] = entry.p50; break;
+                    case COLUMN_STATS_P95: row[i] = entry.p95; break;
+                    case COLUMN_STATS_P99: row[i] = entry.p99; break;
+                    case COLUMN_STATS_MAX: row[i] = entry.max; break;
+                    default: row[i] = null; break;
                 }
-                retValue.addRow(row);
-                day.add(Calendar.DAY_OF_YEAR, 1);
-            } while (day.before(endDay));
-
-        } else Log.w("CalculatorProvider", "querySun: sunSource is null!");
+            }
+            retValue.addRow(row);
+        }
         return retValue;
     }
 
-    protected static Double getPositionValueForSunKey(@NonNull SuntimesCalculator calculator, @Nullable Calendar calendar, String rootKey, String fullKey, Map<String, SuntimesCalculator.SunPosition> positions)
+    /**
+     * querySun
+     */
+    private Cursor querySun(long[] range, @NonNull Uri uri, @Nullable String[] projection, HashMap<String, String> selection, @Nullable String sortOrder)
     {
-        if (!positions.containsKey(rootKey)) {
-            positions.put(rootKey, calendar != null ? calculator.getSunPosition(calendar) : null);
-        }
-        SuntimesCalculator.SunPosition position = positions.get(rootKey);
-
-        String ROOT_KEY_PLUS_POSITION_AZ = rootKey + _POSITION_AZ;
-        String ROOT_KEY_PLUS_POSITION_ALT = rootKey + _POSITION_ALT;
-        String ROOT_KEY_PLUS_POSITION_RA = rootKey + _POSITION_RA;
-        String ROOT_KEY_PLUS_POSITION_DEC = rootKey + _POSITION_DEC;
-        String[] ROOT_KEY_PLUS_POSITION = new String[] { ROOT_KEY_PLUS_POSITION_AZ, ROOT_KEY_PLUS_POSITION_ALT, ROOT_KEY_PLUS_POSITION_RA, ROOT_KEY_PLUS_POSITION_DEC };    // 0, 1, 2, 3
-
-        int j = -1;    // index into ROOT_KEY_PLUS_POSITION
-        for (int i=0; i<ROOT_KEY_PLUS_POSITION.length; i++)
-        {
-            if (ROOT_KEY_PLUS_POSITION[i].equals(fullKey)) {
-                j = i;
-                break;
-            }
-        }
-        switch (j)
+        String[] columns = (projection != null ? projection : QUERY_SUN_PROJECTION);
+        Cursor retValue = new MatrixCursor(columns);
+        SuntimesCalculator calculator = initSunCalculator(getContext(), selection);
+        if (calculator != null)
         {
-            case 0: return (position != null ? position.azimuth : null);
-            case 1: return (position != null ? position.elevation : null);
-            case 2: return (position != null ? position.rightAscension : null);
-            case 3: return (position != null ? position.declination : null);
-        }
-        return null;
+            final SunQueryPlan plan = new SunQueryPlan(columns);
+            RangeQuery query = new RangeQuery.DayRangeQuery(columns, calculator.getTimeZone(), range[0], range[1] + 1000)    // +1000ms (make range[1] inclusive)
+            {
+                @Override
+                public Object[] getRow(SuntimesCalculator calculator, int position) {
+                    return plan.getRow(calculator, getStep(position));
+                }
+            };
+            retValue = queryCursor(uri, query, calculator);
+
+        } else Log.w("CalculatorProvider", "querySun: sunSource is null!");
+        return retValue;
     }
 
     public static final String COLUMN_SUN_NOON_AZ = COLUMN_SUN_NOON + _POSITION_AZ;
@@ -798,83 +645,86 @@ public class CalculatorProvider extends ContentProvider
     private Cursor queryMoon(long[] range, @NonNull Uri uri, @Nullable String[] projection, HashMap<String, String> selection, @Nullable String sortOrder)
     {
         String[] columns = (projection != null ? projection : QUERY_MOON_PROJECTION);
-        MatrixCursor retValue = new MatrixCursor(columns);
+        Cursor retValue = new MatrixCursor(columns);
         SuntimesCalculator calculator = initMoonCalculator(getContext(), selection);
         if (calculator != null)
         {
-            Calendar day = Calendar.getInstance(calculator.getTimeZone());
-            day.setTimeInMillis(range[0]);
+            RangeQuery query = new RangeQuery.DayRangeQuery(columns, calculator.getTimeZone(), range[0], range[1] + 1000)    // +1000ms (make range[1] inclusive)
+            {
+                @Override
+                public Object[] getRow(SuntimesCalculator calculator, int position) {
+                    return queryMoonRow(calculator, columns, getStep(position));
+                }
+            };
+            retValue = queryCursor(uri, query, calculator);
 
-            Calendar endDay = Calendar.getInstance(calculator.getTimeZone());
-            endDay.setTimeInMillis(range[1] + 1000);    // +1000ms (make range[1] inclusive)
+        } else Log.w("CalculatorProvider", "queryMoon: moonSource is null!");
+        return retValue;
+    }
 
-            do {
-                SuntimesCalculator.MoonTimes moontimes = null;
-                SuntimesCalculator.MoonPosition position_rising = null, position_setting = null;
-                Object[] row = new Object[columns.length];
-                for (int i=0; i<columns.length; i++)
-                {
+    protected static Object[] queryMoonRow(@NonNull SuntimesCalculator calculator, @NonNull String[] columns, @NonNull Calendar day)
+    {
+        SuntimesCalculator.MoonTimes moontimes = null;
+        SuntimesCalculator.MoonPosition position_rising = null, position_setting = null;
+        Object[] row = new Object[columns.length];
+        for (int i=0; i<columns.length; i++)
+        {
+            switch (columns[i])
+            {
+                case COLUMN_MOON_RISE:
+                    moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
+                    row[i] = (moontimes.riseTime) != null ? moontimes.riseTime.getTimeInMillis() : null;
+                    break;
+                case COLUMN_MOON_SET:
+                    moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
+                    row[i] = (moontimes.setTime) != null ? moontimes.setTime.getTimeInMillis() : null;
+                    break;
+
+                case COLUMN_MOON_RISE_AZ: case COLUMN_MOON_RISE_ALT:
+                case COLUMN_MOON_RISE_RA: case COLUMN_MOON_RISE_DEC:
+                case COLUMN_MOON_RISE_DISTANCE:
+                    moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
+                    position_rising = (position_rising == null && moontimes.riseTime != null) ? calculator.getMoonPosition(moontimes.riseTime) : position_rising;
                     switch (columns[i])
                     {
-                        case COLUMN_MOON_RISE:
-                            moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
-                            row[i] = (moontimes.riseTime) != null ? moontimes.riseTime.getTimeInMillis() : null;
-                            break;
-                        case COLUMN_MOON_SET:
-                            moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
-                            row[i] = (moontimes.setTime) != null ? moontimes.setTime.getTimeInMillis() : null;
-                            break;
-
-                        case COLUMN_MOON_RISE_AZ: case COLUMN_MOON_RISE_ALT:
-                        case COLUMN_MOON_RISE_RA: case COLUMN_MOON_RISE_DEC:
-                        case COLUMN_MOON_RISE_DISTANCE:
-                            moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
-                            position_rising = (position_rising == null && moontimes.riseTime != null) ? calculator.getMoonPosition(moontimes.riseTime) : position_rising;
-                            switch (columns[i])
-                            {
-                                case COLUMN_MOON_RISE_AZ: row[i] = (position_rising != null ? position_rising.azimuth : null); break;
-                                case COLUMN_MOON_RISE_ALT: row[i] = (position_rising != null ? position_rising.elevation : null); break;
-                                case COLUMN_MOON_RISE_RA: row[i] = (position_rising != null ? position_rising.rightAscension : null); break;
-                                case COLUMN_MOON_RISE_DEC: row[i] = (position_rising != null ? position_rising.declination : null); break;
-                                case COLUMN_MOON_RISE_DISTANCE: row[i] = (position_rising != null ? position_rising.distance : null); break;
-                            }
-                            break;
-
-                        case COLUMN_MOON_SET_AZ: case COLUMN_MOON_SET_ALT:
-                        case COLUMN_MOON_SET_RA: case COLUMN_MOON_SET_DEC:
-                        case COLUMN_MOON_SET_DISTANCE:
-                            moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
-                            position_setting = (position_setting == null && moontimes.setTime != null) ? calculator.getMoonPosition(moontimes.setTime) : position_setting;
-                            switch (columns[i])
-                            {
-                                case COLUMN_MOON_SET_AZ: row[i] = (position_setting != null ? position_setting.azimuth : null); break;
-                                case COLUMN_MOON_SET_ALT: row[i] = (position_setting != null ? position_setting.elevation : null); break;
-                                case COLUMN_MOON_SET_RA: row[i] = (position_setting != null ? position_setting.rightAscension : null); break;
-                                case COLUMN_MOON_SET_DEC: row[i] = (position_setting != null ? position_setting.declination : null); break;
-                                case COLUMN_MOON_SET_DISTANCE: row[i] = (position_setting != null ? position_setting.distance : null); break;
-                            }
-                            break;
-
-                        case COLUMN_MOON_RISE_ILLUM:
-                            moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
-                            row[i] = (moontimes.riseTime) != null ? calculator.getMoonIlluminationForDate(moontimes.riseTime) : null;
-                            break;
-                        case COLUMN_MOON_SET_ILLUM:
-                            moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
-                            row[i] = (moontimes.setTime) != null ? calculator.getMoonIlluminationForDate(moontimes.setTime) : null;
-                            break;
-
-                        default:
-                            row[i] = null;
-                            break;
+                        case COLUMN_MOON_RISE_AZ: row[i] = (position_rising != null ? position_rising.azimuth : null); break;
+                        case COLUMN_MOON_RISE_ALT: row[i] = (position_rising != null ? position_rising.elevation : null); break;
+                        case COLUMN_MOON_RISE_RA: row[i] = (position_rising != null ? position_rising.rightAscension : null); break;
+                        case COLUMN_MOON_RISE_DEC: row[i] = (position_rising != null ? position_rising.declination : null); break;
+                        case COLUMN_MOON_RISE_DISTANCE: row[i] = (position_rising != null ? position_rising.distance : null); break;
                     }
-                }
-                retValue.addRow(row);
-                day.add(Calendar.DAY_OF_YEAR, 1);
-            } while (day.before(endDay));
+                    break;
 
-        } else Log.w("CalculatorProvider", "queryMoon: moonSource is null!");
-        return retValue;
+                case COLUMN_MOON_SET_AZ: case COLUMN_MOON_SET_ALT:
+                case COLUMN_MOON_SET_RA: case COLUMN_MOON_SET_DEC:
+                case COLUMN_MOON_SET_DISTANCE:
+                    moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
+                    position_setting = (position_setting == null && moontimes.setTime != null) ? calculator.getMoonPosition(moontimes.setTime) : position_setting;
+                    switch (columns[i])
+                    {
+                        case COLUMN_MOON_SET_AZ: row[i] = (position_setting != null ? position_setting.azimuth : null); break;
+                        case COLUMN_MOON_SET_ALT: row[i] = (position_setting != null ? position_setting.elevation : null); break;
+                        case COLUMN_MOON_SET_RA: row[i] = (position_setting != null ? position_setting.rightAscension : null); break;
+                        case COLUMN_MOON_SET_DEC: row[i] = (position_setting != null ? position_setting.declination : null); break;
+                        case COLUMN_MOON_SET_DISTANCE: row[i] = (position_setting != null ? position_setting.distance : null); break;
+                    }
+                    break;
+
+                case COLUMN_MOON_RISE_ILLUM:
+                    moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
+                    row[i] = (moontimes.riseTime) != null ? calculator.getMoonIlluminationForDate(moontimes.riseTime) : null;
+                    break;
+                case COLUMN_MOON_SET_ILLUM:
+                    moontimes = (moontimes == null ? calculator.getMoonTimesForDate(day) : moontimes);
+                    row[i] = (moontimes.setTime) != null ? calculator.getMoonIlluminationForDate(moontimes.setTime) : null;
+                    break;
+
+                default:
+                    row[i] = null;
+                    break;
+            }
+        }
+        return row;
     }
 
     public static final String COLUMN_MOON_RISE_AZ = COLUMN_MOON_RISE + _POSITION_AZ;
@@ -928,11 +778,11 @@ public class CalculatorProvider extends ContentProvider
                             break;
 
                         case COLUMN_MOONPOS_PERIGEE:
-                            row[i] = calculator.getMoonPerigeeNextDate(datetime).getTimeInMillis();
+                            row[i] = MoonEventTable.nextPerigee(moonTable(getContext(), calculator), calculator, datetime).getTimeInMillis();
                             break;
 
                         case COLUMN_MOONPOS_APOGEE:
-                            row[i] = calculator.getMoonApogeeNextDate(datetime).getTimeInMillis();
+                            row[i] = MoonEventTable.nextApogee(moonTable(getContext(), calculator), calculator, datetime).getTimeInMillis();
                             break;
 
                         case COLUMN_MOONPOS_ILLUMINATION:
@@ -961,196 +811,114 @@ public class CalculatorProvider extends ContentProvider
     private Cursor queryMoonPhase(long[] range, @NonNull Uri uri, @Nullable String[] projection, HashMap<String, String> selection, @Nullable String sortOrder)
     {
         String[] columns = (projection != null ? projection : QUERY_MOONPHASE_PROJECTION);
-        MatrixCursor retValue = new MatrixCursor(columns);
+        Cursor retValue = new MatrixCursor(columns);
         SuntimesCalculator calculator = initMoonCalculator(getContext(), selection);
         if (calculator != null)
         {
-            ArrayList<Calendar> events = new ArrayList<>();
-            HashMap<SuntimesCalculator.MoonPhase, Calendar> events1 = new HashMap<>();
-
-            Calendar date = Calendar.getInstance(calculator.getTimeZone());
-            date.setTimeInMillis(range[0]);
-
-            Calendar endDate = Calendar.getInstance(calculator.getTimeZone());
-            endDate.setTimeInMillis(range[1] + 1000);   // +1000ms (make range[1] inclusive)
-
-            do {
-                events.clear();
-                events1.clear();
-                Object[] row = new Object[columns.length];
-                for (int i=0; i<columns.length; i++)
-                {
-                    Calendar event;
-                    SuntimesCalculator.MoonPosition position;
-                    switch (columns[i])
-                    {
-                        case COLUMN_MOON_NEW:
-                            events.add(event = initEventValue(SuntimesCalculator.MoonPhase.NEW, events1, calculator, date));
-                            row[i] = event.getTimeInMillis();
-                            break;
-
-                        case COLUMN_MOON_FIRST:
-                            events.add(event = initEventValue(SuntimesCalculator.MoonPhase.FIRST_QUARTER, events1, calculator, date));
-                            row[i] = event.getTimeInMillis();
-                            break;
-
-                        case COLUMN_MOON_FULL:
-                            events.add(event = initEventValue(SuntimesCalculator.MoonPhase.FULL, events1, calculator, date));
-                            row[i] = event.getTimeInMillis();
-                            break;
-
-                        case COLUMN_MOON_THIRD:
-                            events.add(event = initEventValue(SuntimesCalculator.MoonPhase.THIRD_QUARTER, events1, calculator, date));
-                            row[i] = event.getTimeInMillis();
-                            break;
-
-                        case COLUMN_MOON_NEW_DISTANCE:
-                            events.add(event = initEventValue(SuntimesCalculator.MoonPhase.NEW, events1, calculator, date));
-                            position = ((event != null) ? calculator.getMoonPosition(event) : null);
-                            row[i] = ((position != null) ? position.distance : null);
-                            break;
-
-                        case COLUMN_MOON_FIRST_DISTANCE:
-                            events.add(event = initEventValue(SuntimesCalculator.MoonPhase.FIRST_QUARTER, events1, calculator, date));
-                            position = ((event != null) ? calculator.getMoonPosition(event) : null);
-                            row[i] = ((position != null) ? position.distance : null);
-                            break;
-
-                        case COLUMN_MOON_FULL_DISTANCE:
-                            events.add(event = initEventValue(SuntimesCalculator.MoonPhase.FULL, events1, calculator, date));
-                            position = ((event != null) ? calculator.getMoonPosition(event) : null);
-                            row[i] = ((position != null) ? position.distance : null);
-                            break;
-
-                        case COLUMN_MOON_THIRD_DISTANCE:
-                            events.add(event = initEventValue(SuntimesCalculator.MoonPhase.THIRD_QUARTER, events1, calculator, date));
-                            position = ((event != null) ? calculator.getMoonPosition(event) : null);
-                            row[i] = ((position != null) ? position.distance : null);
-                            break;
-
-                        default:
-                            row[i] = null;
-                            break;
-                    }
-                }
-                retValue.addRow(row);
-
-                Collections.sort(events);
-                Calendar latest = (events.size() > 1) ? events.get(events.size()-1)
-                                : (events.size() > 0) ? events.get(0) : null;
-
-                date.setTimeInMillis(latest != null ? latest.getTimeInMillis() + 1000
-                                                    : range[1] + 1000);
-            } while (date.before(endDate));
+            RangeQuery.MoonPhaseRangeQuery query = new RangeQuery.MoonPhaseRangeQuery(columns, calculator.getTimeZone(), range[0], range[1] + 1000);    // +1000ms (make range[1] inclusive)
+            query.setTable(moonTable(getContext(), calculator));
+            retValue = queryCursor(uri, query, calculator);
 
         } else Log.w("CalculatorProvider", "queryMoonPhase: moonSource is null!");
         return retValue;
     }
 
-    private Calendar initEventValue(@NonNull SuntimesCalculator.MoonPhase phase, @NonNull HashMap<SuntimesCalculator.MoonPhase, Calendar> events, @NonNull SuntimesCalculator calculator, @NonNull Calendar date)
-    {
-        Calendar event = events.get(phase);
-        if (event == null) {
-            events.put(phase, event = calculator.getMoonPhaseNextDate(phase, date));
-        }
-        return event;
-    }
-
     /**
      * querySeasons
      */
     private Cursor querySeasons(long[] range, @NonNull Uri uri, @Nullable String[] projection, HashMap<String, String> selection, @Nullable String sortOrder)
     {
         String[] columns = (projection != null ? projection : QUERY_SEASONS_PROJECTION);
-        MatrixCursor retValue = new MatrixCursor(columns);
+        Cursor retValue = new MatrixCursor(columns);
         SuntimesCalculator calculator = initSunCalculator(getContext(), selection);
         if (calculator != null)
         {
-            Calendar year = Calendar.getInstance(calculator.getTimeZone());
-            year.setTimeInMillis(range[0]);
-
-            Calendar year0 = Calendar.getInstance(calculator.getTimeZone());
-            year0.setTimeInMillis(year.getTimeInMillis());
-            year0.add(Calendar.YEAR, -1);
-
             Calendar endYear = Calendar.getInstance(calculator.getTimeZone());
             endYear.setTimeInMillis(range[1]);
             endYear.add(Calendar.YEAR, 1);                   // +1 year (make range[1] inclusive)
 
-            do {
-                Object[] row = new Object[columns.length];
-                for (int i=0; i<columns.length; i++)
-                {
-                    Calendar event;
-                    switch (columns[i])
-                    {
-                        case COLUMN_SEASON_YEAR:
-                            row[i] = year.get(Calendar.YEAR);
-                            break;
-
-                        case COLUMN_SEASON_TROPICAL_YEAR_LENGTH:
-                            row[i] = calculator.getTropicalYearLength(year);
-                            break;
-
-                        case COLUMN_SEASON_CROSS_SPRING:
-                            event = SuntimesData.midpoint(calculator.getSpringEquinoxForYear(year), calculator.getSummerSolsticeForYear(year));
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
-
-                        case COLUMN_SEASON_CROSS_AUTUMN:
-                            event = SuntimesData.midpoint(calculator.getAutumnalEquinoxForYear(year), calculator.getWinterSolsticeForYear(year));
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
-
-                        case COLUMN_SEASON_CROSS_SUMMER:
-                            event = (calculator.getLocation().getLatitudeAsDouble() >= 0)
-                                    ? SuntimesData.midpoint(calculator.getSummerSolsticeForYear(year), calculator.getAutumnalEquinoxForYear(year))
-                                    : SuntimesData.midpoint(calculator.getSummerSolsticeForYear(year0), calculator.getAutumnalEquinoxForYear(year));
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
-
-                        case COLUMN_SEASON_CROSS_WINTER:
-                            event = (calculator.getLocation().getLatitudeAsDouble() >= 0)
-                                    ? SuntimesData.midpoint(calculator.getWinterSolsticeForYear(year0), calculator.getSpringEquinoxForYear(year))
-                                    : SuntimesData.midpoint(calculator.getWinterSolsticeForYear(year), calculator.getSpringEquinoxForYear(year));
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
-
-                        case COLUMN_SEASON_VERNAL:
-                        case COLUMN_SEASON_SPRING:
-                            event = calculator.getSpringEquinoxForYear(year);
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
-
-                        case COLUMN_SEASON_SUMMER:
-                            event = calculator.getSummerSolsticeForYear(year);
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
-
-                        case COLUMN_SEASON_AUTUMN:
-                            event = calculator.getAutumnalEquinoxForYear(year);
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
-
-                        case COLUMN_SEASON_WINTER:
-                            event = calculator.getWinterSolsticeForYear(year);
-                            row[i] = (event != null ? event.getTimeInMillis() : null);
-                            break;
-
-                        default:
-                            row[i] = null;
-                            break;
-                    }
+            RangeQuery query = new RangeQuery.StepRangeQuery(columns, calculator.getTimeZone(), range[0], endYear.getTimeInMillis(), Calendar.YEAR)
+            {
+                @Override
+                public Object[] getRow(SuntimesCalculator calculator, int position) {
+                    return querySeasonsRow(calculator, columns, getStep(position), getStep(position - 1));
                 }
-                retValue.addRow(row);
-                year.add(Calendar.YEAR, 1);
-                year0.add(Calendar.YEAR, 1);
-            } while (year.before(endYear));
+            };
+            retValue = queryCursor(uri, query, calculator);
 
         } else Log.w("CalculatorProvider", "querySeasons: sunSource is null!");
         return retValue;
     }
 
+    protected static Object[] querySeasonsRow(@NonNull SuntimesCalculator calculator, @NonNull String[] columns, @NonNull Calendar year, @NonNull Calendar year0)
+    {
+        Object[] row = new Object[columns.length];
+        for (int i=0; i<columns.length; i++)
+        {
+            Calendar event;
+            switch (columns[i])
+            {
+                case COLUMN_SEASON_YEAR:
+                    row[i] = year.get(Calendar.YEAR);
+                    break;
+
+                case COLUMN_SEASON_TROPICAL_YEAR_LENGTH:
+                    row[i] = SeasonTable.getTropicalYearLength(calculator, year);
+                    break;
+
+                case COLUMN_SEASON_CROSS_SPRING:
+                    event = SuntimesData.midpoint(SeasonTable.getSpringEquinoxForYear(calculator, year), SeasonTable.getSummerSolsticeForYear(calculator, year));
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                case COLUMN_SEASON_CROSS_AUTUMN:
+                    event = SuntimesData.midpoint(SeasonTable.getAutumnalEquinoxForYear(calculator, year), SeasonTable.getWinterSolsticeForYear(calculator, year));
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                case COLUMN_SEASON_CROSS_SUMMER:
+                    event = (calculator.getLocation().getLatitudeAsDouble() >= 0)
+                            ? SuntimesData.midpoint(SeasonTable.getSummerSolsticeForYear(calculator, year), SeasonTable.getAutumnalEquinoxForYear(calculator, year))
+                            : SuntimesData.midpoint(SeasonTable.getSummerSolsticeForYear(calculator, year0), SeasonTable.getAutumnalEquinoxForYear(calculator, year));
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                case COLUMN_SEASON_CROSS_WINTER:
+                    event = (calculator.getLocation().getLatitudeAsDouble() >= 0)
+                            ? SuntimesData.midpoint(SeasonTable.getWinterSolsticeForYear(calculator, year0), SeasonTable.getSpringEquinoxForYear(calculator, year))
+                            : SuntimesData.midpoint(SeasonTable.getWinterSolsticeForYear(calculator, year), SeasonTable.getSpringEquinoxForYear(calculator, year));
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                case COLUMN_SEASON_VERNAL:
+                case COLUMN_SEASON_SPRING:
+                    event = SeasonTable.getSpringEquinoxForYear(calculator, year);
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                case COLUMN_SEASON_SUMMER:
+                    event = SeasonTable.getSummerSolsticeForYear(calculator, year);
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                case COLUMN_SEASON_AUTUMN:
+                    event = SeasonTable.getAutumnalEquinoxForYear(calculator, year);
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                case COLUMN_SEASON_WINTER:
+                    event = SeasonTable.getWinterSolsticeForYear(calculator, year);
+                    row[i] = (event != null ? event.getTimeInMillis() : null);
+                    break;
+
+                default:
+                    row[i] = null;
+                    break;
+            }
+        }
+        return row;
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////////
     // Calculator Init
     ///////////////////////////////////////////////////////////////////////////////////////////////
@@ -1195,46 +963,132 @@ public class CalculatorProvider extends ContentProvider
         }
     }
 
-    private static SparseArray<SuntimesCalculator> sunSource = new SparseArray<>();    // sun source for appWidgetID (app is 0)
-    private static SuntimesCalculator initSunCalculator(Context context, int appWidgetID)
+    private static final CalculatorRegistry sunSource = new CalculatorRegistry();    // sun source for appWidgetID (app is 0)
+    private static SuntimesCalculator initSunCalculator(final Context context, final int appWidgetID)
     {
-        SuntimesCalculator retValue = sunSource.get(appWidgetID);   // lazy init
-        if (retValue == null)
+        return sunSource.get(appWidgetID, new Callable<SuntimesCalculator>()    // lazy init
         {
-            WidgetSettings.initDefaults(context);
-            Location location = WidgetSettings.loadLocationPref(context, appWidgetID);
-            TimeZone timezone = initTimeZone(context, appWidgetID);
-            SuntimesCalculatorDescriptor descriptor = WidgetSettings.loadCalculatorModePref(context, appWidgetID);
-            SuntimesCalculatorFactory factory = new SuntimesCalculatorFactory(context, descriptor);
-            sunSource.put(appWidgetID, (retValue = factory.createCalculator(location, timezone)));
-            //Log.d("CalculatorProvider", "initSunCalculator: " + location.getLabel() + " :: " + location.toString());
-        } //else Log.d("CalculatorProvider", "initSunCalculator: using pre-existing calculator");
-        return retValue;
+            @Override
+            public SuntimesCalculator call()
+            {
+                WidgetSettings.initDefaults(context);
+                Location location = WidgetSettings.loadLocationPref(context, appWidgetID);
+                TimeZone timezone = initTimeZone(context, appWidgetID);
+                SuntimesCalculatorDescriptor descriptor = WidgetSettings.loadCalculatorModePref(context, appWidgetID);
+                SuntimesCalculatorFactory factory = new SuntimesCalculatorFactory(context, descriptor);
+                //Log.d("CalculatorProvider", "initSunCalculator: " + location.getLabel() + " :: " + location.toString());
+                return factory.createCalculator(location, timezone);
+            }
+        });
     }
     private SuntimesCalculator initSunCalculator(Context context, HashMap<String,String> selection) {
         return initCalculator(context, selection, null);
     }
 
-    private static SparseArray<SuntimesCalculator> moonSource = new SparseArray<>();   // moon source for appWidgetID (app is 0)
-    private static SuntimesCalculator initMoonCalculator(Context context, int appWidgetID)
+    private static final CalculatorRegistry moonSource = new CalculatorRegistry();   // moon source for appWidgetID (app is 0)
+    private static SuntimesCalculator initMoonCalculator(final Context context, final int appWidgetID)
     {
-        SuntimesCalculator retValue = moonSource.get(appWidgetID);
-        if (retValue == null)    // lazy init
+        return moonSource.get(appWidgetID, new Callable<SuntimesCalculator>()    // lazy init
         {
-            WidgetSettings.initDefaults(context);
-            Location location = WidgetSettings.loadLocationPref(context, appWidgetID);
-            TimeZone timezone = initTimeZone(context, appWidgetID);
-            SuntimesCalculatorDescriptor descriptor = WidgetSettings.loadCalculatorModePref(context, 0, "moon");      // always use app calculator (0)
-            SuntimesCalculatorFactory factory = new SuntimesCalculatorFactory(context, descriptor);
-            moonSource.put(appWidgetID, (retValue = factory.createCalculator(location, timezone)));
-            //Log.d("CalculatorProvider", "initMoonCalculator: " + location.getLabel() + " :: " + location.toString());
-        } //else Log.d("CalculatorProvider", "initMoonCalculator: using pre-existing calculator");
-        return retValue;
+            @Override
+            public SuntimesCalculator call()
+            {
+                WidgetSettings.initDefaults(context);
+                Location location = WidgetSettings.loadLocationPref(context, appWidgetID);
+                TimeZone timezone = initTimeZone(context, appWidgetID);
+                SuntimesCalculatorDescriptor descriptor = WidgetSettings.loadCalculatorModePref(context, 0, "moon");      // always use app calculator (0)
+                SuntimesCalculatorFactory factory = new SuntimesCalculatorFactory(context, descriptor);
+                //Log.d("CalculatorProvider", "initMoonCalculator: " + location.getLabel() + " :: " + location.toString());
+                return factory.createCalculator(location, timezone);
+            }
+        });
     }
     private SuntimesCalculator initMoonCalculator(Context context, HashMap<String,String> selection) {
         return initCalculator(context, selection, "moon");
     }
 
+    /**
+     * @return the calculator's precomputed phase/apsis table, or null if unavailable
+     */
+    @Nullable
+    protected static MoonEventTable moonTable(Context context, @NonNull SuntimesCalculator calculator)
+    {
+        SuntimesCalculatorDescriptor descriptor = SuntimesCalculatorDescriptor.valueOf(context, calculator.name());
+        return (descriptor != null ? MoonEventTable.getTable(context, calculator, descriptor) : null);
+    }
+
+    /**
+     * @return a WorkerCalculator that creates a calculator (like the given calculator) once per worker thread, or null if unavailable
+     */
+    @Nullable
+    protected static RangeQuery.WorkerCalculator workerCalculator(final Context context, @NonNull final SuntimesCalculator calculator)
+    {
+        final SuntimesCalculatorDescriptor descriptor = SuntimesCalculatorDescriptor.valueOf(context, calculator.name());
+        if (descriptor == null) {
+            return null;
+        }
+        return new RangeQuery.WorkerCalculator()
+        {
+            @Override
+            public SuntimesCalculator newCalculator() {
+                SuntimesCalculator worker = new SuntimesCalculatorFactory(context, descriptor).newCalculator(calculator.getLocation(), calculator.getTimeZone());
+                return CalculatorStats.tag(worker, CalculatorStats.SUBSYSTEM_PROVIDER);
+            }
+        };
+    }
+
+    /**
+     * @return a cursor over the results of query; range uris get a RangeCursor (rows are computed as the cursor
+     * is moved, using a calculator of its own, and in parallel by worker threads that each reuse one calculator
+     * for the life of the cursor), other uris get a MatrixCursor (the row is computed now, on the calling thread).
+     */
+    private Cursor queryCursor(@NonNull Uri uri, @NonNull RangeQuery query, @NonNull SuntimesCalculator calculator)
+    {
+        RangeQuery.WorkerCalculator workerCalculator = null;
+        switch (uriMatcher().match(uri))
+        {
+            case URIMATCH_SUN_FOR_RANGE:
+            case URIMATCH_MOON_FOR_RANGE:
+            case URIMATCH_MOONPHASE_FOR_RANGE:
+            case URIMATCH_SEASONS_FOR_RANGE:
+                workerCalculator = workerCalculator(getContext(), calculator);
+                SuntimesCalculator cursorCalculator = cursorCalculator(workerCalculator);    // (the shared calculator isn't used after query returns)
+                if (cursorCalculator != null) {
+                    return new RangeCursor(query, cursorCalculator, workerCalculator);
+                }
+                // fall through (all rows computed now)
+
+            default:
+                MatrixCursor cursor = new MatrixCursor(query.getColumns());
+                addRows(cursor, RangeQuery.evaluate(query, calculator, workerCalculator));    // (single rows aren't worth the workers; workerCalculator is null)
+                return cursor;
+        }
+    }
+
+    /**
+     * @return a new calculator for a RangeCursor (rows are computed later, on whichever thread moves the cursor), or null if unavailable
+     */
+    @Nullable
+    protected static SuntimesCalculator cursorCalculator(@Nullable RangeQuery.WorkerCalculator workerCalculator)
+    {
+        if (workerCalculator != null)
+        {
+            try {
+                return workerCalculator.newCalculator();    // (not a worker's calculator; the cursor may be moved by any thread)
+            } catch (Exception e) {
+                Log.w("CalculatorProvider", "cursorCalculator: failed to create calculator; " + e);
+            }
+        }
+        return null;
+    }
+
+    protected static void addRows(MatrixCursor cursor, Object[][] rows)
+    {
+        for (Object[] row : rows) {
+            cursor.addRow(row);
+        }
+    }
+
     private static TimeZone initTimeZone(Context context, int appWidgetID)
     {
         switch (WidgetSettings.loadTimezoneModePref(context, appWidgetID)) {
@@ -1249,8 +1103,8 @@ public class CalculatorProvider extends ContentProvider
 
     public static void clearCachedConfig(int appWidgetID)
     {
-        sunSource.remove(appWidgetID);
-        moonSource.remove(appWidgetID);
+        sunSource.invalidate(appWidgetID);
+        moonSource.invalidate(appWidgetID);
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,146 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A thread-safe, size-bounded (least recently used) registry of calculators keyed by appWidgetID.
+ * Initialization is single-flight; concurrent requests for a missing entry wait on (and share) the
+ * calculator created by the first request.
+ */
+public class CalculatorRegistry
+{
+    public static final String TAG = "CalculatorRegistry";
+    public static final int DEF_MAX_ENTRIES = 32;
+
+    private final LinkedHashMap<Integer, FutureTask<SuntimesCalculator>> entries;
+
+    public CalculatorRegistry() {
+        this(DEF_MAX_ENTRIES);
+    }
+
+    public CalculatorRegistry(final int maxEntries)
+    {
+        entries = new LinkedHashMap<Integer, FutureTask<SuntimesCalculator>>(maxEntries, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, FutureTask<SuntimesCalculator>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param appWidgetID widget id (app is 0)
+     * @param initializer creates the calculator if it isn't already registered (called at most once per entry)
+     * @return the registered calculator, or null if initialization failed
+     */
+    @Nullable
+    public SuntimesCalculator get(int appWidgetID, Callable<SuntimesCalculator> initializer)
+    {
+        FutureTask<SuntimesCalculator> task;
+        boolean isOwner = false;
+        synchronized (entries)
+        {
+            task = entries.get(appWidgetID);
+            if (task == null)
+            {
+                task = new FutureTask<>(initializer);
+                entries.put(appWidgetID, task);
+                isOwner = true;
+            }
+        }
+
+        if (isOwner) {
+            task.run();    // initialize on this thread; others block in get()
+        }
+
+        try {
+            SuntimesCalculator calculator = task.get();
+            if (calculator == null) {
+                remove(appWidgetID, task);
+            }
+            return calculator;
+
+        } catch (ExecutionException e) {
+            Log.e(TAG, "get: failed to init calculator for " + appWidgetID + ": " + e.getCause());
+            remove(appWidgetID, task);
+            return null;
+
+        } catch (InterruptedException e) {
+            Log.w(TAG, "get: interrupted while waiting for calculator " + appWidgetID);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void remove(int appWidgetID, FutureTask<SuntimesCalculator> task)
+    {
+        synchronized (entries)
+        {
+            if (entries.get(appWidgetID) == task) {
+                entries.remove(appWidgetID);
+            }
+        }
+    }
+
+    /**
+     * @return true if a calculator is registered (or being initialized) for appWidgetID
+     */
+    public boolean contains(int appWidgetID)
+    {
+        synchronized (entries) {
+            return entries.containsKey(appWidgetID);
+        }
+    }
+
+    /**
+     * Removes the calculator for appWidgetID; the next request initializes a new one.
+     */
+    public void invalidate(int appWidgetID)
+    {
+        synchronized (entries) {
+            entries.remove(appWidgetID);
+        }
+    }
+
+    public void clear()
+    {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size()
+    {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
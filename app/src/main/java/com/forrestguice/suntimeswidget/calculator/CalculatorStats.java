@@ -0,0 +1,327 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+import android.support.annotation.Nullable;
+
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+import com.forrestguice.suntimeswidget.settings.AppSettings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Call counts and latency histograms of calculator methods (by method and calling subsystem), recorded by
+ * InstrumentedCalculator. Instrumentation is opt-in (see AppSettings.PREF_KEY_DEBUG_CALCULATORSTATS); when disabled
+ * the factory returns calculators unwrapped and nothing is recorded.
+ *
+ * The calling subsystem is tracked per thread; entry points bracket their work with enter/exit, e.g.
+ *     int previous = CalculatorStats.enter(CalculatorStats.SUBSYSTEM_WIDGET);
+ *     try { ... } finally { CalculatorStats.exit(previous); }
+ */
+public class CalculatorStats
+{
+    public static final int SUBSYSTEM_OTHER = 0;
+    public static final int SUBSYSTEM_WIDGET = 1;
+    public static final int SUBSYSTEM_LIGHTMAP = 2;
+    public static final int SUBSYSTEM_PROVIDER = 3;
+    public static final int SUBSYSTEM_ALARMS = 4;
+    public static final String[] SUBSYSTEMS = new String[] { "other", "widget", "lightmap", "provider", "alarms" };
+
+    private static volatile boolean enabled = false;
+    private static volatile boolean initialized = false;
+
+    /**
+     * Loads the enabled state from settings (once).
+     */
+    public static void init(@Nullable Context context)
+    {
+        if (!initialized && context != null)
+        {
+            enabled = AppSettings.loadCalculatorStatsPref(context);
+            initialized = true;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables (or disables) instrumentation; cached calculators are evicted so that subsequent calculators are
+     * wrapped (or unwrapped) accordingly.
+     */
+    public static void setEnabled(boolean value)
+    {
+        initialized = true;
+        if (enabled != value)
+        {
+            enabled = value;
+            SuntimesCalculatorFactory.clearCache();
+        }
+    }
+
+    /**
+     * @return an InstrumentedCalculator wrapping calculator (or calculator itself if disabled)
+     */
+    public static SuntimesCalculator instrument(SuntimesCalculator calculator) {
+        return (enabled && !(calculator instanceof InstrumentedCalculator) ? new InstrumentedCalculator(calculator) : calculator);
+    }
+
+    /**
+     * Attributes calls made by calculator to subsystem (when not otherwise attributed by the calling thread);
+     * e.g. worker calculators used on shared threads.
+     * @return calculator
+     */
+    public static SuntimesCalculator tag(SuntimesCalculator calculator, int subsystem)
+    {
+        if (calculator instanceof InstrumentedCalculator) {
+            ((InstrumentedCalculator) calculator).setSubsystem(subsystem);
+        }
+        return calculator;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final ThreadLocal<Integer> subsystem = new ThreadLocal<Integer>()
+    {
+        @Override
+        protected Integer initialValue() {
+            return SUBSYSTEM_OTHER;
+        }
+    };
+
+    /**
+     * Attributes calls made by the current thread to the given subsystem.
+     * @return the previous subsystem (to be restored by exit)
+     */
+    public static int enter(int value)
+    {
+        int previous = subsystem.get();
+        subsystem.set(value);
+        return previous;
+    }
+
+    public static void exit(int previous) {
+        subsystem.set(previous);
+    }
+
+    public static int currentSubsystem() {
+        return subsystem.get();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final HashMap<String, Histogram> histograms = new HashMap<>();
+
+    /**
+     * @param method method name
+     * @param subsystem SUBSYSTEM_ constant
+     * @param nanos elapsed time (nanoseconds)
+     */
+    public static void record(String method, int subsystem, long nanos)
+    {
+        String key = method + "|" + subsystem;
+        Histogram histogram;
+        synchronized (histograms)
+        {
+            histogram = histograms.get(key);
+            if (histogram == null) {
+                histograms.put(key, histogram = new Histogram(method, subsystem));
+            }
+        }
+        histogram.record(nanos);
+    }
+
+    public static void reset()
+    {
+        synchronized (histograms) {
+            histograms.clear();
+        }
+    }
+
+    /**
+     * @return a snapshot of recorded stats (sorted by method, then subsystem)
+     */
+    public static List<Entry> getEntries()
+    {
+        List<Histogram> values;
+        synchronized (histograms) {
+            values = new ArrayList<>(histograms.values());
+        }
+        List<Entry> entries = new ArrayList<>(values.size());
+        for (Histogram histogram : values) {
+            entries.add(histogram.toEntry());
+        }
+        Collections.sort(entries, new Comparator<Entry>()
+        {
+            @Override
+            public int compare(Entry e1, Entry e2)
+            {
+                int c = e1.method.compareTo(e2.method);
+                return (c != 0 ? c : (e1.subsystem < e2.subsystem ? -1 : (e1.subsystem == e2.subsystem ? 0 : 1)));
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * @return a plain-text table of recorded stats (latency in microseconds)
+     */
+    public static String toDisplayString()
+    {
+        StringBuilder s = new StringBuilder();
+        s.append(String.format(Locale.US, "%-28s %-8s %7s %8s %8s %8s %8s\n", "method", "caller", "count", "p50", "p95", "p99", "max"));
+        for (Entry entry : getEntries()) {
+            s.append(String.format(Locale.US, "%-28s %-8s %7d %8.1f %8.1f %8.1f %8.1f\n", entry.method, subsystemName(entry.subsystem),
+                    entry.count, entry.p50 / 1000d, entry.p95 / 1000d, entry.p99 / 1000d, entry.max / 1000d));
+        }
+        return s.toString();
+    }
+
+    public static String subsystemName(int subsystem) {
+        return (subsystem >= 0 && subsystem < SUBSYSTEMS.length ? SUBSYSTEMS[subsystem] : Integer.toString(subsystem));
+    }
+
+    /**
+     * Entry
+     */
+    public static class Entry
+    {
+        public String method;
+        public int subsystem;
+        public long count;
+        public long total, max;       // nanoseconds
+        public long p50, p95, p99;    // nanoseconds (approximate; see Histogram)
+    }
+
+    /**
+     * A log-linear histogram of latencies (nanoseconds); each power of two is divided into SUB_BUCKETS, so
+     * percentiles are accurate to within 1/(2 * SUB_BUCKETS) of their value.
+     */
+    public static class Histogram
+    {
+        public static final int SUB_BITS = 2;
+        public static final int SUB_BUCKETS = 1 << SUB_BITS;
+        public static final int MAX_BITS = 40;    // ~18 minutes
+        public static final int NUM_BUCKETS = (MAX_BITS - SUB_BITS + 1) * SUB_BUCKETS + SUB_BUCKETS;
+
+        protected final String method;
+        protected final int subsystem;
+        protected final long[] buckets = new long[NUM_BUCKETS];
+        protected long count = 0, total = 0, max = 0;
+
+        public Histogram(String method, int subsystem)
+        {
+            this.method = method;
+            this.subsystem = subsystem;
+        }
+
+        public synchronized void record(long nanos)
+        {
+            nanos = Math.max(0, nanos);
+            buckets[bucket(nanos)]++;
+            count++;
+            total += nanos;
+            max = Math.max(max, nanos);
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        /**
+         * @param p percentile [0, 1]
+         * @return the (approximate) latency at percentile p (nanoseconds), or 0 if empty
+         */
+        public synchronized long percentile(double p)
+        {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(p * count));
+            if (rank >= count) {
+                return max;
+            }
+            long n = 0;
+            for (int i=0; i<buckets.length; i++)
+            {
+                n += buckets[i];
+                if (n >= rank) {
+                    return Math.min(max, midpoint(i));
+                }
+            }
+            return max;
+        }
+
+        public synchronized Entry toEntry()
+        {
+            Entry entry = new Entry();
+            entry.method = method;
+            entry.subsystem = subsystem;
+            entry.count = count;
+            entry.total = total;
+            entry.max = max;
+            entry.p50 = percentile(0.50);
+            entry.p95 = percentile(0.95);
+            entry.p99 = percentile(0.99);
+            return entry;
+        }
+
+        /**
+         * @return the index of the bucket containing value
+         */
+        public static int bucket(long value)
+        {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exp = 63 - Long.numberOfLeadingZeros(value);
+            if (exp > MAX_BITS) {
+                return NUM_BUCKETS - 1;
+            }
+            int sub = (int) ((value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1));
+            return ((exp - SUB_BITS + 1) * SUB_BUCKETS) + sub;
+        }
+
+        /**
+         * @return the smallest value in bucket i
+         */
+        public static long lowerBound(int i)
+        {
+            if (i < SUB_BUCKETS) {
+                return i;
+            }
+            int exp = (i / SUB_BUCKETS) + SUB_BITS - 1;
+            int sub = i % SUB_BUCKETS;
+            return (long)(SUB_BUCKETS + sub) << (exp - SUB_BITS);
+        }
+
+        public static long midpoint(int i) {
+            return (i < SUB_BUCKETS ? i : (lowerBound(i) + lowerBound(i + 1) - 1) / 2);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * A shared table of equation of time values by calculator and (UTC) year, with an entry every 6 hours; values between
+ * entries are interpolated (linear; within ~0.01s). The equation of time is location independent, so every apparent solar
+ * time zone (and clock) using the same calculator shares the same table.
+ *
+ * Entries are filled lazily (each value is calculated the first time it is needed) and years are kept in an LRU (MAX_YEARS).
+ */
+public class EquationOfTimeTable
+{
+    public static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    public static final int STEPS_PER_DAY = 4;
+    public static final long STEP_MILLIS = DAY_MILLIS / STEPS_PER_DAY;
+    public static final int MAX_YEARS = 8;
+
+    private static final LinkedHashMap<String, Year> years = new LinkedHashMap<String, Year>(8, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Year> eldest) {
+            return size() > MAX_YEARS;
+        }
+    };
+
+    /**
+     * @param calculator calculator
+     * @param millis time (epoch millis)
+     * @return the same as calculator.equationOfTime (seconds; interpolated), or POSITIVE_INFINITY if not supported
+     */
+    public static double equationOfTime(SuntimesCalculator calculator, long millis) {
+        return getYear(calculator, millis).equationOfTime(calculator, millis);
+    }
+
+    /**
+     * @return the table containing millis (may be held and reused by the caller while it contains the times it needs)
+     */
+    public static Year getYear(SuntimesCalculator calculator, long millis)
+    {
+        int year = utcYear(millis);
+        String key = calculator.name() + "|" + year;
+        synchronized (years)
+        {
+            Year entry = years.get(key);
+            if (entry == null) {
+                years.put(key, entry = new Year(calculator.name(), year));
+            }
+            return entry;
+        }
+    }
+
+    public static int size()
+    {
+        synchronized (years) {
+            return years.size();
+        }
+    }
+
+    public static void clear()
+    {
+        synchronized (years) {
+            years.clear();
+        }
+    }
+
+    /**
+     * @param millis time (epoch millis)
+     * @return the year (UTC)
+     */
+    public static int utcYear(long millis)
+    {
+        long days = floorDiv(millis, DAY_MILLIS) + 719468;    // civil from days (H. Hinnant); days since 0000-03-01
+        long era = floorDiv(days, 146097);
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;    // [0, 11] starting in March
+        return (int)(yearOfEra + era * 400 + (monthIndex >= 10 ? 1 : 0));
+    }
+
+    /**
+     * @param year year (UTC)
+     * @return start of the year (epoch millis)
+     */
+    public static long utcYearStart(int year)
+    {
+        long y = year - 1;    // days from civil (H. Hinnant), for January 1 (treated as month 11 of the previous year)
+        long era = floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfEra = 365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100 + 306;
+        return (era * 146097 + dayOfEra - 719468) * DAY_MILLIS;
+    }
+
+    protected static long floorDiv(long a, long b)
+    {
+        long q = a / b;
+        return ((a % b != 0) && ((a < 0) != (b < 0)) ? q - 1 : q);
+    }
+
+    /**
+     * Year; equation of time values (seconds) from January 1 (UTC) through January 1 of the following year.
+     */
+    public static class Year
+    {
+        protected final String calculatorName;
+        protected final int year;
+        protected final long startMillis, endMillis;
+        protected final double[] values;    // NaN until calculated; POSITIVE_INFINITY if not supported
+
+        public Year(String calculatorName, int year)
+        {
+            this.calculatorName = calculatorName;
+            this.year = year;
+            this.startMillis = utcYearStart(year);
+            this.endMillis = utcYearStart(year + 1);
+            this.values = new double[(int)((endMillis - startMillis) / STEP_MILLIS) + 1];
+            for (int i=0; i<values.length; i++) {
+                values[i] = Double.NaN;
+            }
+        }
+
+        public int getYear() {
+            return year;
+        }
+        public long getStartMillis() {
+            return startMillis;
+        }
+        public long getEndMillis() {
+            return endMillis;
+        }
+
+        /**
+         * @return true if this table contains millis, and was calculated by the given calculator
+         */
+        public boolean contains(SuntimesCalculator calculator, long millis) {
+            return millis >= startMillis && millis < endMillis && calculatorName.equals(calculator.name());
+        }
+
+        /**
+         * @param calculator calculator (see contains)
+         * @param millis time (epoch millis); within this year
+         * @return equation of time (seconds; interpolated), or POSITIVE_INFINITY if not supported
+         */
+        public synchronized double equationOfTime(SuntimesCalculator calculator, long millis)
+        {
+            long offset = Math.max(0, Math.min(millis - startMillis, endMillis - startMillis - 1));
+            int i = (int)(offset / STEP_MILLIS);
+            double v0 = value(calculator, i);
+            double v1 = value(calculator, i + 1);
+            if (Double.isInfinite(v0) || Double.isInfinite(v1)) {
+                return Double.POSITIVE_INFINITY;
+            }
+            double f = (offset - (i * STEP_MILLIS)) / (double) STEP_MILLIS;
+            return v0 + (v1 - v0) * f;
+        }
+
+        protected double value(SuntimesCalculator calculator, int i)
+        {
+            if (Double.isNaN(values[i]))
+            {
+                Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+                calendar.setTimeInMillis(startMillis + (i * STEP_MILLIS));
+                double value = calculator.equationOfTime(calendar);
+                values[i] = (Double.isNaN(value) ? Double.POSITIVE_INFINITY : value);
+            }
+            return values[i];
+        }
+    }
+}
@@ -0,0 +1,513 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculator;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculatorBridge;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * A SuntimesCalculator that delegates to another calculator, recording the latency of each call (see CalculatorStats).
+ * Batch operations are passed to the delegate (or a SuntimesBatchCalculatorBridge) and recorded as a single call.
+ */
+public class InstrumentedCalculator implements SuntimesCalculator, SuntimesBatchCalculator
+{
+    public static final int SUBSYSTEM_NONE = -1;
+
+    protected final SuntimesCalculator calculator;
+    protected SuntimesBatchCalculator batchCalculator = null;
+    protected volatile int subsystem = SUBSYSTEM_NONE;
+
+    public InstrumentedCalculator(SuntimesCalculator calculator) {
+        this.calculator = calculator;
+    }
+
+    public SuntimesCalculator getCalculator() {
+        return calculator;
+    }
+
+    /**
+     * @param value the subsystem calls are attributed to when the calling thread hasn't entered one (or SUBSYSTEM_NONE)
+     */
+    public void setSubsystem(int value) {
+        subsystem = value;
+    }
+
+    protected void record(String method, long t0)
+    {
+        long elapsed = System.nanoTime() - t0;
+        int current = CalculatorStats.currentSubsystem();
+        CalculatorStats.record(method, (current == CalculatorStats.SUBSYSTEM_OTHER && subsystem != SUBSYSTEM_NONE ? subsystem : current), elapsed);
+    }
+
+    protected SuntimesBatchCalculator batchCalculator()
+    {
+        if (batchCalculator == null) {
+            batchCalculator = SuntimesBatchCalculatorBridge.from(calculator);
+        }
+        return batchCalculator;
+    }
+
+    @Override
+    public String name() {
+        return calculator.name();
+    }
+
+    @Override
+    public int[] getSupportedFeatures() {
+        return calculator.getSupportedFeatures();
+    }
+
+    @Override
+    public Location getLocation() {
+        return calculator.getLocation();
+    }
+
+    @Override
+    public TimeZone getTimeZone() {
+        return calculator.getTimeZone();
+    }
+
+    @Override
+    public void init(Location location, String timezone)
+    {
+        long t0 = System.nanoTime();
+        try {
+            calculator.init(location, timezone);
+        } finally {
+            record("init", t0);
+        }
+    }
+
+    @Override
+    public void init(Location location, TimeZone timezone)
+    {
+        long t0 = System.nanoTime();
+        try {
+            calculator.init(location, timezone);
+        } finally {
+            record("init", t0);
+        }
+    }
+
+    @Override
+    public void init(Location location, TimeZone timezone, Context context)
+    {
+        long t0 = System.nanoTime();
+        try {
+            calculator.init(location, timezone, context);
+        } finally {
+            record("init", t0);
+        }
+    }
+
+    @Override
+    public Calendar getAstronomicalSunriseCalendarForDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getAstronomicalSunriseCalendarForDate(date);
+        } finally {
+            record("getAstronomicalSunriseCalendarForDate", t0);
+        }
+    }
+
+    @Override
+    public Calendar getNauticalSunriseCalendarForDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getNauticalSunriseCalendarForDate(date);
+        } finally {
+            record("getNauticalSunriseCalendarForDate", t0);
+        }
+    }
+
+    @Override
+    public Calendar getCivilSunriseCalendarForDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getCivilSunriseCalendarForDate(date);
+        } finally {
+            record("getCivilSunriseCalendarForDate", t0);
+        }
+    }
+
+    @Override
+    public Calendar getOfficialSunriseCalendarForDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getOfficialSunriseCalendarForDate(date);
+        } finally {
+            record("getOfficialSunriseCalendarForDate", t0);
+        }
+    }
+
+    @Override
+    public Calendar getSolarNoonCalendarForDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getSolarNoonCalendarForDate(date);
+        } finally {
+            record("getSolarNoonCalendarForDate", t0);
+        }
+    }
+
+    @Override
+    public Calendar getOfficialSunsetCalendarForDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getOfficialSunsetCalendarForDate(date);
+        } finally {
+            record("getOfficialSunsetCalendarForDate", t0);
+        }
+    }
+
+    @Override
+    public Calendar getCivilSunsetCalendarForDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getCivilSunsetCalendarForDate(date);
+        } finally {
+            record("getCivilSunsetCalendarForDate", t0);
+        }
+    }
+
+    @Override
+    public Calendar getNauticalSunsetCalendarForDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getNauticalSunsetCalendarForDate(date);
+        } finally {
+            record("getNauticalSunsetCalendarForDate", t0);
+        }
+    }
+
+    @Override
+    public Calendar getAstronomicalSunsetCalendarForDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getAstronomicalSunsetCalendarForDate(date);
+        } finally {
+            record("getAstronomicalSunsetCalendarForDate", t0);
+        }
+    }
+
+    @Override
+    public Calendar getVernalEquinoxForYear(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getVernalEquinoxForYear(date);
+        } finally {
+            record("getVernalEquinoxForYear", t0);
+        }
+    }
+
+    @Override
+    public Calendar getSpringEquinoxForYear(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getSpringEquinoxForYear(date);
+        } finally {
+            record("getSpringEquinoxForYear", t0);
+        }
+    }
+
+    @Override
+    public Calendar getSummerSolsticeForYear(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getSummerSolsticeForYear(date);
+        } finally {
+            record("getSummerSolsticeForYear", t0);
+        }
+    }
+
+    @Override
+    public Calendar getAutumnalEquinoxForYear(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getAutumnalEquinoxForYear(date);
+        } finally {
+            record("getAutumnalEquinoxForYear", t0);
+        }
+    }
+
+    @Override
+    public Calendar getWinterSolsticeForYear(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getWinterSolsticeForYear(date);
+        } finally {
+            record("getWinterSolsticeForYear", t0);
+        }
+    }
+
+    @Override
+    public Calendar[] getMorningBlueHourForDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getMorningBlueHourForDate(date);
+        } finally {
+            record("getMorningBlueHourForDate", t0);
+        }
+    }
+
+    @Override
+    public Calendar[] getEveningBlueHourForDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getEveningBlueHourForDate(date);
+        } finally {
+            record("getEveningBlueHourForDate", t0);
+        }
+    }
+
+    @Override
+    public Calendar getMorningGoldenHourForDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getMorningGoldenHourForDate(date);
+        } finally {
+            record("getMorningGoldenHourForDate", t0);
+        }
+    }
+
+    @Override
+    public Calendar getEveningGoldenHourForDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getEveningGoldenHourForDate(date);
+        } finally {
+            record("getEveningGoldenHourForDate", t0);
+        }
+    }
+
+    @Override
+    public boolean isDay(Calendar dateTime)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.isDay(dateTime);
+        } finally {
+            record("isDay", t0);
+        }
+    }
+
+    @Override
+    public MoonTimes getMoonTimesForDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getMoonTimesForDate(date);
+        } finally {
+            record("getMoonTimesForDate", t0);
+        }
+    }
+
+    @Override
+    public double getMoonIlluminationForDate(Calendar dateTime)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getMoonIlluminationForDate(dateTime);
+        } finally {
+            record("getMoonIlluminationForDate", t0);
+        }
+    }
+
+    @Override
+    public Calendar getMoonPhaseNextDate(MoonPhase phase, Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getMoonPhaseNextDate(phase, date);
+        } finally {
+            record("getMoonPhaseNextDate", t0);
+        }
+    }
+
+    @Override
+    public SunPosition getSunPosition(Calendar dateTime)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getSunPosition(dateTime);
+        } finally {
+            record("getSunPosition", t0);
+        }
+    }
+
+    @Override
+    public MoonPosition getMoonPosition(Calendar dateTime)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getMoonPosition(dateTime);
+        } finally {
+            record("getMoonPosition", t0);
+        }
+    }
+
+    @Override
+    public double getShadowLength(double objHeight, Calendar dateTime)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getShadowLength(objHeight, dateTime);
+        } finally {
+            record("getShadowLength", t0);
+        }
+    }
+
+    @Override
+    public double equationOfTime(Calendar dateTime)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.equationOfTime(dateTime);
+        } finally {
+            record("equationOfTime", t0);
+        }
+    }
+
+    @Override
+    public Calendar getMoonPerigeeNextDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getMoonPerigeeNextDate(date);
+        } finally {
+            record("getMoonPerigeeNextDate", t0);
+        }
+    }
+
+    @Override
+    public Calendar getMoonApogeeNextDate(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getMoonApogeeNextDate(date);
+        } finally {
+            record("getMoonApogeeNextDate", t0);
+        }
+    }
+
+    @Override
+    public long getTropicalYearLength(Calendar date)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getTropicalYearLength(date);
+        } finally {
+            record("getTropicalYearLength", t0);
+        }
+    }
+
+    @Override
+    public Calendar getSunriseCalendarForDate(Calendar date, double angle)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getSunriseCalendarForDate(date, angle);
+        } finally {
+            record("getSunriseCalendarForDate", t0);
+        }
+    }
+
+    @Override
+    public Calendar getSunsetCalendarForDate(Calendar date, double angle)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return calculator.getSunsetCalendarForDate(date, angle);
+        } finally {
+            record("getSunsetCalendarForDate", t0);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public int getEventTimes(Calendar startDate, int numDays, int[] events, long[] out)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return batchCalculator().getEventTimes(startDate, numDays, events, out);
+        } finally {
+            record("getEventTimes", t0);
+        }
+    }
+
+    @Override
+    public int getDayEvents(Calendar date, double[] angles, long[] out)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return batchCalculator().getDayEvents(date, angles, out);
+        } finally {
+            record("getDayEvents", t0);
+        }
+    }
+
+    @Override
+    public int getSunPositions(long startMillis, long stepMillis, int count, double[] azimuth, double[] elevation, double[] rightAscension, double[] declination)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return batchCalculator().getSunPositions(startMillis, stepMillis, count, azimuth, elevation, rightAscension, declination);
+        } finally {
+            record("getSunPositions", t0);
+        }
+    }
+
+    @Override
+    public int getMoonPositions(long startMillis, long stepMillis, int count, double[] azimuth, double[] elevation, double[] rightAscension, double[] declination)
+    {
+        long t0 = System.nanoTime();
+        try {
+            return batchCalculator().getMoonPositions(startMillis, stepMillis, count, azimuth, elevation, rightAscension, declination);
+        } finally {
+            record("getMoonPositions", t0);
+        }
+    }
+}
@@ -0,0 +1,531 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.BuildConfig;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A precomputed table of major moon phases and lunar apsides (location independent; one table per calculator) covering
+ * START_YEAR to END_YEAR. Each event type is a sorted long[]; lookups are a binary search for the first event after a
+ * given time, equivalent to getMoonPhaseNextDate, getMoonPerigeeNextDate, and getMoonApogeeNextDate.
+ *
+ * Tables are generated by chaining the calculator's "next" methods, then spot-checked against the calculator; event types
+ * that don't match (or that the calculator doesn't support) are left empty, and lookups for them fall back to the calculator.
+ * Tables are generated (or read from the files dir) in the background (see getTable).
+ *
+ * Format (big-endian): int MAGIC, int VERSION, long key, long created (millis), long startMillis, long endMillis, int numTypes,
+ * int[numTypes] counts; followed by each type's events (longs, millis).
+ */
+public class MoonEventTable
+{
+    public static final String TAG = "MoonEventTable";
+
+    public static final int MAGIC = 0x4d455442;    // "METB"
+    public static final int VERSION = 1;
+
+    public static final int START_YEAR = 1900;
+    public static final int END_YEAR = 2100;
+    public static final int VERIFY_SAMPLES = 64;
+    public static final String DIR_NAME = "moontables";
+    public static final int MAX_FILES = 4;
+
+    public static final int TYPE_NEW = 0;          // (TYPE_* == MoonPhase.ordinal())
+    public static final int TYPE_FIRST_QUARTER = 1;
+    public static final int TYPE_FULL = 2;
+    public static final int TYPE_THIRD_QUARTER = 3;
+    public static final int TYPE_PERIGEE = 4;
+    public static final int TYPE_APOGEE = 5;
+    public static final int NUM_TYPES = 6;
+
+    public static final long NONE = Long.MIN_VALUE;
+
+    protected final long key;
+    protected final long startMillis, endMillis;
+    protected final long[][] events;
+
+    /**
+     * @param key see key
+     * @param startMillis start of the table
+     * @param endMillis end of the table (each type also contains its first event after end)
+     * @param events sorted events by type (TYPE_*); an empty array if unavailable
+     */
+    public MoonEventTable(long key, long startMillis, long endMillis, @NonNull long[][] events)
+    {
+        this.key = key;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+        this.events = events;
+    }
+
+    public long getKey() {
+        return key;
+    }
+    public long getStartMillis() {
+        return startMillis;
+    }
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /**
+     * @param type TYPE_*
+     * @return the number of events of this type (0 if the calculator should be used instead)
+     */
+    public int getCount(int type) {
+        return events[type].length;
+    }
+
+    /**
+     * @param type TYPE_*
+     * @param millis a time (millis)
+     * @return the first event of type occurring after millis, or NONE if the table can't answer (outside the table, or unavailable)
+     */
+    public long next(int type, long millis)
+    {
+        long[] values = events[type];
+        if (millis < startMillis || values.length == 0) {
+            return NONE;
+        }
+        int i = Arrays.binarySearch(values, millis);
+        i = (i >= 0 ? i + 1 : -(i + 1));
+        return (i < values.length ? values[i] : NONE);
+    }
+
+    /**
+     * @return true if every event type of the table is available
+     */
+    public boolean isComplete()
+    {
+        for (long[] values : events) {
+            if (values.length == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static int toType(SuntimesCalculator.MoonPhase phase) {
+        return phase.ordinal();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @param table a table (or null)
+     * @param calculator the calculator (used when the table can't answer)
+     * @param phase major phase
+     * @param date a date/time
+     * @return the next phase after date (the same as calculator.getMoonPhaseNextDate)
+     */
+    @Nullable
+    public static Calendar nextPhase(@Nullable MoonEventTable table, SuntimesCalculator calculator, SuntimesCalculator.MoonPhase phase, Calendar date)
+    {
+        long event = (table != null ? table.next(toType(phase), date.getTimeInMillis()) : NONE);
+        return (event != NONE ? toCalendar(calculator, date, event) : calculator.getMoonPhaseNextDate(phase, date));
+    }
+
+    /**
+     * @return the next lunar perigee after date (the same as calculator.getMoonPerigeeNextDate)
+     */
+    @Nullable
+    public static Calendar nextPerigee(@Nullable MoonEventTable table, SuntimesCalculator calculator, Calendar date)
+    {
+        long event = (table != null ? table.next(TYPE_PERIGEE, date.getTimeInMillis()) : NONE);
+        return (event != NONE ? toCalendar(calculator, date, event) : calculator.getMoonPerigeeNextDate(date));
+    }
+
+    /**
+     * @return the next lunar apogee after date (the same as calculator.getMoonApogeeNextDate)
+     */
+    @Nullable
+    public static Calendar nextApogee(@Nullable MoonEventTable table, SuntimesCalculator calculator, Calendar date)
+    {
+        long event = (table != null ? table.next(TYPE_APOGEE, date.getTimeInMillis()) : NONE);
+        return (event != NONE ? toCalendar(calculator, date, event) : calculator.getMoonApogeeNextDate(date));
+    }
+
+    /**
+     * @param type TYPE_*
+     * @return the next event of type after date, calculated by the calculator (or null)
+     */
+    @Nullable
+    public static Calendar calculateNext(SuntimesCalculator calculator, int type, Calendar date)
+    {
+        switch (type)
+        {
+            case TYPE_PERIGEE: return calculator.getMoonPerigeeNextDate(date);
+            case TYPE_APOGEE: return calculator.getMoonApogeeNextDate(date);
+            default: return calculator.getMoonPhaseNextDate(SuntimesCalculator.MoonPhase.values()[type], date);
+        }
+    }
+
+    protected static Calendar toCalendar(SuntimesCalculator calculator, Calendar date, long millis)
+    {
+        TimeZone timezone = calculator.getTimeZone();
+        Calendar calendar = Calendar.getInstance(timezone != null ? timezone : date.getTimeZone());
+        calendar.setTimeInMillis(millis);
+        return calendar;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Generates a table by chaining the calculator's "next" methods from startMillis until past endMillis; the result is
+     * spot-checked against the calculator (see verify).
+     * @param calculator calculator (used by the calling thread)
+     * @param key see key
+     * @param startMillis start of the table
+     * @param endMillis end of the table
+     */
+    public static MoonEventTable generate(SuntimesCalculator calculator, long key, long startMillis, long endMillis)
+    {
+        long[][] events = new long[NUM_TYPES][];
+        for (int type=0; type<NUM_TYPES; type++) {
+            events[type] = generate(calculator, type, startMillis, endMillis);
+        }
+        MoonEventTable table = new MoonEventTable(key, startMillis, endMillis, events);
+        verify(table, calculator, VERIFY_SAMPLES);
+        return table;
+    }
+
+    protected static long[] generate(SuntimesCalculator calculator, int type, long startMillis, long endMillis)
+    {
+        long[] values = new long[1024];
+        int n = 0;
+
+        Calendar date = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        date.setTimeInMillis(startMillis);
+        long previous = startMillis;
+        do {
+            Calendar event = calculateNext(calculator, type, date);
+            if (event == null || event.getTimeInMillis() <= previous) {
+                return new long[0];    // unsupported (or not a sequence)
+            }
+            if (n == values.length) {
+                values = Arrays.copyOf(values, 2 * n);
+            }
+            values[n++] = previous = event.getTimeInMillis();
+            date.setTimeInMillis(previous);
+        } while (previous < endMillis);
+        return Arrays.copyOf(values, n);
+    }
+
+    /**
+     * Compares lookups with the calculator at numSamples times across the table; event types that don't match are cleared.
+     * @return true if all lookups matched
+     */
+    public static boolean verify(MoonEventTable table, SuntimesCalculator calculator, int numSamples)
+    {
+        boolean verified = true;
+        long step = (table.endMillis - table.startMillis) / numSamples;
+        Calendar date = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        for (int type=0; type<NUM_TYPES; type++)
+        {
+            for (int i=0; i<numSamples && table.events[type].length > 0; i++)
+            {
+                date.setTimeInMillis(table.startMillis + (i * step) + (step / 3));
+                Calendar expected = calculateNext(calculator, type, date);
+                if (expected == null || expected.getTimeInMillis() != table.next(type, date.getTimeInMillis()))
+                {
+                    Log.w(TAG, "verify: type " + type + " doesn't match the calculator at " + date.getTimeInMillis() + "; using the calculator instead..");
+                    table.events[type] = new long[0];
+                    verified = false;
+                }
+            }
+        }
+        return verified;
+    }
+
+    /**
+     * @param calculatorVersion see SuntimesCalculatorDescriptor.getVersion
+     * @return a key identifying tables created with the given calculator (64-bit FNV-1a); tables created by a previous
+     * version of the app (or calculator) have a different key.
+     */
+    public static long key(String calculatorName, int calculatorVersion)
+    {
+        String value = calculatorName + "|" + BuildConfig.VERSION_CODE + "|" + calculatorVersion;
+        long hash = 0xcbf29ce484222325L;
+        for (int i=0; i<value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public static String fileName(long key) {
+        return Long.toHexString(key) + ".bin";
+    }
+
+    /**
+     * @return the start of year (UTC) as millis
+     */
+    public static long startOfYear(int year)
+    {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, Calendar.JANUARY, 1, 0, 0, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Writes the table to file (atomically; written to a temporary file that replaces file when complete).
+     */
+    public static void write(File file, MoonEventTable table) throws IOException
+    {
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tmpFile);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(table.key);
+            out.writeLong(System.currentTimeMillis());
+            out.writeLong(table.startMillis);
+            out.writeLong(table.endMillis);
+            out.writeInt(table.events.length);
+            for (long[] values : table.events) {
+                out.writeInt(values.length);
+            }
+            for (long[] values : table.events) {
+                for (long value : values) {
+                    out.writeLong(value);
+                }
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            fileOut.close();
+        }
+        if (!tmpFile.renameTo(file))
+        {
+            tmpFile.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
+    /**
+     * @return the table read from file
+     * @throws IOException if the file is missing or isn't a valid table
+     */
+    public static MoonEventTable read(File file) throws IOException
+    {
+        InputStream fileIn = new FileInputStream(file);
+        try {
+            return read(fileIn);
+        } finally {
+            fileIn.close();
+        }
+    }
+
+    public static MoonEventTable read(InputStream input) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a valid table (bad header)");
+        }
+        long key = in.readLong();
+        in.readLong();    // created
+        long startMillis = in.readLong();
+        long endMillis = in.readLong();
+        int numTypes = in.readInt();
+        if (numTypes != NUM_TYPES || endMillis <= startMillis) {
+            throw new IOException("Not a valid table (bad size)");
+        }
+
+        long[][] events = new long[numTypes][];
+        for (int type=0; type<numTypes; type++)
+        {
+            int count = in.readInt();
+            if (count < 0 || count > (1 << 20)) {
+                throw new IOException("Not a valid table (bad count)");
+            }
+            events[type] = new long[count];
+        }
+        for (long[] values : events) {
+            for (int i=0; i<values.length; i++) {
+                values[i] = in.readLong();
+            }
+        }
+        return new MoonEventTable(key, startMillis, endMillis, events);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final HashMap<Long, MoonEventTable> tables = new HashMap<>();
+    private static final Set<Long> pending = Collections.synchronizedSet(new HashSet<Long>());
+
+    public static File tableDir(Context context) {
+        return new File(context.getFilesDir(), DIR_NAME);
+    }
+
+    /**
+     * @param context context
+     * @param calculator the calculator (only its name is used; tables are created by a new instance)
+     * @param descriptor the calculator's descriptor (used to create tables)
+     * @return the calculator's table, or null (calculator should be used instead); missing tables are read or generated
+     * in the background.
+     */
+    @Nullable
+    public static MoonEventTable getTable(Context context, SuntimesCalculator calculator, SuntimesCalculatorDescriptor descriptor)
+    {
+        if (!descriptor.hasRequestedFeature(SuntimesCalculator.FEATURE_MOON)) {
+            return null;
+        }
+
+        long key = key(calculator.name(), descriptor.getVersion());
+        MoonEventTable table;
+        synchronized (tables) {
+            table = tables.get(key);
+        }
+        if (table == null) {
+            requestTable(context, descriptor, calculator, key);
+        }
+        return table;
+    }
+
+    /**
+     * Reads the table from the files dir, or generates it (in the background, if not already pending).
+     */
+    protected static void requestTable(Context context, final SuntimesCalculatorDescriptor descriptor, final SuntimesCalculator calculator0, final long key)
+    {
+        if (!pending.add(key)) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        executor().execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    MoonEventTable table = null;
+                    File file = new File(tableDir(appContext), fileName(key));
+                    if (file.exists())
+                    {
+                        try {
+                            table = read(file);
+                            if (table.getKey() != key) {
+                                table = null;
+                            } else if (!file.setLastModified(System.currentTimeMillis())) {
+                                Log.w(TAG, "requestTable: failed to touch " + file);    // (see pruneFiles)
+                            }
+                        } catch (IOException e) {
+                            Log.w(TAG, "requestTable: failed to read " + file + ": " + e);
+                        }
+                    }
+
+                    if (table == null)
+                    {
+                        SuntimesCalculator calculator = new SuntimesCalculatorFactory(appContext, descriptor).newCalculator(calculator0.getLocation(), calculator0.getTimeZone());
+                        if (key(calculator.name(), descriptor.getVersion()) != key) {
+                            Log.w(TAG, "requestTable: calculator " + descriptor.getName() + " is unavailable; skipping table..");
+                            return;
+                        }
+
+                        File dir = tableDir(appContext);
+                        if (!dir.exists() && !dir.mkdirs()) {
+                            throw new IOException("Failed to create " + dir);
+                        }
+                        long bench_start = System.nanoTime();
+                        table = generate(calculator, key, startOfYear(START_YEAR), startOfYear(END_YEAR));
+                        write(file, table);
+                        Log.d(TAG, "requestTable: created " + file + " in " + ((System.nanoTime() - bench_start) / 1000000.0) + " ms");
+                        SunEventTable.pruneFiles(dir, MAX_FILES);    // (tables from previous versions are no longer used)
+                    }
+
+                    synchronized (tables) {
+                        tables.put(key, table);
+                    }
+
+                } catch (IOException e) {
+                    Log.e(TAG, "requestTable: failed to create table: " + e);
+                } finally {
+                    pending.remove(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Deletes all tables (e.g. after the installed calculators change; see SuntimesCalculatorDescriptor.reinitCalculators).
+     */
+    public static void clearTables(Context context)
+    {
+        synchronized (tables) {
+            tables.clear();
+        }
+        File[] files = tableDir(context).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor executor = null;
+    protected static synchronized ThreadPoolExecutor executor()
+    {
+        if (executor == null)
+        {
+            executor = new ThreadPoolExecutor(1, 1, RangeQuery.KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(@NonNull Runnable r)
+                {
+                    Thread thread = new Thread(r, TAG);
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+}
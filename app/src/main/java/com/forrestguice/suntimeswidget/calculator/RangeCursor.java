@@ -0,0 +1,268 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.database.AbstractWindowedCursor;
+import android.database.CursorWindow;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * A cursor over a RangeQuery that computes its rows on demand, one window at a time. When the window
+ * is filled the next window is computed in the background, so a client reading rows in order rarely
+ * waits. Only the current window (and the prefetched window) are held in memory.
+ */
+public class RangeCursor extends AbstractWindowedCursor
+{
+    public static final String TAG = "RangeCursor";
+    public static final int DEF_WINDOW_SIZE = 128;    // rows
+
+    protected final RangeQuery query;
+    protected final SuntimesCalculator calculator;
+    protected final Callable<SuntimesCalculator> workerCalculator;
+    protected final int windowSize;
+    protected final int count;
+
+    public RangeCursor(@NonNull RangeQuery query, @NonNull SuntimesCalculator calculator, @Nullable Callable<SuntimesCalculator> workerCalculator) {
+        this(query, calculator, workerCalculator, DEF_WINDOW_SIZE);
+    }
+
+    /**
+     * @param query the query (prepared here)
+     * @param calculator a calculator (used to fill the window); owned by the cursor (not shared), since rows are computed
+     *                   on whichever thread moves the cursor
+     * @param workerCalculator returns the calculator of the calling worker thread (or null to disable parallel evaluation and prefetch); @see RangeQuery.WorkerCalculator
+     * @param windowSize number of rows per window
+     */
+    public RangeCursor(@NonNull RangeQuery query, @NonNull SuntimesCalculator calculator, @Nullable Callable<SuntimesCalculator> workerCalculator, int windowSize)
+    {
+        this.query = query;
+        this.calculator = calculator;
+        this.workerCalculator = workerCalculator;
+        this.windowSize = Math.max(1, windowSize);
+
+        query.prepare(calculator, workerCalculator);
+        this.count = query.getCount();
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return query.getColumns();
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition)
+    {
+        if (!windowContains(newPosition))
+        {
+            moveWindow(newPosition);
+            if (!windowContains(newPosition)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected boolean windowContains(int position)
+    {
+        CursorWindow window = getWindow();
+        return (window != null && position >= window.getStartPosition() && position < (window.getStartPosition() + window.getNumRows()));
+    }
+
+    /**
+     * Fills the window with the rows around position.
+     */
+    protected void moveWindow(int position)
+    {
+        int start = ((prefetch != null && position >= prefetchStart && position < prefetchEnd) ? prefetchStart
+                                                                                            : (position / windowSize) * windowSize);
+        if (loadWindow(start, Math.min(start + windowSize, count)) <= (position - start)) {
+            loadWindow(position, Math.min(position + windowSize, count));    // window is full before reaching position; start the window at position instead
+        }
+    }
+
+    /**
+     * @return number of rows added to the window
+     */
+    protected int loadWindow(int start, int end)
+    {
+        Object[][] rows = takePrefetched(start, end);
+        if (rows == null)
+        {
+            int subsystem = CalculatorStats.enter(CalculatorStats.SUBSYSTEM_PROVIDER);    // (rows are computed as the cursor is moved; after query returns)
+            try {
+                rows = RangeQuery.evaluate(query, calculator, workerCalculator, start, end);
+            } finally {
+                CalculatorStats.exit(subsystem);
+            }
+        }
+
+        CursorWindow window = getWindow();
+        if (window == null) {
+            setWindow(window = createWindow(TAG));
+        } else window.clear();
+
+        window.setStartPosition(start);
+        window.setNumColumns(query.getColumns().length);
+
+        int n = 0;
+        for (Object[] row : rows)
+        {
+            if (!window.allocRow()) {
+                break;
+            }
+            if (!putRow(window, row, start + n)) {
+                window.freeLastRow();
+                break;
+            }
+            n++;
+        }
+
+        prefetch(start + n);
+        return n;
+    }
+
+    protected static boolean putRow(CursorWindow window, Object[] row, int position)
+    {
+        for (int i=0; i<row.length; i++)
+        {
+            Object value = row[i];
+            boolean success;
+            if (value == null) {
+                success = window.putNull(position, i);
+
+            } else if (value instanceof Double || value instanceof Float) {
+                success = window.putDouble(((Number) value).doubleValue(), position, i);
+
+            } else if (value instanceof Number) {
+                success = window.putLong(((Number) value).longValue(), position, i);
+
+            } else if (value instanceof Boolean) {
+                success = window.putLong((Boolean) value ? 1 : 0, position, i);
+
+            } else if (value instanceof byte[]) {
+                success = window.putBlob((byte[]) value, position, i);
+
+            } else {
+                success = window.putString(value.toString(), position, i);
+            }
+
+            if (!success) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("deprecation")
+    protected static CursorWindow createWindow(String name)
+    {
+        if (Build.VERSION.SDK_INT >= 15) {
+            return new CursorWindow(name);
+        } else return new CursorWindow(false);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private Future<Object[][]> prefetch = null;
+    private int prefetchStart = -1, prefetchEnd = -1;
+
+    /**
+     * Computes the rows of the window that starts at position (in the background).
+     */
+    protected void prefetch(final int start)
+    {
+        final int end = Math.min(start + windowSize, count);
+        if (workerCalculator == null || start >= end || (prefetch != null && prefetchStart == start && prefetchEnd == end)) {
+            return;
+        }
+
+        cancelPrefetch();
+        prefetchStart = start;
+        prefetchEnd = end;
+        prefetch = RangeQuery.executor().submit(new Callable<Object[][]>()
+        {
+            @Override
+            public Object[][] call() throws Exception {
+                return RangeQuery.evaluate(query, workerCalculator.call(), null, start, end);    // sequential; (don't wait on the pool from within the pool)
+            }
+        });
+    }
+
+    /**
+     * @return the prefetched rows [start, end), or null if not prefetched (or prefetch failed)
+     */
+    @Nullable
+    protected Object[][] takePrefetched(int start, int end)
+    {
+        if (prefetch == null) {
+            return null;
+        }
+        if (prefetchStart != start || prefetchEnd != end) {
+            cancelPrefetch();
+            return null;
+        }
+
+        Object[][] rows = null;
+        try {
+            rows = prefetch.get();
+
+        } catch (ExecutionException e) {
+            Log.e(TAG, "takePrefetched: prefetch failed: " + e.getCause());
+
+        } catch (InterruptedException e) {
+            Log.w(TAG, "takePrefetched: interrupted while waiting for prefetch");
+            Thread.currentThread().interrupt();
+        }
+        prefetch = null;
+        prefetchStart = prefetchEnd = -1;
+        return rows;
+    }
+
+    protected void cancelPrefetch()
+    {
+        if (prefetch != null) {
+            prefetch.cancel(true);
+            prefetch = null;
+        }
+        prefetchStart = prefetchEnd = -1;
+    }
+
+    @Override
+    public void close()
+    {
+        cancelPrefetch();
+        super.close();
+        setWindow(null);
+    }
+}
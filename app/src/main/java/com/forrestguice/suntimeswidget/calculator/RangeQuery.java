@@ -0,0 +1,496 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract.COLUMN_MOON_FIRST;
+import static com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract.COLUMN_MOON_FIRST_DISTANCE;
+import static com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract.COLUMN_MOON_FULL;
+import static com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract.COLUMN_MOON_FULL_DISTANCE;
+import static com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract.COLUMN_MOON_NEW;
+import static com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract.COLUMN_MOON_NEW_DISTANCE;
+import static com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract.COLUMN_MOON_THIRD;
+import static com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract.COLUMN_MOON_THIRD_DISTANCE;
+
+/**
+ * A query over a range (of days, years, etc) that produces one row per step. Rows are independent of
+ * each other, so they can be computed in any order (and by any number of threads, each with its own
+ * calculator; see WorkerCalculator); see evaluate.
+ */
+public abstract class RangeQuery
+{
+    public static final String TAG = "RangeQuery";
+
+    protected final String[] columns;
+
+    public RangeQuery(String[] columns) {
+        this.columns = columns;
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * Called before getCount; queries that need to compute something to know their rows can do so here.
+     * @param calculator a calculator (used by the calling thread)
+     * @param workerCalculator returns the calculator of the calling worker thread (or null); @see WorkerCalculator
+     */
+    public void prepare(@NonNull SuntimesCalculator calculator, @Nullable Callable<SuntimesCalculator> workerCalculator) {
+        /* EMPTY */
+    }
+
+    /**
+     * @return number of rows
+     */
+    public abstract int getCount();
+
+    /**
+     * @param calculator the calculator used to compute the row (not shared with other threads)
+     * @param position row [0, getCount())
+     * @return row values (one per column)
+     */
+    public abstract Object[] getRow(SuntimesCalculator calculator, int position);
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final int MIN_CHUNK_SIZE = 32;         // rows
+    public static final int MAX_THREADS = 4;
+    public static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static ThreadPoolExecutor executor = null;
+    protected static synchronized ThreadPoolExecutor executor()
+    {
+        if (executor == null)
+        {
+            int n = numThreads();
+            executor = new ThreadPoolExecutor(n, n, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(@NonNull Runnable r)
+                {
+                    Thread thread = new Thread(r, TAG + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    public static int numThreads() {
+        return Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param count number of rows
+     * @return number of rows per chunk
+     */
+    public static int chunkSize(int count)
+    {
+        int n = numThreads();
+        return Math.max(MIN_CHUNK_SIZE, (count + (2 * n) - 1) / (2 * n));    // ~2 chunks per thread
+    }
+
+    /**
+     * Computes all rows; ranges that are large enough are split into chunks and evaluated in parallel.
+     * @param query the query
+     * @param calculator a calculator (used by the calling thread)
+     * @param workerCalculator returns the calculator of the calling worker thread (or null to evaluate on the calling thread); @see WorkerCalculator
+     * @return rows (in order)
+     */
+    public static Object[][] evaluate(@NonNull final RangeQuery query, @NonNull SuntimesCalculator calculator, @Nullable final Callable<SuntimesCalculator> workerCalculator)
+    {
+        query.prepare(calculator, workerCalculator);
+        return evaluate(query, calculator, workerCalculator, 0, query.getCount());
+    }
+
+    /**
+     * Computes rows [start, end) of a prepared query.
+     * @return rows (in order); row i is at index i - start
+     */
+    public static Object[][] evaluate(@NonNull final RangeQuery query, @NonNull SuntimesCalculator calculator, @Nullable final Callable<SuntimesCalculator> workerCalculator, final int start, int end)
+    {
+        final int count = Math.max(0, end - start);
+        final Object[][] rows = new Object[count][];
+        final int chunkSize = chunkSize(count);
+
+        if (workerCalculator == null || numThreads() < 2 || count < (2 * chunkSize)) {
+            evaluateChunk(query, calculator, rows, start, 0, count);
+            return rows;
+        }
+
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = chunkSize; i < count; i += chunkSize)    // first chunk is done by the calling thread
+        {
+            final int i0 = i;
+            final int i1 = Math.min(i + chunkSize, count);
+            tasks.add(executor().submit(new Callable<Void>()
+            {
+                @Override
+                public Void call() throws Exception
+                {
+                    evaluateChunk(query, workerCalculator.call(), rows, start, i0, i1);
+                    return null;
+                }
+            }));
+        }
+        evaluateChunk(query, calculator, rows, start, 0, Math.min(chunkSize, count));
+
+        for (int i=0; i<tasks.size(); i++)
+        {
+            int i0 = (i + 1) * chunkSize;
+            try {
+                tasks.get(i).get();
+
+            } catch (ExecutionException e) {
+                Log.e(TAG, "evaluate: chunk failed (" + e.getCause() + "); evaluating on calling thread..");
+                evaluateChunk(query, calculator, rows, start, i0, Math.min(i0 + chunkSize, count));
+
+            } catch (InterruptedException e) {
+                Log.w(TAG, "evaluate: interrupted; evaluating remaining chunks on calling thread..");
+                Thread.currentThread().interrupt();
+                evaluateChunk(query, calculator, rows, start, i0, Math.min(i0 + chunkSize, count));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Supplies each worker thread with a calculator of its own. A thread's calculator is created the first time
+     * the thread asks for it, then reused for every chunk (and every window of a RangeCursor) it evaluates.
+     */
+    public static abstract class WorkerCalculator implements Callable<SuntimesCalculator>
+    {
+        private final ThreadLocal<SuntimesCalculator> calculators = new ThreadLocal<>();
+        private final AtomicInteger numCreated = new AtomicInteger(0);
+
+        /**
+         * @return a new calculator (not shared with other threads)
+         */
+        public abstract SuntimesCalculator newCalculator() throws Exception;
+
+        /**
+         * @return the calculator of the calling thread
+         */
+        @Override
+        public SuntimesCalculator call() throws Exception
+        {
+            SuntimesCalculator calculator = calculators.get();
+            if (calculator == null)
+            {
+                calculators.set(calculator = newCalculator());
+                numCreated.incrementAndGet();
+            }
+            return calculator;
+        }
+
+        /**
+         * @return the number of calculators created so far (one per thread that called call)
+         */
+        public int getNumCreated() {
+            return numCreated.get();
+        }
+    }
+
+    protected static void evaluateChunk(RangeQuery query, SuntimesCalculator calculator, Object[][] rows, int offset, int start, int end)
+    {
+        for (int i=start; i<end; i++) {
+            rows[i] = query.getRow(calculator, offset + i);
+        }
+    }
+
+    /**
+     * @return the number of steps (of field) from start while before end; always at least 1
+     */
+    public static int countSteps(Calendar start, int field, Calendar end)
+    {
+        int n = 0;
+        Calendar step = (Calendar) start.clone();
+        do {
+            n++;
+            step.setTimeInMillis(start.getTimeInMillis());
+            step.add(field, n);
+        } while (step.before(end));
+        return n;
+    }
+
+    /**
+     * StepRangeQuery; one row per step (of some calendar field) from start while before end.
+     */
+    public static abstract class StepRangeQuery extends RangeQuery
+    {
+        protected final TimeZone timezone;
+        protected final long startMillis;
+        protected final int field;
+        protected final int count;
+
+        public StepRangeQuery(String[] columns, TimeZone timezone, long startMillis, long endMillis, int field)
+        {
+            super(columns);
+            this.timezone = timezone;
+            this.startMillis = startMillis;
+            this.field = field;
+
+            Calendar start = Calendar.getInstance(timezone);
+            start.setTimeInMillis(startMillis);
+            Calendar end = Calendar.getInstance(timezone);
+            end.setTimeInMillis(endMillis);
+            this.count = countSteps(start, field, end);
+        }
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @param position row (may be negative)
+         * @return a new Calendar for the start of the step
+         */
+        public Calendar getStep(int position)
+        {
+            Calendar step = Calendar.getInstance(timezone);
+            step.setTimeInMillis(startMillis);
+            step.add(field, position);
+            return step;
+        }
+    }
+
+    /**
+     * DayRangeQuery; one row per day.
+     */
+    public static abstract class DayRangeQuery extends StepRangeQuery
+    {
+        public DayRangeQuery(String[] columns, TimeZone timezone, long startMillis, long endMillis) {
+            super(columns, timezone, startMillis, endMillis, Calendar.DAY_OF_YEAR);
+        }
+    }
+
+    /**
+     * MoonPhaseRangeQuery; one row per set of (major) phases. Each row starts 1s after the latest
+     * phase of the previous row. That is the same phase in every row (one lunation later), so row r
+     * starts after the (r-1)th occurrence of it, which is searched for near its mean date; rows are
+     * found as they are needed (a window at a time, in any order, by any thread).
+     */
+    public static class MoonPhaseRangeQuery extends RangeQuery
+    {
+        public static final long SYNODIC_MONTH_MILLIS = (long)(29.530588853d * 24 * 60 * 60 * 1000);    // mean lunation
+        public static final long SEARCH_MARGIN_MILLIS = 3L * 24 * 60 * 60 * 1000;    // > deviation of a phase from its mean date (~1d)
+        public static final long NONE = Long.MIN_VALUE;
+
+        protected final TimeZone timezone;
+        protected final long startMillis, endMillis;
+        protected final SuntimesCalculator.MoonPhase[] phases;    // phase of each column (or null)
+        protected final boolean[] isDistance;
+        protected final boolean[] selected;                       // by phase ordinal
+        protected MoonEventTable table = null;                    // precomputed phases (or null)
+
+        protected long[] first = null;                            // first row; phase events by ordinal (or NONE)
+        protected SuntimesCalculator.MoonPhase lastPhase = null;  // latest phase of every row (or null if none)
+        protected long lastPhaseMillis = NONE;                    // latest phase of the first row
+        protected int count = 0;
+
+        public MoonPhaseRangeQuery(String[] columns, TimeZone timezone, long startMillis, long endMillis)
+        {
+            super(columns);
+            this.timezone = timezone;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+
+            SuntimesCalculator.MoonPhase[] values = SuntimesCalculator.MoonPhase.values();
+            this.selected = new boolean[values.length];
+            this.phases = new SuntimesCalculator.MoonPhase[columns.length];
+            this.isDistance = new boolean[columns.length];
+            for (int i=0; i<columns.length; i++)
+            {
+                switch (columns[i])
+                {
+                    case COLUMN_MOON_NEW_DISTANCE: isDistance[i] = true;    // fall through
+                    case COLUMN_MOON_NEW: phases[i] = SuntimesCalculator.MoonPhase.NEW; break;
+
+                    case COLUMN_MOON_FIRST_DISTANCE: isDistance[i] = true;    // fall through
+                    case COLUMN_MOON_FIRST: phases[i] = SuntimesCalculator.MoonPhase.FIRST_QUARTER; break;
+
+                    case COLUMN_MOON_FULL_DISTANCE: isDistance[i] = true;    // fall through
+                    case COLUMN_MOON_FULL: phases[i] = SuntimesCalculator.MoonPhase.FULL; break;
+
+                    case COLUMN_MOON_THIRD_DISTANCE: isDistance[i] = true;    // fall through
+                    case COLUMN_MOON_THIRD: phases[i] = SuntimesCalculator.MoonPhase.THIRD_QUARTER; break;
+                }
+                if (phases[i] != null) {
+                    selected[phases[i].ordinal()] = true;
+                }
+            }
+        }
+
+        /**
+         * @param table precomputed phases (lookups replace the calculator where the table covers the range)
+         */
+        public void setTable(@Nullable MoonEventTable table) {
+            this.table = table;
+        }
+
+        /**
+         * Finds the first row, and counts the rows by searching only near the end of the range.
+         */
+        @Override
+        public void prepare(@NonNull SuntimesCalculator calculator, @Nullable Callable<SuntimesCalculator> workerCalculator)
+        {
+            first = findEvents(calculator, startMillis);
+            lastPhaseMillis = latest(first);
+            lastPhase = (lastPhaseMillis != NONE ? latestPhase(first) : null);
+            if (lastPhase == null || lastPhaseMillis + 1000 >= endMillis) {
+                count = 1;
+                return;
+            }
+
+            int n = (int) Math.max(1, ((endMillis - lastPhaseMillis) / SYNODIC_MONTH_MILLIS) - 1);    // occurrences [0, n) start a row (before endMillis)
+            long occurrence;
+            while ((occurrence = occurrence(calculator, n)) != NONE && occurrence + 1000 < endMillis) {
+                n++;
+            }
+            count = 1 + n;
+        }
+
+        /**
+         * @param k occurrence (0 is the latest phase of the first row)
+         * @return the time of the kth occurrence of lastPhase (millis), or NONE
+         */
+        protected long occurrence(SuntimesCalculator calculator, int k)
+        {
+            if (k == 0) {
+                return lastPhaseMillis;
+            }
+            Calendar calendar = Calendar.getInstance(timezone);
+            calendar.setTimeInMillis(lastPhaseMillis + (k * SYNODIC_MONTH_MILLIS) - SEARCH_MARGIN_MILLIS);
+            Calendar event = MoonEventTable.nextPhase(table, calculator, lastPhase, calendar);
+            return (event != null ? event.getTimeInMillis() : NONE);
+        }
+
+        /**
+         * @return the next (selected) phase events after date; NONE if not selected
+         */
+        protected long[] findEvents(SuntimesCalculator calculator, long date)
+        {
+            Calendar calendar = Calendar.getInstance(timezone);
+            calendar.setTimeInMillis(date);
+
+            SuntimesCalculator.MoonPhase[] values = SuntimesCalculator.MoonPhase.values();
+            long[] row = new long[values.length];
+            for (int i=0; i<values.length; i++)
+            {
+                Calendar event = (selected[i] ? MoonEventTable.nextPhase(table, calculator, values[i], calendar) : null);
+                row[i] = (event != null ? event.getTimeInMillis() : NONE);
+            }
+            return row;
+        }
+
+        /**
+         * @return the (selected) phase events of the row at position
+         */
+        protected long[] findEvents(SuntimesCalculator calculator, int position)
+        {
+            if (position == 0) {
+                return first;
+            }
+            long occurrence = occurrence(calculator, position - 1);
+            if (occurrence == NONE) {
+                long[] row = new long[first.length];
+                Arrays.fill(row, NONE);
+                return row;
+            }
+            return findEvents(calculator, occurrence + 1000);
+        }
+
+        protected static long latest(long[] row)
+        {
+            long latest = NONE;
+            for (long event : row) {
+                latest = Math.max(latest, event);
+            }
+            return latest;
+        }
+
+        @Nullable
+        protected static SuntimesCalculator.MoonPhase latestPhase(long[] row)
+        {
+            int j = -1;
+            for (int i=0; i<row.length; i++)
+            {
+                if (row[i] != NONE && (j < 0 || row[i] > row[j])) {
+                    j = i;
+                }
+            }
+            return (j >= 0 ? SuntimesCalculator.MoonPhase.values()[j] : null);
+        }
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public Object[] getRow(SuntimesCalculator calculator, int position)
+        {
+            long[] rowEvents = findEvents(calculator, position);
+            Object[] row = new Object[columns.length];
+            for (int i=0; i<columns.length; i++)
+            {
+                long event = (phases[i] != null ? rowEvents[phases[i].ordinal()] : NONE);
+                if (event == NONE) {
+                    row[i] = null;
+
+                } else if (isDistance[i]) {
+                    Calendar calendar = Calendar.getInstance(timezone);
+                    calendar.setTimeInMillis(event);
+                    SuntimesCalculator.MoonPosition position1 = calculator.getMoonPosition(calendar);
+                    row[i] = ((position1 != null) ? position1.distance : null);
+
+                } else {
+                    row[i] = event;
+                }
+            }
+            return row;
+        }
+    }
+}
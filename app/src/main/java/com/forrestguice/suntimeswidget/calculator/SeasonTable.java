@@ -0,0 +1,373 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A shared cache of equinox/solstice times (and tropical year lengths) by calculator, hemisphere, and year. Seasons are
+ * otherwise location independent, so every dataset (and every card) calculating the same year shares the same entry.
+ *
+ * Entries are filled lazily (each value is calculated the first time it is requested) and kept in an LRU (MAX_YEARS);
+ * prefetch fills a range of years in the background (e.g. ahead of a scrolling list), and notifies listeners (on the
+ * main thread) as each year becomes available.
+ */
+public class SeasonTable
+{
+    public static final String TAG = "SeasonTable";
+
+    public static final int SPRING_EQUINOX = 0;
+    public static final int SUMMER_SOLSTICE = 1;
+    public static final int AUTUMNAL_EQUINOX = 2;
+    public static final int WINTER_SOLSTICE = 3;
+    public static final int TROPICAL_YEAR_LENGTH = 4;
+    protected static final int NUM_VALUES = 5;
+
+    public static final int MAX_YEARS = 1024;
+    public static final int PREFETCH_YEARS = 8;
+
+    protected static final long NOT_CALCULATED = Long.MAX_VALUE;
+    protected static final long NONE = Long.MIN_VALUE;    // (calculator returned null)
+
+    private static final LinkedHashMap<String, long[]> years = new LinkedHashMap<String, long[]>(64, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+            return size() > MAX_YEARS;
+        }
+    };
+    private static final Set<String> pending = Collections.synchronizedSet(new HashSet<String>());
+
+    @Nullable
+    public static Calendar getSpringEquinoxForYear(SuntimesCalculator calculator, Calendar date) {
+        return getEvent(calculator, SPRING_EQUINOX, date);
+    }
+    @Nullable
+    public static Calendar getSummerSolsticeForYear(SuntimesCalculator calculator, Calendar date) {
+        return getEvent(calculator, SUMMER_SOLSTICE, date);
+    }
+    @Nullable
+    public static Calendar getAutumnalEquinoxForYear(SuntimesCalculator calculator, Calendar date) {
+        return getEvent(calculator, AUTUMNAL_EQUINOX, date);
+    }
+    @Nullable
+    public static Calendar getWinterSolsticeForYear(SuntimesCalculator calculator, Calendar date) {
+        return getEvent(calculator, WINTER_SOLSTICE, date);
+    }
+
+    /**
+     * @return the same as calculator.getTropicalYearLength (cached)
+     */
+    public static long getTropicalYearLength(SuntimesCalculator calculator, Calendar date) {
+        return getValue(calculator, TROPICAL_YEAR_LENGTH, date.get(Calendar.YEAR));
+    }
+
+    /**
+     * @param calculator calculator
+     * @param season SPRING_EQUINOX, SUMMER_SOLSTICE, AUTUMNAL_EQUINOX, WINTER_SOLSTICE
+     * @param date a date within the year
+     * @return the same as calculator.get*ForYear (cached)
+     */
+    @Nullable
+    public static Calendar getEvent(SuntimesCalculator calculator, int season, Calendar date)
+    {
+        long millis = getValue(calculator, season, date.get(Calendar.YEAR));
+        if (millis == NONE) {
+            return null;
+        }
+        Calendar calendar = Calendar.getInstance(timeZone(calculator, date));
+        calendar.setTimeInMillis(millis);
+        return calendar;
+    }
+
+    protected static long getValue(SuntimesCalculator calculator, int value, int year)
+    {
+        String key = key(calculator, year);
+        long[] entry;
+        synchronized (years)
+        {
+            entry = years.get(key);
+            if (entry != null && entry[value] != NOT_CALCULATED) {
+                return entry[value];
+            }
+        }
+
+        long result = calculate(calculator, value, year);
+        synchronized (years)
+        {
+            entry = years.get(key);
+            if (entry == null) {
+                years.put(key, entry = newEntry());
+            }
+            entry[value] = result;
+        }
+        return result;
+    }
+
+    protected static long calculate(SuntimesCalculator calculator, int value, int year)
+    {
+        Calendar date = Calendar.getInstance(timeZone(calculator, null));
+        date.set(year, Calendar.JULY, 1, 12, 0, 0);
+
+        if (value == TROPICAL_YEAR_LENGTH) {
+            return calculator.getTropicalYearLength(date);
+        }
+
+        Calendar event;
+        switch (value)
+        {
+            case SPRING_EQUINOX: event = calculator.getSpringEquinoxForYear(date); break;
+            case SUMMER_SOLSTICE: event = calculator.getSummerSolsticeForYear(date); break;
+            case AUTUMNAL_EQUINOX: event = calculator.getAutumnalEquinoxForYear(date); break;
+            case WINTER_SOLSTICE: default: event = calculator.getWinterSolsticeForYear(date); break;
+        }
+        return (event != null ? event.getTimeInMillis() : NONE);
+    }
+
+    protected static long[] newEntry()
+    {
+        long[] entry = new long[NUM_VALUES];
+        for (int i=0; i<entry.length; i++) {
+            entry[i] = NOT_CALCULATED;
+        }
+        return entry;
+    }
+
+    /**
+     * @return a key identifying the year for the given calculator (seasons are localized to the calculator's hemisphere)
+     */
+    protected static String key(SuntimesCalculator calculator, int year)
+    {
+        Location location = calculator.getLocation();
+        boolean south = (location != null && location.getLatitudeAsDouble() < 0);
+        return calculator.name() + (south ? "|S|" : "|N|") + year;
+    }
+
+    protected static TimeZone timeZone(SuntimesCalculator calculator, @Nullable Calendar date)
+    {
+        TimeZone timezone = calculator.getTimeZone();
+        return (timezone != null ? timezone : (date != null ? date.getTimeZone() : TimeZone.getDefault()));
+    }
+
+    /**
+     * @return true if every year in the range has been calculated (all seasons)
+     */
+    public static boolean contains(SuntimesCalculator calculator, int fromYear, int toYear)
+    {
+        for (int year = fromYear; year <= toYear; year++) {
+            if (!contains(calculator, year)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the year has been calculated (all seasons)
+     */
+    public static boolean contains(SuntimesCalculator calculator, int year)
+    {
+        synchronized (years)
+        {
+            long[] entry = years.get(key(calculator, year));
+            if (entry == null) {
+                return false;
+            }
+            for (int i=0; i<=WINTER_SOLSTICE; i++) {
+                if (entry[i] == NOT_CALCULATED) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    protected static boolean hasEntry(SuntimesCalculator calculator, int year)
+    {
+        synchronized (years) {
+            return years.containsKey(key(calculator, year));
+        }
+    }
+
+    public static int size()
+    {
+        synchronized (years) {
+            return years.size();
+        }
+    }
+
+    public static void clear()
+    {
+        synchronized (years) {
+            years.clear();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Calculates the seasons of the given years (that aren't already cached) in the background. Years are calculated
+     * outward from the middle of the range (the year being displayed first); listeners are notified after each year.
+     * @param context context
+     * @param calculator the calculator (only its name, location, and timezone are used; years are calculated by a new instance)
+     * @param descriptor the calculator's descriptor
+     * @param fromYear first year
+     * @param toYear last year (inclusive)
+     */
+    public static void prefetch(Context context, final SuntimesCalculator calculator, @Nullable final SuntimesCalculatorDescriptor descriptor, int fromYear, int toYear)
+    {
+        if (descriptor == null || !descriptor.hasRequestedFeature(SuntimesCalculator.FEATURE_SOLSTICE)) {
+            return;
+        }
+
+        final int year0 = Math.max(fromYear, 1);
+        final int year1 = toYear;
+        if (contains(calculator, year0, year1) || !pending.add(key(calculator, year0) + "-" + year1)) {
+            return;
+        }
+
+        final Context appContext = context.getApplicationContext();
+        executor().execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    SuntimesCalculator worker = new SuntimesCalculatorFactory(appContext, descriptor).newCalculator(calculator.getLocation(), calculator.getTimeZone());
+                    if (!worker.name().equals(calculator.name())) {
+                        Log.w(TAG, "prefetch: calculator " + descriptor.getName() + " is unavailable; skipping..");
+                        return;
+                    }
+                    for (int year : prefetchOrder(year0, year1))
+                    {
+                        if (!contains(worker, year))
+                        {
+                            for (int season=SPRING_EQUINOX; season<=WINTER_SOLSTICE; season++) {
+                                getValue(worker, season, year);
+                            }
+                            notifyPrefetched(year);
+                        }
+                    }
+                } finally {
+                    pending.remove(key(calculator, year0) + "-" + year1);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the years fromYear..toYear ordered by distance from the middle of the range (nearest first)
+     */
+    protected static int[] prefetchOrder(int fromYear, int toYear)
+    {
+        int[] order = new int[Math.max(toYear - fromYear + 1, 0)];
+        int middle = fromYear + (toYear - fromYear) / 2;
+        int i = 0;
+        for (int d = 0; i < order.length; d++)
+        {
+            if (middle - d >= fromYear) {
+                order[i++] = middle - d;
+            }
+            if (d > 0 && middle + d <= toYear) {
+                order[i++] = middle + d;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * SeasonTableListener
+     */
+    public interface SeasonTableListener
+    {
+        /**
+         * Called on the main thread after prefetch has calculated a year.
+         * @param year the year that is now available
+         */
+        void onPrefetched(int year);
+    }
+
+    private static final CopyOnWriteArrayList<SeasonTableListener> listeners = new CopyOnWriteArrayList<>();
+    public static void addListener(SeasonTableListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+    public static void removeListener(SeasonTableListener listener) {
+        listeners.remove(listener);
+    }
+
+    protected static void notifyPrefetched(final int year)
+    {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        new Handler(Looper.getMainLooper()).post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (SeasonTableListener listener : listeners) {
+                    listener.onPrefetched(year);
+                }
+            }
+        });
+    }
+
+    private static ThreadPoolExecutor executor = null;
+    protected static synchronized ThreadPoolExecutor executor()
+    {
+        if (executor == null)
+        {
+            executor = new ThreadPoolExecutor(1, 1, RangeQuery.KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(@NonNull Runnable r)
+                {
+                    Thread thread = new Thread(r, TAG);
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,441 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.BuildConfig;
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculator;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculatorBridge;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A precomputed table of sun events (SuntimesBatchCalculator.EVENT_*) for a location; one row per day (NUM_DAYS),
+ * stored under the app's files dir and read through a MappedByteBuffer. Lookups are an index computation (no search).
+ *
+ * Tables are created in the background (see getTable, requestUpdate); callers fall back to the calculator while a
+ * table is missing or doesn't contain the requested day.
+ *
+ * Format (big-endian): int MAGIC, int VERSION, long key, long created (millis), int startDay (epoch day, local),
+ * int numDays, int numEvents, int reserved; followed by numDays * numEvents longs (millis, or NO_EVENT).
+ */
+public class SunEventTable
+{
+    public static final String TAG = "SunEventTable";
+
+    public static final int MAGIC = 0x53455442;    // "SETB"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 40;      // bytes
+
+    public static final int NUM_DAYS = 366;
+    public static final int DAYS_BEFORE = 1;       // tables start the day before they are created (compare with yesterday)
+    public static final int REFRESH_DAYS = 30;     // tables are recreated when fewer days than this remain
+    public static final int MAX_FILES = 16;
+    public static final int MAX_OPEN_TABLES = 8;
+    public static final String DIR_NAME = "eventtables";
+
+    public static final int[] EVENTS = new int[] {    // (EVENTS[i] == i)
+            SuntimesBatchCalculator.EVENT_ASTRONOMICAL_SUNRISE, SuntimesBatchCalculator.EVENT_NAUTICAL_SUNRISE, SuntimesBatchCalculator.EVENT_BLUE8_MORNING,
+            SuntimesBatchCalculator.EVENT_CIVIL_SUNRISE, SuntimesBatchCalculator.EVENT_BLUE4_MORNING, SuntimesBatchCalculator.EVENT_OFFICIAL_SUNRISE,
+            SuntimesBatchCalculator.EVENT_GOLDEN_MORNING, SuntimesBatchCalculator.EVENT_SOLAR_NOON, SuntimesBatchCalculator.EVENT_GOLDEN_EVENING,
+            SuntimesBatchCalculator.EVENT_OFFICIAL_SUNSET, SuntimesBatchCalculator.EVENT_BLUE4_EVENING, SuntimesBatchCalculator.EVENT_CIVIL_SUNSET,
+            SuntimesBatchCalculator.EVENT_BLUE8_EVENING, SuntimesBatchCalculator.EVENT_NAUTICAL_SUNSET, SuntimesBatchCalculator.EVENT_ASTRONOMICAL_SUNSET
+    };
+
+    protected static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    protected final ByteBuffer buffer;
+    protected final TimeZone timezone;
+    protected final long key;
+    protected final long created;
+    protected final int startDay;
+    protected final int numDays;
+    protected final int numEvents;
+
+    /**
+     * @param buffer table contents (e.g. a MappedByteBuffer)
+     * @param timezone the timezone the table was created with (used to convert dates to rows)
+     * @throws IOException if the buffer doesn't contain a valid table
+     */
+    public SunEventTable(@NonNull ByteBuffer buffer, @NonNull TimeZone timezone) throws IOException
+    {
+        this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+        this.timezone = timezone;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a valid table (bad header)");
+        }
+        key = buffer.getLong(8);
+        created = buffer.getLong(16);
+        startDay = buffer.getInt(24);
+        numDays = buffer.getInt(28);
+        numEvents = buffer.getInt(32);
+        if (numDays <= 0 || numEvents != EVENTS.length || buffer.capacity() < HEADER_SIZE + ((long) numDays * numEvents * 8)) {
+            throw new IOException("Not a valid table (bad size)");
+        }
+    }
+
+    public long getKey() {
+        return key;
+    }
+    public long getCreated() {
+        return created;
+    }
+    public int getNumDays() {
+        return numDays;
+    }
+
+    /**
+     * @return the day's row, or -1 if the table doesn't contain the day
+     */
+    public int indexOf(Calendar day)
+    {
+        long i = epochDay(day.getTimeInMillis(), timezone) - startDay;
+        return (i >= 0 && i < numDays) ? (int) i : -1;
+    }
+
+    public boolean contains(Calendar day) {
+        return indexOf(day) >= 0;
+    }
+
+    /**
+     * @param now the current time
+     * @return true if the table should be recreated (it doesn't contain now, or only a few days remain)
+     */
+    public boolean isStale(Calendar now)
+    {
+        int i = indexOf(now);
+        return (i < 0 || i > (numDays - REFRESH_DAYS));
+    }
+
+    /**
+     * @param i row (see indexOf)
+     * @param event SuntimesBatchCalculator.EVENT_*
+     * @return event time (millis), or SuntimesBatchCalculator.NO_EVENT
+     */
+    public long getEventTime(int i, int event) {
+        return buffer.getLong(HEADER_SIZE + ((i * numEvents + event) * 8));
+    }
+
+    /**
+     * Fills out the same way as SuntimesBatchCalculator.getDayEvents.
+     * @return true if the table contains the day and every angle (false if the calculator should be used instead)
+     */
+    public boolean getDayEvents(Calendar day, double[] angles, long[] out)
+    {
+        int i = indexOf(day);
+        if (i < 0 || out.length < 1 + (2 * angles.length)) {
+            return false;
+        }
+        for (double angle : angles) {
+            if (SuntimesBatchCalculatorBridge.toEvent(angle, true) < 0) {
+                return false;
+            }
+        }
+
+        out[0] = getEventTime(i, SuntimesBatchCalculator.EVENT_SOLAR_NOON);
+        for (int j=0; j<angles.length; j++)
+        {
+            out[1 + (2 * j)] = getEventTime(i, SuntimesBatchCalculatorBridge.toEvent(angles[j], true));
+            out[2 + (2 * j)] = getEventTime(i, SuntimesBatchCalculatorBridge.toEvent(angles[j], false));
+        }
+        return true;
+    }
+
+    /**
+     * @return the day (at local midnight) as days since 1970-01-01
+     */
+    public static long epochDay(long millis, TimeZone timezone)
+    {
+        long local = millis + timezone.getOffset(millis);
+        return (local >= 0 ? local / DAY_MILLIS : ((local + 1) / DAY_MILLIS) - 1);
+    }
+
+    /**
+     * @param calculatorVersion see SuntimesCalculatorDescriptor.getVersion
+     * @return a key identifying tables created with the given calculator, location, and timezone (64-bit FNV-1a);
+     * tables created by a previous version of the app (or calculator) have a different key.
+     */
+    public static long key(String calculatorName, int calculatorVersion, Location location, TimeZone timezone)
+    {
+        String value = calculatorName + "|" + BuildConfig.VERSION_CODE + "|" + calculatorVersion + "|" + location.getLatitude() + "|" + location.getLongitude()
+                + "|" + location.getAltitude() + "|" + location.useAltitude() + "|" + timezone.getID();
+        long hash = 0xcbf29ce484222325L;
+        for (int i=0; i<value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public static String fileName(long key) {
+        return Long.toHexString(key) + ".bin";
+    }
+
+    /**
+     * Calculates a table and writes it to file (atomically; written to a temporary file that replaces file when complete).
+     * @param file destination
+     * @param calculator calculator (used by the calling thread)
+     * @param key see key
+     * @param timezone timezone
+     * @param startDay the first day of the table
+     * @param numDays number of days
+     */
+    public static void write(File file, SuntimesCalculator calculator, long key, TimeZone timezone, Calendar startDay, int numDays) throws IOException
+    {
+        Calendar day = Calendar.getInstance(timezone);
+        day.setTimeInMillis(startDay.getTimeInMillis());
+        day.set(Calendar.HOUR_OF_DAY, 12);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+
+        long[] values = new long[numDays * EVENTS.length];
+        Arrays.fill(values, SuntimesBatchCalculator.NO_EVENT);
+        SuntimesBatchCalculatorBridge.from(calculator).getEventTimes(day, numDays, EVENTS, values);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (values.length * 8)).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(key).putLong(System.currentTimeMillis())
+                .putInt((int) epochDay(day.getTimeInMillis(), timezone)).putInt(numDays).putInt(EVENTS.length).putInt(0);
+        buffer.asLongBuffer().put(values);
+
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmpFile);
+        try {
+            out.write(buffer.array());
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmpFile.renameTo(file))
+        {
+            tmpFile.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
+    /**
+     * @param file a table file
+     * @param timezone the timezone the table was created with
+     * @return the table (mapped read-only)
+     * @throws IOException if the file is missing or isn't a valid table
+     */
+    public static SunEventTable open(File file, TimeZone timezone) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return new SunEventTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), timezone);
+        } finally {
+            raf.close();    // (the mapping remains valid after the channel is closed)
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static final LinkedHashMap<Long, SunEventTable> openTables = new LinkedHashMap<Long, SunEventTable>(MAX_OPEN_TABLES, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, SunEventTable> eldest) {
+            return size() > MAX_OPEN_TABLES;
+        }
+    };
+    private static final Set<Long> pending = Collections.synchronizedSet(new HashSet<Long>());
+
+    public static File tableDir(Context context) {
+        return new File(context.getFilesDir(), DIR_NAME);
+    }
+
+    /**
+     * @param context context
+     * @param calculator the calculator (only its name is used; tables are created by a new instance)
+     * @param descriptor the calculator's descriptor (used to create tables)
+     * @param location location
+     * @param timezone timezone
+     * @return a table containing today, or null (calculator should be used instead); missing or stale tables are
+     * (re)created in the background.
+     */
+    @Nullable
+    public static SunEventTable getTable(Context context, SuntimesCalculator calculator, SuntimesCalculatorDescriptor descriptor, Location location, TimeZone timezone)
+    {
+        long key = key(calculator.name(), descriptor.getVersion(), location, timezone);
+        Calendar now = Calendar.getInstance(timezone);
+
+        SunEventTable table;
+        synchronized (openTables) {
+            table = openTables.get(key);
+        }
+        if (table == null || table.isStale(now))
+        {
+            File file = new File(tableDir(context), fileName(key));
+            if (file.exists())
+            {
+                try {
+                    table = open(file, timezone);
+                    if (table.getKey() == key)
+                    {
+                        synchronized (openTables) {
+                            openTables.put(key, table);
+                        }
+                    } else table = null;
+                } catch (IOException e) {
+                    Log.w(TAG, "getTable: failed to open " + file + ": " + e);
+                    table = null;
+                }
+            }
+            if (table == null || table.isStale(now)) {
+                requestUpdate(context, descriptor, location, timezone, key);
+            }
+        }
+        return (table != null && table.contains(now) ? table : null);
+    }
+
+    /**
+     * Creates a table in the background (if not already pending).
+     */
+    protected static void requestUpdate(Context context, final SuntimesCalculatorDescriptor descriptor, final Location location, final TimeZone timezone, final long key)
+    {
+        if (!pending.add(key)) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        executor().execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    SuntimesCalculator calculator = new SuntimesCalculatorFactory(appContext, descriptor).newCalculator(location, timezone);
+                    if (key(calculator.name(), descriptor.getVersion(), location, timezone) != key) {
+                        Log.w(TAG, "requestUpdate: calculator " + descriptor.getName() + " is unavailable; skipping table..");
+                        return;
+                    }
+
+                    File dir = tableDir(appContext);
+                    if (!dir.exists() && !dir.mkdirs()) {
+                        throw new IOException("Failed to create " + dir);
+                    }
+                    Calendar startDay = Calendar.getInstance(timezone);
+                    startDay.add(Calendar.DAY_OF_MONTH, -DAYS_BEFORE);
+
+                    long bench_start = System.nanoTime();
+                    File file = new File(dir, fileName(key));
+                    write(file, calculator, key, timezone, startDay, NUM_DAYS);
+                    SunEventTable table = open(file, timezone);
+                    synchronized (openTables) {
+                        openTables.put(key, table);
+                    }
+                    Log.d(TAG, "requestUpdate: created " + file + " in " + ((System.nanoTime() - bench_start) / 1000000.0) + " ms");
+                    pruneFiles(dir, MAX_FILES);
+
+                } catch (IOException e) {
+                    Log.e(TAG, "requestUpdate: failed to create table: " + e);
+                } finally {
+                    pending.remove(key);
+                }
+            }
+        });
+    }
+
+    /**
+     * Deletes the least recently modified tables (keeping at most maxFiles).
+     */
+    protected static void pruneFiles(File dir, int maxFiles)
+    {
+        File[] files = dir.listFiles();
+        if (files == null || files.length <= maxFiles) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>()
+        {
+            @Override
+            public int compare(File f1, File f2) {
+                long t1 = f1.lastModified(), t2 = f2.lastModified();
+                return (t1 > t2 ? -1 : (t1 == t2 ? 0 : 1));    // newest first
+            }
+        });
+        for (int i=maxFiles; i<files.length; i++) {
+            if (!files[i].delete()) {
+                Log.w(TAG, "pruneFiles: failed to delete " + files[i]);
+            }
+        }
+    }
+
+    /**
+     * Deletes all tables (e.g. after the installed calculators change; see SuntimesCalculatorDescriptor.reinitCalculators).
+     */
+    public static void clearTables(Context context)
+    {
+        synchronized (openTables) {
+            openTables.clear();
+        }
+        File[] files = tableDir(context).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor executor = null;
+    protected static synchronized ThreadPoolExecutor executor()
+    {
+        if (executor == null)
+        {
+            executor = new ThreadPoolExecutor(1, 1, RangeQuery.KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(@NonNull Runnable r)
+                {
+                    Thread thread = new Thread(r, TAG);
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,232 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.support.annotation.NonNull;
+
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculator;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculatorBridge;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import java.util.Calendar;
+
+import static com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract.*;
+
+/**
+ * An evaluation plan for rows of a sun query (QUERY_SUN), built once from the projection. Each row
+ * computes the events it needs with a single SuntimesBatchCalculator.getDayEvents call (the day's
+ * transit, declination, and equation of time are computed once and every rising/setting is solved
+ * against them), then the sun's position once per event that has _POSITION columns. Plans are
+ * immutable and may be shared between threads.
+ */
+public class SunQueryPlan
+{
+    public static final int FIELD_TIME = 0;
+    public static final int FIELD_AZ = 1;
+    public static final int FIELD_ALT = 2;
+    public static final int FIELD_RA = 3;
+    public static final int FIELD_DEC = 4;
+
+    public static final String[] FIELD_SUFFIX = new String[] { "", _POSITION_AZ, _POSITION_ALT, _POSITION_RA, _POSITION_DEC };    // by FIELD_*
+
+    /**
+     * Root keys (COLUMN_SUN_*) and their batch events (SuntimesBatchCalculator.EVENT_*).
+     */
+    public static final String[] ROOT_KEYS = new String[] {
+            COLUMN_SUN_ASTRO_RISE, COLUMN_SUN_NAUTICAL_RISE, COLUMN_SUN_BLUE8_RISE, COLUMN_SUN_CIVIL_RISE, COLUMN_SUN_BLUE4_RISE,
+            COLUMN_SUN_ACTUAL_RISE, COLUMN_SUN_GOLDEN_MORNING, COLUMN_SUN_NOON, COLUMN_SUN_GOLDEN_EVENING, COLUMN_SUN_ACTUAL_SET,
+            COLUMN_SUN_BLUE4_SET, COLUMN_SUN_CIVIL_SET, COLUMN_SUN_BLUE8_SET, COLUMN_SUN_NAUTICAL_SET, COLUMN_SUN_ASTRO_SET
+    };
+    public static final int[] ROOT_EVENTS = new int[] {
+            SuntimesBatchCalculator.EVENT_ASTRONOMICAL_SUNRISE, SuntimesBatchCalculator.EVENT_NAUTICAL_SUNRISE, SuntimesBatchCalculator.EVENT_BLUE8_MORNING, SuntimesBatchCalculator.EVENT_CIVIL_SUNRISE, SuntimesBatchCalculator.EVENT_BLUE4_MORNING,
+            SuntimesBatchCalculator.EVENT_OFFICIAL_SUNRISE, SuntimesBatchCalculator.EVENT_GOLDEN_MORNING, SuntimesBatchCalculator.EVENT_SOLAR_NOON, SuntimesBatchCalculator.EVENT_GOLDEN_EVENING, SuntimesBatchCalculator.EVENT_OFFICIAL_SUNSET,
+            SuntimesBatchCalculator.EVENT_BLUE4_EVENING, SuntimesBatchCalculator.EVENT_CIVIL_SUNSET, SuntimesBatchCalculator.EVENT_BLUE8_EVENING, SuntimesBatchCalculator.EVENT_NAUTICAL_SUNSET, SuntimesBatchCalculator.EVENT_ASTRONOMICAL_SUNSET
+    };
+
+    protected final int numColumns;
+    protected final int[] events;              // distinct events needed by the projection (EVENT_*)
+    protected final double[] angles;           // distinct angles needed by the events (ANGLE_*); passed to getDayEvents
+    protected final int[] eventSlot;           // by index into events; index into the getDayEvents buffer
+    protected final boolean[] needsPosition;   // by index into events
+    protected final int[] columnEvent;         // by column; index into events (or -1 if the column is unknown)
+    protected final int[] columnField;         // by column; FIELD_*
+
+    public SunQueryPlan(@NonNull String[] columns)
+    {
+        numColumns = columns.length;
+        columnEvent = new int[columns.length];
+        columnField = new int[columns.length];
+
+        int[] eventIndex = new int[ROOT_KEYS.length];    // by root; index into events (or -1)
+        boolean[] rootNeedsPosition = new boolean[ROOT_KEYS.length];
+        for (int j=0; j<eventIndex.length; j++) {
+            eventIndex[j] = -1;
+        }
+
+        int numEvents = 0;
+        for (int i=0; i<columns.length; i++)
+        {
+            columnEvent[i] = -1;
+            int[] match = findRoot(columns[i]);
+            if (match != null)
+            {
+                int root = match[0];
+                if (eventIndex[root] < 0) {
+                    eventIndex[root] = numEvents++;
+                }
+                columnEvent[i] = eventIndex[root];
+                columnField[i] = match[1];
+                rootNeedsPosition[root] = (rootNeedsPosition[root] || match[1] != FIELD_TIME);
+            }
+        }
+
+        events = new int[numEvents];
+        needsPosition = new boolean[numEvents];
+        for (int j=0; j<ROOT_KEYS.length; j++)
+        {
+            if (eventIndex[j] >= 0) {
+                events[eventIndex[j]] = ROOT_EVENTS[j];
+                needsPosition[eventIndex[j]] = rootNeedsPosition[j];
+            }
+        }
+
+        int numAngles = 0;
+        double[] angles0 = new double[events.length];
+        eventSlot = new int[events.length];
+        for (int i=0; i<events.length; i++)
+        {
+            Double angle = SuntimesBatchCalculatorBridge.toAngle(events[i]);
+            if (angle == null) {
+                eventSlot[i] = 0;    // solar noon
+                continue;
+            }
+
+            int a = 0;
+            while (a < numAngles && Double.compare(angles0[a], angle) != 0) {    // (compare matches NaN)
+                a++;
+            }
+            if (a == numAngles) {
+                angles0[numAngles++] = angle;
+            }
+            eventSlot[i] = (SuntimesBatchCalculatorBridge.isRising(events[i]) ? 1 + (2 * a) : 2 + (2 * a));
+        }
+        angles = new double[numAngles];
+        System.arraycopy(angles0, 0, angles, 0, numAngles);
+    }
+
+    /**
+     * @return { index into ROOT_KEYS, FIELD_* }, or null if the column isn't a sun column
+     */
+    protected static int[] findRoot(String column)
+    {
+        for (int j=0; j<ROOT_KEYS.length; j++)
+        {
+            if (column.startsWith(ROOT_KEYS[j]))
+            {
+                for (int k=0; k<FIELD_SUFFIX.length; k++)
+                {
+                    if (column.length() == ROOT_KEYS[j].length() + FIELD_SUFFIX[k].length() && column.endsWith(FIELD_SUFFIX[k])) {
+                        return new int[] { j, k };
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of distinct events computed per row
+     */
+    public int getNumEvents() {
+        return events.length;
+    }
+
+    /**
+     * @return the number of distinct angles passed to getDayEvents per row
+     */
+    public int getNumAngles() {
+        return angles.length;
+    }
+
+    /**
+     * @return the number of sun positions computed per row (at most)
+     */
+    public int getNumPositions()
+    {
+        int n = 0;
+        for (boolean b : needsPosition) {
+            n += (b ? 1 : 0);
+        }
+        return n;
+    }
+
+    /**
+     * @param calculator the calculator
+     * @param day the day
+     * @return row values (one per column); times are epoch millis (Long), positions are degrees (Double)
+     */
+    public Object[] getRow(@NonNull SuntimesCalculator calculator, @NonNull Calendar day)
+    {
+        long[] times = new long[events.length];
+        if (events.length > 0)
+        {
+            long[] dayEvents = new long[1 + (2 * angles.length)];
+            boolean calculated = (SuntimesBatchCalculatorBridge.from(calculator).getDayEvents(day, angles, dayEvents) >= dayEvents.length);
+            for (int i=0; i<times.length; i++) {
+                times[i] = (calculated ? dayEvents[eventSlot[i]] : SuntimesBatchCalculator.NO_EVENT);
+            }
+        }
+
+        SuntimesCalculator.SunPosition[] positions = new SuntimesCalculator.SunPosition[events.length];
+        Calendar calendar = null;
+        for (int i=0; i<events.length; i++)
+        {
+            if (needsPosition[i] && times[i] != SuntimesBatchCalculator.NO_EVENT)
+            {
+                if (calendar == null) {
+                    calendar = Calendar.getInstance(day.getTimeZone());
+                }
+                calendar.setTimeInMillis(times[i]);
+                positions[i] = calculator.getSunPosition(calendar);
+            }
+        }
+
+        Object[] row = new Object[numColumns];
+        for (int i=0; i<numColumns; i++)
+        {
+            int j = columnEvent[i];
+            if (j < 0 || times[j] == SuntimesBatchCalculator.NO_EVENT) {
+                row[i] = null;
+                continue;
+            }
+
+            SuntimesCalculator.SunPosition position = positions[j];
+            switch (columnField[i])
+            {
+                case FIELD_TIME: row[i] = times[j]; break;
+                case FIELD_AZ: row[i] = (position != null ? position.azimuth : null); break;
+                case FIELD_ALT: row[i] = (position != null ? position.elevation : null); break;
+                case FIELD_RA: row[i] = (position != null ? position.rightAscension : null); break;
+                case FIELD_DEC: row[i] = (position != null ? position.declination : null); break;
+                default: row[i] = null; break;
+            }
+        }
+        return row;
+    }
+}
@@ -27,6 +27,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
+import com.forrestguice.suntimeswidget.BuildConfig;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculatorInfo;
 import com.forrestguice.suntimeswidget.settings.AppSettings;
@@ -64,6 +65,7 @@ import java.util.Locale;
  *     :: com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator.class
  *     :: com.forrestguice.suntimeswidget.calculator.time4a.Time4ACCSuntimesCalculator.class
  *     :: com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.class
+ *     :: com.forrestguice.suntimeswidget.calculator.time4a.Time4AChebyshevSuntimesCalculator.class
  *
  */
 @SuppressWarnings("Convert2Diamond")
@@ -88,6 +90,7 @@ public class SuntimesCalculatorDescriptor implements Comparable, SuntimesCalcula
         SuntimesCalculatorDescriptor.addValue(com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator.getDescriptor());
         SuntimesCalculatorDescriptor.addValue(com.forrestguice.suntimeswidget.calculator.time4a.Time4ACCSuntimesCalculator.getDescriptor());
         SuntimesCalculatorDescriptor.addValue(com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor());
+        SuntimesCalculatorDescriptor.addValue(com.forrestguice.suntimeswidget.calculator.time4a.Time4AChebyshevSuntimesCalculator.getDescriptor());
 
         boolean scanForPlugins = (context != null && AppSettings.loadScanForPluginsPref(context));
         if (scanForPlugins)
@@ -110,6 +113,11 @@ public class SuntimesCalculatorDescriptor implements Comparable, SuntimesCalcula
 
                     SuntimesCalculatorDescriptor descriptor = new SuntimesCalculatorDescriptor(calculatorName, calculatorDisplayString, calculatorDisplayReference, -1, calculatorFeatures);
                     descriptor.setIsPlugin(true);
+                    try {
+                        descriptor.setVersion(packageManager.getPackageInfo(packageInfo.activityInfo.packageName, 0).versionCode);
+                    } catch (PackageManager.NameNotFoundException e) {
+                        Log.w(LOGTAG, "..failed to get plugin version: " + e);
+                    }
                     SuntimesCalculatorDescriptor.addValue(descriptor);
                     Log.i(LOGTAG, "..initialized calculator plugin: " + descriptor.toString());
                 }
@@ -122,6 +130,12 @@ public class SuntimesCalculatorDescriptor implements Comparable, SuntimesCalcula
 
     public static void reinitCalculators(@Nullable Context context)
     {
+        SuntimesCalculatorFactory.clearCache(true);
+        if (context != null) {
+            SunEventTable.clearTables(context);    // (plugins may have been added, removed, or updated)
+            MoonEventTable.clearTables(context);
+            WidgetDataCache.clearCache(context);
+        }
         calculators.clear();
         initCalculators(context);
     }
@@ -233,6 +247,7 @@ public class SuntimesCalculatorDescriptor implements Comparable, SuntimesCalcula
     private int resID = -1;
     private int[] features = new int[] { SuntimesCalculator.FEATURE_RISESET };
     private boolean isPlugin = false;
+    private int version = BuildConfig.VERSION_CODE;
 
     /**
      * Create a SuntimesCalculatorDescriptor object.
@@ -366,6 +381,20 @@ public class SuntimesCalculatorDescriptor implements Comparable, SuntimesCalcula
         isPlugin = value;
     }
 
+    /**
+     * @return the version of the calculator's implementation; the app's versionCode for built-in calculators, or
+     * the versionCode of the plugin's package (used to invalidate persisted results, see SunEventTable)
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+
+    public void setVersion( int value )
+    {
+        version = value;
+    }
+
     @Override
     public boolean equals(Object other)
     {
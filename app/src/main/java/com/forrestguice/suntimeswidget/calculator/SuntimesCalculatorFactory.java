@@ -26,6 +26,10 @@ import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 
 import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.TimeZone;
 
 /**
@@ -65,6 +69,7 @@ public class SuntimesCalculatorFactory
     private void init(Context context, @Nullable SuntimesCalculatorDescriptor calculatorSetting)
     {
         this.contextRef = new WeakReference<Context>(context);
+        CalculatorStats.init(context);
         if (!SuntimesCalculatorDescriptor.initialized)
         {
             SuntimesCalculatorDescriptor.initCalculators(context);
@@ -83,34 +88,181 @@ public class SuntimesCalculatorFactory
 
     /**
      * Create a calculator for a given location and timezone using the calculator descriptor that was
-     * passed to the factory when it was created.
+     * passed to the factory when it was created. Recently created instances are cached (see MAX_CACHED_CALCULATORS)
+     * and shared by subsequent calls (keyed by the full location, so getLocation() returns an equal location).
+     * If CalculatorStats are enabled the calculator is wrapped by an InstrumentedCalculator.
+     *
+     * Shared instances may be used by several threads at once; calculators are expected to be thread-safe once
+     * initialized (the bundled calculators only read their fields after init, and replace cached ephemeris windows
+     * with immutable values). Cached calculators are initialized with the application context. Callers that need
+     * an instance of their own should use newCalculator.
      * @param location a SuntimesWidgetSettings.Location specifying latitude and longitude
      * @param timezone a timezone string
      * @return a calculator object that implements SuntimesCalculator
      */
     public SuntimesCalculator createCalculator(Location location, TimeZone timezone)
+    {
+        String key = cacheKey(current, location, timezone);
+        synchronized (calculatorCache)
+        {
+            SuntimesCalculator cached = calculatorCache.get(key);
+            if (cached != null) {
+                cacheHits++;
+                return cached;
+            }
+            cacheMisses++;
+        }
+
+        SuntimesCalculator calculator = instantiateCalculator();
+        boolean isFallback = (calculator == null);
+        if (isFallback) {
+            calculator = instantiateFallback(timezone);
+        }
+        Context context = contextRef.get();
+        calculator.init(location, timezone, (context != null ? context.getApplicationContext() : null));    // (shared; don't hold the caller's context)
+        calculator = CalculatorStats.instrument(calculator);
+
+        if (!isFallback)    // not cached; listeners should be signaled by each call that falls back
+        {
+            synchronized (calculatorCache) {
+                calculatorCache.put(key, calculator);
+            }
+        }
+        return calculator;
+    }
+
+    /**
+     * Create a new (uncached) calculator for a given location and timezone; for use by callers that
+     * shouldn't share an instance with other threads.
+     * @param location a SuntimesWidgetSettings.Location specifying latitude and longitude
+     * @param timezone a timezone string
+     * @return a calculator object that implements SuntimesCalculator
+     */
+    public SuntimesCalculator newCalculator(Location location, TimeZone timezone)
+    {
+        SuntimesCalculator calculator = instantiateCalculator();
+        if (calculator == null) {
+            calculator = instantiateFallback(timezone);
+        }
+        calculator.init(location, timezone, contextRef.get());
+        return CalculatorStats.instrument(calculator);
+    }
+
+    @Nullable
+    private SuntimesCalculator instantiateCalculator()
     {
         //long bench_start = System.nanoTime();
-        SuntimesCalculator calculator;
         try {
             //Log.d("createCalculator", "trying .oO( " + current.getReference() + " )");
-            Class calculatorClass = Class.forName(current.getReference());  // may fail if using proguard without exempting key classes
-            //Log.d("createCalculator", "found class " + calculatorClass.getName());
-            calculator = (SuntimesCalculator)calculatorClass.newInstance();
-            //Log.d("createCalculator", "using .oO( " + calculator.name() + " ): " + timezone);
+            SuntimesCalculator calculator = (SuntimesCalculator)calculatorConstructor(current.getReference()).newInstance();  // may fail if using proguard without exempting key classes
+            //Log.d("createCalculator", "using .oO( " + calculator.name() + " )");
+            //long bench_end = System.nanoTime();
+            //Log.d("DEBUG", "created " + calculator.name() + " :: " + ((bench_end - bench_start) / 1000000.0) + " ms");
+            return calculator;
 
         } catch (Exception e1) {
-            calculator = fallbackCalculator();
-            signalCreatedFallback(fallbackCalculatorDescriptor());
-            Log.e("createCalculator", "fail! .oO( " + current.getReference() + "), so instantiating default: " + calculator.getClass().getName() + " :: " + timezone);
+            return null;
         }
-        calculator.init(location, timezone, contextRef.get());
+    }
 
-        //long bench_end = System.nanoTime();
-        //Log.d("DEBUG", "created " + calculator.name() + " :: " + ((bench_end - bench_start) / 1000000.0) + " ms");
+    private SuntimesCalculator instantiateFallback(TimeZone timezone)
+    {
+        SuntimesCalculator calculator = fallbackCalculator();
+        signalCreatedFallback(fallbackCalculatorDescriptor());
+        Log.e("createCalculator", "fail! .oO( " + current.getReference() + "), so instantiating default: " + calculator.getClass().getName() + " :: " + timezone);
         return calculator;
     }
 
+    /**
+     * Calculator cache; a bounded (least recently used) set of initialized calculators, keyed by
+     * descriptor + location (label, lat, lon, altitude, useAltitude) + timezone.
+     */
+    public static final int MAX_CACHED_CALCULATORS = 16;
+
+    private static final LinkedHashMap<String, SuntimesCalculator> calculatorCache = new LinkedHashMap<String, SuntimesCalculator>(MAX_CACHED_CALCULATORS, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SuntimesCalculator> eldest) {
+            return size() > MAX_CACHED_CALCULATORS;
+        }
+    };
+    private static final HashMap<String, Constructor<?>> constructorCache = new HashMap<>();
+    private static long cacheHits = 0, cacheMisses = 0;
+
+    protected static String cacheKey(SuntimesCalculatorDescriptor descriptor, @Nullable Location location, @Nullable TimeZone timezone)
+    {
+        StringBuilder key = new StringBuilder(descriptor.getName()).append("|").append(descriptor.getReference());
+        if (location != null) {
+            key.append("|").append(location.getLabel()).append(",").append(location.getLatitude()).append(",").append(location.getLongitude())
+                    .append(",").append(location.getAltitude()).append(",").append(location.useAltitude());
+        } else key.append("|null");
+        if (timezone != null) {
+            key.append("|").append(timezone.getClass().getName()).append(":").append(timezone.getID()).append(":").append(timezone.getRawOffset());
+        } else key.append("|null");
+        return key.toString();
+    }
+
+    protected static Constructor<?> calculatorConstructor(String reference) throws ClassNotFoundException, NoSuchMethodException
+    {
+        synchronized (constructorCache)
+        {
+            Constructor<?> constructor = constructorCache.get(reference);
+            if (constructor == null)
+            {
+                Class<?> calculatorClass = Class.forName(reference);
+                //Log.d("createCalculator", "found class " + calculatorClass.getName());
+                constructor = calculatorClass.getConstructor();
+                constructorCache.put(reference, constructor);
+            }
+            return constructor;
+        }
+    }
+
+    /**
+     * Evicts all cached calculators (e.g. after settings change).
+     */
+    public static void clearCache()
+    {
+        synchronized (calculatorCache) {
+            calculatorCache.clear();
+        }
+    }
+
+    /**
+     * Evicts all cached calculators and constructors (e.g. after plugins are rescanned).
+     */
+    public static void clearCache(boolean clearConstructors)
+    {
+        clearCache();
+        if (clearConstructors)
+        {
+            synchronized (constructorCache) {
+                constructorCache.clear();
+            }
+        }
+    }
+
+    public static long getCacheHits()
+    {
+        synchronized (calculatorCache) {
+            return cacheHits;
+        }
+    }
+
+    public static long getCacheMisses()
+    {
+        synchronized (calculatorCache) {
+            return cacheMisses;
+        }
+    }
+
+    public static int getCacheSize()
+    {
+        synchronized (calculatorCache) {
+            return calculatorCache.size();
+        }
+    }
+
     public SuntimesCalculator fallbackCalculator()
     {
         return new com.forrestguice.suntimeswidget.calculator.sunrisesunset_java.SunriseSunsetSuntimesCalculator();
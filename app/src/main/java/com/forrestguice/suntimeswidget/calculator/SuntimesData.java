@@ -158,6 +158,37 @@ public class SuntimesData
         this.calculated = true;
     }
 
+    /**
+     * @param other another instance
+     * @return true if the other instance has the same calculator, location (and altitude setting), and timezone (its results
+     * are interchangeable)
+     */
+    public boolean hasSameSettings(SuntimesData other)
+    {
+        return other.getClass() == getClass()
+                && calculatorMode != null && other.calculatorMode() != null && calculatorMode.getName().equals(other.calculatorMode().getName())
+                && location != null && location.equals(other.location()) && location.useAltitude() == other.location().useAltitude()
+                && timezone != null && other.timezone() != null && timezone.getID().equals(other.timezone().getID());
+    }
+
+    /**
+     * @return the number of (calendar) days from day0 to day1 (in the timezone of day1)
+     */
+    public static long daysBetween(Calendar day0, Calendar day1)
+    {
+        Calendar d0 = Calendar.getInstance(day1.getTimeZone());
+        d0.setTimeInMillis(day0.getTimeInMillis());
+        Calendar d1 = (Calendar) day1.clone();
+        for (Calendar d : new Calendar[] { d0, d1 })
+        {
+            d.set(Calendar.HOUR_OF_DAY, 12);
+            d.set(Calendar.MINUTE, 0);
+            d.set(Calendar.SECOND, 0);
+            d.set(Calendar.MILLISECOND, 0);
+        }
+        return Math.round((d1.getTimeInMillis() - d0.getTimeInMillis()) / (double) DAY_MILLIS);
+    }
+
     /**
      * invalidate the calculation
      */
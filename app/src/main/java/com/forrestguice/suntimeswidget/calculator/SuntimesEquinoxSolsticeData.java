@@ -170,15 +170,8 @@ public class SuntimesEquinoxSolsticeData extends SuntimesData
         initCalculator(context);
     }
     
-    public void calculate()
+    protected void initSeasonCalculator(Context context)
     {
-        //Log.v("SuntimesWidgetData", "time mode: " + timeMode);
-        //Log.v("SuntimesWidgetData", "location_mode: " + locationMode.name());
-        //Log.v("SuntimesWidgetData", "latitude: " + location.getLatitude());
-        //Log.v("SuntimesWidgetData", "longitude: " + location.getLongitude());
-        //Log.v("SuntimesWidgetData", "timezone_mode: " + timezoneMode.name());
-        //Log.v("SuntimesWidgetData", "timezone: " + timezone);
-
         Location location0 = location;
         if (!localizeHemisphere && (location != null && location.getLatitudeAsDouble() < 0)) {      // calculator returns localized times; force northern hemisphere
             double northLatitude = Math.abs(location.getLatitudeAsDouble());                        // by passing a modified location during calculator init
@@ -186,7 +179,29 @@ public class SuntimesEquinoxSolsticeData extends SuntimesData
         }
         initCalculator(context);
         location = location0;
+    }
+
+    /**
+     * @return true if the seasons used by calculate (last year, this year, and next year) are already in the SeasonTable
+     */
+    public boolean isCached()
+    {
+        initSeasonCalculator(context);
+        Calendar date = (todayIsNotToday() ? todayIs : (timezone != null ? Calendar.getInstance(timezone) : Calendar.getInstance()));
+        int year = date.get(Calendar.YEAR);
+        return SeasonTable.contains(calculator, year - 1, year + 1);
+    }
+
+    public void calculate()
+    {
+        //Log.v("SuntimesWidgetData", "time mode: " + timeMode);
+        //Log.v("SuntimesWidgetData", "location_mode: " + locationMode.name());
+        //Log.v("SuntimesWidgetData", "latitude: " + location.getLatitude());
+        //Log.v("SuntimesWidgetData", "longitude: " + location.getLongitude());
+        //Log.v("SuntimesWidgetData", "timezone_mode: " + timezoneMode.name());
+        //Log.v("SuntimesWidgetData", "timezone: " + timezone);
 
+        initSeasonCalculator(context);
         initTimezone(context);
 
         Calendar lastYearCalendar = Calendar.getInstance(timezone);
@@ -211,14 +226,14 @@ public class SuntimesEquinoxSolsticeData extends SuntimesData
             case CROSS_SPRING:
                 if (localizeHemisphere && location.getLatitudeAsDouble() < 0)
                 {
-                    eventCalendarNextYear = midpoint(calculator.getWinterSolsticeForYear(lastYearCalendar), calculator.getSpringEquinoxForYear(lastYearCalendar));
-                    eventCalendarThisYear = midpoint(calculator.getWinterSolsticeForYear(thisYearCalendar), calculator.getSpringEquinoxForYear(thisYearCalendar));
-                    eventCalendarNextYear = midpoint(calculator.getWinterSolsticeForYear(nextYearCalendar), calculator.getSpringEquinoxForYear(nextYearCalendar));
+                    eventCalendarNextYear = midpoint(SeasonTable.getWinterSolsticeForYear(calculator, lastYearCalendar), SeasonTable.getSpringEquinoxForYear(calculator, lastYearCalendar));
+                    eventCalendarThisYear = midpoint(SeasonTable.getWinterSolsticeForYear(calculator, thisYearCalendar), SeasonTable.getSpringEquinoxForYear(calculator, thisYearCalendar));
+                    eventCalendarNextYear = midpoint(SeasonTable.getWinterSolsticeForYear(calculator, nextYearCalendar), SeasonTable.getSpringEquinoxForYear(calculator, nextYearCalendar));
 
                 } else {
                     eventCalendarLastYear = null;
-                    eventCalendarThisYear = midpoint(calculator.getWinterSolsticeForYear(lastYearCalendar), calculator.getSpringEquinoxForYear(thisYearCalendar));
-                    eventCalendarNextYear = midpoint(calculator.getWinterSolsticeForYear(thisYearCalendar), calculator.getSpringEquinoxForYear(nextYearCalendar));
+                    eventCalendarThisYear = midpoint(SeasonTable.getWinterSolsticeForYear(calculator, lastYearCalendar), SeasonTable.getSpringEquinoxForYear(calculator, thisYearCalendar));
+                    eventCalendarNextYear = midpoint(SeasonTable.getWinterSolsticeForYear(calculator, thisYearCalendar), SeasonTable.getSpringEquinoxForYear(calculator, nextYearCalendar));
                 }
                 break;
 
@@ -226,50 +241,50 @@ public class SuntimesEquinoxSolsticeData extends SuntimesData
                 if (localizeHemisphere && location.getLatitudeAsDouble() < 0)
                 {
                     eventCalendarNextYear = null;
-                    eventCalendarThisYear = midpoint(calculator.getSummerSolsticeForYear(lastYearCalendar), calculator.getAutumnalEquinoxForYear(thisYearCalendar));
-                    eventCalendarNextYear = midpoint(calculator.getSummerSolsticeForYear(thisYearCalendar), calculator.getAutumnalEquinoxForYear(nextYearCalendar));
+                    eventCalendarThisYear = midpoint(SeasonTable.getSummerSolsticeForYear(calculator, lastYearCalendar), SeasonTable.getAutumnalEquinoxForYear(calculator, thisYearCalendar));
+                    eventCalendarNextYear = midpoint(SeasonTable.getSummerSolsticeForYear(calculator, thisYearCalendar), SeasonTable.getAutumnalEquinoxForYear(calculator, nextYearCalendar));
                 } else {
-                    eventCalendarLastYear = midpoint(calculator.getSummerSolsticeForYear(lastYearCalendar), calculator.getAutumnalEquinoxForYear(lastYearCalendar));
-                    eventCalendarThisYear = midpoint(calculator.getSummerSolsticeForYear(thisYearCalendar), calculator.getAutumnalEquinoxForYear(thisYearCalendar));
-                    eventCalendarNextYear = midpoint(calculator.getSummerSolsticeForYear(nextYearCalendar), calculator.getAutumnalEquinoxForYear(nextYearCalendar));
+                    eventCalendarLastYear = midpoint(SeasonTable.getSummerSolsticeForYear(calculator, lastYearCalendar), SeasonTable.getAutumnalEquinoxForYear(calculator, lastYearCalendar));
+                    eventCalendarThisYear = midpoint(SeasonTable.getSummerSolsticeForYear(calculator, thisYearCalendar), SeasonTable.getAutumnalEquinoxForYear(calculator, thisYearCalendar));
+                    eventCalendarNextYear = midpoint(SeasonTable.getSummerSolsticeForYear(calculator, nextYearCalendar), SeasonTable.getAutumnalEquinoxForYear(calculator, nextYearCalendar));
                 }
                 break;
 
             case CROSS_SUMMER:
-                eventCalendarLastYear = midpoint(calculator.getSpringEquinoxForYear(lastYearCalendar), calculator.getSummerSolsticeForYear(lastYearCalendar));
-                eventCalendarThisYear = midpoint(calculator.getSpringEquinoxForYear(thisYearCalendar), calculator.getSummerSolsticeForYear(thisYearCalendar));
-                eventCalendarNextYear = midpoint(calculator.getSpringEquinoxForYear(nextYearCalendar), calculator.getSummerSolsticeForYear(nextYearCalendar));
+                eventCalendarLastYear = midpoint(SeasonTable.getSpringEquinoxForYear(calculator, lastYearCalendar), SeasonTable.getSummerSolsticeForYear(calculator, lastYearCalendar));
+                eventCalendarThisYear = midpoint(SeasonTable.getSpringEquinoxForYear(calculator, thisYearCalendar), SeasonTable.getSummerSolsticeForYear(calculator, thisYearCalendar));
+                eventCalendarNextYear = midpoint(SeasonTable.getSpringEquinoxForYear(calculator, nextYearCalendar), SeasonTable.getSummerSolsticeForYear(calculator, nextYearCalendar));
                 break;
 
             case CROSS_WINTER:
-                eventCalendarLastYear = midpoint(calculator.getAutumnalEquinoxForYear(lastYearCalendar), calculator.getWinterSolsticeForYear(lastYearCalendar));
-                eventCalendarThisYear = midpoint(calculator.getAutumnalEquinoxForYear(thisYearCalendar), calculator.getWinterSolsticeForYear(thisYearCalendar));
-                eventCalendarNextYear = midpoint(calculator.getAutumnalEquinoxForYear(nextYearCalendar), calculator.getWinterSolsticeForYear(nextYearCalendar));
+                eventCalendarLastYear = midpoint(SeasonTable.getAutumnalEquinoxForYear(calculator, lastYearCalendar), SeasonTable.getWinterSolsticeForYear(calculator, lastYearCalendar));
+                eventCalendarThisYear = midpoint(SeasonTable.getAutumnalEquinoxForYear(calculator, thisYearCalendar), SeasonTable.getWinterSolsticeForYear(calculator, thisYearCalendar));
+                eventCalendarNextYear = midpoint(SeasonTable.getAutumnalEquinoxForYear(calculator, nextYearCalendar), SeasonTable.getWinterSolsticeForYear(calculator, nextYearCalendar));
                 break;
 
             case EQUINOX_SPRING:
-                eventCalendarLastYear = calculator.getSpringEquinoxForYear(lastYearCalendar);
-                eventCalendarThisYear = calculator.getSpringEquinoxForYear(thisYearCalendar);
-                eventCalendarNextYear = calculator.getSpringEquinoxForYear(nextYearCalendar);
+                eventCalendarLastYear = SeasonTable.getSpringEquinoxForYear(calculator, lastYearCalendar);
+                eventCalendarThisYear = SeasonTable.getSpringEquinoxForYear(calculator, thisYearCalendar);
+                eventCalendarNextYear = SeasonTable.getSpringEquinoxForYear(calculator, nextYearCalendar);
                 break;
 
             case SOLSTICE_SUMMER:
-                eventCalendarLastYear = calculator.getSummerSolsticeForYear(lastYearCalendar);
-                eventCalendarThisYear = calculator.getSummerSolsticeForYear(thisYearCalendar);
-                eventCalendarNextYear = calculator.getSummerSolsticeForYear(nextYearCalendar);
+                eventCalendarLastYear = SeasonTable.getSummerSolsticeForYear(calculator, lastYearCalendar);
+                eventCalendarThisYear = SeasonTable.getSummerSolsticeForYear(calculator, thisYearCalendar);
+                eventCalendarNextYear = SeasonTable.getSummerSolsticeForYear(calculator, nextYearCalendar);
                 break;
 
             case EQUINOX_AUTUMNAL:
-                eventCalendarLastYear = calculator.getAutumnalEquinoxForYear(lastYearCalendar);
-                eventCalendarThisYear = calculator.getAutumnalEquinoxForYear(thisYearCalendar);
-                eventCalendarNextYear = calculator.getAutumnalEquinoxForYear(nextYearCalendar);
+                eventCalendarLastYear = SeasonTable.getAutumnalEquinoxForYear(calculator, lastYearCalendar);
+                eventCalendarThisYear = SeasonTable.getAutumnalEquinoxForYear(calculator, thisYearCalendar);
+                eventCalendarNextYear = SeasonTable.getAutumnalEquinoxForYear(calculator, nextYearCalendar);
                 break;
 
             case SOLSTICE_WINTER:
             default:
-                eventCalendarLastYear = calculator.getWinterSolsticeForYear(lastYearCalendar);
-                eventCalendarThisYear = calculator.getWinterSolsticeForYear(thisYearCalendar);
-                eventCalendarNextYear = calculator.getWinterSolsticeForYear(nextYearCalendar);
+                eventCalendarLastYear = SeasonTable.getWinterSolsticeForYear(calculator, lastYearCalendar);
+                eventCalendarThisYear = SeasonTable.getWinterSolsticeForYear(calculator, thisYearCalendar);
+                eventCalendarNextYear = SeasonTable.getWinterSolsticeForYear(calculator, nextYearCalendar);
                 break;
         }
 
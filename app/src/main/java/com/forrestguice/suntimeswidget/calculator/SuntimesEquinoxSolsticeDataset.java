@@ -174,6 +174,13 @@ public class SuntimesEquinoxSolsticeDataset
         return dataEquinoxSpring.isImplemented();
     }
 
+    /**
+     * @return true if the seasons used by calculateData are already in the SeasonTable
+     */
+    public boolean isCached() {
+        return dataEquinoxSpring.isCached();
+    }
+
     public void setTodayIs(Calendar date)
     {
         for (SuntimesEquinoxSolsticeData data : dataSolsticesEquinoxes) {
@@ -19,7 +19,9 @@
 package com.forrestguice.suntimeswidget.calculator;
 
 import android.content.Context;
+import android.support.annotation.Nullable;
 
+import com.forrestguice.suntimeswidget.calculator.core.LunarTransitSolver;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.settings.SolarEvents;
 
@@ -27,9 +29,38 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
 
+/**
+ * Moonrise/moonset, lunar noon/midnight, illumination, and phases for yesterday, today, and tomorrow.
+ *
+ * Results are evaluated lazily; calculate() only initializes the calculator and dates, and each field is calculated
+ * the first time it is requested (then memoized). Fields are tracked by FIELD_ flags along with the fields they depend
+ * on (see DEPENDENCIES); e.g. illumination requires lunar noon, and the phase of day requires the major phases.
+ * Invalidating a field also invalidates the fields that depend on it (see invalidate).
+ */
 public class SuntimesMoonData extends SuntimesMoonData0
 {
+    public static final int FIELD_RISESET_YESTERDAY = 1;
+    public static final int FIELD_RISESET_TODAY = 1 << 1;
+    public static final int FIELD_RISESET_TOMORROW = 1 << 2;
+    public static final int FIELD_MIDNIGHT = 1 << 3;          // lunar midnight today/tomorrow
+    public static final int FIELD_NOON = 1 << 4;              // lunar noon today/tomorrow
+    public static final int FIELD_ILLUMINATION = 1 << 5;      // illumination today/tomorrow (at lunar noon)
+    public static final int FIELD_PHASES = 1 << 6;            // date of next major phases
+    public static final int FIELD_PHASE_OF_DAY = 1 << 7;      // phase today/tomorrow, and next major phase
+    public static final int FIELD_RISESET = FIELD_RISESET_YESTERDAY | FIELD_RISESET_TODAY | FIELD_RISESET_TOMORROW;
+    public static final int FIELD_ALL = (1 << 8) - 1;
+
+    protected static final int[] FIELDS = new int[] {
+            FIELD_RISESET_YESTERDAY, FIELD_RISESET_TODAY, FIELD_RISESET_TOMORROW,
+            FIELD_MIDNIGHT, FIELD_NOON, FIELD_ILLUMINATION, FIELD_PHASES, FIELD_PHASE_OF_DAY
+    };
+    protected static final int[] DEPENDENCIES = new int[] {    // (by FIELDS index)
+            0, 0, 0,
+            0, 0, FIELD_NOON, 0, FIELD_PHASES    // (noon and midnight require FIELD_RISESET only when falling back to rise/set; see findTransits)
+    };
+
     private SuntimesCalculator.MoonTimes[] riseSet = new SuntimesCalculator.MoonTimes[3];  // [0] yesterday, [1] today, and [2] tomorrow
+    private int evaluated = 0;    // FIELD_ flags
 
     public SuntimesMoonData(Context context, int appWidgetId) {
         super(context, appWidgetId);
@@ -54,21 +85,18 @@ public class SuntimesMoonData extends SuntimesMoonData0
      */
     public Calendar moonriseCalendarYesterday()
     {
-        if (riseSet[0] != null)
-            return riseSet[0].riseTime;
-        else return null;
+        SuntimesCalculator.MoonTimes times = moonTimes(0);
+        return (times != null ? times.riseTime : null);
     }
     public Calendar moonriseCalendarToday()
     {
-        if (riseSet[1] != null)
-            return riseSet[1].riseTime;
-        else return null;
+        SuntimesCalculator.MoonTimes times = moonTimes(1);
+        return (times != null ? times.riseTime : null);
     }
     public Calendar moonriseCalendarTomorrow()
     {
-        if (riseSet[2] != null)
-            return riseSet[2].riseTime;
-        else return null;
+        SuntimesCalculator.MoonTimes times = moonTimes(2);
+        return (times != null ? times.riseTime : null);
     }
 
     /**
@@ -76,21 +104,27 @@ public class SuntimesMoonData extends SuntimesMoonData0
      */
     public Calendar moonsetCalendarYesterday()
     {
-        if (riseSet[0] != null)
-            return riseSet[0].setTime;
-        else return null;
+        SuntimesCalculator.MoonTimes times = moonTimes(0);
+        return (times != null ? times.setTime : null);
     }
     public Calendar moonsetCalendarToday()
     {
-        if (riseSet[1] != null)
-            return riseSet[1].setTime;
-        else return null;
+        SuntimesCalculator.MoonTimes times = moonTimes(1);
+        return (times != null ? times.setTime : null);
     }
     public Calendar moonsetCalendarTomorrow()
     {
-        if (riseSet[2] != null)
-            return riseSet[2].setTime;
-        else return null;
+        SuntimesCalculator.MoonTimes times = moonTimes(2);
+        return (times != null ? times.setTime : null);
+    }
+
+    /**
+     * @param i 0 yesterday, 1 today, 2 tomorrow
+     */
+    protected SuntimesCalculator.MoonTimes moonTimes(int i)
+    {
+        require(FIELDS[i]);
+        return riseSet[i];
     }
 
     /**
@@ -99,11 +133,13 @@ public class SuntimesMoonData extends SuntimesMoonData0
     private double moonIlluminationToday;
     public double getMoonIlluminationToday()
     {
+        require(FIELD_ILLUMINATION);
         return moonIlluminationToday;
     }
     private double moonIlluminationTomorrow;
     public double getMoonIlluminationTomorrow()
     {
+        require(FIELD_ILLUMINATION);
         return moonIlluminationTomorrow;
     }
     public double getMoonIlluminationNow()
@@ -119,18 +155,26 @@ public class SuntimesMoonData extends SuntimesMoonData0
      * result: moon transit time
      */
     private Calendar noonToday, noonTomorrow;
-    public Calendar getLunarNoonToday() {
+    public Calendar getLunarNoonToday()
+    {
+        require(FIELD_NOON);
         return noonToday;
     }
-    public Calendar getLunarNoonTomorrow() {
+    public Calendar getLunarNoonTomorrow()
+    {
+        require(FIELD_NOON);
         return noonTomorrow;
     }
 
     private Calendar midnightToday, midnightTomorrow;
-    public Calendar getLunarMidnightToday() {
+    public Calendar getLunarMidnightToday()
+    {
+        require(FIELD_MIDNIGHT);
         return midnightToday;
     }
-    public Calendar getLunarMidnightTomorrow() {
+    public Calendar getLunarMidnightTomorrow()
+    {
+        require(FIELD_MIDNIGHT);
         return midnightTomorrow;
     }
 
@@ -140,6 +184,7 @@ public class SuntimesMoonData extends SuntimesMoonData0
     private MoonPhaseDisplay moonPhaseToday;
     public MoonPhaseDisplay getMoonPhaseToday()
     {
+        require(FIELD_PHASE_OF_DAY);
         return moonPhaseToday;
     }
 
@@ -149,6 +194,7 @@ public class SuntimesMoonData extends SuntimesMoonData0
     private MoonPhaseDisplay moonPhaseTomorrow;
     public MoonPhaseDisplay getMoonPhaseTomorrow()
     {
+        require(FIELD_PHASE_OF_DAY);
         return moonPhaseTomorrow;
     }
 
@@ -158,6 +204,7 @@ public class SuntimesMoonData extends SuntimesMoonData0
     private SuntimesCalculator.MoonPhase moonPhaseNext;
     public SuntimesCalculator.MoonPhase getMoonPhaseNext()
     {
+        require(FIELD_PHASE_OF_DAY);
         return moonPhaseNext;
     }
 
@@ -167,6 +214,7 @@ public class SuntimesMoonData extends SuntimesMoonData0
     private HashMap<SuntimesCalculator.MoonPhase, Calendar> moonPhases = new HashMap<>(4);
     public Calendar moonPhaseCalendar(SuntimesCalculator.MoonPhase phase)
     {
+        require(FIELD_PHASES);
         if (moonPhases.containsKey(phase))
         {
             return moonPhases.get(phase);
@@ -198,17 +246,144 @@ public class SuntimesMoonData extends SuntimesMoonData0
     private void initFromOther( SuntimesMoonData other )
     {
         super.initFromOther(other);
-        this.riseSet = other.riseSet;
-        this.moonIlluminationToday = other.moonIlluminationToday;
-        this.moonPhases = new HashMap<>(other.moonPhases);
-        this.moonPhaseToday = other.moonPhaseToday;
+        synchronized (other)
+        {
+            this.todaysCalendar = other.todaysCalendar;    // (fields that haven't been evaluated yet are calculated by the copy)
+            this.otherCalendar = other.otherCalendar;
+            this.otherCalendar0 = other.otherCalendar0;
+            this.riseSet = other.riseSet.clone();
+            this.moonIlluminationToday = other.moonIlluminationToday;
+            this.moonIlluminationTomorrow = other.moonIlluminationTomorrow;
+            this.noonToday = other.noonToday;
+            this.noonTomorrow = other.noonTomorrow;
+            this.midnightToday = other.midnightToday;
+            this.midnightTomorrow = other.midnightTomorrow;
+            this.moonPhases = new HashMap<>(other.moonPhases);
+            this.moonPhaseToday = other.moonPhaseToday;
+            this.moonPhaseTomorrow = other.moonPhaseTomorrow;
+            this.moonPhaseNext = other.moonPhaseNext;
+            this.evaluated = other.evaluated;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @param fields FIELD_ flags
+     * @return true if the fields have already been evaluated
+     */
+    public synchronized boolean isEvaluated(int fields) {
+        return (evaluated & fields) == fields;
+    }
+
+    /**
+     * Evaluates the given fields (and the fields they depend on) if they haven't been evaluated already.
+     * Does nothing if the data hasn't been calculated (see calculate).
+     * @param fields FIELD_ flags
+     */
+    public synchronized void require(int fields)
+    {
+        if ((evaluated & fields) == fields || !isCalculated() || calculator == null || todaysCalendar == null) {
+            return;
+        }
+        for (int i=0; i<FIELDS.length; i++)
+        {
+            if ((fields & FIELDS[i]) != 0 && (evaluated & FIELDS[i]) == 0)
+            {
+                require(DEPENDENCIES[i]);
+                evaluate(FIELDS[i]);
+                evaluated |= FIELDS[i];
+            }
+        }
+    }
+
+    /**
+     * Invalidates the given fields, and the fields that depend on them (so they are evaluated again when next required).
+     * @param fields FIELD_ flags
+     */
+    protected synchronized void invalidate(int fields)
+    {
+        int invalid = fields;
+        for (int i=0; i<FIELDS.length; i++) {    // (fields are ordered after their dependencies)
+            if ((DEPENDENCIES[i] & invalid) != 0) {
+                invalid |= FIELDS[i];
+            }
+        }
+        evaluated &= ~invalid;
+    }
+
+    protected void evaluate(int field)
+    {
+        switch (field)
+        {
+            case FIELD_RISESET_YESTERDAY: riseSet[0] = calculator.getMoonTimesForDate(otherCalendar0); break;
+            case FIELD_RISESET_TODAY: riseSet[1] = calculator.getMoonTimesForDate(todaysCalendar); break;
+            case FIELD_RISESET_TOMORROW: riseSet[2] = calculator.getMoonTimesForDate(otherCalendar); break;
+            case FIELD_MIDNIGHT: calculateMidnight(); break;
+            case FIELD_NOON: calculateNoon(); break;
+            case FIELD_ILLUMINATION: calculateIllumination(); break;
+            case FIELD_PHASES: calculatePhases(midnight()); break;
+            case FIELD_PHASE_OF_DAY: calculatePhaseOfDay(midnight()); break;
+        }
     }
 
     /**
      * calculate
+     * Initializes the calculation; results are calculated when they are first requested (see require).
      */
     @Override
     public void calculate()
+    {
+        initCalculation();
+        synchronized (this)
+        {
+            riseSet = new SuntimesCalculator.MoonTimes[3];
+            moonPhases = new HashMap<>(4);
+            invalidate(FIELD_ALL);
+        }
+    }
+
+    /**
+     * Calculate, reusing the results of a previous calculation (with the same settings) when it is for the same day, or
+     * the day before (in which case only the newly exposed day is calculated). Otherwise the same as calculate().
+     * @param previous a previously calculated instance (may be null)
+     * @return true previous results were reused, false a full calculation was performed
+     */
+    public boolean calculate(@Nullable SuntimesMoonData previous)
+    {
+        if (previous != null && previous != this && previous.isCalculated() && previous.calendar() != null && hasSameSettings(previous))
+        {
+            initCalculation();
+            long days = daysBetween(previous.calendar(), todaysCalendar);
+            if (days == 0 || days == 1)
+            {
+                SuntimesCalculator.MoonTimes[] previousRiseSet;
+                int previousEvaluated;
+                synchronized (previous)
+                {
+                    previousRiseSet = previous.riseSet.clone();
+                    previousEvaluated = previous.evaluated;
+                    moonPhases = new HashMap<>(previous.moonPhases);
+                }
+                synchronized (this)
+                {
+                    evaluated = 0;
+                    if (days == 0) {
+                        updateCalculation(previousRiseSet, previousEvaluated & FIELD_RISESET);
+                    } else updateCalculation(new SuntimesCalculator.MoonTimes[] { previousRiseSet[1], previousRiseSet[2], null }, shiftRiseSet(previousEvaluated));
+                }
+                return true;
+            }
+        }
+        calculate();
+        return false;
+    }
+
+    /**
+     * Initializes the calculator, timezone, and dates; the first step of calculate.
+     */
+    protected void initCalculation()
     {
         super.calculate();
 
@@ -228,11 +403,91 @@ public class SuntimesMoonData extends SuntimesMoonData0
 
         date = todaysCalendar.getTime();
         dateOther = otherCalendar.getTime();
+    }
+
+    /**
+     * Advances the calculation by one day. The moonrise/moonset of today and tomorrow are shifted (the new tomorrow is
+     * calculated when required), and major phases are only recalculated after they have passed.
+     * @return true if advanced, false if not yet calculated (calculate should be used instead)
+     */
+    public synchronized boolean advanceDay()
+    {
+        if (!isCalculated() || calculator == null || todaysCalendar == null || otherCalendar == null || otherCalendar0 == null) {
+            return false;
+        }
+
+        if (todayIs != null)
+        {
+            todayIs = (Calendar) todayIs.clone();
+            todayIs.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        otherCalendar0 = todaysCalendar;
+        todaysCalendar = otherCalendar;
+        otherCalendar = (Calendar) otherCalendar.clone();
+        otherCalendar.add(Calendar.DAY_OF_MONTH, 1);
+        date = todaysCalendar.getTime();
+        dateOther = otherCalendar.getTime();
+
+        updateCalculation(new SuntimesCalculator.MoonTimes[] { riseSet[1], riseSet[2], null }, shiftRiseSet(evaluated));
+        return true;
+    }
+
+    /**
+     * @param flags FIELD_ flags (of the previous day)
+     * @return the FIELD_RISESET flags after shifting by one day (today becomes yesterday, tomorrow becomes today)
+     */
+    protected static int shiftRiseSet(int flags)
+    {
+        return ((flags & FIELD_RISESET_TODAY) != 0 ? FIELD_RISESET_YESTERDAY : 0)
+             | ((flags & FIELD_RISESET_TOMORROW) != 0 ? FIELD_RISESET_TODAY : 0);
+    }
+
+    /**
+     * Replaces the moonrise/moonset times and invalidates the fields that depend on them; major phases are kept (they are
+     * recalculated only after they have passed; see calculatePhases).
+     * @param riseSet moonrise/moonset yesterday, today, and tomorrow (a new array; riseSet may be shared by copies)
+     * @param riseSetEvaluated FIELD_RISESET flags of the riseSet values that are valid
+     */
+    protected synchronized void updateCalculation(SuntimesCalculator.MoonTimes[] riseSet, int riseSetEvaluated)
+    {
+        this.riseSet = riseSet;
+        noonToday = noonTomorrow = midnightToday = midnightTomorrow = null;
+        invalidate(FIELD_ALL);
+        evaluated |= (riseSetEvaluated & FIELD_RISESET);
+    }
+
+    /**
+     * Finds the date of the next major phases; existing dates are kept until they have passed.
+     * @param after midnight today
+     */
+    protected void calculatePhases(Calendar after)
+    {
+        MoonEventTable table = moonTable();
+        for (SuntimesCalculator.MoonPhase phase : SuntimesCalculator.MoonPhase.values())
+        {
+            Calendar phaseDate = moonPhases.get(phase);
+            if (phaseDate == null || !phaseDate.after(after)) {
+                moonPhases.put(phase, MoonEventTable.nextPhase(table, calculator, phase, after));
+            }
+        }
+    }
 
-        riseSet[0] = calculator.getMoonTimesForDate(otherCalendar0);
-        riseSet[1] = calculator.getMoonTimesForDate(todaysCalendar);
-        riseSet[2] = calculator.getMoonTimesForDate(otherCalendar);
+    /**
+     * Finds lunar midnight for today and tomorrow (lower culmination); falls back to the midpoint of the moonset/moonrise
+     * times when the calculator doesn't provide moon positions.
+     */
+    protected void calculateMidnight()
+    {
+        midnightToday = midnightTomorrow = null;
+        Calendar[] transits = findTransits(false);
+        if (transits != null)
+        {
+            midnightToday = transits[0];
+            midnightTomorrow = transits[1];
+            return;
+        }
 
+        require(FIELD_RISESET);
         ArrayList<Calendar> midnights = findMidnight();
         if (midnights.size() > 0)
         {
@@ -254,7 +509,24 @@ public class SuntimesMoonData extends SuntimesMoonData0
             midnightTomorrow.add(Calendar.MINUTE, 50);   // approximate noon tomorrow
             //Log.d("DEBUG", "using approximate lunar noon tomorrow");
         }
+    }
 
+    /**
+     * Finds lunar noon for today and tomorrow (upper culmination); falls back to the midpoint of the moonrise/moonset
+     * times when the calculator doesn't provide moon positions.
+     */
+    protected void calculateNoon()
+    {
+        noonToday = noonTomorrow = null;
+        Calendar[] transits = findTransits(true);
+        if (transits != null)
+        {
+            noonToday = transits[0];
+            noonTomorrow = transits[1];
+            return;
+        }
+
+        require(FIELD_RISESET);
         ArrayList<Calendar> noons = findNoon();
         if (noons.size() > 0)
         {
@@ -276,7 +548,35 @@ public class SuntimesMoonData extends SuntimesMoonData0
             noonTomorrow.add(Calendar.MINUTE, 50);   // approximate noon tomorrow
             //Log.d("DEBUG", "using approximate lunar noon tomorrow");
         }
+    }
+
+    /**
+     * Finds the next two transits (on or after midnight today) from the moon's hour angle (see LunarTransitSolver).
+     * @param upper true lunar noon, false lunar midnight
+     * @return [first transit, following transit], or null if moon positions are unavailable
+     */
+    @Nullable
+    protected Calendar[] findTransits(boolean upper)
+    {
+        LunarTransitSolver solver = new LunarTransitSolver();
+        LunarTransitSolver.MoonHourAngle hourAngle = new LunarTransitSolver.MoonHourAngle(calculator);
+        long t0 = solver.nextTransit(hourAngle, upper, midnight().getTimeInMillis());
+        long t1 = (t0 != LunarTransitSolver.NO_TRANSIT ? solver.nextTransit(hourAngle, upper, t0 + 12 * 60 * 60 * 1000) : LunarTransitSolver.NO_TRANSIT);
+        if (t1 == LunarTransitSolver.NO_TRANSIT) {
+            return null;
+        }
 
+        Calendar[] transits = new Calendar[] { Calendar.getInstance(timezone), Calendar.getInstance(timezone) };
+        transits[0].setTimeInMillis(t0);
+        transits[1].setTimeInMillis(t1);
+        return transits;
+    }
+
+    /**
+     * Finds the illumination of today and tomorrow (at lunar noon).
+     */
+    protected void calculateIllumination()
+    {
         double moonIllumination = getMoonIllumination(noonToday, todaysCalendar);
         if (moonIllumination >= 0) {
             this.moonIlluminationToday = moonIllumination;
@@ -286,11 +586,14 @@ public class SuntimesMoonData extends SuntimesMoonData0
         if (moonIllumination1 >= 0) {
             this.moonIlluminationTomorrow = moonIllumination1;
         }
+    }
 
-        Calendar after = midnight();
-        for (SuntimesCalculator.MoonPhase phase : SuntimesCalculator.MoonPhase.values()) {
-            moonPhases.put(phase, calculator.getMoonPhaseNextDate(phase, after));
-        }
+    /**
+     * Finds the phase of today and tomorrow (requires FIELD_PHASES).
+     * @param after midnight today
+     */
+    protected void calculatePhaseOfDay(Calendar after)
+    {
         moonPhaseToday = findPhaseOf(after, true);
 
         Calendar midnight1 = (Calendar)after.clone();
@@ -380,7 +683,9 @@ public class SuntimesMoonData extends SuntimesMoonData0
      * @param calendar a date/time
      * @return the next major phase occurring after the supplied date/time
      */
-    public SuntimesCalculator.MoonPhase nextPhase(Calendar calendar) {
+    public SuntimesCalculator.MoonPhase nextPhase(Calendar calendar)
+    {
+        require(FIELD_PHASES);
         return nextPhase(moonPhases, calendar);
     }
 
@@ -401,7 +706,7 @@ public class SuntimesMoonData extends SuntimesMoonData0
      */
     protected MoonPhaseDisplay findPhaseOf(Calendar calendar, boolean updateNext)
     {
-        SuntimesCalculator.MoonPhase nextPhase = nextPhase(calendar);
+        SuntimesCalculator.MoonPhase nextPhase = nextPhase(calendar);    // (requires FIELD_PHASES)
         if (updateNext) {
             this.moonPhaseNext = nextPhase;
         }
@@ -20,6 +20,7 @@ package com.forrestguice.suntimeswidget.calculator;
 
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Pair;
 
 import com.forrestguice.suntimeswidget.R;
@@ -70,12 +71,24 @@ public class SuntimesMoonData0 extends SuntimesData
         };
     }
 
+    /**
+     * @return the precomputed phase/apsis table for this data's calculator; null if unavailable (the table is created in the background).
+     */
+    @Nullable
+    public MoonEventTable moonTable()
+    {
+        if (context == null || calculator == null || calculatorMode == null) {
+            return null;
+        }
+        return MoonEventTable.getTable(context, calculator, calculatorMode);
+    }
+
     /**
      * @return the date and position (Pair) of the upcoming lunar apogee.
      */
     public Pair<Calendar, SuntimesCalculator.MoonPosition> getMoonApogee()
     {
-        Calendar apogeeDate = calculator.getMoonApogeeNextDate(todaysCalendar);
+        Calendar apogeeDate = MoonEventTable.nextApogee(moonTable(), calculator, todaysCalendar);
         if (apogeeDate != null) {
             SuntimesCalculator.MoonPosition apogeePosition = calculator.getMoonPosition(apogeeDate);
             return new Pair<>(apogeeDate, apogeePosition);
@@ -87,7 +100,7 @@ public class SuntimesMoonData0 extends SuntimesData
      */
     public Pair<Calendar, SuntimesCalculator.MoonPosition> getMoonPerigee()
     {
-        Calendar perigeeDate = calculator.getMoonPerigeeNextDate(todaysCalendar);
+        Calendar perigeeDate = MoonEventTable.nextPerigee(moonTable(), calculator, todaysCalendar);
         if (perigeeDate != null) {
             SuntimesCalculator.MoonPosition perigeePosition = calculator.getMoonPosition(perigeeDate);
             return new Pair<>(perigeeDate, perigeePosition);
@@ -68,8 +68,9 @@ public class SuntimesMoonData1 extends SuntimesMoonData0
         super.calculate();
 
         Calendar after = (Calendar)todaysCalendar.clone();
+        MoonEventTable table = moonTable();
         for (SuntimesCalculator.MoonPhase phase : SuntimesCalculator.MoonPhase.values()) {
-            moonPhases.put(phase, calculator.getMoonPhaseNextDate(phase, after));
+            moonPhases.put(phase, MoonEventTable.nextPhase(table, calculator, phase, after));
         }
     }
 
@@ -21,13 +21,17 @@ package com.forrestguice.suntimeswidget.calculator;
 import android.content.Context;
 import android.net.Uri;
 import android.util.Log;
+import android.support.annotation.Nullable;
 
 import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.alarmclock.AlarmEventProvider;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculator;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculatorBridge;
 import com.forrestguice.suntimeswidget.events.EventSettings;
 import com.forrestguice.suntimeswidget.settings.WidgetSettings;
 
 import java.util.Calendar;
+import java.util.GregorianCalendar;
 
 public class SuntimesRiseSetData extends SuntimesData
 {
@@ -267,6 +271,7 @@ public class SuntimesRiseSetData extends SuntimesData
         this.timeMode = other.timeMode();
         this.angle = other.angle;
         this.offset = other.offset;
+        this.useEventTable = other.useEventTable;
 
         this.sunriseCalendarToday = other.sunriseCalendarToday();
         this.sunsetCalendarToday = other.sunsetCalendarToday();
@@ -310,10 +315,9 @@ public class SuntimesRiseSetData extends SuntimesData
     }
 
     /**
-     * Calculate
+     * Initializes the calculator, timezone, and dates; the first step of calculate.
      */
-    @Override
-    public void calculate()
+    public void initCalculation()
     {
         //Log.v("SuntimesWidgetData", "time mode: " + timeMode);
         //Log.v("SuntimesWidgetData", "location_mode: " + locationMode.name());
@@ -324,6 +328,14 @@ public class SuntimesRiseSetData extends SuntimesData
         //Log.v("SuntimesWidgetData", "compare mode: " + compareMode.name());
 
         initCalculator(context);
+        initCalendars();
+    }
+
+    /**
+     * Initializes the timezone and dates (but not the calculator); see initCalculation.
+     */
+    protected void initCalendars()
+    {
         initTimezone(context);
 
         todaysCalendar = Calendar.getInstance(timezone);
@@ -351,73 +363,377 @@ public class SuntimesRiseSetData extends SuntimesData
 
         date = todaysCalendar.getTime();
         dateOther = otherCalendar.getTime();
+    }
+
+    /**
+     * Calculate
+     */
+    @Override
+    public void calculate()
+    {
+        initCalculation();
+        Calendar[] eventsToday = calculateEvents(todaysCalendar);
+        Calendar[] eventsOther = calculateEvents(otherCalendar);
+        setEvents(eventsToday[0], eventsToday[1], eventsOther[0], eventsOther[1]);
+    }
+
+    /**
+     * Calculate, reusing the results of a previous calculation (with the same settings) when it is for the same day, or
+     * the day before (in which case it is advanced; only the newly exposed day is calculated). Otherwise the same as calculate().
+     * @param previous a previously calculated instance (may be null)
+     * @return true previous results were reused, false a full calculation was performed
+     */
+    public boolean calculate(@Nullable SuntimesRiseSetData previous)
+    {
+        initCalculation();
+        if (calculate(previous, null, 0)) {
+            return true;
+        }
+        calculate();
+        return false;
+    }
+
+    /**
+     * Completes the calculation from the results of a previous calculation (initCalculation should be called first).
+     * @param previous a previously calculated instance (for this day, or the day before)
+     * @param events day events for the newly exposed day (see exposedDay), or null (calculated individually)
+     * @param i index of this data's angle (see dayEventAngle), or -1 (solar noon)
+     * @return true if calculated, false if the previous results are unusable (nothing was changed)
+     */
+    public boolean calculate(@Nullable SuntimesRiseSetData previous, @Nullable long[] events, int i)
+    {
+        if (previous == null || previous == this || !previous.isCalculated() || previous.calendar() == null || todaysCalendar == null || !hasSameSettings(previous)) {
+            return false;
+        }
+
+        long days = daysBetween(previous.calendar(), todaysCalendar);
+        if (days != 0 && days != 1) {
+            return false;
+        }
+
+        reuseResults(previous);
+        if (days == 1) {
+            shiftEvents(applyOffset(events != null ? toEvents(events, i) : calculateEvents(exposedDay())));
+        }
+        updateDayLength();
+        super.calculate();
+        return true;
+    }
+
+    /**
+     * @return the results (millis, or SuntimesBatchCalculator.NO_EVENT); see restoreResults
+     */
+    public long[] getResults() {
+        return toMillis(sunriseCalendarToday, sunsetCalendarToday, sunriseCalendarOther, sunsetCalendarOther);
+    }
+
+    /**
+     * Restores the results of a previous calculation for the same day and settings (e.g. from a cache) without using the
+     * calculator; the dates and timezone are initialized, the calculator is not (calculator() remains null until calculated).
+     * @param values results (see getResults)
+     * @return true if restored, false if values is unusable (nothing was changed)
+     */
+    public boolean restoreResults(long[] values)
+    {
+        if (values.length != 4) {
+            return false;
+        }
+        initCalendars();
+        sunriseCalendarToday = toCalendar(values[0]);
+        sunsetCalendarToday = toCalendar(values[1]);
+        sunriseCalendarOther = toCalendar(values[2]);
+        sunsetCalendarOther = toCalendar(values[3]);
+        updateDayLength();
+        super.calculate();
+        return true;
+    }
+
+    protected static long[] toMillis(Calendar... events)
+    {
+        long[] values = new long[events.length];
+        for (int i=0; i<events.length; i++) {
+            values[i] = (events[i] != null ? events[i].getTimeInMillis() : SuntimesBatchCalculator.NO_EVENT);
+        }
+        return values;
+    }
+
+    /**
+     * Advances the calculation by one day. Results for the day that remains in view are shifted (tomorrow becomes today,
+     * or today becomes yesterday), so only the newly exposed day is calculated.
+     * @return true if advanced, false if not yet calculated (calculate should be used instead)
+     */
+    public boolean advanceDay() {
+        return advanceDay(null, 0);
+    }
+
+    /**
+     * Advances the calculation by one day using the results of SuntimesBatchCalculator.getDayEvents (for the newly exposed day).
+     * @param events day events for the day after exposedDay() (the newly exposed day), or null (calculated individually)
+     * @param i index of this data's angle (see dayEventAngle), or -1 (solar noon)
+     * @return true if advanced, false if not yet calculated
+     */
+    public boolean advanceDay(@Nullable long[] events, int i)
+    {
+        if (!isCalculated() || calculator == null || todaysCalendar == null || otherCalendar == null) {
+            return false;
+        }
+        advanceCalendars();
+        shiftEvents(applyOffset(events != null ? toEvents(events, i) : calculateEvents(exposedDay())));
+        updateDayLength();
+        return true;
+    }
+
+    /**
+     * @return the last day in view (the day that is calculated when advancing)
+     */
+    public Calendar exposedDay() {
+        return (compareMode == WidgetSettings.CompareMode.YESTERDAY ? todaysCalendar : otherCalendar);
+    }
+
+    /**
+     * @param other another instance
+     * @return true if the other instance has the same calculator, location, timezone, and mode (its results are interchangeable)
+     */
+    @Override
+    public boolean hasSameSettings(SuntimesData other)
+    {
+        if (!super.hasSameSettings(other)) {
+            return false;
+        }
+        SuntimesRiseSetData that = (SuntimesRiseSetData) other;
+        return timeMode == that.timeMode && compareMode == that.compareMode && offset == that.offset
+                && (angle == null ? that.angle == null : angle.equals(that.angle));
+    }
+
+    /**
+     * Advances todayIs (if set) and the calendars by one day.
+     */
+    protected void advanceCalendars()
+    {
+        if (todayIs != null)
+        {
+            todayIs = (Calendar) todayIs.clone();
+            todayIs.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        todaysCalendar = (Calendar) todaysCalendar.clone();
+        todaysCalendar.add(Calendar.DAY_OF_MONTH, 1);
+        otherCalendar = (Calendar) otherCalendar.clone();
+        otherCalendar.add(Calendar.DAY_OF_MONTH, 1);
+        date = todaysCalendar.getTime();
+        dateOther = otherCalendar.getTime();
+    }
+
+    /**
+     * Copies the results of another instance (same settings, same day).
+     */
+    protected void reuseResults(SuntimesRiseSetData previous)
+    {
+        sunriseCalendarToday = previous.sunriseCalendarToday;
+        sunsetCalendarToday = previous.sunsetCalendarToday;
+        sunriseCalendarOther = previous.sunriseCalendarOther;
+        sunsetCalendarOther = previous.sunsetCalendarOther;
+    }
 
-        if (angle != null)
+    /**
+     * Shifts results by one day (calendars should already be advanced).
+     * @param events { rising, setting } on the newly exposed day (see exposedDay)
+     */
+    protected void shiftEvents(Calendar[] events)
+    {
+        if (compareMode == WidgetSettings.CompareMode.YESTERDAY)
         {
-            sunriseCalendarToday = calculator.getSunriseCalendarForDate(todaysCalendar, angle);
-            sunsetCalendarToday = calculator.getSunsetCalendarForDate(todaysCalendar, angle);
-            sunriseCalendarOther = calculator.getSunriseCalendarForDate(otherCalendar, angle);
-            sunsetCalendarOther = calculator.getSunsetCalendarForDate(otherCalendar, angle);
+            sunriseCalendarOther = sunriseCalendarToday;
+            sunsetCalendarOther = sunsetCalendarToday;
+            sunriseCalendarToday = events[0];
+            sunsetCalendarToday = events[1];
 
         } else {
-            switch (timeMode)
-            {
-                case GOLD:
-                    sunriseCalendarToday = calculator.getMorningGoldenHourForDate(todaysCalendar);
-                    sunsetCalendarToday = calculator.getEveningGoldenHourForDate(todaysCalendar);
-                    sunriseCalendarOther = calculator.getMorningGoldenHourForDate(otherCalendar);
-                    sunsetCalendarOther = calculator.getEveningGoldenHourForDate(otherCalendar);
-                    break;
-
-                case BLUE8:
-                    sunriseCalendarToday = calculator.getMorningBlueHourForDate(todaysCalendar)[0];
-                    sunsetCalendarToday = calculator.getEveningBlueHourForDate(todaysCalendar)[1];
-                    sunriseCalendarOther = calculator.getMorningBlueHourForDate(otherCalendar)[0];
-                    sunsetCalendarOther = calculator.getEveningBlueHourForDate(otherCalendar)[1];
-                    break;
-
-                case BLUE4:
-                    sunriseCalendarToday = calculator.getMorningBlueHourForDate(todaysCalendar)[1];
-                    sunsetCalendarToday = calculator.getEveningBlueHourForDate(todaysCalendar)[0];
-                    sunriseCalendarOther = calculator.getMorningBlueHourForDate(otherCalendar)[1];
-                    sunsetCalendarOther = calculator.getEveningBlueHourForDate(otherCalendar)[0];
-                    break;
-
-                case NOON:
-                    sunriseCalendarToday = sunsetCalendarToday = calculator.getSolarNoonCalendarForDate(todaysCalendar);
-                    sunriseCalendarOther = sunsetCalendarOther = calculator.getSolarNoonCalendarForDate(otherCalendar);
-                    break;
-
-                case CIVIL:
-                    sunriseCalendarToday = calculator.getCivilSunriseCalendarForDate(todaysCalendar);
-                    sunsetCalendarToday = calculator.getCivilSunsetCalendarForDate(todaysCalendar);
-                    sunriseCalendarOther = calculator.getCivilSunriseCalendarForDate(otherCalendar);
-                    sunsetCalendarOther = calculator.getCivilSunsetCalendarForDate(otherCalendar);
-                    break;
-
-                case NAUTICAL:
-                    sunriseCalendarToday = calculator.getNauticalSunriseCalendarForDate(todaysCalendar);
-                    sunsetCalendarToday = calculator.getNauticalSunsetCalendarForDate(todaysCalendar);
-                    sunriseCalendarOther = calculator.getNauticalSunriseCalendarForDate(otherCalendar);
-                    sunsetCalendarOther = calculator.getNauticalSunsetCalendarForDate(otherCalendar);
-                    break;
-
-                case ASTRONOMICAL:
-                    sunriseCalendarToday = calculator.getAstronomicalSunriseCalendarForDate(todaysCalendar);
-                    sunsetCalendarToday = calculator.getAstronomicalSunsetCalendarForDate(todaysCalendar);
-                    sunriseCalendarOther = calculator.getAstronomicalSunriseCalendarForDate(otherCalendar);
-                    sunsetCalendarOther = calculator.getAstronomicalSunsetCalendarForDate(otherCalendar);
-                    break;
-
-                case OFFICIAL:
-                default:
-                    sunriseCalendarToday = calculator.getOfficialSunriseCalendarForDate(todaysCalendar);
-                    sunsetCalendarToday = calculator.getOfficialSunsetCalendarForDate(todaysCalendar);
-                    sunriseCalendarOther = calculator.getOfficialSunriseCalendarForDate(otherCalendar);
-                    sunsetCalendarOther = calculator.getOfficialSunsetCalendarForDate(otherCalendar);
-                    break;
+            sunriseCalendarToday = sunriseCalendarOther;
+            sunsetCalendarToday = sunsetCalendarOther;
+            sunriseCalendarOther = events[0];
+            sunsetCalendarOther = events[1];
+        }
+    }
+
+    protected void updateDayLength()
+    {
+        dayLengthToday = determineDayLength(sunriseCalendarToday, sunsetCalendarToday);
+        dayLengthOther = determineDayLength(sunriseCalendarOther, sunsetCalendarOther);
+    }
+
+    /**
+     * @param day the day to calculate
+     * @return { rising, setting } without offset; the same Calendar for both (TimeMode.NOON)
+     */
+    protected Calendar[] calculateEvents(Calendar day)
+    {
+        Calendar[] events = tableEvents(day);
+        if (events != null) {
+            return events;
+        }
+
+        if (angle != null) {
+            return new Calendar[] { calculator.getSunriseCalendarForDate(day, angle), calculator.getSunsetCalendarForDate(day, angle) };
+        }
+
+        switch (timeMode)
+        {
+            case GOLD:
+                return new Calendar[] { calculator.getMorningGoldenHourForDate(day), calculator.getEveningGoldenHourForDate(day) };
+
+            case BLUE8:
+                return new Calendar[] { calculator.getMorningBlueHourForDate(day)[0], calculator.getEveningBlueHourForDate(day)[1] };
+
+            case BLUE4:
+                return new Calendar[] { calculator.getMorningBlueHourForDate(day)[1], calculator.getEveningBlueHourForDate(day)[0] };
+
+            case NOON:
+                Calendar noon = calculator.getSolarNoonCalendarForDate(day);
+                return new Calendar[] { noon, noon };
+
+            case CIVIL:
+                return new Calendar[] { calculator.getCivilSunriseCalendarForDate(day), calculator.getCivilSunsetCalendarForDate(day) };
+
+            case NAUTICAL:
+                return new Calendar[] { calculator.getNauticalSunriseCalendarForDate(day), calculator.getNauticalSunsetCalendarForDate(day) };
+
+            case ASTRONOMICAL:
+                return new Calendar[] { calculator.getAstronomicalSunriseCalendarForDate(day), calculator.getAstronomicalSunsetCalendarForDate(day) };
+
+            case OFFICIAL:
+            default:
+                return new Calendar[] { calculator.getOfficialSunriseCalendarForDate(day), calculator.getOfficialSunsetCalendarForDate(day) };
+        }
+    }
+
+    /**
+     * @param day the day to look up
+     * @return { rising, setting } from the event table (see eventTable), or null if the table is unavailable
+     */
+    @Nullable
+    protected Calendar[] tableEvents(Calendar day)
+    {
+        SunEventTable table = eventTable();
+        int i = (table != null ? table.indexOf(day) : -1);
+        if (i < 0) {
+            return null;
+        }
+
+        Double angle = dayEventAngle();
+        if (angle == null)
+        {
+            Calendar noon = toCalendar(table.getEventTime(i, SuntimesBatchCalculator.EVENT_SOLAR_NOON));
+            return new Calendar[] { noon, noon };
+        }
+
+        int rising = SuntimesBatchCalculatorBridge.toEvent(angle, true);
+        int setting = SuntimesBatchCalculatorBridge.toEvent(angle, false);
+        return (rising >= 0 && setting >= 0) ? new Calendar[] { toCalendar(table.getEventTime(i, rising)), toCalendar(table.getEventTime(i, setting)) } : null;
+    }
+
+    /**
+     * Property: use precomputed event tables (see SunEventTable)
+     */
+    protected boolean useEventTable = true;
+    public boolean useEventTable() {
+        return useEventTable;
+    }
+    public void setUseEventTable(boolean value) {
+        useEventTable = value;
+    }
+
+    /**
+     * @return the precomputed event table for this data's calculator, location, and timezone; null if unavailable
+     * (the table is created in the background).
+     */
+    @Nullable
+    public SunEventTable eventTable()
+    {
+        if (!useEventTable || context == null || calculator == null || calculatorMode == null || location == null || timezone == null) {
+            return null;
+        }
+        return SunEventTable.getTable(context, calculator, calculatorMode, location, timezone);
+    }
+
+    /**
+     * Applies the offset to each element (the same way as setEvents; a shared noon Calendar is offset once per element).
+     */
+    protected Calendar[] applyOffset(Calendar[] events)
+    {
+        if (offset != 0)
+        {
+            for (Calendar event : events) {
+                if (event != null) {
+                    event.add(Calendar.MILLISECOND, offset);
+                }
             }
         }
+        return events;
+    }
+
+    /**
+     * Calculate using the results of SuntimesBatchCalculator.getDayEvents (for calendar() and getOtherCalendar()); initCalculation
+     * should be called first. Used by SuntimesRiseSetDataset to share a single pass between datasets.
+     * @param eventsToday day events (today)
+     * @param eventsOther day events (other)
+     * @param i index of this data's angle (see dayEventAngle), or -1 (solar noon)
+     */
+    public void calculate(long[] eventsToday, long[] eventsOther, int i)
+    {
+        Calendar[] today = toEvents(eventsToday, i);
+        Calendar[] other = toEvents(eventsOther, i);
+        setEvents(today[0], today[1], other[0], other[1]);
+    }
+
+    /**
+     * @return { rising, setting } from day events (see calculate(long[], long[], int)); the same Calendar for both (solar noon)
+     */
+    protected Calendar[] toEvents(long[] events, int i)
+    {
+        if (i < 0) {
+            Calendar noon = toCalendar(events[0]);
+            return new Calendar[] { noon, noon };
+        } else return new Calendar[] { toCalendar(events[1 + (2 * i)]), toCalendar(events[2 + (2 * i)]) };
+    }
+
+    /**
+     * @return the sun altitude of this data's rising/setting events (SuntimesBatchCalculator.ANGLE_*), or null (solar noon)
+     */
+    public Double dayEventAngle()
+    {
+        if (angle != null) {
+            return angle;
+        }
+        switch (timeMode)
+        {
+            case NOON: return null;
+            case GOLD: return SuntimesBatchCalculator.ANGLE_GOLDEN;
+            case BLUE8: return SuntimesBatchCalculator.ANGLE_BLUE8;
+            case BLUE4: return SuntimesBatchCalculator.ANGLE_BLUE4;
+            case CIVIL: return SuntimesBatchCalculator.ANGLE_CIVIL;
+            case NAUTICAL: return SuntimesBatchCalculator.ANGLE_NAUTICAL;
+            case ASTRONOMICAL: return SuntimesBatchCalculator.ANGLE_ASTRONOMICAL;
+            case OFFICIAL: default: return SuntimesBatchCalculator.ANGLE_OFFICIAL;
+        }
+    }
+
+    protected Calendar toCalendar(long millis)
+    {
+        if (millis == SuntimesBatchCalculator.NO_EVENT) {
+            return null;
+        }
+        Calendar calendar = new GregorianCalendar();
+        calendar.setTimeZone(calculator != null && calculator.getTimeZone() != null ? calculator.getTimeZone() : timezone);
+        calendar.setTimeInMillis(millis);
+        return calendar;
+    }
+
+    protected void setEvents(Calendar sunriseToday, Calendar sunsetToday, Calendar sunriseOther, Calendar sunsetOther)
+    {
+        sunriseCalendarToday = sunriseToday;
+        sunsetCalendarToday = sunsetToday;
+        sunriseCalendarOther = sunriseOther;
+        sunsetCalendarOther = sunsetOther;
 
         if (offset != 0) {
             sunriseCalendarToday.add(Calendar.MILLISECOND, offset);
@@ -426,9 +742,7 @@ public class SuntimesRiseSetData extends SuntimesData
             sunsetCalendarOther.add(Calendar.MILLISECOND, offset);
         }
 
-        dayLengthToday = determineDayLength(sunriseCalendarToday, sunsetCalendarToday);
-        dayLengthOther = determineDayLength(sunriseCalendarOther, sunsetCalendarOther);
-
+        updateDayLength();
         super.calculate();
     }
 
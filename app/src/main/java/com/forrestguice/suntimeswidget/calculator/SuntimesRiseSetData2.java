@@ -21,7 +21,6 @@ package com.forrestguice.suntimeswidget.calculator;
 import android.content.Context;
 import android.util.Log;
 
-import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.settings.WidgetSettings;
 
 import java.util.Arrays;
@@ -186,124 +185,106 @@ public class SuntimesRiseSetData2 extends SuntimesRiseSetData
         return retValue;
     }
 
+    @Override
+    protected void initCalendars()
+    {
+        super.initCalendars();
+        for (int i=0; i<calendar.length; i++) {
+            calendar[i] = (Calendar) todaysCalendar.clone();
+        }
+        calendar[0].add(Calendar.DAY_OF_MONTH, -1);
+        calendar[2].add(Calendar.DAY_OF_MONTH, 1);
+    }
+
     /**
      * Calculate
      */
     @Override
     public void calculate()
     {
-        //Log.v("SuntimesWidgetData", "time mode: " + timeMode);
-        //Log.v("SuntimesWidgetData", "location_mode: " + locationMode.name());
-        //Log.v("SuntimesWidgetData", "latitude: " + location.getLatitude());
-        //Log.v("SuntimesWidgetData", "longitude: " + location.getLongitude());
-        //Log.v("SuntimesWidgetData", "timezone_mode: " + timezoneMode.name());
-        //Log.v("SuntimesWidgetData", "timezone: " + timezone);
-        //Log.v("SuntimesWidgetData", "compare mode: " + compareMode.name());
-
-        initCalculator(context);
-        initTimezone(context);
-
+        initCalculation();
         for (int i=0; i<calendar.length; i++)
         {
-            calendar[i] = Calendar.getInstance(timezone);
+            Calendar[] events = applyOffset(calculateEvents(calendar[i]));
+            sunrise[i] = events[0];
+            sunset[i] = events[1];
         }
-        todaysCalendar = Calendar.getInstance(timezone);
-        otherCalendar = Calendar.getInstance(timezone);
+        updateFromArrays();
+        calculated = true;
+    }
 
-        if (todayIsNotToday())
-        {
-            for (int i=0; i<calendar.length; i++) {
-                calendar[i].setTimeInMillis(todayIs.getTimeInMillis());
-            }
-            todaysCalendar.setTimeInMillis(todayIs.getTimeInMillis());
-            otherCalendar.setTimeInMillis(todayIs.getTimeInMillis());
-        }
+    @Override
+    public long[] getResults()
+    {
+        long[] values = Arrays.copyOf(toMillis(sunrise), sunrise.length + sunset.length);
+        System.arraycopy(toMillis(sunset), 0, values, sunrise.length, sunset.length);
+        return values;
+    }
 
-        switch (compareMode)
+    @Override
+    public boolean restoreResults(long[] values)
+    {
+        if (values.length != sunrise.length + sunset.length) {
+            return false;
+        }
+        initCalendars();
+        sunrise = new Calendar[sunrise.length];
+        sunset = new Calendar[sunset.length];
+        for (int i=0; i<sunrise.length; i++)
         {
-            case YESTERDAY:
-                dayDeltaPrefix = context.getString(R.string.delta_day_yesterday);
-                otherCalendar.add(Calendar.DAY_OF_MONTH, -1);
-                break;
-
-            case TOMORROW:
-            default:
-                dayDeltaPrefix = context.getString(R.string.delta_day_tomorrow);
-                otherCalendar.add(Calendar.DAY_OF_MONTH, 1);
-                break;
+            sunrise[i] = toCalendar(values[i]);
+            sunset[i] = toCalendar(values[sunrise.length + i]);
         }
-        calendar[0].add(Calendar.DAY_OF_MONTH, -1);
-        calendar[2].add(Calendar.DAY_OF_MONTH, 1);
+        updateFromArrays();
+        calculated = true;
+        return true;
+    }
 
-        date = todaysCalendar.getTime();
-        dateOther = otherCalendar.getTime();
+    @Override
+    protected void advanceCalendars()
+    {
+        super.advanceCalendars();
+        calendar = new Calendar[] { calendar[1], calendar[2], (Calendar) calendar[2].clone() };
+        calendar[2].add(Calendar.DAY_OF_MONTH, 1);
+    }
 
+    @Override
+    protected void reuseResults(SuntimesRiseSetData previous)
+    {
+        super.reuseResults(previous);
+        SuntimesRiseSetData2 other = (SuntimesRiseSetData2) previous;
         for (int i=0; i<calendar.length; i++)
         {
-            if (angle != null)
-            {
-                sunrise[i] = calculator.getSunriseCalendarForDate(calendar[i], angle);
-                sunset[i] = calculator.getSunsetCalendarForDate(calendar[i], angle);
-                if (offset != 0) {
-                    sunrise[i].add(Calendar.MILLISECOND, offset);
-                    sunset[i].add(Calendar.MILLISECOND, offset);
-                }
-                continue;
-            }
-
-            switch (timeMode)
-            {
-                case GOLD:
-                    sunrise[i] = calculator.getMorningGoldenHourForDate(calendar[i]);
-                    sunset[i] = calculator.getEveningGoldenHourForDate(calendar[i]);
-                    break;
-
-                case BLUE8:
-                    sunrise[i] = calculator.getMorningBlueHourForDate(calendar[i])[0];
-                    sunset[i] = calculator.getEveningBlueHourForDate(calendar[i])[1];
-                    break;
-
-                case BLUE4:
-                    sunrise[i] = calculator.getMorningBlueHourForDate(calendar[i])[1];
-                    sunset[i] = calculator.getEveningBlueHourForDate(calendar[i])[0];
-                    break;
-
-                case NOON:
-                    sunrise[i] = sunset[i] = calculator.getSolarNoonCalendarForDate(calendar[i]);
-                    break;
-
-                case CIVIL:
-                    sunrise[i] = calculator.getCivilSunriseCalendarForDate(calendar[i]);
-                    sunset[i] = calculator.getCivilSunsetCalendarForDate(calendar[i]);
-                    break;
-
-                case NAUTICAL:
-                    sunrise[i] = calculator.getNauticalSunriseCalendarForDate(calendar[i]);
-                    sunset[i] = calculator.getNauticalSunsetCalendarForDate(calendar[i]);
-                    break;
-
-                case ASTRONOMICAL:
-                    sunrise[i] = calculator.getAstronomicalSunriseCalendarForDate(calendar[i]);
-                    sunset[i] = calculator.getAstronomicalSunsetCalendarForDate(calendar[i]);
-                    break;
-
-                case OFFICIAL:
-                default:
-                    sunrise[i] = calculator.getOfficialSunriseCalendarForDate(calendar[i]);
-                    sunset[i] = calculator.getOfficialSunsetCalendarForDate(calendar[i]);
-                    break;
-            }
-            if (offset != 0) {
-                sunrise[i].add(Calendar.MILLISECOND, offset);
-                sunset[i].add(Calendar.MILLISECOND, offset);
-            }
+            sunrise[i] = other.sunrise[i];
+            sunset[i] = other.sunset[i];
         }
+    }
 
-        int i = indexOfOther();
-        dayLengthToday = determineDayLength(sunrise[1], sunset[1]);
-        dayLengthOther = determineDayLength(sunrise[i], sunset[i]);
+    @Override
+    public Calendar exposedDay() {
+        return calendar[2];
+    }
 
-        super.calculate();
+    /**
+     * Shifts yesterday/today/tomorrow by one day.
+     * @param events { rising, setting } on the new tomorrow
+     */
+    @Override
+    protected void shiftEvents(Calendar[] events)
+    {
+        sunrise = new Calendar[] { sunrise[1], sunrise[2], events[0] };
+        sunset = new Calendar[] { sunset[1], sunset[2], events[1] };
+        updateFromArrays();
+    }
+
+    protected void updateFromArrays()
+    {
+        int i = indexOfOther();
+        sunriseCalendarToday = sunrise[1];
+        sunsetCalendarToday = sunset[1];
+        sunriseCalendarOther = sunrise[i];
+        sunsetCalendarOther = sunset[i];
+        updateDayLength();
     }
 
 }
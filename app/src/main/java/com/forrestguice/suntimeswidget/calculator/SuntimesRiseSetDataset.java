@@ -21,10 +21,13 @@ package com.forrestguice.suntimeswidget.calculator;
 import android.appwidget.AppWidgetManager;
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
 
 import com.forrestguice.suntimeswidget.alarmclock.AlarmEventProvider;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculator;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculatorBridge;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.settings.SolarEvents;
 import com.forrestguice.suntimeswidget.settings.WidgetSettings;
@@ -120,28 +123,135 @@ public class SuntimesRiseSetDataset
     }
 
     public void calculateData()
+    {
+        SuntimesCalculator calculator = initCalculation();
+        calculateDayEvents(calculator, dataset.values());
+        calculateDayLengths(calculator);
+    }
+
+    /**
+     * Calculate, reusing the results of a previous dataset (with the same settings) when it is for the same day, or the
+     * day before (see SuntimesRiseSetData.calculate(SuntimesRiseSetData)); only the newly exposed day is calculated.
+     * @param previous a previously calculated dataset (may be null)
+     * @return true if previous results were reused (by every dataset), false otherwise
+     */
+    public boolean calculateData(@Nullable SuntimesRiseSetDataset previous)
+    {
+        SuntimesCalculator calculator = initCalculation();
+        if (previous == null || !previous.isCalculated() || previous.dataActual.calendar() == null)
+        {
+            calculateDayEvents(calculator, dataset.values());
+            calculateDayLengths(calculator);
+            return false;
+        }
+
+        ArrayList<Double> angles = dayEventAngles();
+        long[] events = null;
+        if (calculator != null && SuntimesData.daysBetween(previous.dataActual.calendar(), dataActual.calendar()) == 1)
+        {
+            double[] dayAngles = toArray(angles);
+            events = new long[1 + (2 * dayAngles.length)];
+            if (!getDayEvents(calculator, dataActual.exposedDay(), dayAngles, events)) {
+                events = null;
+            }
+        }
+
+        ArrayList<SuntimesRiseSetData> remaining = new ArrayList<>();
+        for (String key : dataset.keySet())
+        {
+            SuntimesRiseSetData data = dataset.get(key);
+            boolean sameDay = (data.exposedDay() != null && isSameDay(data.exposedDay(), dataActual.exposedDay()));
+            Double angle = data.dayEventAngle();
+            if (!data.calculate(previous.getData(key), (sameDay ? events : null), (angle != null ? angles.indexOf(angle) : -1))) {
+                remaining.add(data);
+            }
+        }
+        if (!remaining.isEmpty()) {
+            calculateDayEvents(calculator, remaining);
+        }
+        calculateDayLengths(calculator);
+        return remaining.isEmpty();
+    }
+
+    /**
+     * Initializes every dataset (sharing a single calculator); see SuntimesRiseSetData.initCalculation.
+     * @return the calculator
+     */
+    protected SuntimesCalculator initCalculation()
     {
         SuntimesCalculator calculator = null;
         SuntimesCalculatorDescriptor descriptor = null;
 
         boolean first = true;
-        ArrayList<WidgetSettings.TimeMode> events0 = new ArrayList<WidgetSettings.TimeMode>();
-        ArrayList<WidgetSettings.TimeMode> events1 = new ArrayList<WidgetSettings.TimeMode>();
-
         for (SuntimesRiseSetData data : dataset.values())
         {
             if (first)
             {
-                data.calculate();
+                data.initCalculation();
                 calculator = data.calculator();
                 descriptor = data.calculatorMode();
                 first = false;
 
             } else {
                 data.setCalculator(calculator, descriptor);
-                data.calculate();
+                data.initCalculation();
             }
+        }
+        return calculator;
+    }
+
+    /**
+     * Advances every dataset by one day (see SuntimesRiseSetData.advanceDay); the newly exposed day is calculated using
+     * a single SuntimesBatchCalculator.getDayEvents pass. Falls back to calculateData if not yet calculated.
+     * @return true if advanced, false if recalculated
+     */
+    public boolean advanceDay()
+    {
+        SuntimesCalculator calculator = dataActual.calculator();
+        if (!isCalculated() || calculator == null)
+        {
+            calculateData();
+            return false;
+        }
+
+        ArrayList<Double> angles = dayEventAngles();
+        double[] dayAngles = toArray(angles);
+        Calendar exposedDay = dataActual.exposedDay();
+        Calendar day = (Calendar) exposedDay.clone();
+        day.add(Calendar.DAY_OF_MONTH, 1);
 
+        long[] events = new long[1 + (2 * dayAngles.length)];
+        boolean calculated = getDayEvents(calculator, day, dayAngles, events);
+
+        for (SuntimesRiseSetData data : dataset.values())
+        {
+            boolean advanced;
+            if (calculated && data.exposedDay() != null && isSameDay(data.exposedDay(), exposedDay))
+            {
+                Double angle = data.dayEventAngle();
+                advanced = data.advanceDay(events, (angle != null ? angles.indexOf(angle) : -1));
+            } else advanced = data.advanceDay();
+
+            if (!advanced)
+            {
+                calculateData();
+                return false;
+            }
+        }
+        calculateDayLengths(calculator);
+        return true;
+    }
+
+    /**
+     * Adjusts day lengths for perpetual day/twilight (datasets without events).
+     */
+    protected void calculateDayLengths(SuntimesCalculator calculator)
+    {
+        ArrayList<WidgetSettings.TimeMode> events0 = new ArrayList<WidgetSettings.TimeMode>();
+        ArrayList<WidgetSettings.TimeMode> events1 = new ArrayList<WidgetSettings.TimeMode>();
+
+        for (SuntimesRiseSetData data : dataset.values())
+        {
             WidgetSettings.TimeMode mode = data.timeMode();
             if (mode == WidgetSettings.TimeMode.NOON || mode == WidgetSettings.TimeMode.GOLD
                     || mode == WidgetSettings.TimeMode.BLUE4 || mode == WidgetSettings.TimeMode.BLUE8)
@@ -194,6 +304,75 @@ public class SuntimesRiseSetDataset
         }
     }
 
+    /**
+     * Calculates every dataset from a single SuntimesBatchCalculator.getDayEvents pass per day (today, other);
+     * datasets on some other day are calculated individually.
+     */
+    protected void calculateDayEvents(SuntimesCalculator calculator, Collection<SuntimesRiseSetData> values)
+    {
+        ArrayList<Double> angles = dayEventAngles();
+        double[] dayAngles = toArray(angles);
+
+        Calendar day0 = dataActual.calendar();
+        Calendar day1 = dataActual.getOtherCalendar();
+        long[] events0 = new long[1 + (2 * dayAngles.length)];
+        long[] events1 = new long[events0.length];
+        boolean calculated = false;
+        if (calculator != null)
+        {
+            calculated = (getDayEvents(calculator, day0, dayAngles, events0) && getDayEvents(calculator, day1, dayAngles, events1));
+        }
+
+        for (SuntimesRiseSetData data : values)
+        {
+            if (calculated && isSameDay(data.calendar(), day0) && isSameDay(data.getOtherCalendar(), day1))
+            {
+                Double angle = data.dayEventAngle();
+                data.calculate(events0, events1, (angle != null ? angles.indexOf(angle) : -1));
+            } else data.calculate();
+        }
+    }
+
+    /**
+     * SuntimesBatchCalculator.getDayEvents; answered from the event table when available (see SuntimesRiseSetData.eventTable).
+     * @return true if out was filled
+     */
+    protected boolean getDayEvents(SuntimesCalculator calculator, Calendar day, double[] angles, long[] out)
+    {
+        SunEventTable table = dataActual.eventTable();
+        return (table != null && table.getDayEvents(day, angles, out))
+                || SuntimesBatchCalculatorBridge.from(calculator).getDayEvents(day, angles, out) == out.length;
+    }
+
+    /**
+     * @return the distinct sun angles (SuntimesRiseSetData.dayEventAngle) of every dataset
+     */
+    protected ArrayList<Double> dayEventAngles()
+    {
+        ArrayList<Double> angles = new ArrayList<>();
+        for (SuntimesRiseSetData data : dataset.values())
+        {
+            Double angle = data.dayEventAngle();
+            if (angle != null && !angles.contains(angle)) {    // (Double.equals matches NaN)
+                angles.add(angle);
+            }
+        }
+        return angles;
+    }
+
+    protected static double[] toArray(ArrayList<Double> values)
+    {
+        double[] array = new double[values.size()];
+        for (int i=0; i<array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    protected static boolean isSameDay(Calendar calendar0, Calendar calendar1) {
+        return (calendar0.get(Calendar.YEAR) == calendar1.get(Calendar.YEAR) && calendar0.get(Calendar.DAY_OF_YEAR) == calendar1.get(Calendar.DAY_OF_YEAR));
+    }
+
     public boolean isCalculated()
     {
         return dataActual.isCalculated();
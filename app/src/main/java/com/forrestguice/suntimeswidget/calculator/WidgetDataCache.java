@@ -0,0 +1,306 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.forrestguice.suntimeswidget.BuildConfig;
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.settings.WidgetSettings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An on-disk cache of calculated widget data (SuntimesRiseSetData and its linked noon data), keyed by a hash of the settings
+ * that determine the results (calculator and its version, location, timezone, day, modes). A widget update running in a new process restores
+ * its results from the cache instead of calculating them (see restore); updates also store the next day in advance.
+ *
+ * Format (big-endian): int MAGIC, int VERSION, long key, long created (millis), int numResults; followed by each result as
+ * int count, long[count] values (see SuntimesRiseSetData.getResults).
+ */
+public class WidgetDataCache
+{
+    public static final String TAG = "WidgetDataCache";
+
+    public static final int MAGIC = 0x57444342;    // "WDCB"
+    public static final int VERSION = 1;
+    public static final int MAX_FILES = 64;
+    public static final int MAX_VALUES = 64;
+    public static final String DIR_NAME = "widgetdata";
+
+    public static final String PREFS_CACHE = "com.forrestguice.suntimeswidget.widgetdatacache";
+    public static final String PREF_KEY_HITS = "hits_";
+    public static final String PREF_KEY_UPDATES = "updates_";
+
+    /**
+     * @param data data (initialized for the day; see SuntimesRiseSetData.initCalendars)
+     * @param withNoon true if the data is linked to noon data
+     * @return a key identifying data with these settings on this day (64-bit FNV-1a); data cached by a previous version of
+     * the app (or calculator) has a different key.
+     */
+    public static long key(SuntimesRiseSetData data, boolean withNoon)
+    {
+        Location location = data.location();
+        SuntimesCalculatorDescriptor descriptor = data.calculatorMode();
+        String value = data.getClass().getName() + "|" + BuildConfig.VERSION_CODE
+                + "|" + (descriptor != null ? descriptor.getName() + "|" + descriptor.getVersion() : "")
+                + "|" + (location != null ? location.getLatitude() + "|" + location.getLongitude() + "|" + location.getAltitude() + "|" + location.useAltitude() : "")
+                + "|" + data.timezone().getID()
+                + "|" + SunEventTable.epochDay(data.calendar().getTimeInMillis(), data.timezone())
+                + "|" + data.timeMode() + "|" + data.compareMode() + "|" + data.angle() + "|" + data.getOffset()
+                + "|" + withNoon;
+
+        long hash = 0xcbf29ce484222325L;
+        for (int i=0; i<value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public static String fileName(long key) {
+        return Long.toHexString(key) + ".bin";
+    }
+
+    public static File cacheDir(Context context) {
+        return new File(context.getFilesDir(), DIR_NAME);
+    }
+
+    /**
+     * Restores data from the cache (without calculating).
+     * @param context context
+     * @param data data (not yet calculated)
+     * @param withNoon true the data should be linked to noon data (also restored)
+     * @return true if restored, false if not cached (data should be calculated instead)
+     */
+    public static boolean restore(Context context, SuntimesRiseSetData data, boolean withNoon)
+    {
+        data.initCalendars();
+        long key = key(data, withNoon);
+        File file = new File(cacheDir(context), fileName(key));
+        if (!file.exists()) {
+            return false;
+        }
+
+        long[][] results;
+        try {
+            results = read(file, key);
+        } catch (IOException e) {
+            Log.w(TAG, "restore: failed to read " + file + ": " + e);
+            return false;
+        }
+        if (results.length != (withNoon ? 2 : 1) || !data.restoreResults(results[0])) {
+            return false;
+        }
+        if (withNoon)
+        {
+            SuntimesRiseSetData noonData = new SuntimesRiseSetData(data);
+            noonData.setTimeMode(WidgetSettings.TimeMode.NOON);
+            if (!noonData.restoreResults(results[1])) {
+                return false;
+            }
+            data.linkData(noonData);
+        }
+        return true;
+    }
+
+    /**
+     * @param data calculated data
+     * @return true if data (for the same day and settings) is already cached
+     */
+    public static boolean contains(Context context, SuntimesRiseSetData data, boolean withNoon)
+    {
+        data.initCalendars();
+        return new File(cacheDir(context), fileName(key(data, withNoon))).exists();
+    }
+
+    /**
+     * Writes calculated data (and its linked noon data) to the cache (if not already cached).
+     */
+    public static void save(Context context, SuntimesRiseSetData data)
+    {
+        if (!data.isCalculated() || data.calendar() == null) {
+            return;
+        }
+        SuntimesRiseSetData noonData = data.getLinked();
+        long key = key(data, noonData != null);
+        File dir = cacheDir(context);
+        File file = new File(dir, fileName(key));
+        if (file.exists()) {
+            return;
+        }
+
+        long[][] results = (noonData != null ? new long[][] { data.getResults(), noonData.getResults() } : new long[][] { data.getResults() });
+        try {
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Failed to create " + dir);
+            }
+            write(file, key, results);
+            SunEventTable.pruneFiles(dir, MAX_FILES);
+
+        } catch (IOException e) {
+            Log.e(TAG, "save: failed to write " + file + ": " + e);
+        }
+    }
+
+    /**
+     * Writes results to file (atomically; written to a temporary file that replaces file when complete). The file isn't
+     * synced (this is called from widget updates on the main thread); a write lost to a crash means the day is calculated again.
+     */
+    public static void write(File file, long key, long[][] results) throws IOException
+    {
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tmpFile);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(key);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(results.length);
+            for (long[] values : results)
+            {
+                out.writeInt(values.length);
+                for (long value : values) {
+                    out.writeLong(value);
+                }
+            }
+            out.flush();
+        } finally {
+            fileOut.close();
+        }
+        if (!tmpFile.renameTo(file))
+        {
+            tmpFile.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
+    /**
+     * @param file a cache file
+     * @param key the expected key
+     * @return results (see SuntimesRiseSetData.getResults)
+     * @throws IOException if the file is missing, isn't valid, or has a different key
+     */
+    public static long[][] read(File file, long key) throws IOException
+    {
+        InputStream fileIn = new FileInputStream(file);
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a valid cache file (bad header)");
+            }
+            if (in.readLong() != key) {
+                throw new IOException("Not a valid cache file (bad key)");
+            }
+            in.readLong();    // created
+
+            int numResults = in.readInt();
+            if (numResults < 0 || numResults > 2) {
+                throw new IOException("Not a valid cache file (bad size)");
+            }
+            long[][] results = new long[numResults][];
+            for (int i=0; i<numResults; i++)
+            {
+                int count = in.readInt();
+                if (count < 0 || count > MAX_VALUES) {
+                    throw new IOException("Not a valid cache file (bad count)");
+                }
+                results[i] = new long[count];
+                for (int j=0; j<count; j++) {
+                    results[i][j] = in.readLong();
+                }
+            }
+            return results;
+
+        } finally {
+            fileIn.close();
+        }
+    }
+
+    /**
+     * Deletes all cached data (e.g. after the installed calculators change; see SuntimesCalculatorDescriptor.reinitCalculators).
+     */
+    public static void clearCache(Context context)
+    {
+        File[] files = cacheDir(context).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Counts a widget update.
+     * @param hit true the update was restored from the cache
+     */
+    public static void countUpdate(Context context, int appWidgetId, boolean hit)
+    {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_CACHE, 0);
+        SharedPreferences.Editor editor = prefs.edit();
+        editor.putInt(PREF_KEY_UPDATES + appWidgetId, prefs.getInt(PREF_KEY_UPDATES + appWidgetId, 0) + 1);
+        if (hit) {
+            editor.putInt(PREF_KEY_HITS + appWidgetId, prefs.getInt(PREF_KEY_HITS + appWidgetId, 0) + 1);
+        }
+        editor.apply();
+    }
+
+    /**
+     * @return the number of updates restored from the cache
+     */
+    public static int getHits(Context context, int appWidgetId) {
+        return context.getSharedPreferences(PREFS_CACHE, 0).getInt(PREF_KEY_HITS + appWidgetId, 0);
+    }
+
+    /**
+     * @return the number of updates
+     */
+    public static int getUpdates(Context context, int appWidgetId) {
+        return context.getSharedPreferences(PREFS_CACHE, 0).getInt(PREF_KEY_UPDATES + appWidgetId, 0);
+    }
+
+    public static void deleteStats(Context context, @Nullable int... appWidgetIds)
+    {
+        if (appWidgetIds == null) {
+            return;
+        }
+        SharedPreferences.Editor editor = context.getSharedPreferences(PREFS_CACHE, 0).edit();
+        for (int appWidgetId : appWidgetIds)
+        {
+            editor.remove(PREF_KEY_HITS + appWidgetId);
+            editor.remove(PREF_KEY_UPDATES + appWidgetId);
+        }
+        editor.apply();
+    }
+}
@@ -20,6 +20,8 @@ package com.forrestguice.suntimeswidget.calculator.ca.rmen.sunrisesunset;
 
 import android.content.Context;
 import com.forrestguice.suntimeswidget.R;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculator;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculatorBridge;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.calculator.SuntimesCalculatorDescriptor;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
@@ -29,7 +31,7 @@ import java.util.TimeZone;
 
 import ca.rmen.sunrisesunset.SunriseSunset;
 
-public class SunriseSunsetSuntimesCalculator implements SuntimesCalculator
+public class SunriseSunsetSuntimesCalculator implements SuntimesCalculator, SuntimesBatchCalculator
 {
     public static final String NAME = "ca.rmen.sunrisesunset";
     public static final String REF = "com.forrestguice.suntimeswidget.calculator.ca.rmen.sunrisesunset.SunriseSunsetSuntimesCalculator";
@@ -223,6 +225,80 @@ public class SunriseSunsetSuntimesCalculator implements SuntimesCalculator
         else return goldenTimes[1];
     }
 
+    @Override
+    public int getEventTimes(Calendar startDate, int numDays, int[] events, long[] out)
+    {
+        double latitude = location.getLatitudeAsDouble();
+        double longitude = location.getLongitudeAsDouble();
+
+        int n = (events.length > 0 ? Math.min(numDays, out.length / events.length) : 0);
+        Calendar date = (Calendar) startDate.clone();
+        for (int day=0; day<n; day++)
+        {
+            Calendar[][] pairs = new Calendar[7][];    // [rise, set] pairs are shared by morning and evening events
+            boolean[] hasPair = new boolean[pairs.length];
+
+            int offset = day * events.length;
+            for (int i=0; i<events.length; i++)
+            {
+                Calendar event = null;
+                if (events[i] == EVENT_SOLAR_NOON) {
+                    event = SunriseSunset.getSolarNoon(date, latitude, longitude);
+
+                } else {
+                    int p = pairIndex(events[i]);
+                    if (p >= 0)
+                    {
+                        if (!hasPair[p])
+                        {
+                            switch (p)
+                            {
+                                case 1: pairs[p] = SunriseSunset.getCivilTwilight(date, latitude, longitude); break;
+                                case 2: pairs[p] = SunriseSunset.getNauticalTwilight(date, latitude, longitude); break;
+                                case 3: pairs[p] = SunriseSunset.getAstronomicalTwilight(date, latitude, longitude); break;
+                                case 4: pairs[p] = SunriseSunset.getSunriseSunset(date, latitude, longitude, SUN_ALTITUDE_GOLDEN); break;
+                                case 5: pairs[p] = SunriseSunset.getSunriseSunset(date, latitude, longitude, SUN_ALTITUDE_BLUE_HIGH); break;
+                                case 6: pairs[p] = SunriseSunset.getSunriseSunset(date, latitude, longitude, SUN_ALTITUDE_BLUE_LOW); break;
+                                case 0: default: pairs[p] = SunriseSunset.getSunriseSunset(date, latitude, longitude); break;
+                            }
+                            hasPair[p] = true;
+                        }
+                        if (pairs[p] != null) {
+                            event = pairs[p][isRising(events[i]) ? 0 : 1];
+                        }
+                    }
+                }
+                out[offset + i] = (event != null ? event.getTimeInMillis() : NO_EVENT);
+            }
+            date.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return n;
+    }
+
+    @Override
+    public int getDayEvents(Calendar date, double[] angles, long[] out) {
+        return SuntimesBatchCalculatorBridge.getDayEvents(this, date, angles, out);    // standard angles only
+    }
+
+    private static int pairIndex(int event)
+    {
+        switch (event)
+        {
+            case EVENT_OFFICIAL_SUNRISE: case EVENT_OFFICIAL_SUNSET: return 0;
+            case EVENT_CIVIL_SUNRISE: case EVENT_CIVIL_SUNSET: return 1;
+            case EVENT_NAUTICAL_SUNRISE: case EVENT_NAUTICAL_SUNSET: return 2;
+            case EVENT_ASTRONOMICAL_SUNRISE: case EVENT_ASTRONOMICAL_SUNSET: return 3;
+            case EVENT_GOLDEN_MORNING: case EVENT_GOLDEN_EVENING: return 4;
+            case EVENT_BLUE8_MORNING: case EVENT_BLUE8_EVENING: return 5;
+            case EVENT_BLUE4_MORNING: case EVENT_BLUE4_EVENING: return 6;
+            default: return -1;
+        }
+    }
+
+    private static boolean isRising(int event) {
+        return (event < EVENT_SOLAR_NOON);
+    }
+
     public static final double SUN_ALTITUDE_GOLDEN = 6.0;
     public static final double SUN_ALTITUDE_BLUE_HIGH = -8.0;
     public static final double SUN_ALTITUDE_BLUE_LOW = -4.0;
@@ -261,6 +337,16 @@ public class SunriseSunsetSuntimesCalculator implements SuntimesCalculator
         return null;
     }
 
+    @Override
+    public int getSunPositions(long startMillis, long stepMillis, int count, double[] azimuth, double[] elevation, double[] rightAscension, double[] declination) {
+        return 0;
+    }
+
+    @Override
+    public int getMoonPositions(long startMillis, long stepMillis, int count, double[] azimuth, double[] elevation, double[] rightAscension, double[] declination) {
+        return 0;
+    }
+
     @Override
     public double getShadowLength(double objHeight, Calendar dateTime)
     {
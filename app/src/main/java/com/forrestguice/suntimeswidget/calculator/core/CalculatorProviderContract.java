@@ -20,11 +20,11 @@ package com.forrestguice.suntimeswidget.calculator.core;
 
 /**
  * CalculatorProviderContract
- * @version 7 (0.6.0)
+ * @version 8 (0.6.1)
  *
  * Supported URIs have the form: "content://AUTHORITY/query"
  * ..where [AUTHORITY] is "suntimeswidget.calculator.provider"
- * ..where [query] is one of: QUERY_CONFIG (config),
+ * ..where [query] is one of: QUERY_CONFIG (config), QUERY_CONFIG_STATS (config/stats),
  *                            QUERY_SUN (sun), QUERY_SUNPOS (sunpos),
  *                            QUERY_MOON (moon), QUERY_MOONPOS (moonpos), QUERY_MOONPHASE (moon/phases),
  *                            QUERY_SEASONS (seasons)
@@ -46,6 +46,18 @@ package com.forrestguice.suntimeswidget.calculator.core;
  *       COLUMN_CONFIG_OPTION_ALTITUDE, COLUMN_CONFIG_OPTION_WARNINGS, COLUMN_CONFIG_OPTION_TALKBACK
  *       COLUMN_CONFIG_LENGTH_UNITS, COLUMN_CONFIG_OBJECT_HEIGHT, COLUMN_CONFIG_OPTION_FIELDS
  *
+ * ------------------------------------------------------------------------------------------------
+ * QUERY_CONFIG_STATS (config/stats)
+ *   The following URIs are supported:
+ *       content://suntimeswidget.calculator.provider/config/stats                   .. get calculator call counts and latencies
+ *
+ *   The result will be zero or more rows (one per method and calling subsystem) containing:
+ *       COLUMN_STATS_METHOD, COLUMN_STATS_SUBSYSTEM, COLUMN_STATS_COUNT,
+ *       COLUMN_STATS_MEAN, COLUMN_STATS_P50, COLUMN_STATS_P95, COLUMN_STATS_P99, COLUMN_STATS_MAX
+ *
+ *   Stats are only recorded while enabled by the app (the result is empty otherwise). The selection may
+ *   include COLUMN_STATS_METHOD and/or COLUMN_STATS_SUBSYSTEM (e.g. "stats_subsystem=?", {"widget"}).
+ *
  * ------------------------------------------------------------------------------------------------*
  * QUERY_SUN (sun)
  *   The following URIs are supported:
@@ -230,13 +242,14 @@ package com.forrestguice.suntimeswidget.calculator.core;
  *   6 fixes ambiguity of COLUMN_SEASON_CROSS_* columns; e.g. CROSS_SUMMER is the midpoint between summer solstice and autumn equinox.
  *   7 adds COLUMN_MOON_SET_ILLUM, COLUMN_MOON_SET_DISTANCE, COLUMN_MOON_SET_ILLUM, COLUMN_MOON_SET_DISTANCE.
  *     adds _POSITION_KEYS; may be combined with COLUMN_MOON and COLUMN_SUN keys to specify position at time of event.
+ *   8 adds QUERY_CONFIG_STATS (config/stats) and COLUMN_STATS_* columns.
  */
 public interface CalculatorProviderContract
 {
     String AUTHORITY = "suntimeswidget.calculator.provider";
     String READ_PERMISSION = "suntimes.permission.READ_CALCULATOR";
-    String VERSION_NAME = "v0.6.0";
-    int VERSION_CODE = 7;
+    String VERSION_NAME = "v0.6.1";
+    int VERSION_CODE = 8;
 
     /**
      * CONFIG
@@ -287,6 +300,24 @@ public interface CalculatorProviderContract
             COLUMN_CONFIG_OPTION_ALTITUDE, COLUMN_CONFIG_OPTION_WARNINGS, COLUMN_CONFIG_OPTION_TALKBACK, COLUMN_CONFIG_LENGTH_UNITS, COLUMN_CONFIG_OBJECT_HEIGHT, COLUMN_CONFIG_OPTION_FIELDS
     };
 
+    /**
+     * CONFIG_STATS
+     */
+    String COLUMN_STATS_METHOD = "stats_method";            // String (calculator method name, e.g. getSunPosition)
+    String COLUMN_STATS_SUBSYSTEM = "stats_subsystem";      // String (calling subsystem: widget, lightmap, provider, alarms, other)
+    String COLUMN_STATS_COUNT = "stats_count";              // long (number of calls)
+    String COLUMN_STATS_MEAN = "stats_mean";                // long (nanoseconds)
+    String COLUMN_STATS_P50 = "stats_p50";                  // long (nanoseconds; approximate)
+    String COLUMN_STATS_P95 = "stats_p95";                  // long (nanoseconds; approximate)
+    String COLUMN_STATS_P99 = "stats_p99";                  // long (nanoseconds; approximate)
+    String COLUMN_STATS_MAX = "stats_max";                  // long (nanoseconds)
+
+    String QUERY_CONFIG_STATS = "config/stats";
+    String[] QUERY_CONFIG_STATS_PROJECTION = new String[] {
+            COLUMN_STATS_METHOD, COLUMN_STATS_SUBSYSTEM, COLUMN_STATS_COUNT,
+            COLUMN_STATS_MEAN, COLUMN_STATS_P50, COLUMN_STATS_P95, COLUMN_STATS_P99, COLUMN_STATS_MAX
+    };
+
     /**
      * POSITION
      * Position keys that must be appended to other keys to form a valid combination;
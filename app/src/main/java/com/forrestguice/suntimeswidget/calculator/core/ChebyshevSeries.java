@@ -0,0 +1,169 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+/**
+ * A set of Chebyshev series that approximate one or more smooth functions of time over the
+ * window [start, end). Each series (component) is fit from values sampled at the Chebyshev
+ * nodes (see nodeTimes), then evaluated using Clenshaw's recurrence.
+ */
+public class ChebyshevSeries
+{
+    protected final long start, end;
+    protected final double[][] coefficients;    // [component][degree]
+
+    /**
+     * @param start start of window (epoch millis)
+     * @param end end of window (epoch millis)
+     * @param valuesAtNodes [component][node]; values sampled at the times returned by nodeTimes(start, end, n)
+     */
+    public ChebyshevSeries(long start, long end, double[][] valuesAtNodes)
+    {
+        this.start = start;
+        this.end = end;
+        this.coefficients = new double[valuesAtNodes.length][];
+        for (int i=0; i<valuesAtNodes.length; i++) {
+            coefficients[i] = fit(valuesAtNodes[i]);
+        }
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public boolean contains(long millis) {
+        return (millis >= start && millis < end);
+    }
+
+    /**
+     * @param component component index
+     * @param millis time (epoch millis) within the window
+     * @return approximate value of the component at the given time
+     */
+    public double value(int component, long millis) {
+        return evaluate(coefficients[component], toX(millis));
+    }
+
+    /**
+     * @param component component index
+     * @param millis time (epoch millis) within the window
+     * @return approximate rate of change of the component (units per day)
+     */
+    public double rate(int component, long millis) {
+        return derivative(coefficients[component], toX(millis)) * (2d * DAY_MILLIS / (end - start));
+    }
+
+    protected double toX(long millis) {
+        return (2d * (millis - start) / (end - start)) - 1;    // [start, end] to [-1, 1]
+    }
+
+    public static final double DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    /**
+     * @param n number of nodes
+     * @return Chebyshev nodes (of the first kind) in [-1, 1]
+     */
+    public static double[] nodes(int n)
+    {
+        double[] x = new double[n];
+        for (int k=0; k<n; k++) {
+            x[k] = Math.cos(Math.PI * (k + 0.5) / n);
+        }
+        return x;
+    }
+
+    /**
+     * @param start start of window (epoch millis)
+     * @param end end of window (epoch millis)
+     * @param n number of nodes
+     * @return the times (epoch millis) at which the functions should be sampled
+     */
+    public static long[] nodeTimes(long start, long end, int n)
+    {
+        double[] x = nodes(n);
+        long[] t = new long[n];
+        for (int k=0; k<n; k++) {
+            t[k] = start + Math.round(((x[k] + 1) / 2d) * (end - start));
+        }
+        return t;
+    }
+
+    /**
+     * @param values function values at nodes(n)
+     * @return Chebyshev coefficients c[0..n-1] (c[0] already halved)
+     */
+    public static double[] fit(double[] values)
+    {
+        int n = values.length;
+        double[] c = new double[n];
+        for (int j=0; j<n; j++)
+        {
+            double sum = 0;
+            for (int k=0; k<n; k++) {
+                sum += values[k] * Math.cos(Math.PI * j * (k + 0.5) / n);
+            }
+            c[j] = (2d / n) * sum;
+        }
+        c[0] /= 2d;
+        return c;
+    }
+
+    /**
+     * Clenshaw's recurrence.
+     * @param c coefficients
+     * @param x [-1, 1]
+     * @return sum of c[j] * T_j(x)
+     */
+    public static double evaluate(double[] c, double x)
+    {
+        double b0 = 0, b1 = 0, b2;
+        double x2 = 2 * x;
+        for (int j = c.length - 1; j >= 1; j--)
+        {
+            b2 = b1;
+            b1 = b0;
+            b0 = (x2 * b1) - b2 + c[j];
+        }
+        return (x * b0) - b1 + c[0];
+    }
+
+    /**
+     * @param c coefficients
+     * @param x [-1, 1]
+     * @return derivative (with respect to x) of the series at x
+     */
+    public static double derivative(double[] c, double x)
+    {
+        int n = c.length;
+        if (n < 2) {
+            return 0;
+        }
+        double[] d = new double[n];    // coefficients of the derivative; d[n-1] = 0
+        d[n - 2] = 2 * (n - 1) * c[n - 1];
+        for (int j = n - 3; j >= 0; j--) {
+            d[j] = d[j + 2] + 2 * (j + 1) * c[j + 1];
+        }
+        d[0] /= 2d;
+        return evaluate(d, x);
+    }
+}
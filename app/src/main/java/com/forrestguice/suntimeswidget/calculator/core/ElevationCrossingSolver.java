@@ -0,0 +1,421 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Finds the time at which the elevation of the sun (or moon) crosses some angle. The search interval is
+ * sampled (every bracketStep) until a crossing is bracketed, then the crossing is refined using Brent's
+ * method. If the ElevationFunction supplies a rate of change, a (safeguarded) Newton step is tried first.
+ *
+ * A target just below the day's maximum (or above its minimum) may be crossed twice within a single step; when the
+ * samples straddle an extremum without changing sign, the extremum is located and each side of it is searched.
+ */
+public class ElevationCrossingSolver
+{
+    public static final long NO_CROSSING = Long.MIN_VALUE;
+
+    public static final long DEF_TOLERANCE_MILLIS = 1000;
+    public static final long DEF_BRACKET_STEP = 60 * 60 * 1000;    // 1 hr
+    public static final int DEF_MAX_ITERATIONS = 50;
+
+    public static final double SKIP_MARGIN = 1;    // degrees; allows for refraction (which isn't included in maxRate)
+
+    protected long toleranceMillis;
+    protected long bracketStep;
+    protected int maxIterations;
+
+    public ElevationCrossingSolver() {
+        this(DEF_TOLERANCE_MILLIS, DEF_BRACKET_STEP, DEF_MAX_ITERATIONS);
+    }
+
+    /**
+     * @param toleranceMillis the crossing is located to within this many milliseconds
+     * @param bracketStep the interval is sampled at this step (millis) while looking for a crossing
+     * @param maxIterations max number of refining iterations (per crossing)
+     */
+    public ElevationCrossingSolver(long toleranceMillis, long bracketStep, int maxIterations)
+    {
+        this.toleranceMillis = Math.max(1, toleranceMillis);
+        this.bracketStep = Math.max(1, bracketStep);
+        this.maxIterations = maxIterations;
+    }
+
+    public long getToleranceMillis() {
+        return toleranceMillis;
+    }
+    public long getBracketStep() {
+        return bracketStep;
+    }
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * Iteration counts; evaluations (of the ElevationFunction) include the samples used to bracket the crossing.
+     */
+    protected int lastIterations = 0, lastEvaluations = 0;
+    protected long totalIterations = 0, totalEvaluations = 0, totalCalls = 0;
+
+    public int getLastIterations() {
+        return lastIterations;
+    }
+    public int getLastEvaluations() {
+        return lastEvaluations;
+    }
+    public long getTotalIterations() {
+        return totalIterations;
+    }
+    public long getTotalEvaluations() {
+        return totalEvaluations;
+    }
+    public long getTotalCalls() {
+        return totalCalls;
+    }
+    public void resetCounts()
+    {
+        lastIterations = lastEvaluations = 0;
+        totalIterations = totalEvaluations = totalCalls = 0;
+    }
+
+    /**
+     * @param f elevation function
+     * @param degrees target elevation (degrees)
+     * @param startMillis start of search interval (epoch millis)
+     * @param endMillis end of search interval (epoch millis)
+     * @param rising true find a rising crossing (elevation increasing through degrees), false find a setting crossing
+     * @return time of the first crossing within the interval (epoch millis), or NO_CROSSING
+     */
+    public long findCrossing(ElevationFunction f, double degrees, long startMillis, long endMillis, boolean rising)
+    {
+        lastIterations = lastEvaluations = 0;
+        totalCalls++;
+        if (startMillis > endMillis) {
+            return NO_CROSSING;
+        }
+
+        long a = startMillis;
+        double fa = evaluate(f, a, degrees, rising);
+        if (Double.isNaN(fa)) {
+            return NO_CROSSING;
+        }
+        if (fa == 0) {
+            return a;
+        }
+
+        double maxRate = f.maxRate() / (60 * 60 * 1000d);    // degrees per milli
+        long p = a;             // previous sample
+        double fp = fa;
+        boolean skipped = false;    // true if the previous step was skipped ahead (no crossing before a)
+        while (a < endMillis)
+        {
+            long step = bracketStep;
+            boolean skip = false;
+            if (!Double.isNaN(maxRate) && maxRate > 0 && fa < -SKIP_MARGIN)
+            {
+                long minStep = (long)((-fa - SKIP_MARGIN) / maxRate);    // a crossing can't occur any sooner than this
+                if (minStep > step) {
+                    step = minStep;
+                    skip = true;
+                }
+            }
+            long b = Math.min(a + step, endMillis);
+            double fb = evaluate(f, b, degrees, rising);
+            if (Double.isNaN(fb)) {
+                return NO_CROSSING;
+            }
+            if (fa < 0 && fb >= 0) {
+                return (fb == 0 ? b : refine(f, degrees, rising, a, fa, b, fb));
+            }
+
+            // no sign change; near an extremum (e.g. culmination) the elevation may cross the target and cross back
+            // within a single step, so look for the extremum between the samples (a maximum if the samples are below
+            // zero, a minimum if above) and search the side of it that goes from negative to positive
+            if (!skip)
+            {
+                boolean below = (fa < 0);
+                double sign = (below ? 1 : -1);
+                long lo = ((sign * fa >= sign * fp && sign * fa >= sign * fb) ? (skipped ? a : p)
+                        : ((b == endMillis && sign * fb > sign * fa) ? a : b));
+                if (lo < b && (lo == a || (fp < 0) == below))
+                {
+                    long x = findMaximum(f, degrees, rising, sign, lo, b);
+                    double fx = evaluate(f, x, degrees, rising);
+                    if (below && fx >= 0) {
+                        return (fx == 0 ? x : refine(f, degrees, rising, lo, (lo == p ? fp : fa), x, fx));
+                    } else if (!below && fx < 0) {
+                        return refine(f, degrees, rising, x, fx, b, fb);
+                    }
+                }
+            }
+            p = a;
+            fp = fa;
+            a = b;
+            fa = fb;
+            skipped = skip;
+        }
+        return NO_CROSSING;
+    }
+
+    /**
+     * Golden section search for the maximum of sign * (signed) elevation; assumes a single maximum within [lo, hi].
+     * @param sign 1 (find the maximum), -1 (find the minimum)
+     * @return time of the maximum (epoch millis)
+     */
+    protected long findMaximum(ElevationFunction f, double degrees, boolean rising, double sign, long lo, long hi)
+    {
+        double r = (Math.sqrt(5) - 1) / 2d;
+        long x1 = hi - Math.round(r * (hi - lo));
+        long x2 = lo + Math.round(r * (hi - lo));
+        double f1 = sign * evaluate(f, x1, degrees, rising);
+        double f2 = sign * evaluate(f, x2, degrees, rising);
+        while ((hi - lo) > toleranceMillis && !Double.isNaN(f1) && !Double.isNaN(f2))
+        {
+            if (f1 < f2)
+            {
+                lo = x1;
+                x1 = x2;
+                f1 = f2;
+                x2 = lo + Math.round(r * (hi - lo));
+                f2 = sign * evaluate(f, x2, degrees, rising);
+            } else {
+                hi = x2;
+                x2 = x1;
+                f2 = f1;
+                x1 = hi - Math.round(r * (hi - lo));
+                f1 = sign * evaluate(f, x1, degrees, rising);
+            }
+        }
+        return (f1 >= f2 ? x1 : x2);
+    }
+
+    /**
+     * @return elevation relative to the target, signed so that the crossing goes from negative to positive
+     */
+    protected double evaluate(ElevationFunction f, long millis, double degrees, boolean rising)
+    {
+        lastEvaluations++;
+        totalEvaluations++;
+        double value = f.elevation(millis) - degrees;
+        return (rising ? value : -value);
+    }
+
+    /**
+     * Brent's method (with a Newton step when a rate is available).
+     * @param a0 start of bracket (fa0 < 0)
+     * @param b0 end of bracket (fb0 > 0)
+     * @return time of crossing (epoch millis)
+     */
+    protected long refine(ElevationFunction f, double degrees, boolean rising, long a0, double fa0, long b0, double fb0)
+    {
+        double a = 0, b = b0 - a0, c = b;    // relative to a0 (millis)
+        double fa = fa0, fb = fb0, fc = fb;
+        double d = b - a, e = d;
+        double sign = (rising ? 1 : -1);
+        double rate = f.rate();    // at b0
+
+        for (int i=0; i<maxIterations; i++)
+        {
+            lastIterations++;
+            totalIterations++;
+
+            if ((fb > 0 && fc > 0) || (fb < 0 && fc < 0))
+            {
+                c = a;    // b and c bracket the crossing
+                fc = fa;
+                d = e = b - a;
+            }
+            if (Math.abs(fc) < Math.abs(fb))
+            {
+                a = b; b = c; c = a;    // b is the best estimate
+                fa = fb; fb = fc; fc = fa;
+                rate = Double.NaN;      // (rate was for the previous b)
+            }
+
+            double tol = 0.5 * toleranceMillis;
+            double m = 0.5 * (c - b);
+            if (Math.abs(m) <= tol || fb == 0) {
+                return a0 + Math.round(b);
+            }
+
+            double newton = ((!Double.isNaN(rate) && rate != 0) ? (-fb / (sign * rate / (60 * 60 * 1000d))) : Double.NaN);
+            if (!Double.isNaN(newton) && Math.abs(newton) < Math.abs(m) && (newton * m) > 0)
+            {
+                e = d;    // newton step (from derivative hint) falls within the bracket
+                d = newton;
+
+            } else if (Math.abs(e) >= tol && Math.abs(fa) > Math.abs(fb)) {
+                double p, q, r;
+                double s = fb / fa;
+                if (a == c) {
+                    p = 2 * m * s;    // secant
+                    q = 1 - s;
+                } else {
+                    q = fa / fc;      // inverse quadratic interpolation
+                    r = fb / fc;
+                    p = s * (2 * m * q * (q - r) - (b - a) * (r - 1));
+                    q = (q - 1) * (r - 1) * (s - 1);
+                }
+                if (p > 0) {
+                    q = -q;
+                } else p = -p;
+
+                if (2 * p < Math.min(3 * m * q - Math.abs(tol * q), Math.abs(e * q)))
+                {
+                    e = d;    // accept interpolation
+                    d = p / q;
+                } else {
+                    d = m;    // bisection
+                    e = m;
+                }
+            } else {
+                d = m;    // bisection
+                e = m;
+            }
+
+            a = b;
+            fa = fb;
+            b += (Math.abs(d) > tol ? d : (m > 0 ? tol : -tol));
+            fb = evaluate(f, a0 + Math.round(b), degrees, rising);
+            rate = f.rate();
+            if (Double.isNaN(fb)) {
+                return a0 + Math.round(a);
+            }
+        }
+        return a0 + Math.round(b);
+    }
+
+    /**
+     * ElevationFunction
+     */
+    public interface ElevationFunction
+    {
+        /**
+         * @param millis time (epoch millis)
+         * @return elevation (degrees), or NaN if unavailable
+         */
+        double elevation(long millis);
+
+        /**
+         * @return rate of change of the elevation at the most recently evaluated time (degrees per hour), or NaN if unknown
+         */
+        double rate();
+
+        /**
+         * @return upper bound on the rate of change of the elevation (degrees per hour), or NaN if unknown
+         */
+        double maxRate();
+    }
+
+    /**
+     * Sun elevation (from SuntimesCalculator.getSunPosition); the rate is estimated from the azimuth (earth rotation).
+     */
+    public static class SunElevation implements ElevationFunction
+    {
+        public static final double SIDEREAL_RATE = 15.041;    // degrees per hour
+        public static final double MAX_DECLINATION_RATE = 0.02;    // degrees per hour
+
+        protected SuntimesCalculator calculator;
+        protected Calendar calendar;
+        protected double cosLatitude;
+        protected double rate = Double.NaN;
+
+        public SunElevation(SuntimesCalculator calculator)
+        {
+            this.calculator = calculator;
+            TimeZone timezone = calculator.getTimeZone();
+            this.calendar = Calendar.getInstance(timezone != null ? timezone : TimeZone.getDefault());
+            Location location = calculator.getLocation();
+            this.cosLatitude = (location != null ? Math.cos(Math.toRadians(location.getLatitudeAsDouble())) : Double.NaN);
+        }
+
+        public SuntimesCalculator getCalculator() {
+            return calculator;
+        }
+
+        @Override
+        public double elevation(long millis)
+        {
+            calendar.setTimeInMillis(millis);
+            SuntimesCalculator.Position position = position(calendar);
+            if (position == null) {
+                rate = Double.NaN;
+                return Double.NaN;
+            }
+            rate = rateOfChange(position.azimuth);
+            return position.elevation;
+        }
+
+        @Override
+        public double rate() {
+            return rate;
+        }
+
+        @Override
+        public double maxRate() {
+            return hourAngleRate() * cosLatitude + declinationRate();
+        }
+
+        protected double rateOfChange(double azimuth) {
+            return hourAngleRate() * cosLatitude * Math.sin(Math.toRadians(azimuth));
+        }
+
+        protected double hourAngleRate() {
+            return SIDEREAL_RATE;
+        }
+
+        protected double declinationRate() {
+            return MAX_DECLINATION_RATE;
+        }
+
+        protected SuntimesCalculator.Position position(Calendar calendar) {
+            return calculator.getSunPosition(calendar);
+        }
+    }
+
+    /**
+     * Moon elevation (from SuntimesCalculator.getMoonPosition).
+     */
+    public static class MoonElevation extends SunElevation
+    {
+        public static final double LUNAR_RATE = 14.492;    // degrees per hour (mean)
+        public static final double MAX_DECLINATION_RATE = 0.3;    // degrees per hour
+
+        public MoonElevation(SuntimesCalculator calculator) {
+            super(calculator);
+        }
+
+        @Override
+        protected double hourAngleRate() {
+            return LUNAR_RATE;
+        }
+
+        @Override
+        protected double declinationRate() {
+            return MAX_DECLINATION_RATE;
+        }
+
+        @Override
+        protected SuntimesCalculator.Position position(Calendar calendar) {
+            return calculator.getMoonPosition(calendar);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Finds the time of lunar noon (upper culmination; the moon's local hour angle is 0) or lunar midnight (lower
+ * culmination; hour angle 180). The first estimate is made from the mean rate of the hour angle, then refined by
+ * secant iteration (the rate is measured between the last two evaluations), so only a few (~3-4) positions are needed.
+ */
+public class LunarTransitSolver
+{
+    public static final long NO_TRANSIT = Long.MIN_VALUE;
+
+    public static final double LUNAR_RATE = 14.492;    // degrees per hour (mean rate of the moon's hour angle)
+    public static final double MIN_RATE = 12;          // degrees per hour; (secant rates outside this range are rejected)
+    public static final double MAX_RATE = 16;
+
+    public static final long DEF_TOLERANCE_MILLIS = 1000;
+    public static final int DEF_MAX_ITERATIONS = 8;
+
+    protected long toleranceMillis;
+    protected int maxIterations;
+
+    public LunarTransitSolver() {
+        this(DEF_TOLERANCE_MILLIS, DEF_MAX_ITERATIONS);
+    }
+
+    /**
+     * @param toleranceMillis the transit is located to within this many milliseconds
+     * @param maxIterations max number of refining iterations (per transit)
+     */
+    public LunarTransitSolver(long toleranceMillis, int maxIterations)
+    {
+        this.toleranceMillis = Math.max(1, toleranceMillis);
+        this.maxIterations = Math.max(1, maxIterations);
+    }
+
+    public long getToleranceMillis() {
+        return toleranceMillis;
+    }
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * Evaluation counts (of HourAngleFunction).
+     */
+    protected int lastEvaluations = 0;
+    protected long totalEvaluations = 0, totalCalls = 0;
+
+    public int getLastEvaluations() {
+        return lastEvaluations;
+    }
+    public long getTotalEvaluations() {
+        return totalEvaluations;
+    }
+    public long getTotalCalls() {
+        return totalCalls;
+    }
+    public void resetCounts()
+    {
+        lastEvaluations = 0;
+        totalEvaluations = totalCalls = 0;
+    }
+
+    /**
+     * @param f hour angle function
+     * @param upper true find upper culmination (lunar noon), false find lower culmination (lunar midnight)
+     * @param startMillis start of search interval (epoch millis)
+     * @param endMillis end of search interval (epoch millis)
+     * @return time of the first transit within the interval (epoch millis), or NO_TRANSIT
+     */
+    public long findTransit(HourAngleFunction f, boolean upper, long startMillis, long endMillis)
+    {
+        long t = nextTransit(f, upper, startMillis);
+        return (t != NO_TRANSIT && t <= endMillis ? t : NO_TRANSIT);
+    }
+
+    /**
+     * @param f hour angle function
+     * @param upper true find upper culmination (lunar noon), false find lower culmination (lunar midnight)
+     * @param startMillis start of search (epoch millis)
+     * @return time of the next transit on or after startMillis (epoch millis), or NO_TRANSIT if positions are unavailable
+     */
+    public long nextTransit(HourAngleFunction f, boolean upper, long startMillis)
+    {
+        lastEvaluations = 0;
+        totalCalls++;
+        double target = (upper ? 0 : 180);
+
+        long t0 = startMillis;
+        for (int attempt=0; attempt<2; attempt++)
+        {
+            double h0 = evaluate(f, t0);
+            if (Double.isNaN(h0)) {
+                return NO_TRANSIT;
+            }
+            double delta = normalize360(target - h0);    // degrees remaining until the transit
+            long t = refine(f, target, t0 + (long)(delta / LUNAR_RATE * 60 * 60 * 1000), t0, -delta);
+            if (t == NO_TRANSIT) {
+                return NO_TRANSIT;
+            }
+            if (t >= startMillis) {
+                return t;
+            }
+            t0 = t + 60 * 60 * 1000;    // converged on a preceding transit (startMillis was within tolerance of it); try again after
+        }
+        return NO_TRANSIT;
+    }
+
+    /**
+     * Secant iteration on the (unwrapped) hour angle relative to the target.
+     * @param target 0 or 180 (degrees)
+     * @param t estimated time of transit (epoch millis)
+     * @param t0 time of the previous evaluation (epoch millis)
+     * @param e0 hour angle relative to target at t0 (degrees; unwrapped so that it is negative before the transit)
+     * @return time of transit (epoch millis)
+     */
+    protected long refine(HourAngleFunction f, double target, long t, long t0, double e0)
+    {
+        double rate0 = LUNAR_RATE / (60 * 60 * 1000d);    // degrees per milli
+        for (int i=0; i<maxIterations; i++)
+        {
+            double h = evaluate(f, t);
+            if (Double.isNaN(h)) {
+                return NO_TRANSIT;
+            }
+            double e = normalize180(h - target);    // (near the transit; wraps only when far from it)
+
+            double rate = rate0;
+            if (t != t0)
+            {
+                double secant = (e - e0) / (t - t0);
+                if (secant * 60 * 60 * 1000 >= MIN_RATE && secant * 60 * 60 * 1000 <= MAX_RATE) {
+                    rate = secant;
+                }
+            }
+            long step = Math.round(-e / rate);
+            t0 = t;
+            e0 = e;
+            t += step;
+            if (Math.abs(step) <= toleranceMillis) {
+                return t;
+            }
+        }
+        return t;
+    }
+
+    protected double evaluate(HourAngleFunction f, long millis)
+    {
+        lastEvaluations++;
+        totalEvaluations++;
+        return f.hourAngle(millis);
+    }
+
+    /**
+     * @return degrees [0, 360)
+     */
+    public static double normalize360(double degrees)
+    {
+        double value = degrees % 360;
+        return (value < 0 ? value + 360 : value);
+    }
+
+    /**
+     * @return degrees [-180, 180)
+     */
+    public static double normalize180(double degrees) {
+        return normalize360(degrees + 180) - 180;
+    }
+
+    /**
+     * @param millis time (epoch millis)
+     * @return greenwich mean sidereal time (degrees); Meeus (12.4)
+     */
+    public static double gmst(long millis)
+    {
+        double d = (millis / (24d * 60d * 60d * 1000d)) - 10957.5;    // days since J2000
+        double t = d / 36525d;
+        return normalize360(280.46061837 + (360.98564736629 * d) + (0.000387933 * t * t) - ((t * t * t) / 38710000d));
+    }
+
+    /**
+     * HourAngleFunction
+     */
+    public interface HourAngleFunction
+    {
+        /**
+         * @param millis time (epoch millis)
+         * @return local hour angle (degrees [0, 360)), or NaN if unavailable
+         */
+        double hourAngle(long millis);
+    }
+
+    /**
+     * Moon hour angle (from the right ascension of SuntimesCalculator.getMoonPosition).
+     */
+    public static class MoonHourAngle implements HourAngleFunction
+    {
+        protected SuntimesCalculator calculator;
+        protected Calendar calendar;
+        protected double longitude;
+
+        public MoonHourAngle(SuntimesCalculator calculator)
+        {
+            this.calculator = calculator;
+            TimeZone timezone = calculator.getTimeZone();
+            this.calendar = Calendar.getInstance(timezone != null ? timezone : TimeZone.getDefault());
+            Location location = calculator.getLocation();
+            this.longitude = (location != null ? location.getLongitudeAsDouble() : Double.NaN);
+        }
+
+        public SuntimesCalculator getCalculator() {
+            return calculator;
+        }
+
+        @Override
+        public double hourAngle(long millis)
+        {
+            calendar.setTimeInMillis(millis);
+            SuntimesCalculator.MoonPosition position = calculator.getMoonPosition(calendar);
+            return (position != null ? normalize360(gmst(millis) + longitude - position.rightAscension) : Double.NaN);
+        }
+    }
+}
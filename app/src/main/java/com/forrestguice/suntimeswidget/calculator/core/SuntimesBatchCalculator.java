@@ -0,0 +1,124 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+import java.util.Calendar;
+
+/**
+ * An optional extension to SuntimesCalculator that writes results into caller-supplied buffers
+ * (as epoch millis) rather than allocating a Calendar per result. Calculators that don't implement
+ * this interface can still be used through SuntimesBatchCalculatorBridge.
+ *
+ * @version 1.2.0
+ */
+public interface SuntimesBatchCalculator
+{
+    /**
+     * Value written to a buffer when an event does not occur on a given day.
+     */
+    long NO_EVENT = Long.MIN_VALUE;
+
+    int EVENT_ASTRONOMICAL_SUNRISE = 0;
+    int EVENT_NAUTICAL_SUNRISE = 1;
+    int EVENT_BLUE8_MORNING = 2;        // start of morning blue hour
+    int EVENT_CIVIL_SUNRISE = 3;
+    int EVENT_BLUE4_MORNING = 4;        // end of morning blue hour
+    int EVENT_OFFICIAL_SUNRISE = 5;
+    int EVENT_GOLDEN_MORNING = 6;       // end of morning golden hour
+    int EVENT_SOLAR_NOON = 7;
+    int EVENT_GOLDEN_EVENING = 8;       // start of evening golden hour
+    int EVENT_OFFICIAL_SUNSET = 9;
+    int EVENT_BLUE4_EVENING = 10;       // start of evening blue hour
+    int EVENT_CIVIL_SUNSET = 11;
+    int EVENT_BLUE8_EVENING = 12;       // end of evening blue hour
+    int EVENT_NAUTICAL_SUNSET = 13;
+    int EVENT_ASTRONOMICAL_SUNSET = 14;
+
+    /**
+     * All supported events (in chronological order).
+     */
+    int[] EVENTS_ALL = new int[] {
+            EVENT_ASTRONOMICAL_SUNRISE, EVENT_NAUTICAL_SUNRISE, EVENT_BLUE8_MORNING, EVENT_CIVIL_SUNRISE, EVENT_BLUE4_MORNING,
+            EVENT_OFFICIAL_SUNRISE, EVENT_GOLDEN_MORNING, EVENT_SOLAR_NOON, EVENT_GOLDEN_EVENING, EVENT_OFFICIAL_SUNSET,
+            EVENT_BLUE4_EVENING, EVENT_CIVIL_SUNSET, EVENT_BLUE8_EVENING, EVENT_NAUTICAL_SUNSET, EVENT_ASTRONOMICAL_SUNSET
+    };
+
+    /**
+     * Sun altitudes (degrees) for use with getDayEvents.
+     */
+    double ANGLE_OFFICIAL = Double.NaN;        // official sunrise/sunset (as defined by the calculator; refraction, etc); compare using Double.isNaN
+    double ANGLE_CIVIL = -6;
+    double ANGLE_NAUTICAL = -12;
+    double ANGLE_ASTRONOMICAL = -18;
+    double ANGLE_GOLDEN = 6;                   // end of morning / start of evening golden hour
+    double ANGLE_BLUE8 = -8;                   // start of morning / end of evening blue hour
+    double ANGLE_BLUE4 = -4;                   // end of morning / start of evening blue hour
+
+    /**
+     * Calculate several events over a range of days.
+     * @param startDate a Calendar representing the first date
+     * @param numDays the number of days to calculate (starting with startDate)
+     * @param events an array of EVENT_* values
+     * @param out a buffer of length >= numDays * events.length; results are written in rows of events.length, one row per day;
+     *            out[(day * events.length) + i] is the time (epoch millis) of events[i] on the nth day, or NO_EVENT
+     * @return the number of days written to the buffer
+     * @since 1.0.0
+     */
+    int getEventTimes(Calendar startDate, int numDays, int[] events, long[] out);
+
+    /**
+     * Calculate solar noon, and sunrise/sunset at several angles, for a single day. Implementations
+     * should compute the day's terms (solar transit, declination) once and derive each event from them.
+     * @param date a Calendar representing the date
+     * @param angles sun altitudes (degrees); e.g. ANGLE_CIVIL (-6), ANGLE_GOLDEN (6), or ANGLE_OFFICIAL
+     * @param out a buffer of length >= 1 + (2 * angles.length); out[0] is solar noon, out[1 + 2i] is the rising
+     *            and out[2 + 2i] the setting at angles[i] (epoch millis), or NO_EVENT
+     * @return the number of values written to the buffer
+     * @since 1.2.0
+     */
+    int getDayEvents(Calendar date, double[] angles, long[] out);
+
+    /**
+     * Sample the sun's position at regular intervals.
+     * @param startMillis time of the first sample (epoch millis)
+     * @param stepMillis interval between samples (millis)
+     * @param count the number of samples
+     * @param azimuth a buffer of length >= count (or null if not needed)
+     * @param elevation a buffer of length >= count (or null if not needed)
+     * @param rightAscension a buffer of length >= count (or null if not needed)
+     * @param declination a buffer of length >= count (or null if not needed)
+     * @return the number of samples written to the buffers (0 if not supported)
+     * @since 1.1.0
+     */
+    int getSunPositions(long startMillis, long stepMillis, int count, double[] azimuth, double[] elevation, double[] rightAscension, double[] declination);
+
+    /**
+     * Sample the moon's position at regular intervals.
+     * @param startMillis time of the first sample (epoch millis)
+     * @param stepMillis interval between samples (millis)
+     * @param count the number of samples
+     * @param azimuth a buffer of length >= count (or null if not needed)
+     * @param elevation a buffer of length >= count (or null if not needed)
+     * @param rightAscension a buffer of length >= count (or null if not needed)
+     * @param declination a buffer of length >= count (or null if not needed)
+     * @return the number of samples written to the buffers (0 if not supported)
+     * @since 1.1.0
+     */
+    int getMoonPositions(long startMillis, long stepMillis, int count, double[] azimuth, double[] elevation, double[] rightAscension, double[] declination);
+}
@@ -0,0 +1,289 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Implements SuntimesBatchCalculator on top of the (Calendar based) SuntimesCalculator interface.
+ * Used with calculators that don't support batch operations (e.g. third party plugins).
+ */
+public class SuntimesBatchCalculatorBridge implements SuntimesBatchCalculator
+{
+    /**
+     * @param calculator some SuntimesCalculator
+     * @return the calculator itself (if it supports batch operations), or a bridge wrapping it
+     */
+    public static SuntimesBatchCalculator from(SuntimesCalculator calculator)
+    {
+        if (calculator instanceof SuntimesBatchCalculator) {
+            return (SuntimesBatchCalculator) calculator;
+        } else return new SuntimesBatchCalculatorBridge(calculator);
+    }
+
+    protected SuntimesCalculator calculator;
+
+    public SuntimesBatchCalculatorBridge(SuntimesCalculator calculator) {
+        this.calculator = calculator;
+    }
+
+    public SuntimesCalculator getCalculator() {
+        return calculator;
+    }
+
+    @Override
+    public int getEventTimes(Calendar startDate, int numDays, int[] events, long[] out)
+    {
+        int n = (events.length > 0 ? Math.min(numDays, out.length / events.length) : 0);
+        Calendar date = (Calendar) startDate.clone();
+        for (int day=0; day<n; day++)
+        {
+            Calendar[] blueMorning = null, blueEvening = null;
+            int offset = day * events.length;
+            for (int i=0; i<events.length; i++)
+            {
+                Calendar event;
+                switch (events[i])
+                {
+                    case EVENT_ASTRONOMICAL_SUNRISE: event = calculator.getAstronomicalSunriseCalendarForDate(date); break;
+                    case EVENT_NAUTICAL_SUNRISE: event = calculator.getNauticalSunriseCalendarForDate(date); break;
+                    case EVENT_CIVIL_SUNRISE: event = calculator.getCivilSunriseCalendarForDate(date); break;
+                    case EVENT_OFFICIAL_SUNRISE: event = calculator.getOfficialSunriseCalendarForDate(date); break;
+                    case EVENT_GOLDEN_MORNING: event = calculator.getMorningGoldenHourForDate(date); break;
+                    case EVENT_SOLAR_NOON: event = calculator.getSolarNoonCalendarForDate(date); break;
+                    case EVENT_GOLDEN_EVENING: event = calculator.getEveningGoldenHourForDate(date); break;
+                    case EVENT_OFFICIAL_SUNSET: event = calculator.getOfficialSunsetCalendarForDate(date); break;
+                    case EVENT_CIVIL_SUNSET: event = calculator.getCivilSunsetCalendarForDate(date); break;
+                    case EVENT_NAUTICAL_SUNSET: event = calculator.getNauticalSunsetCalendarForDate(date); break;
+                    case EVENT_ASTRONOMICAL_SUNSET: event = calculator.getAstronomicalSunsetCalendarForDate(date); break;
+
+                    case EVENT_BLUE8_MORNING: case EVENT_BLUE4_MORNING:
+                        if (blueMorning == null) {
+                            blueMorning = calculator.getMorningBlueHourForDate(date);
+                        }
+                        event = (blueMorning != null ? blueMorning[events[i] == EVENT_BLUE8_MORNING ? 0 : 1] : null);
+                        break;
+
+                    case EVENT_BLUE4_EVENING: case EVENT_BLUE8_EVENING:
+                        if (blueEvening == null) {
+                            blueEvening = calculator.getEveningBlueHourForDate(date);
+                        }
+                        event = (blueEvening != null ? blueEvening[events[i] == EVENT_BLUE4_EVENING ? 0 : 1] : null);
+                        break;
+
+                    default: event = null; break;
+                }
+                out[offset + i] = (event != null ? event.getTimeInMillis() : NO_EVENT);
+            }
+            date.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return n;
+    }
+
+    @Override
+    public int getDayEvents(Calendar date, double[] angles, long[] out)
+    {
+        if (out.length < 1 + (2 * angles.length)) {
+            return 0;
+        }
+
+        Calendar noon = calculator.getSolarNoonCalendarForDate(date);
+        out[0] = (noon != null ? noon.getTimeInMillis() : NO_EVENT);
+
+        Calendar[] blueMorning = null, blueEvening = null;
+        for (int i=0; i<angles.length; i++)
+        {
+            Calendar rising, setting;
+            double angle = angles[i];
+            if (Double.isNaN(angle)) {
+                rising = calculator.getOfficialSunriseCalendarForDate(date);
+                setting = calculator.getOfficialSunsetCalendarForDate(date);
+
+            } else if (angle == ANGLE_CIVIL) {
+                rising = calculator.getCivilSunriseCalendarForDate(date);
+                setting = calculator.getCivilSunsetCalendarForDate(date);
+
+            } else if (angle == ANGLE_NAUTICAL) {
+                rising = calculator.getNauticalSunriseCalendarForDate(date);
+                setting = calculator.getNauticalSunsetCalendarForDate(date);
+
+            } else if (angle == ANGLE_ASTRONOMICAL) {
+                rising = calculator.getAstronomicalSunriseCalendarForDate(date);
+                setting = calculator.getAstronomicalSunsetCalendarForDate(date);
+
+            } else if (angle == ANGLE_GOLDEN) {
+                rising = calculator.getMorningGoldenHourForDate(date);
+                setting = calculator.getEveningGoldenHourForDate(date);
+
+            } else if (angle == ANGLE_BLUE8 || angle == ANGLE_BLUE4) {
+                if (blueMorning == null) {
+                    blueMorning = calculator.getMorningBlueHourForDate(date);
+                    blueEvening = calculator.getEveningBlueHourForDate(date);
+                }
+                rising = (blueMorning != null ? blueMorning[angle == ANGLE_BLUE8 ? 0 : 1] : null);
+                setting = (blueEvening != null ? blueEvening[angle == ANGLE_BLUE8 ? 1 : 0] : null);
+
+            } else {
+                rising = calculator.getSunriseCalendarForDate(date, angle);
+                setting = calculator.getSunsetCalendarForDate(date, angle);
+            }
+            out[1 + (2 * i)] = (rising != null ? rising.getTimeInMillis() : NO_EVENT);
+            out[2 + (2 * i)] = (setting != null ? setting.getTimeInMillis() : NO_EVENT);
+        }
+        return 1 + (2 * angles.length);
+    }
+
+    /**
+     * Implements getDayEvents using getEventTimes (for batch calculators that only support the standard angles).
+     * @return the number of values written to the buffer; angles without a matching EVENT_* are written as NO_EVENT
+     */
+    public static int getDayEvents(SuntimesBatchCalculator calculator, Calendar date, double[] angles, long[] out)
+    {
+        if (out.length < 1 + (2 * angles.length)) {
+            return 0;
+        }
+
+        int[] events = new int[1 + (2 * angles.length)];
+        events[0] = EVENT_SOLAR_NOON;
+        for (int i=0; i<angles.length; i++) {
+            events[1 + (2 * i)] = toEvent(angles[i], true);
+            events[2 + (2 * i)] = toEvent(angles[i], false);
+        }
+
+        if (calculator.getEventTimes(date, 1, events, out) < 1) {
+            for (int i=0; i<events.length; i++) {
+                out[i] = NO_EVENT;
+            }
+        }
+        return events.length;
+    }
+
+    /**
+     * @param angle sun altitude (degrees); ANGLE_*
+     * @param rising true morning event, false evening event
+     * @return the matching EVENT_* value, or -1
+     */
+    public static int toEvent(double angle, boolean rising)
+    {
+        if (Double.isNaN(angle)) {
+            return (rising ? EVENT_OFFICIAL_SUNRISE : EVENT_OFFICIAL_SUNSET);
+        } else if (angle == ANGLE_CIVIL) {
+            return (rising ? EVENT_CIVIL_SUNRISE : EVENT_CIVIL_SUNSET);
+        } else if (angle == ANGLE_NAUTICAL) {
+            return (rising ? EVENT_NAUTICAL_SUNRISE : EVENT_NAUTICAL_SUNSET);
+        } else if (angle == ANGLE_ASTRONOMICAL) {
+            return (rising ? EVENT_ASTRONOMICAL_SUNRISE : EVENT_ASTRONOMICAL_SUNSET);
+        } else if (angle == ANGLE_GOLDEN) {
+            return (rising ? EVENT_GOLDEN_MORNING : EVENT_GOLDEN_EVENING);
+        } else if (angle == ANGLE_BLUE8) {
+            return (rising ? EVENT_BLUE8_MORNING : EVENT_BLUE8_EVENING);
+        } else if (angle == ANGLE_BLUE4) {
+            return (rising ? EVENT_BLUE4_MORNING : EVENT_BLUE4_EVENING);
+        } else return -1;
+    }
+
+    /**
+     * @param event EVENT_*
+     * @return the sun altitude of the event (ANGLE_*, NaN for official sunrise/sunset), or null if the event isn't a rising or setting (e.g. EVENT_SOLAR_NOON)
+     */
+    public static Double toAngle(int event)
+    {
+        switch (event)
+        {
+            case EVENT_OFFICIAL_SUNRISE: case EVENT_OFFICIAL_SUNSET: return ANGLE_OFFICIAL;
+            case EVENT_CIVIL_SUNRISE: case EVENT_CIVIL_SUNSET: return ANGLE_CIVIL;
+            case EVENT_NAUTICAL_SUNRISE: case EVENT_NAUTICAL_SUNSET: return ANGLE_NAUTICAL;
+            case EVENT_ASTRONOMICAL_SUNRISE: case EVENT_ASTRONOMICAL_SUNSET: return ANGLE_ASTRONOMICAL;
+            case EVENT_GOLDEN_MORNING: case EVENT_GOLDEN_EVENING: return ANGLE_GOLDEN;
+            case EVENT_BLUE8_MORNING: case EVENT_BLUE8_EVENING: return ANGLE_BLUE8;
+            case EVENT_BLUE4_MORNING: case EVENT_BLUE4_EVENING: return ANGLE_BLUE4;
+            default: return null;
+        }
+    }
+
+    /**
+     * @param event EVENT_*
+     * @return true if the event is a morning event (rising), false otherwise
+     */
+    public static boolean isRising(int event)
+    {
+        switch (event)
+        {
+            case EVENT_ASTRONOMICAL_SUNRISE: case EVENT_NAUTICAL_SUNRISE: case EVENT_BLUE8_MORNING: case EVENT_CIVIL_SUNRISE:
+            case EVENT_BLUE4_MORNING: case EVENT_OFFICIAL_SUNRISE: case EVENT_GOLDEN_MORNING:
+                return true;
+            default: return false;
+        }
+    }
+
+    @Override
+    public int getSunPositions(long startMillis, long stepMillis, int count, double[] azimuth, double[] elevation, double[] rightAscension, double[] declination)
+    {
+        Calendar dateTime = Calendar.getInstance(timeZone());
+        for (int i=0; i<count; i++)
+        {
+            dateTime.setTimeInMillis(startMillis + (i * stepMillis));
+            SuntimesCalculator.SunPosition position = calculator.getSunPosition(dateTime);
+            if (position == null) {
+                return i;
+            }
+            setPosition(i, position, azimuth, elevation, rightAscension, declination);
+        }
+        return count;
+    }
+
+    @Override
+    public int getMoonPositions(long startMillis, long stepMillis, int count, double[] azimuth, double[] elevation, double[] rightAscension, double[] declination)
+    {
+        Calendar dateTime = Calendar.getInstance(timeZone());
+        for (int i=0; i<count; i++)
+        {
+            dateTime.setTimeInMillis(startMillis + (i * stepMillis));
+            SuntimesCalculator.MoonPosition position = calculator.getMoonPosition(dateTime);
+            if (position == null) {
+                return i;
+            }
+            setPosition(i, position, azimuth, elevation, rightAscension, declination);
+        }
+        return count;
+    }
+
+    protected TimeZone timeZone()
+    {
+        TimeZone timezone = calculator.getTimeZone();
+        return (timezone != null ? timezone : TimeZone.getDefault());
+    }
+
+    public static void setPosition(int i, SuntimesCalculator.Position position, double[] azimuth, double[] elevation, double[] rightAscension, double[] declination)
+    {
+        if (azimuth != null) {
+            azimuth[i] = position.azimuth;
+        }
+        if (elevation != null) {
+            elevation[i] = position.elevation;
+        }
+        if (rightAscension != null) {
+            rightAscension[i] = position.rightAscension;
+        }
+        if (declination != null) {
+            declination[i] = position.declination;
+        }
+    }
+}
@@ -22,6 +22,8 @@ import android.content.Context;
 import android.util.Log;
 
 import com.forrestguice.suntimeswidget.R;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculator;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculatorBridge;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.calculator.SuntimesCalculatorDescriptor;
 import com.forrestguice.suntimeswidget.settings.WidgetSettings;
@@ -35,7 +37,7 @@ import java.util.TimeZone;
  * A thin wrapper around a SunriseSunsetCalculator instance (from sunrisesunsetlib-java) that
  * implements the interface used by the widget.
  */
-public class SunriseSunsetSuntimesCalculator implements SuntimesCalculator
+public class SunriseSunsetSuntimesCalculator implements SuntimesCalculator, SuntimesBatchCalculator
 {
     public static final String NAME = "sunrisesunsetlib";
     public static final String REF = "com.forrestguice.suntimeswidget.calculator.sunrisesunset_java.SunriseSunsetSuntimesCalculator";
@@ -134,6 +136,64 @@ public class SunriseSunsetSuntimesCalculator implements SuntimesCalculator
         }
     }
 
+    @Override
+    public int getEventTimes(Calendar startDate, int numDays, int[] events, long[] out)
+    {
+        int n = (events.length > 0 ? Math.min(numDays, out.length / events.length) : 0);
+        Calendar date = (Calendar) startDate.clone();
+        for (int day=0; day<n; day++)
+        {
+            Calendar sunrise = null, sunset = null;
+            boolean hasRiseSet = false;    // official rise/set is shared by noon
+
+            int offset = day * events.length;
+            for (int i=0; i<events.length; i++)
+            {
+                if (!hasRiseSet && (events[i] == EVENT_OFFICIAL_SUNRISE || events[i] == EVENT_OFFICIAL_SUNSET || events[i] == EVENT_SOLAR_NOON))
+                {
+                    sunrise = getOfficialSunriseCalendarForDate(date);
+                    sunset = getOfficialSunsetCalendarForDate(date);
+                    hasRiseSet = true;
+                }
+
+                long eventMillis = NO_EVENT;
+                Calendar event = null;
+                switch (events[i])
+                {
+                    case EVENT_ASTRONOMICAL_SUNRISE: event = calculator.getAstronomicalSunriseCalendarForDate(date); break;
+                    case EVENT_NAUTICAL_SUNRISE: event = calculator.getNauticalSunriseCalendarForDate(date); break;
+                    case EVENT_CIVIL_SUNRISE: event = calculator.getCivilSunriseCalendarForDate(date); break;
+                    case EVENT_OFFICIAL_SUNRISE: event = sunrise; break;
+                    case EVENT_OFFICIAL_SUNSET: event = sunset; break;
+                    case EVENT_CIVIL_SUNSET: event = calculator.getCivilSunsetCalendarForDate(date); break;
+                    case EVENT_NAUTICAL_SUNSET: event = calculator.getNauticalSunsetCalendarForDate(date); break;
+                    case EVENT_ASTRONOMICAL_SUNSET: event = calculator.getAstronomicalSunsetCalendarForDate(date); break;
+
+                    case EVENT_SOLAR_NOON:
+                        if (sunrise != null && sunset != null)
+                        {
+                            long sunriseTime = sunrise.getTimeInMillis();
+                            long sunsetTime = sunset.getTimeInMillis();
+                            if (sunsetTime < sunriseTime)
+                                sunsetTime += (24 * 60 * 60 * 1000);  // bug workaround (see getSolarNoonCalendarForDate)
+                            eventMillis = sunriseTime + ((sunsetTime - sunriseTime) / 2L);
+                        }
+                        break;
+
+                    default: break;    // gold, blue (unsupported)
+                }
+                out[offset + i] = (event != null ? event.getTimeInMillis() : eventMillis);
+            }
+            date.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return n;
+    }
+
+    @Override
+    public int getDayEvents(Calendar date, double[] angles, long[] out) {
+        return SuntimesBatchCalculatorBridge.getDayEvents(this, date, angles, out);    // standard angles only
+    }
+
     @Override
     public Calendar getCivilSunsetCalendarForDate( Calendar date )
     {
@@ -264,6 +324,16 @@ public class SunriseSunsetSuntimesCalculator implements SuntimesCalculator
         return null;
     }
 
+    @Override
+    public int getSunPositions(long startMillis, long stepMillis, int count, double[] azimuth, double[] elevation, double[] rightAscension, double[] declination) {
+        return 0;
+    }
+
+    @Override
+    public int getMoonPositions(long startMillis, long stepMillis, int count, double[] azimuth, double[] elevation, double[] rightAscension, double[] declination) {
+        return 0;
+    }
+
     @Override
     public double getShadowLength(double objHeight, Calendar dateTime) {
         return -1;
@@ -22,7 +22,15 @@ import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.calculator.SuntimesCalculatorDescriptor;
 
+import net.time4j.Moment;
+import net.time4j.PlainDate;
+import net.time4j.calendar.astro.JulianDay;
 import net.time4j.calendar.astro.StdSolarCalculator;
+import net.time4j.scale.LeapSeconds;
+import net.time4j.scale.TimeScale;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
 
 public class Time4A4JSuntimesCalculator extends Time4ASuntimesCalculator implements SuntimesCalculator
 {
@@ -56,5 +64,98 @@ public class Time4A4JSuntimesCalculator extends Time4ASuntimesCalculator impleme
         return new SuntimesCalculatorDescriptor(Time4A4JSuntimesCalculator.NAME, Time4A4JSuntimesCalculator.LINK, Time4A4JSuntimesCalculator.REF, R.string.calculator_displayString_time4a_4j, Time4A4JSuntimesCalculator.FEATURES);
     }
 
-}
+    /**
+     * Solar noon and rising/setting at several angles; same as StdSolarCalculator.TIME4J (transitAtNoon, sunrise, sunset)
+     * but the transit (equation of time) and the declination at transit are computed once and shared by every angle.
+     */
+    @Override
+    public int getDayEvents(Calendar date, double[] angles, long[] out)
+    {
+        if (out.length < 1 + (2 * angles.length)) {
+            return 0;
+        }
+
+        StdSolarCalculator calculator = getCalculator();
+        int altitude = clampAltitude(solarTime.getAltitude());
+        double geodeticAngle = calculator.getGeodeticAngle(latitude, altitude);
+
+        PlainDate localDate = calendarToPlainDate(date);
+        Moment noon = transitAtNoon(localDate);
+        double jde = JulianDay.ofEphemerisTime(noon).getValue();
+        double decNoon = calculator.declination(jde);
+
+        out[0] = truncateToSeconds(momentToMillis(noon));
+        for (int i=0; i<angles.length; i++)
+        {
+            double zenith = (Double.isNaN(angles[i]) ? calculator.getZenithAngle(latitude, altitude) : 90 + geodeticAngle - angles[i]);
+            double cosZenith = Math.cos(Math.toRadians(zenith));
+            out[1 + (2 * i)] = eventMillis(noon, jde, decNoon, true, cosZenith);
+            out[2 + (2 * i)] = eventMillis(noon, jde, decNoon, false, cosZenith);
+        }
+        return 1 + (2 * angles.length);
+    }
+
+    /**
+     * Local noon corrected by the equation of time (in two steps); same as SolarTime.transitAtNoon (without truncation).
+     */
+    protected Moment transitAtNoon(PlainDate localDate)
+    {
+        double elapsed = (localDate.getDaysSinceEpochUTC() * 86400) + (12 * 3600) - (longitude * 240);
+        long secs = (long) Math.floor(elapsed);
+        int nanos = (int) ((elapsed - secs) * 1000000000);
+        TimeScale scale = TimeScale.UT;
+        if (!LeapSeconds.getInstance().isEnabled()) {
+            secs += (86400 * 730);
+            scale = TimeScale.POSIX;
+        }
+        Moment m1 = Moment.of(secs, nanos, scale);
+        Moment m2 = minusSeconds(m1, getCalculator().equationOfTime(JulianDay.ofEphemerisTime(m1).getValue()));
+        return minusSeconds(m1, getCalculator().equationOfTime(JulianDay.ofEphemerisTime(m2).getValue()));
+    }
 
+    protected static Moment minusSeconds(Moment moment, double seconds)
+    {
+        long secs = (long) Math.floor(seconds);
+        int nanos = (int) ((seconds - secs) * 1000000000);
+        return moment.minus(secs, TimeUnit.SECONDS).minus(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sunrise/sunset; same as StdSolarCalculator.TIME4J (the hour angle is iterated until it changes by less than 15s),
+     * starting from the declination at transit.
+     * @return time of event (epoch millis) or NO_EVENT
+     */
+    protected long eventMillis(Moment noon, double jde, double decNoon, boolean rising, double cosZenith)
+    {
+        double oldH, newH = 0;
+        do {
+            oldH = newH;
+            double dec = (oldH == 0 ? decNoon : getCalculator().declination(jde + oldH / 86400));
+            newH = hourAngle(rising, dec, cosZenith);
+            if (Double.isNaN(newH)) {
+                return NO_EVENT;
+            }
+        } while (Math.abs(newH - oldH) >= 15);
+
+        long secs = (long) Math.floor(newH);
+        int nanos = (int) ((newH - secs) * 1000000000);
+        Moment event = noon.plus(secs, TimeUnit.SECONDS).plus(nanos, TimeUnit.NANOSECONDS);
+        return truncateToSeconds(momentToMillis(event));
+    }
+
+    /**
+     * @param dec declination (degrees)
+     * @return local hour angle (seconds) of the sun at the given zenith angle, or NaN if the sun doesn't reach it
+     */
+    protected double hourAngle(boolean rising, double dec, double cosZenith)
+    {
+        double decRad = Math.toRadians(dec);
+        double cosH = (cosZenith - (Math.sin(decRad) * sinLatitude)) / (Math.cos(decRad) * cosLatitude);
+        if (cosH > 1 || cosH < -1) {
+            return Double.NaN;
+        }
+        double hourAngle = Math.toDegrees(Math.acos(cosH)) * 240;
+        return (rising ? -hourAngle : hourAngle);
+    }
+
+}
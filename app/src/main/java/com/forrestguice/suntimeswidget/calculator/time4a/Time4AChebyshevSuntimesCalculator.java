@@ -0,0 +1,395 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.time4a;
+
+import android.content.Context;
+
+import com.forrestguice.suntimeswidget.R;
+import com.forrestguice.suntimeswidget.calculator.SuntimesCalculatorDescriptor;
+import com.forrestguice.suntimeswidget.calculator.core.ChebyshevSeries;
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import net.time4j.CalendarUnit;
+import net.time4j.PlainDate;
+import net.time4j.calendar.astro.StdSolarCalculator;
+import net.time4j.engine.EpochDays;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * A variation of Time4A4JSuntimesCalculator that evaluates the sun using a Chebyshev approximation
+ * of the TIME4J ephemeris (see Time4ASolarEphemeris). Sun events and positions follow the same
+ * algorithms as TIME4J (and should agree within a few seconds), but avoid the cost of evaluating
+ * the full series (nutation, etc) for every call. The moon is evaluated the same way, from a Chebyshev
+ * approximation of the TIME4J lunar theory (see Time4ALunarEphemeris). Season calculations are unchanged.
+ */
+public class Time4AChebyshevSuntimesCalculator extends Time4ASuntimesCalculator implements SuntimesCalculator
+{
+    public static final String NAME = "time4a-chebyshev";
+    public static final String REF = "com.forrestguice.suntimeswidget.calculator.time4a.Time4AChebyshevSuntimesCalculator";
+    public static final String LINK = "time4j.net";
+    public static final int[] FEATURES = new int[] { FEATURE_RISESET, FEATURE_SOLSTICE, FEATURE_GOLDBLUE, FEATURE_POSITION, FEATURE_ALTITUDE, FEATURE_MOON };
+
+    public Time4AChebyshevSuntimesCalculator() { /* EMPTY */ }
+
+    @Override
+    public String name()
+    {
+        return NAME;
+    }
+
+    @Override
+    public int[] getSupportedFeatures()
+    {
+        return Time4AChebyshevSuntimesCalculator.FEATURES;
+    }
+
+    @Override
+    public StdSolarCalculator getCalculator()
+    {
+        return StdSolarCalculator.TIME4J;
+    }
+
+    public static SuntimesCalculatorDescriptor getDescriptor()
+    {
+        return new SuntimesCalculatorDescriptor(Time4AChebyshevSuntimesCalculator.NAME, Time4AChebyshevSuntimesCalculator.LINK, Time4AChebyshevSuntimesCalculator.REF, R.string.calculator_displayString_time4a_chebyshev, Time4AChebyshevSuntimesCalculator.FEATURES);
+    }
+
+    @Override
+    protected boolean useLunarEphemeris() {
+        return true;
+    }
+
+    protected double geodeticAngle;
+    protected double zenithOfficial;
+
+    private ChebyshevSeries window = null;    // most recently used window
+
+    @Override
+    public void init(Location location, TimeZone timezone, Context context)
+    {
+        super.init(location, timezone, context);
+        int altitude = clampAltitude(solarTime.getAltitude());
+        geodeticAngle = getCalculator().getGeodeticAngle(latitude, altitude);
+        zenithOfficial = getCalculator().getZenithAngle(latitude, altitude);
+    }
+
+    protected ChebyshevSeries ephemeris(long millis)
+    {
+        ChebyshevSeries w = window;
+        if (w == null || !w.contains(millis)) {
+            window = w = Time4ASolarEphemeris.getWindow(millis);
+        }
+        return w;
+    }
+
+    /**
+     * @param event EVENT_* value
+     * @return zenith angle of the event (degrees), or NaN if not a rising/setting event
+     */
+    protected double zenithAngle(int event)
+    {
+        switch (event)
+        {
+            case EVENT_ASTRONOMICAL_SUNRISE: case EVENT_ASTRONOMICAL_SUNSET: return 90 + geodeticAngle + 18;
+            case EVENT_NAUTICAL_SUNRISE: case EVENT_NAUTICAL_SUNSET: return 90 + geodeticAngle + 12;
+            case EVENT_CIVIL_SUNRISE: case EVENT_CIVIL_SUNSET: return 90 + geodeticAngle + 6;
+            case EVENT_OFFICIAL_SUNRISE: case EVENT_OFFICIAL_SUNSET: return zenithOfficial;
+            case EVENT_BLUE8_MORNING: case EVENT_BLUE8_EVENING: return 90 + geodeticAngle + SUN_ALTITUDE_BLUE_HIGH;
+            case EVENT_BLUE4_MORNING: case EVENT_BLUE4_EVENING: return 90 + geodeticAngle + SUN_ALTITUDE_BLUE_LOW;
+            case EVENT_GOLDEN_MORNING: case EVENT_GOLDEN_EVENING: return 90 + geodeticAngle - SUN_ALTITUDE_GOLDEN;
+            default: return Double.NaN;
+        }
+    }
+
+    /**
+     * @param localDate date
+     * @param event EVENT_* value
+     * @return time of event (epoch millis) or NO_EVENT
+     */
+    protected long eventMillis(PlainDate localDate, int event)
+    {
+        if (event == EVENT_SOLAR_NOON) {
+            return truncateToSeconds(transitMillis(localDate, 12));
+        } else return eventMillis(localDate, (event < EVENT_SOLAR_NOON), zenithAngle(event));
+    }
+
+    /**
+     * Sunrise/sunset; same as StdSolarCalculator.TIME4J (the hour angle is iterated until it changes by less than 15s).
+     * @param localDate date
+     * @param rising true sunrise, false sunset
+     * @param zenith zenith angle (degrees)
+     * @return time of event (epoch millis) or NO_EVENT
+     */
+    protected long eventMillis(PlainDate localDate, boolean rising, double zenith)
+    {
+        if (Double.isNaN(zenith)) {
+            return NO_EVENT;
+        }
+        long noon = transitMillis(localDate, 12);
+        return eventMillis(noon, Time4ASolarEphemeris.declination(ephemeris(noon), noon), rising, zenith);
+    }
+
+    /**
+     * @param noon time of transit (epoch millis)
+     * @param decNoon declination at transit (degrees)
+     * @param rising true sunrise, false sunset
+     * @param zenith zenith angle (degrees)
+     * @return time of event (epoch millis) or NO_EVENT
+     */
+    protected long eventMillis(long noon, double decNoon, boolean rising, double zenith)
+    {
+        double cosZenith = Math.cos(Math.toRadians(zenith));
+        double oldH, newH = 0;
+        do {
+            oldH = newH;
+            long millis = noon + (long)(oldH * 1000);
+            newH = hourAngle(rising, (oldH == 0 ? decNoon : Time4ASolarEphemeris.declination(ephemeris(millis), millis)), cosZenith);
+            if (Double.isNaN(newH)) {
+                return NO_EVENT;
+            }
+        } while (Math.abs(newH - oldH) >= 15);
+        return truncateToSeconds(noon + (long) Math.floor(newH * 1000));
+    }
+
+    /**
+     * @param dec declination (degrees)
+     * @return local hour angle (seconds) of the sun at the given zenith angle, or NaN if the sun doesn't reach it
+     */
+    protected double hourAngle(boolean rising, double dec, double cosZenith)
+    {
+        double decRad = Math.toRadians(dec);
+        double cosH = (cosZenith - (Math.sin(decRad) * sinLatitude)) / (Math.cos(decRad) * cosLatitude);
+        if (cosH > 1 || cosH < -1) {
+            return Double.NaN;
+        }
+        double hourAngle = Math.toDegrees(Math.acos(cosH)) * 240;
+        return (rising ? -hourAngle : hourAngle);
+    }
+
+    /**
+     * Local noon (or midnight) corrected by the equation of time (in two steps); same as SolarTime.transitAtNoon.
+     * @return time of transit (epoch millis)
+     */
+    protected long transitMillis(PlainDate localDate, int hourOfEvent)
+    {
+        long m1 = (localDate.get(EpochDays.UNIX) * Time4ASolarEphemeris.DAY_MILLIS) + (hourOfEvent * 60 * 60 * 1000L) - (long) Math.floor(longitude * 240 * 1000);
+        double eot = Time4ASolarEphemeris.equationOfTime(ephemeris(m1), m1);
+        long m2 = m1 - (long) Math.floor(eot * 1000);
+        eot = Time4ASolarEphemeris.equationOfTime(ephemeris(m2), m2);
+        return m1 - (long) Math.floor(eot * 1000);
+    }
+
+    protected Calendar eventCalendar(Calendar date, int event) {
+        return millisToCalendar(eventMillis(calendarToPlainDate(date), event));
+    }
+
+    @Override
+    public Calendar getCivilSunriseCalendarForDate( Calendar date ) {
+        return eventCalendar(date, EVENT_CIVIL_SUNRISE);
+    }
+
+    @Override
+    public Calendar getNauticalSunriseCalendarForDate( Calendar date ) {
+        return eventCalendar(date, EVENT_NAUTICAL_SUNRISE);
+    }
+
+    @Override
+    public Calendar getAstronomicalSunriseCalendarForDate( Calendar date ) {
+        return eventCalendar(date, EVENT_ASTRONOMICAL_SUNRISE);
+    }
+
+    @Override
+    public Calendar getOfficialSunriseCalendarForDate( Calendar date ) {
+        return eventCalendar(date, EVENT_OFFICIAL_SUNRISE);
+    }
+
+    @Override
+    public Calendar getSolarNoonCalendarForDate(Calendar date) {
+        return eventCalendar(date, EVENT_SOLAR_NOON);
+    }
+
+    @Override
+    public Calendar getCivilSunsetCalendarForDate( Calendar date ) {
+        return eventCalendar(date, EVENT_CIVIL_SUNSET);
+    }
+
+    @Override
+    public Calendar getNauticalSunsetCalendarForDate( Calendar date ) {
+        return eventCalendar(date, EVENT_NAUTICAL_SUNSET);
+    }
+
+    @Override
+    public Calendar getAstronomicalSunsetCalendarForDate( Calendar date ) {
+        return eventCalendar(date, EVENT_ASTRONOMICAL_SUNSET);
+    }
+
+    @Override
+    public Calendar getOfficialSunsetCalendarForDate( Calendar date ) {
+        return eventCalendar(date, EVENT_OFFICIAL_SUNSET);
+    }
+
+    @Override
+    public Calendar getSunriseCalendarForDate( Calendar date, double angle ) {
+        return millisToCalendar(eventMillis(calendarToPlainDate(date), true, 90 + geodeticAngle + (-1 * angle)));
+    }
+
+    @Override
+    public Calendar getSunsetCalendarForDate( Calendar date, double angle ) {
+        return millisToCalendar(eventMillis(calendarToPlainDate(date), false, 90 + geodeticAngle + (-1 * angle)));
+    }
+
+    @Override
+    public Calendar[] getMorningBlueHourForDate(Calendar date)
+    {
+        PlainDate localDate = calendarToPlainDate(date);
+        return new Calendar[] { millisToCalendar(eventMillis(localDate, EVENT_BLUE8_MORNING)), millisToCalendar(eventMillis(localDate, EVENT_BLUE4_MORNING)) };
+    }
+
+    @Override
+    public Calendar[] getEveningBlueHourForDate(Calendar date)
+    {
+        PlainDate localDate = calendarToPlainDate(date);
+        return new Calendar[] { millisToCalendar(eventMillis(localDate, EVENT_BLUE4_EVENING)), millisToCalendar(eventMillis(localDate, EVENT_BLUE8_EVENING)) };
+    }
+
+    @Override
+    public Calendar getMorningGoldenHourForDate(Calendar date) {
+        return eventCalendar(date, EVENT_GOLDEN_MORNING);
+    }
+
+    @Override
+    public Calendar getEveningGoldenHourForDate(Calendar date) {
+        return eventCalendar(date, EVENT_GOLDEN_EVENING);
+    }
+
+    @Override
+    public int getEventTimes(Calendar startDate, int numDays, int[] events, long[] out)
+    {
+        int n = (events.length > 0 ? Math.min(numDays, out.length / events.length) : 0);
+        PlainDate localDate = calendarToPlainDate(startDate);
+        for (int day=0; day<n; day++)
+        {
+            int offset = day * events.length;
+            for (int i=0; i<events.length; i++) {
+                out[offset + i] = eventMillis(localDate, events[i]);
+            }
+            localDate = localDate.plus(1, CalendarUnit.DAYS);
+        }
+        return n;
+    }
+
+    /**
+     * Solar noon and rising/setting at several angles; the transit and the declination at transit are computed once
+     * and shared by every angle.
+     */
+    @Override
+    public int getDayEvents(Calendar date, double[] angles, long[] out)
+    {
+        if (out.length < 1 + (2 * angles.length)) {
+            return 0;
+        }
+
+        long noon = transitMillis(calendarToPlainDate(date), 12);
+        double decNoon = Time4ASolarEphemeris.declination(ephemeris(noon), noon);
+
+        out[0] = truncateToSeconds(noon);
+        for (int i=0; i<angles.length; i++)
+        {
+            double zenith = (Double.isNaN(angles[i]) ? zenithOfficial : 90 + geodeticAngle - angles[i]);
+            out[1 + (2 * i)] = eventMillis(noon, decNoon, true, zenith);
+            out[2 + (2 * i)] = eventMillis(noon, decNoon, false, zenith);
+        }
+        return 1 + (2 * angles.length);
+    }
+
+    /**
+     * Sun position; same as net.time4j.calendar.astro.SunPosition.at (with an approximated ephemeris).
+     * @param millis time (epoch millis)
+     * @param position a buffer of length 4; written as [azimuth, elevation, rightAscension, declination] (degrees)
+     */
+    protected void sunPosition(long millis, double[] position)
+    {
+        ChebyshevSeries w = ephemeris(millis);
+        double ra = Time4ASolarEphemeris.rightAscension(w, millis);
+        double dec = Time4ASolarEphemeris.declination(w, millis);
+        double raRad = Math.toRadians(ra);
+        double decRad = Math.toRadians(dec);
+
+        double tau = gmst(Time4ASolarEphemeris.meanSolarMJD(w, millis)) + Math.toRadians(Time4ASolarEphemeris.nutation(w, millis) + longitude) - raRad;
+
+        double sinElevation = sinLatitude * Math.sin(decRad) + cosLatitude * Math.cos(decRad) * Math.cos(tau);
+        double elevation = Math.toDegrees(Math.asin(sinElevation));
+        if (elevation >= -0.5 - geodeticAngle) {    // apparent elevation (refraction)
+            elevation += refractionFactor * refraction(elevation) / 60;
+        }
+
+        position[0] = Math.toDegrees(Math.atan2(Math.sin(tau), Math.cos(tau) * sinLatitude - Math.tan(decRad) * cosLatitude)) + 180;
+        position[1] = elevation;
+        position[2] = ra;
+        position[3] = dec;
+    }
+
+    @Override
+    public SunPosition getSunPosition(Calendar dateTime)
+    {
+        double[] position = new double[4];
+        sunPosition(dateTime.getTimeInMillis(), position);
+
+        SunPosition result = new SunPosition();
+        result.azimuth = position[0];
+        result.elevation = position[1];
+        result.rightAscension = position[2];
+        result.declination = position[3];
+        return result;
+    }
+
+    @Override
+    public int getSunPositions(long startMillis, long stepMillis, int count, double[] azimuth, double[] elevation, double[] rightAscension, double[] declination)
+    {
+        double[] position = new double[4];
+        for (int i=0; i<count; i++)
+        {
+            sunPosition(startMillis + (i * stepMillis), position);
+            if (azimuth != null) {
+                azimuth[i] = position[0];
+            }
+            if (elevation != null) {
+                elevation[i] = position[1];
+            }
+            if (rightAscension != null) {
+                rightAscension[i] = position[2];
+            }
+            if (declination != null) {
+                declination[i] = position[3];
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public double equationOfTime(Calendar dateTime)
+    {
+        long millis = dateTime.getTimeInMillis();
+        return Time4ASolarEphemeris.equationOfTime(ephemeris(millis), millis);
+    }
+
+}
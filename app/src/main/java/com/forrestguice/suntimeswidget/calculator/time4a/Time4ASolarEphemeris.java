@@ -0,0 +1,163 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.time4a;
+
+import com.forrestguice.suntimeswidget.calculator.core.ChebyshevSeries;
+
+import net.time4j.Moment;
+import net.time4j.TemporalType;
+import net.time4j.calendar.astro.JulianDay;
+import net.time4j.calendar.astro.StdSolarCalculator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Chebyshev approximation of the (location independent) solar ephemeris provided by StdSolarCalculator.TIME4J.
+ * The ephemeris is fit over fixed windows of WINDOW_DAYS (aligned to the UTC epoch); a bounded number of
+ * recently used windows are kept in memory and shared by all instances.
+ */
+public class Time4ASolarEphemeris
+{
+    public static final int RIGHT_ASCENSION = 0;     // degrees (unwrapped; see rightAscension)
+    public static final int DECLINATION = 1;         // degrees
+    public static final int EQUATION_OF_TIME = 2;    // seconds
+    public static final int NUTATION = 3;            // degrees; nutation in longitude * cos(obliquity) (correction to apparent sidereal time)
+    public static final int MEAN_SOLAR_TIME = 4;     // seconds; offset of mean solar time (as used by SunPosition) from UTC
+
+    public static final int WINDOW_DAYS = 4;
+    public static final int NUM_NODES = 12;
+    public static final int MAX_WINDOWS = 32;
+
+    public static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    public static final long WINDOW_MILLIS = WINDOW_DAYS * DAY_MILLIS;
+
+    private static final LinkedHashMap<Long, ChebyshevSeries> windows = new LinkedHashMap<Long, ChebyshevSeries>(MAX_WINDOWS, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ChebyshevSeries> eldest) {
+            return size() > MAX_WINDOWS;
+        }
+    };
+
+    /**
+     * @param millis time (epoch millis)
+     * @return a window containing the given time
+     */
+    public static ChebyshevSeries getWindow(long millis)
+    {
+        long i = millis / WINDOW_MILLIS;
+        if (millis < 0 && (millis % WINDOW_MILLIS) != 0) {
+            i--;
+        }
+
+        ChebyshevSeries window;
+        synchronized (windows) {
+            window = windows.get(i);
+        }
+        if (window == null)
+        {
+            window = createWindow(i * WINDOW_MILLIS, (i + 1) * WINDOW_MILLIS);
+            synchronized (windows) {
+                windows.put(i, window);
+            }
+        }
+        return window;
+    }
+
+    public static void clearWindows()
+    {
+        synchronized (windows) {
+            windows.clear();
+        }
+    }
+
+    protected static ChebyshevSeries createWindow(long start, long end)
+    {
+        StdSolarCalculator calculator = StdSolarCalculator.TIME4J;
+        long[] t = ChebyshevSeries.nodeTimes(start, end, NUM_NODES);
+        double[][] values = new double[5][NUM_NODES];
+        for (int k=0; k<NUM_NODES; k++)
+        {
+            Moment moment = TemporalType.MILLIS_SINCE_UNIX.translate(t[k]);
+            double jde = JulianDay.ofEphemerisTime(moment).getValue();
+            values[RIGHT_ASCENSION][k] = calculator.rightAscension(jde);
+            values[DECLINATION][k] = calculator.declination(jde);
+            values[EQUATION_OF_TIME][k] = calculator.equationOfTime(jde);
+            values[NUTATION][k] = calculator.getFeature(jde, "nutation") * Math.cos(Math.toRadians(calculator.getFeature(jde, "obliquity")));
+            values[MEAN_SOLAR_TIME][k] = (JulianDay.ofMeanSolarTime(moment).getMJD() - toMJD(t[k])) * 86400;
+
+            if (k > 0)
+            {
+                double delta = values[RIGHT_ASCENSION][k] - values[RIGHT_ASCENSION][k-1];    // unwrap [0, 360) so the series is continuous
+                if (delta > 180) {
+                    values[RIGHT_ASCENSION][k] -= 360;
+                } else if (delta < -180) {
+                    values[RIGHT_ASCENSION][k] += 360;
+                }
+            }
+        }
+        return new ChebyshevSeries(start, end, values);
+    }
+
+    /**
+     * @param millis time (epoch millis)
+     * @return modified julian date (UTC)
+     */
+    public static double toMJD(long millis) {
+        return (millis / (double) DAY_MILLIS) + 40587;
+    }
+
+    /**
+     * @return right ascension (degrees) [0, 360)
+     */
+    public static double rightAscension(ChebyshevSeries window, long millis)
+    {
+        double ra = window.value(RIGHT_ASCENSION, millis) % 360;
+        return (ra < 0 ? ra + 360 : ra);
+    }
+
+    /**
+     * @return declination (degrees)
+     */
+    public static double declination(ChebyshevSeries window, long millis) {
+        return window.value(DECLINATION, millis);
+    }
+
+    /**
+     * @return equation of time (seconds)
+     */
+    public static double equationOfTime(ChebyshevSeries window, long millis) {
+        return window.value(EQUATION_OF_TIME, millis);
+    }
+
+    /**
+     * @return nutation correction (degrees)
+     */
+    public static double nutation(ChebyshevSeries window, long millis) {
+        return window.value(NUTATION, millis);
+    }
+
+    /**
+     * @return modified julian date (mean solar time)
+     */
+    public static double meanSolarMJD(ChebyshevSeries window, long millis) {
+        return toMJD(millis) + (window.value(MEAN_SOLAR_TIME, millis) / 86400d);
+    }
+}
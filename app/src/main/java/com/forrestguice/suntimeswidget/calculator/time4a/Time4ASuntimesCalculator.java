@@ -21,15 +21,19 @@ package com.forrestguice.suntimeswidget.calculator.time4a;
 import android.content.Context;
 import android.util.Log;
 
+import com.forrestguice.suntimeswidget.calculator.core.ChebyshevSeries;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculator;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 
+import net.time4j.CalendarUnit;
 import net.time4j.Moment;
 import net.time4j.PlainDate;
 import net.time4j.TemporalType;
 import net.time4j.calendar.astro.AstronomicalSeason;
 
 import net.time4j.calendar.astro.LunarTime;
+
 import net.time4j.calendar.astro.SolarTime;
 import net.time4j.calendar.astro.StdSolarCalculator;
 
@@ -44,7 +48,7 @@ import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.TimeZone;
 
-public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
+public abstract class Time4ASuntimesCalculator implements SuntimesCalculator, SuntimesBatchCalculator
 {
     public static final int[] FEATURES = new int[] { FEATURE_RISESET, FEATURE_SOLSTICE, FEATURE_GOLDBLUE, FEATURE_POSITION, FEATURE_RISESET1 };
 
@@ -54,6 +58,11 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
     protected TimeZone timezone;
     protected Location location;
 
+    protected double latitude, longitude;
+    protected double sinLatitude, cosLatitude;
+    protected double refractionFactor;       // refraction factor of standard atmosphere (at altitude)
+    protected double lunarGeodeticAngle;     // dip of the horizon (as used by MoonPosition and LunarTime)
+
     @Override
     public int[] getSupportedFeatures()
     {
@@ -78,6 +87,15 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
         this.solarTime = SolarTime.ofLocation(location.getLatitudeAsDouble(), location.getLongitudeAsDouble(), clampAltitude(location.getAltitudeAsInteger()), getCalculator());
         this.timezone = timezone;
         this.location = location;
+
+        int altitude = clampAltitude(solarTime.getAltitude());
+        this.latitude = solarTime.getLatitude();
+        this.longitude = solarTime.getLongitude();
+        this.sinLatitude = Math.sin(Math.toRadians(latitude));
+        this.cosLatitude = Math.cos(Math.toRadians(latitude));
+        this.refractionFactor = Math.pow(1 - ((0.0065 * altitude) / 288.15), 4.255);
+        this.lunarGeodeticAngle = StdSolarCalculator.TIME4J.getGeodeticAngle(latitude, altitude);
+        this.moonWindow = null;
     }
 
     @Override
@@ -264,6 +282,93 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
         return momentToCalendar(goldEveningStart);
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public int getEventTimes(Calendar startDate, int numDays, int[] events, long[] out)
+    {
+        SolarTime.Calculator calculator = solarTime.getCalculator();
+        int altitude = clampAltitude(solarTime.getAltitude());
+        double latitude = solarTime.getLatitude();
+        double longitude = solarTime.getLongitude();
+        double geodeticAngle = calculator.getGeodeticAngle(latitude, altitude);
+
+        ChronoFunction<CalendarDate, Moment>[] functions = new ChronoFunction[events.length];    // events provided by solarTime (created once)
+        double[] angles = new double[events.length];                                            // events at some angle (from calculator)
+        boolean[] rising = new boolean[events.length];
+        for (int i=0; i<events.length; i++)
+        {
+            switch (events[i])
+            {
+                case EVENT_ASTRONOMICAL_SUNRISE: functions[i] = solarTime.sunrise(Twilight.ASTRONOMICAL); break;
+                case EVENT_NAUTICAL_SUNRISE: functions[i] = solarTime.sunrise(Twilight.NAUTICAL); break;
+                case EVENT_CIVIL_SUNRISE: functions[i] = solarTime.sunrise(Twilight.CIVIL); break;
+                case EVENT_OFFICIAL_SUNRISE: functions[i] = solarTime.sunrise(); break;
+                case EVENT_SOLAR_NOON: functions[i] = solarTime.transitAtNoon(); break;
+                case EVENT_OFFICIAL_SUNSET: functions[i] = solarTime.sunset(); break;
+                case EVENT_CIVIL_SUNSET: functions[i] = solarTime.sunset(Twilight.CIVIL); break;
+                case EVENT_NAUTICAL_SUNSET: functions[i] = solarTime.sunset(Twilight.NAUTICAL); break;
+                case EVENT_ASTRONOMICAL_SUNSET: functions[i] = solarTime.sunset(Twilight.ASTRONOMICAL); break;
+                case EVENT_BLUE8_MORNING: angles[i] = 90 + geodeticAngle + SUN_ALTITUDE_BLUE_HIGH; rising[i] = true; break;
+                case EVENT_BLUE4_MORNING: angles[i] = 90 + geodeticAngle + SUN_ALTITUDE_BLUE_LOW; rising[i] = true; break;
+                case EVENT_GOLDEN_MORNING: angles[i] = 90 + geodeticAngle - SUN_ALTITUDE_GOLDEN; rising[i] = true; break;
+                case EVENT_GOLDEN_EVENING: angles[i] = 90 + geodeticAngle - SUN_ALTITUDE_GOLDEN; break;
+                case EVENT_BLUE4_EVENING: angles[i] = 90 + geodeticAngle + SUN_ALTITUDE_BLUE_LOW; break;
+                case EVENT_BLUE8_EVENING: angles[i] = 90 + geodeticAngle + SUN_ALTITUDE_BLUE_HIGH; break;
+                default: angles[i] = Double.NaN; break;
+            }
+        }
+
+        int n = (events.length > 0 ? Math.min(numDays, out.length / events.length) : 0);
+        PlainDate localDate = calendarToPlainDate(startDate);
+        for (int day=0; day<n; day++)
+        {
+            int offset = day * events.length;
+            for (int i=0; i<events.length; i++)
+            {
+                Moment moment;
+                if (functions[i] != null) {
+                    moment = localDate.get(functions[i]);
+                } else if (!Double.isNaN(angles[i])) {
+                    moment = (rising[i] ? calculator.sunrise(localDate, latitude, longitude, angles[i])
+                                        : calculator.sunset(localDate, latitude, longitude, angles[i]));
+                } else moment = null;
+                out[offset + i] = momentToMillis(moment);
+            }
+            localDate = localDate.plus(1, CalendarUnit.DAYS);
+        }
+        return n;
+    }
+
+    @Override
+    public int getDayEvents(Calendar date, double[] angles, long[] out)
+    {
+        if (out.length < 1 + (2 * angles.length)) {
+            return 0;
+        }
+
+        SolarTime.Calculator calculator = solarTime.getCalculator();
+        int altitude = clampAltitude(solarTime.getAltitude());
+        double latitude = solarTime.getLatitude();
+        double longitude = solarTime.getLongitude();
+        double geodeticAngle = calculator.getGeodeticAngle(latitude, altitude);
+
+        PlainDate localDate = calendarToPlainDate(date);
+        out[0] = momentToMillis(localDate.get(solarTime.transitAtNoon()));
+        for (int i=0; i<angles.length; i++)
+        {
+            if (Double.isNaN(angles[i])) {
+                out[1 + (2 * i)] = momentToMillis(localDate.get(solarTime.sunrise()));
+                out[2 + (2 * i)] = momentToMillis(localDate.get(solarTime.sunset()));
+
+            } else {
+                double zenith = 90 + geodeticAngle - angles[i];
+                out[1 + (2 * i)] = momentToMillis(calculator.sunrise(localDate, latitude, longitude, zenith));
+                out[2 + (2 * i)] = momentToMillis(calculator.sunset(localDate, latitude, longitude, zenith));
+            }
+        }
+        return 1 + (2 * angles.length);
+    }
+
     public static final double SUN_ALTITUDE_GOLDEN = 6.0;
     public static final double SUN_ALTITUDE_BLUE_HIGH = 8.0;
     public static final double SUN_ALTITUDE_BLUE_LOW = 4.0;
@@ -361,6 +466,29 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
         return retValue;
     }
 
+    protected static long momentToMillis(Moment moment)
+    {
+        return (moment != null ? TemporalType.MILLIS_SINCE_UNIX.from(moment) : NO_EVENT);
+    }
+
+    protected Calendar millisToCalendar(long millis)
+    {
+        Calendar retValue = null;
+        if (millis != NO_EVENT)
+        {
+            retValue = new GregorianCalendar();
+            retValue.setTimeZone(timezone);
+            retValue.setTimeInMillis(millis);
+        }
+        return retValue;
+    }
+
+    protected static long truncateToSeconds(long millis)
+    {
+        long r = millis % 1000;
+        return (r < 0 ? millis - r - 1000 : millis - r);
+    }
+
     protected AstronomicalSeason adjustSeasonToHemisphere( AstronomicalSeason season )
     {
         boolean northernHemisphere = (this.solarTime.getLatitude() >= 0);
@@ -369,22 +497,220 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
         else return season.onSouthernHemisphere();
     }
 
+    /**
+     * @return true to evaluate the moon (positions, rise/set, apsides) from Time4ALunarEphemeris, false to use
+     * net.time4j.calendar.astro.MoonPosition and LunarTime directly (default)
+     */
+    protected boolean useLunarEphemeris() {
+        return false;
+    }
+
     @Override
     public MoonTimes getMoonTimesForDate(Calendar date)
     {
-        Moment moment = TemporalType.JAVA_UTIL_DATE.translate(date.getTime());
-        TZID tzid = toTimezone(date.getTimeZone()).getID();
-        PlainDate localDate = moment.toZonalTimestamp(tzid).toDate();
+        if (!useLunarEphemeris())
+        {
+            Moment moment = TemporalType.JAVA_UTIL_DATE.translate(date.getTime());
+            TZID tzid = toTimezone(date.getTimeZone()).getID();
+            PlainDate localDate = moment.toZonalTimestamp(tzid).toDate();
 
-        LunarTime lunarTime = LunarTime.ofLocation(tzid, this.solarTime.getLatitude(), this.solarTime.getLongitude(), this.solarTime.getAltitude());
-        LunarTime.Moonlight moonlight = lunarTime.on(localDate);
+            LunarTime lunarTime = LunarTime.ofLocation(tzid, this.solarTime.getLatitude(), this.solarTime.getLongitude(), this.solarTime.getAltitude());
+            LunarTime.Moonlight moonlight = lunarTime.on(localDate);
+
+            MoonTimes result = new MoonTimes();
+            result.riseTime = momentToCalendar(moonlight.moonrise()); // might be null meaning there is no moonrise
+            result.setTime = momentToCalendar(moonlight.moonset()); // might be null meaning there is no moonset
+            return result;
+        }
+
+        Calendar day = (Calendar) date.clone();
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        long start = day.getTimeInMillis();
+        day.add(Calendar.DAY_OF_MONTH, 1);
+        long end = day.getTimeInMillis();
+
+        long[] riseSet = new long[2];
+        moonRiseSet(start, end, riseSet);
 
         MoonTimes result = new MoonTimes();
-        result.riseTime = momentToCalendar(moonlight.moonrise()); // might be null meaning there is no moonrise
-        result.setTime = momentToCalendar(moonlight.moonset()); // might be null meaning there is no moonset
+        result.riseTime = millisToCalendar(riseSet[0]);  // might be null meaning there is no moonrise
+        result.setTime = millisToCalendar(riseSet[1]);   // might be null meaning there is no moonset
         return result;
     }
 
+    /**
+     * Moonrise and moonset; same as net.time4j.calendar.astro.LunarTime (the altitude is sampled hourly and interpolated),
+     * but evaluated from Time4ALunarEphemeris (rather than creating a LunarTime per call).
+     * @param start start of day (epoch millis)
+     * @param end end of day (epoch millis)
+     * @param out a buffer of length 2; written as [moonrise, moonset] (epoch millis) or NO_EVENT
+     */
+    protected void moonRiseSet(long start, long end, long[] out)
+    {
+        double[] result = new double[4];
+        double hour = 1;
+        double y_minus = moonAltitude(start);
+        boolean rises = false, sets = false;
+        double risingHour = Double.NaN, settingHour = Double.NaN;
+
+        do {    // search 2-hour intervals (quadratic interpolation)
+            double y_0 = moonAltitude(start + (long)(hour * 60 * 60 * 1000));
+            double y_plus = moonAltitude(start + (long)((hour + 1) * 60 * 60 * 1000));
+            int count = interpolate(y_minus, y_0, y_plus, result);
+            if (count == 1)
+            {
+                double root = (Double.isNaN(result[2]) ? result[3] : result[2]);
+                if (y_minus < 0) {
+                    risingHour = hour + root;
+                    rises = true;
+                } else {
+                    settingHour = hour + root;
+                    sets = true;
+                }
+            } else if (count == 2) {
+                risingHour = hour + (result[1] < 0 ? result[3] : result[2]);
+                settingHour = hour + (result[1] < 0 ? result[2] : result[3]);
+                rises = sets = true;
+            }
+            y_minus = y_plus;
+            hour += 2;
+        } while (!(hour > 25 || (rises && sets)));    // 25h (end of dst)
+
+        long rising = (rises ? truncateToSeconds(start + (long) Math.floor(risingHour * 60 * 60 * 1000)) : NO_EVENT);
+        long setting = (sets ? truncateToSeconds(start + (long) Math.floor(settingHour * 60 * 60 * 1000)) : NO_EVENT);
+        out[0] = (rising >= start && rising < end ? rising : NO_EVENT);
+        out[1] = (setting >= start && setting < end ? setting : NO_EVENT);
+    }
+
+    /**
+     * @return sine of the moon's altitude relative to its apparent rising/setting altitude (roots are moonrise/moonset)
+     */
+    protected double moonAltitude(long millis)
+    {
+        ChebyshevSeries w = lunarEphemeris(millis);
+        double decRad = Math.toRadians(Time4ALunarEphemeris.declination(w, millis));
+        double tau = gmst(Time4ALunarEphemeris.meanSolarMJD(w, millis)) + Math.toRadians(Time4ALunarEphemeris.nutation(w, millis) + longitude - Time4ALunarEphemeris.rightAscension(w, millis));
+        double sinAltitude = sinLatitude * Math.sin(decRad) + cosLatitude * Math.cos(decRad) * Math.cos(tau);
+        double correction = 0.7275 * horizontalParallax(Time4ALunarEphemeris.distance(w, millis)) - (refractionFactor * 34 / 60) - lunarGeodeticAngle;
+        return sinAltitude - Math.sin(Math.toRadians(correction));
+    }
+
+    /**
+     * Quadratic interpolation of f(-1), f(0), f(+1).
+     * @param result a buffer of length 4; written as [xe, ye, root1, root2]
+     * @return the number of roots within [-1, 1]
+     */
+    protected static int interpolate(double y_minus, double y_0, double y_plus, double[] result)
+    {
+        double a = 0.5 * (y_plus + y_minus) - y_0;
+        double b = 0.5 * (y_plus - y_minus);
+        double xe = -b / (2.0 * a);
+        double ye = (a * xe + b) * xe + y_0;
+        double dis = b * b - 4 * a * y_0;
+
+        double root1 = Double.NaN, root2 = Double.NaN;
+        int count = 0;
+        if (dis >= 0)
+        {
+            double dx = 0.5 * Math.sqrt(dis) / Math.abs(a);
+            if (Math.abs(xe - dx) <= 1.0) {
+                root1 = xe - dx;
+                count++;
+            }
+            if (Math.abs(xe + dx) <= 1.0) {
+                root2 = xe + dx;
+                count++;
+            }
+        }
+        result[0] = xe;
+        result[1] = ye;
+        result[2] = root1;
+        result[3] = root2;
+        return count;
+    }
+
+    private ChebyshevSeries moonWindow = null;    // most recently used window
+    protected ChebyshevSeries lunarEphemeris(long millis)
+    {
+        ChebyshevSeries w = moonWindow;
+        if (w == null || !w.contains(millis)) {
+            moonWindow = w = Time4ALunarEphemeris.getWindow(millis);
+        }
+        return w;
+    }
+
+    /**
+     * Moon position; same as net.time4j.calendar.astro.MoonPosition.at (evaluated from Time4ALunarEphemeris if useLunarEphemeris).
+     * @param millis time (epoch millis)
+     * @param position a buffer of length 5; written as [azimuth, elevation, rightAscension, declination, distance]
+     */
+    protected void moonPosition(long millis, double[] position)
+    {
+        if (!useLunarEphemeris())
+        {
+            net.time4j.calendar.astro.MoonPosition p = net.time4j.calendar.astro.MoonPosition.at(TemporalType.MILLIS_SINCE_UNIX.translate(millis), solarTime);
+            position[0] = p.getAzimuth();
+            position[1] = p.getElevation();
+            position[2] = p.getRightAscension();
+            position[3] = p.getDeclination();
+            position[4] = p.getDistance();
+            return;
+        }
+
+        ChebyshevSeries w = lunarEphemeris(millis);
+        double ra = Time4ALunarEphemeris.rightAscension(w, millis);
+        double dec = Time4ALunarEphemeris.declination(w, millis);
+        double distance = Time4ALunarEphemeris.distance(w, millis);
+        double decRad = Math.toRadians(dec);
+        double tau = gmst(Time4ALunarEphemeris.meanSolarMJD(w, millis)) + Math.toRadians(Time4ALunarEphemeris.nutation(w, millis) + longitude - ra);
+
+        double sinElevation = sinLatitude * Math.sin(decRad) + cosLatitude * Math.cos(decRad) * Math.cos(tau);
+        double elevation = Math.toDegrees(Math.asin(sinElevation));
+        if (elevation >= -0.5 - lunarGeodeticAngle) {    // apparent elevation (parallax, refraction)
+            elevation = elevation - horizontalParallax(distance) + (refractionFactor * refraction(elevation) / 60);
+        }
+
+        position[0] = Math.toDegrees(Math.atan2(Math.sin(tau), Math.cos(tau) * sinLatitude - Math.tan(decRad) * cosLatitude)) + 180;
+        position[1] = elevation;
+        position[2] = ra;
+        position[3] = dec;
+        position[4] = distance;
+    }
+
+    /**
+     * @param mjd modified julian date (mean solar time)
+     * @return greenwich mean sidereal time (radians)
+     */
+    protected static double gmst(double mjd)
+    {
+        double mjd0 = Math.floor(mjd);
+        double ut = 86400 * (mjd - mjd0);
+        double jct0 = (mjd0 - 51544.5) / 36525;
+        double jct = (mjd - 51544.5) / 36525;
+        double gmstInSecs = 24110.54841 + 8640184.812866 * jct0 + 1.0027379093 * ut + (0.093104 - 0.0000062 * jct) * jct * jct;
+        double gmstInDays = gmstInSecs / 86400;
+        return (gmstInDays - Math.floor(gmstInDays)) * 2 * Math.PI;
+    }
+
+    /**
+     * @param elevation elevation (degrees)
+     * @return refraction (arc minutes); Saemundsson (Meeus, 16.4)
+     */
+    protected static double refraction(double elevation) {
+        return (1.02 / Math.tan(Math.toRadians((10.3 / (elevation + 5.11)) + elevation))) + 0.0019279;
+    }
+
+    /**
+     * @param distance distance (km)
+     * @return horizontal parallax (degrees)
+     */
+    protected static double horizontalParallax(double distance) {
+        return Math.toDegrees(Math.asin(6378.14 / distance));
+    }
+
     @Override
     public double getMoonIlluminationForDate(Calendar date)
     {
@@ -428,18 +754,64 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
     @Override
     public MoonPosition getMoonPosition(Calendar dateTime)
     {
-        Moment moment = TemporalType.JAVA_UTIL_DATE.translate(dateTime.getTime());
-        net.time4j.calendar.astro.MoonPosition position = net.time4j.calendar.astro.MoonPosition.at(moment, solarTime);
+        double[] position = new double[5];
+        moonPosition(dateTime.getTimeInMillis(), position);
 
         MoonPosition result = new MoonPosition();
-        result.azimuth = position.getAzimuth();
-        result.elevation = position.getElevation();
-        result.rightAscension = position.getRightAscension();
-        result.declination = position.getDeclination();
-        result.distance = position.getDistance();
+        result.azimuth = position[0];
+        result.elevation = position[1];
+        result.rightAscension = position[2];
+        result.declination = position[3];
+        result.distance = position[4];
         return result;
     }
 
+    @Override
+    public int getSunPositions(long startMillis, long stepMillis, int count, double[] azimuth, double[] elevation, double[] rightAscension, double[] declination)
+    {
+        for (int i=0; i<count; i++)
+        {
+            Moment moment = TemporalType.MILLIS_SINCE_UNIX.translate(startMillis + (i * stepMillis));
+            net.time4j.calendar.astro.SunPosition position = net.time4j.calendar.astro.SunPosition.at(moment, solarTime);
+            if (azimuth != null) {
+                azimuth[i] = position.getAzimuth();
+            }
+            if (elevation != null) {
+                elevation[i] = position.getElevation();
+            }
+            if (rightAscension != null) {
+                rightAscension[i] = position.getRightAscension();
+            }
+            if (declination != null) {
+                declination[i] = position.getDeclination();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int getMoonPositions(long startMillis, long stepMillis, int count, double[] azimuth, double[] elevation, double[] rightAscension, double[] declination)
+    {
+        double[] position = new double[5];
+        for (int i=0; i<count; i++)
+        {
+            moonPosition(startMillis + (i * stepMillis), position);
+            if (azimuth != null) {
+                azimuth[i] = position[0];
+            }
+            if (elevation != null) {
+                elevation[i] = position[1];
+            }
+            if (rightAscension != null) {
+                rightAscension[i] = position[2];
+            }
+            if (declination != null) {
+                declination[i] = position[3];
+            }
+        }
+        return count;
+    }
+
     @Override
     public double getShadowLength( double objHeight, Calendar dateTime )
     {
@@ -458,17 +830,97 @@ public abstract class Time4ASuntimesCalculator implements SuntimesCalculator
     @Override
     public Calendar getMoonPerigeeNextDate(Calendar dateTime)
     {
-        Moment moment = TemporalType.JAVA_UTIL_DATE.translate(dateTime.getTime());
-        Moment apogeeMoment = net.time4j.calendar.astro.MoonPosition.inNextPerigeeAfter(moment);
-        return momentToCalendar(apogeeMoment);
+        return moonApsisNextDate(dateTime, 1);
     }
 
     @Override
     public Calendar getMoonApogeeNextDate(Calendar dateTime)
     {
-        Moment moment = TemporalType.JAVA_UTIL_DATE.translate(dateTime.getTime());
-        Moment apogeeMoment = net.time4j.calendar.astro.MoonPosition.inNextApogeeAfter(moment);
-        return momentToCalendar(apogeeMoment);
+        return moonApsisNextDate(dateTime, -1);
+    }
+
+    public static final long APSIS_STEP_MILLIS = 12 * 60 * 60 * 1000;    // extrema of the lunar distance are > 12 days apart
+    public static final int APSIS_MAX_STEPS = 2 * 32;
+
+    /**
+     * Finds the next apsis from the minima (perigee) or maxima (apogee) of the lunar distance (see moonDistance).
+     * MoonPosition.inNextPerigeeAfter / inNextApogeeAfter are not used; they return an apsis about two years after
+     * the given date. Samples are aligned to APSIS_STEP_MILLIS so the result doesn't depend on where the search starts
+     * (chaining results gives the same apsides as searching from any date in between).
+     * @param dateTime search after this time
+     * @param sign 1 for perigee (minimum distance), -1 for apogee (maximum distance)
+     * @return the time of the next apsis (rounded to the minute), or null if not found
+     */
+    protected Calendar moonApsisNextDate(Calendar dateTime, int sign)
+    {
+        long after = dateTime.getTimeInMillis();
+        long x = (after / APSIS_STEP_MILLIS) * APSIS_STEP_MILLIS;
+        if (x > after) {
+            x -= APSIS_STEP_MILLIS;    // (floor)
+        }
+        x -= APSIS_STEP_MILLIS;
+
+        double f0 = sign * moonDistance(x);
+        double f1 = sign * moonDistance(x + APSIS_STEP_MILLIS);
+        for (int i=0; i<APSIS_MAX_STEPS; i++)
+        {
+            double f2 = sign * moonDistance(x + 2 * APSIS_STEP_MILLIS);
+            if (f1 <= f0 && f1 < f2)
+            {
+                long apsis = findMinimum(sign, x, x + 2 * APSIS_STEP_MILLIS);
+                apsis = Math.round(apsis / 60000d) * 60000;
+                if (apsis > after)
+                {
+                    Calendar retValue = new GregorianCalendar();
+                    retValue.setTimeZone(timezone);
+                    retValue.setTimeInMillis(apsis);
+                    return retValue;
+                }
+            }
+            x += APSIS_STEP_MILLIS;
+            f0 = f1;
+            f1 = f2;
+        }
+        return null;
+    }
+
+    /**
+     * Golden-section search for the minimum of sign * distance in [a, b] (to within a second).
+     */
+    protected long findMinimum(int sign, long a, long b)
+    {
+        final double r = 0.6180339887498949;
+        long c = b - (long)(r * (b - a));
+        long d = a + (long)(r * (b - a));
+        double fc = sign * moonDistance(c);
+        double fd = sign * moonDistance(d);
+        while (b - a > 1000)
+        {
+            if (fc < fd) {
+                b = d;
+                d = c;
+                fd = fc;
+                c = b - (long)(r * (b - a));
+                fc = sign * moonDistance(c);
+            } else {
+                a = c;
+                c = d;
+                fc = fd;
+                d = a + (long)(r * (b - a));
+                fd = sign * moonDistance(d);
+            }
+        }
+        return (a + b) / 2;
+    }
+
+    /**
+     * @return distance to the moon (km); from Time4ALunarEphemeris if useLunarEphemeris, else MoonPosition
+     */
+    protected double moonDistance(long millis)
+    {
+        if (useLunarEphemeris()) {
+            return Time4ALunarEphemeris.distance(lunarEphemeris(millis), millis);
+        } else return net.time4j.calendar.astro.MoonPosition.at(TemporalType.MILLIS_SINCE_UNIX.translate(millis), solarTime).getDistance();
     }
 
 }
@@ -39,6 +39,7 @@ import android.view.ViewGroup;
 import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.SuntimesUtils;
 import com.forrestguice.suntimeswidget.alarmclock.AlarmEventProvider;
+import com.forrestguice.suntimeswidget.calculator.SuntimesData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesMoonData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
@@ -113,23 +114,66 @@ public class CardAdapter extends RecyclerView.Adapter<CardViewHolder>
         return retValue;
     }
 
+    /**
+     * Advances the data by one day (after the date changes); cards that remain in view are shifted by one position, so
+     * only the newly exposed day is calculated. Falls back to initData if the date hasn't changed by exactly one day.
+     */
+    public Pair<SuntimesRiseSetDataset, SuntimesMoonData> advanceData(Context context)
+    {
+        Pair<SuntimesRiseSetDataset, SuntimesMoonData> today = data.get(TODAY_POSITION);
+        initOptions(context);
+        if (invalidated || today == null || today.first == null || today.first.calendar() == null
+                || SuntimesData.daysBetween(today.first.calendar(), createDate(TODAY_POSITION)) != 1) {
+            return initData(context);
+        }
+
+        HashMap<Integer, Pair<SuntimesRiseSetDataset, SuntimesMoonData>> shifted = new HashMap<>();
+        for (int position = TODAY_POSITION; position <= TODAY_POSITION + 2; position++)
+        {
+            Pair<SuntimesRiseSetDataset, SuntimesMoonData> dataPair = data.get(position);
+            if (dataPair != null) {
+                shifted.put(position - 1, dataPair);
+            }
+        }
+        data.clear();
+        data.putAll(shifted);
+
+        Pair<SuntimesRiseSetDataset, SuntimesMoonData> retValue;
+        initData(context, TODAY_POSITION - 1);
+        retValue = initData(context, TODAY_POSITION);
+        initData(context, TODAY_POSITION + 1);
+        initData(context, TODAY_POSITION + 2);
+        notifyDataSetChanged();
+        return retValue;
+    }
+
     public Pair<SuntimesRiseSetDataset, SuntimesMoonData> initData(Context context, int position)
     {
         Pair<SuntimesRiseSetDataset, SuntimesMoonData> dataPair = data.get(position);
         if (dataPair == null && !invalidated) {
-            data.put(position, dataPair = createData(context, position));   // data is removed in onViewRecycled
+            data.put(position, dataPair = createData(context, position, data.get(position - 1)));   // data is removed in onViewRecycled
         }
         return dataPair;
     }
 
-    protected Pair<SuntimesRiseSetDataset, SuntimesMoonData> createData(Context context, int position)
+    protected Calendar createDate(int position)
     {
         Calendar date = Calendar.getInstance(options.timezone);
         if (options.dateMode != WidgetSettings.DateMode.CURRENT_DATE) {
             date.set(options.dateInfo.getYear(), options.dateInfo.getMonth(), options.dateInfo.getDay());
         }
         date.add(Calendar.DATE, position - TODAY_POSITION);
+        return date;
+    }
 
+    /**
+     * @param context context
+     * @param position card position
+     * @param previous data for the card before (may be null); its results are reused when possible
+     */
+    protected Pair<SuntimesRiseSetDataset, SuntimesMoonData> createData(Context context, int position, @Nullable Pair<SuntimesRiseSetDataset, SuntimesMoonData> previous)
+    {
+        Calendar date = createDate(position);
         SuntimesRiseSetDataset sun = new SuntimesRiseSetDataset(context);
         Set<String> eventIDs = EventSettings.loadVisibleEvents(context, AlarmEventProvider.EventType.SUN_ELEVATION);
         for (String eventID : eventIDs)
@@ -139,14 +183,14 @@ public class CardAdapter extends RecyclerView.Adapter<CardViewHolder>
             sun.putData(eventID, d);
         }
         sun.setTodayIs(date);
-        sun.calculateData();
+        sun.calculateData(previous != null ? previous.first : null);
 
         SuntimesMoonData moon = null;
         if (options.showMoon)
         {
             moon = new SuntimesMoonData(context, 0, "moon");
             moon.setTodayIs(date);
-            moon.calculate();
+            moon.calculate(previous != null ? previous.second : null);
         }
 
         return new Pair<>(sun, moon);
@@ -63,6 +63,7 @@ import com.forrestguice.suntimeswidget.MenuAddon;
 import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.SuntimesActivity;
 import com.forrestguice.suntimeswidget.SuntimesUtils;
+import com.forrestguice.suntimeswidget.calculator.SeasonTable;
 import com.forrestguice.suntimeswidget.calculator.SuntimesEquinoxSolsticeData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesEquinoxSolsticeDataset;
 import com.forrestguice.suntimeswidget.cards.CardAdapter;
@@ -349,7 +350,7 @@ public class EquinoxCardDialog extends BottomSheetDialogFragment
     protected void updateViews(Context context, SuntimesEquinoxSolsticeData data)
     {
         text_title.setText(utils.calendarDateYearDisplayString(context, data.eventCalendarThisYear()).toString());
-        text_year_length.setText(styleYearDisplayText(context, data.calculator().getTropicalYearLength(data.calendar())));
+        text_year_length.setText(styleYearDisplayText(context, SeasonTable.getTropicalYearLength(data.calculator(), data.calendar())));
     }
 
     protected CharSequence styleYearDisplayText(Context context, long yearLengthMillis)
@@ -28,6 +28,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import com.forrestguice.suntimeswidget.calculator.SeasonTable;
 import com.forrestguice.suntimeswidget.calculator.SuntimesEquinoxSolsticeData;
 import com.forrestguice.suntimeswidget.settings.WidgetSettings;
 import com.forrestguice.suntimeswidget.themes.SuntimesTheme;
@@ -71,15 +72,29 @@ public class EquinoxDataAdapter extends RecyclerView.Adapter<EquinoxDataViewHold
      * Initialize data at position (returns cached data if it already exists).
      * @param context
      * @param position
-     * @return
+     * @return calculated data
      */
-    public SuntimesEquinoxSolsticeData initData(Context context, int position)
+    public SuntimesEquinoxSolsticeData initData(Context context, int position) {
+        return initData(context, position, true);
+    }
+
+    /**
+     * Initialize data at position (returns cached data if it already exists).
+     * @param context
+     * @param position
+     * @param calculate true calculate now (if not yet calculated), false return a placeholder (not calculated) until the SeasonTable has its years
+     * @return data (that may not be calculated)
+     */
+    public SuntimesEquinoxSolsticeData initData(Context context, int position, boolean calculate)
     {
         SuntimesEquinoxSolsticeData retValue = data.get(position);
         if (retValue == null) {
             data.put(position, retValue = createData(context, position));   // data is removed in onViewRecycled
             //Log.d("DEBUG", "add data " + position);
         }
+        if (calculate && !retValue.isCalculated()) {
+            retValue.calculate();
+        }
         return retValue;
     }
 
@@ -101,10 +116,48 @@ public class EquinoxDataAdapter extends RecyclerView.Adapter<EquinoxDataViewHold
         SuntimesEquinoxSolsticeData retValue = new SuntimesEquinoxSolsticeData(context, 0);
         retValue.setTimeMode(modes[i]);
         retValue.setTodayIs(date);
-        retValue.calculate();
+
+        boolean cached = retValue.isCached();
+        int year = date.get(Calendar.YEAR);    // calculate this year and its neighbors ahead of scrolling
+        SeasonTable.prefetch(context, retValue.calculator(), retValue.calculatorMode(), year - SeasonTable.PREFETCH_YEARS, year + SeasonTable.PREFETCH_YEARS);
+
+        if (cached || !retValue.isImplemented()) {
+            retValue.calculate();
+        }    // else a placeholder until the prefetch delivers its years (onPrefetched)
         return retValue;
     }
 
+    private final SeasonTable.SeasonTableListener seasonTableListener = new SeasonTable.SeasonTableListener()
+    {
+        @Override
+        public void onPrefetched(int year)
+        {
+            for (Integer position : data.keySet())
+            {
+                SuntimesEquinoxSolsticeData d = data.get(position);
+                if (!d.isCalculated() && d.isCached())
+                {
+                    d.calculate();
+                    notifyItemChanged(position);
+                }
+            }
+        }
+    };
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView)
+    {
+        super.onAttachedToRecyclerView(recyclerView);
+        SeasonTable.addListener(seasonTableListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView)
+    {
+        SeasonTable.removeListener(seasonTableListener);
+        super.onDetachedFromRecyclerView(recyclerView);
+    }
+
     @Override
     public void onViewRecycled(EquinoxDataViewHolder holder)
     {
@@ -131,7 +184,7 @@ public class EquinoxDataAdapter extends RecyclerView.Adapter<EquinoxDataViewHold
 
         holder.selected = (selected_position != null && (position == selected_position));
         holder.highlighted = (position == options.highlightPosition);
-        holder.bindDataToPosition(context, initData(context, position), position, options);
+        holder.bindDataToPosition(context, initData(context, position, false), position, options);
 
         if (options.columnWidthPx >= 0) {
             holder.adjustLabelWidth(options.columnWidthPx);
@@ -168,7 +221,11 @@ public class EquinoxDataAdapter extends RecyclerView.Adapter<EquinoxDataViewHold
         });
 
         Context context = contextRef.get();
-        SuntimesEquinoxSolsticeData data = initData(context, position);
+        SuntimesEquinoxSolsticeData data = initData(context, position, false);
+        if (!data.isCalculated()) {
+            holder.button_menu.setOnClickListener(null);    // placeholder
+            return;
+        }
         Calendar calendar = data.eventCalendarThisYear();
         if (calendar == null) {
             calendar = Calendar.getInstance();
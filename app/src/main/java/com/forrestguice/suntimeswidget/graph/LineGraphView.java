@@ -40,11 +40,15 @@ import android.view.View;
 import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.calculator.SuntimesData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
+import com.forrestguice.suntimeswidget.calculator.core.ElevationCrossingSolver;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculatorBridge;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.settings.WidgetSettings;
 import com.forrestguice.suntimeswidget.settings.WidgetTimezones;
 import com.forrestguice.suntimeswidget.themes.SuntimesTheme;
+import com.forrestguice.suntimeswidget.views.BitmapPool;
+import com.forrestguice.suntimeswidget.views.FrameScheduler;
 
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -190,6 +194,7 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
 
         drawTask = new LineGraphTask();
         drawTask.setListener(drawTaskListener);
+        drawTask.setBitmapPool(bitmapPool);
 
         if (Build.VERSION.SDK_INT >= 11) {
             drawTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, data, getWidth(), getHeight(), options, (animated ? 0 : 1), options.offsetMinutes);
@@ -219,7 +224,7 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
         @Override
         public void onFrame(Bitmap frame, long offsetMinutes) {
             Log.d(LineGraphView.class.getSimpleName(), "LineGraphView.updateViews: onFrame: " + Integer.toHexString(LineGraphView.this.hashCode()));
-            setImageBitmap(frame);
+            setFrame(frame);
             if (graphListener != null) {
                 graphListener.onFrame(frame, offsetMinutes);
             }
@@ -233,13 +238,29 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
         @Override
         public void onFinished(Bitmap frame) {
             //Log.d(LineGraphView.class.getSimpleName(), "LineGraphView.updateViews: onFinished: " + Integer.toHexString(LineGraphView.this.hashCode()));
-            setImageBitmap(frame);
+            setFrame(frame);
             if (graphListener != null) {
                 graphListener.onFinished(frame);
             }
         }
     };
 
+    private final BitmapPool bitmapPool = new BitmapPool();
+    private Bitmap frame = null;
+
+    /**
+     * Displays the frame, returning the previous frame to the bitmap pool.
+     */
+    protected void setFrame(Bitmap frame)
+    {
+        Bitmap previous = this.frame;
+        this.frame = frame;
+        setImageBitmap(frame);
+        if (previous != null && previous != frame) {
+            bitmapPool.release(previous);
+        }
+    }
+
     /**
      * @param context a context used to access shared prefs
      */
@@ -318,6 +339,7 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
             //Log.d(LineGraphView.class.getSimpleName(), "onDetachedFromWindow: cancel task " + Integer.toHexString(LineGraphView.this.hashCode()));
             drawTask.cancel(true);
         }
+        bitmapPool.clear();
     }
 
     @Override
@@ -403,7 +425,16 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
                 return null;
             }
 
-            long time0 = System.nanoTime();
+            FrameScheduler<Bitmap> scheduler = new FrameScheduler<>(frameDuration, new FrameScheduler.FrameCallback<Bitmap>()
+            {
+                @Override
+                public void onFrame(Bitmap frame)
+                {
+                    if (!isCancelled()) {
+                        onProgressUpdate(frame);
+                    }
+                }
+            });
             Bitmap frame = null;
             options.offsetMinutes = initialOffset;
 
@@ -436,21 +467,26 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
 
                 frame = makeBitmap(data, w, h, options);
 
-                long time1 = System.nanoTime();
-                while ((time1 - time0) < frameDuration) {
-                    time1 = System.nanoTime();
+                if (!scheduler.awaitFrame())
+                {
+                    options.releaseDrawLock();
+                    break;    // cancelled
+                }
+                Bitmap dropped = scheduler.publish(frame);
+                if (dropped != null && bitmapPool != null) {
+                    bitmapPool.release(dropped);
                 }
-
-                publishProgress(frame);
                 if (listener != null) {
                     listener.afterFrame(frame, options.offsetMinutes);
                 }
                 options.offsetMinutes += options.anim_frameOffsetMinutes;
-                time0 = System.nanoTime();
                 i++;
                 options.releaseDrawLock();
             }
             options.offsetMinutes -= options.anim_frameOffsetMinutes;
+            if (numFrames != 1) {
+                Log.d(LineGraphTask.class.getSimpleName(), "frames: " + scheduler.getStats());
+            }
             return frame;
         }
 
@@ -467,7 +503,7 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
 
             this.options = options;
             Calendar now = graphTime(data, options);
-            Bitmap b = Bitmap.createBitmap(w, h, Bitmap.Config.RGB_565);
+            Bitmap b = BitmapPool.acquire(bitmapPool, w, h, Bitmap.Config.RGB_565);
             b.setDensity(options.densityDpi);
             Canvas c = new Canvas(b);
             initPaint();
@@ -699,8 +735,8 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
 
             ArrayList<Integer> results = new ArrayList<>();
             Long[] millis = new Long[2];
-            millis[0] = findMillis(degrees, calculator, lmt, startMillis, midMillis-1, true);
-            millis[1] = findMillis(degrees, calculator, lmt, midMillis+1, endMillis, false);
+            millis[0] = findMillis(degrees, calculator, startMillis, midMillis-1, true);
+            millis[1] = findMillis(degrees, calculator, midMillis+1, endMillis, false);
 
             for (Long time : millis) {
                 if (time != null) {
@@ -712,26 +748,16 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
         }
 
         @Nullable
-        protected Long findMillis(double degrees, SuntimesCalculator calculator, Calendar lmt, long minMillis, long maxMillis, boolean ascending)
+        protected Long findMillis(double degrees, SuntimesCalculator calculator, long minMillis, long maxMillis, boolean ascending)
         {
-            if (minMillis > maxMillis) {
-                return null;
-            }
-
-            lmt.setTimeInMillis(minMillis + ((maxMillis - minMillis) / 2));
-            SuntimesCalculator.SunPosition position = calculator.getSunPosition(lmt);
-
-            if (Math.abs(position.elevation - degrees) < 0.25) {
-                return lmt.getTimeInMillis();
-
-            } else if ((ascending && (degrees > position.elevation))
-                    || (!ascending && (degrees < position.elevation))) {
-                return findMillis(degrees, calculator, lmt, lmt.getTimeInMillis() + 1, maxMillis, ascending);
-
-            } else {
-                return findMillis(degrees, calculator, lmt, minMillis, lmt.getTimeInMillis() - 1, ascending);
+            if (sunElevation == null || sunElevation.getCalculator() != calculator) {
+                sunElevation = new ElevationCrossingSolver.SunElevation(calculator);
             }
+            long millis = solver.findCrossing(sunElevation, degrees, minMillis, maxMillis, ascending);
+            return ((millis != ElevationCrossingSolver.NO_CROSSING) ? millis : null);
         }
+        private final ElevationCrossingSolver solver = new ElevationCrossingSolver(30 * 1000, 60 * 60 * 1000, ElevationCrossingSolver.DEF_MAX_ITERATIONS);
+        private ElevationCrossingSolver.SunElevation sunElevation = null;
 
         public static Calendar toStartOfDay(Calendar calendar)
         {
@@ -771,6 +797,7 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
         }
 
         private ArrayList<Path> sun_paths = new ArrayList<>(), moon_paths = new ArrayList<>();
+        private double[] sun_samples = null, moon_samples = null;    // elevations (reused between frames)
         private HashMap<Path, Double> sun_elevations = new HashMap<>(), moon_elevations = new HashMap<>();
 
         protected void drawMoonPath(Calendar now, SuntimesCalculator calculator, Canvas c, Paint p, LineGraphOptions options)
@@ -814,30 +841,35 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
             lmt.setTimeInMillis(now.getTimeInMillis());
             toStartOfDay(lmt);
 
-            SuntimesCalculator.MoonPosition position;
+            int interval = options.moonPath_interval;
+            int numSamples = (path_width + interval - 1) / interval;
+            if (moon_samples == null || moon_samples.length < numSamples) {
+                moon_samples = new double[numSamples];
+            }
+            numSamples = SuntimesBatchCalculatorBridge.from(calculator).getMoonPositions(lmt.getTimeInMillis(), interval * 60 * 1000L, numSamples, null, moon_samples, null, null);
+
+            double elevation;
             double elevation_prev = -90;   // sun elevation (previous iteration)
             elevation_min = elevation_max = 0;
             float x = 0, y = 0;
 
             Path path = null;
-            int minute = 0;
-            while (minute < path_width)
+            for (int i=0; i<numSamples; i++)
             {
-                position = calculator.getMoonPosition(lmt);
-                if (position.elevation < elevation_min) {
-                    elevation_min = position.elevation;
-                } else if (position.elevation > elevation_max) {
-                    elevation_max = position.elevation;
+                elevation = moon_samples[i];
+                if (elevation < elevation_min) {
+                    elevation_min = elevation;
+                } else if (elevation > elevation_max) {
+                    elevation_max = elevation;
                 }
 
-                int d = (int)(minute / MINUTES_IN_DAY);
-                double m = (d * MINUTES_IN_DAY) + (lmt.get(Calendar.HOUR_OF_DAY) * 60) + lmt.get(Calendar.MINUTE);
+                double m = i * interval;    // lmt is a fixed offset from start of day, so minutes from start are [0, path_width)
                 x = (float) minutesToBitmapCoords(c, m, options);
-                y = (float) degreesToBitmapCoords(c, position.elevation, options);
+                y = (float) degreesToBitmapCoords(c, elevation, options);
 
                 if (path != null
-                        && ((elevation_prev < 0 && position.elevation >= 0)
-                        || (elevation_prev >= 0 && position.elevation < 0))) {
+                        && ((elevation_prev < 0 && elevation >= 0)
+                        || (elevation_prev >= 0 && elevation < 0))) {
                     path.lineTo(x, y);
                     if (closed) {
                         path.close();
@@ -849,7 +881,7 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
                 {
                     path = new Path();
                     paths.add(path);
-                    elevations.put(path, position.elevation);
+                    elevations.put(path, elevation);
 
                     if (closed) {
                         path.moveTo(x, (float)degreesToBitmapCoords(c, 0, options));
@@ -862,12 +894,10 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
                     path.lineTo(x, y);
                 }
 
-                elevation_prev = position.elevation;
-                lmt.add(Calendar.MINUTE, options.moonPath_interval);
-                minute += options.moonPath_interval;
+                elevation_prev = elevation;
             }
 
-            if (closed)
+            if (closed && !paths.isEmpty())
             {
                 path = paths.get(paths.size()-1);
                 path.lineTo(x, (float)degreesToBitmapCoords(c, 0, options));
@@ -920,30 +950,35 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
             lmt.setTimeInMillis(now.getTimeInMillis());
             toStartOfDay(lmt);
 
-            SuntimesCalculator.SunPosition position;
+            int interval = options.sunPath_interval;
+            int numSamples = (path_width + interval - 1) / interval;
+            if (sun_samples == null || sun_samples.length < numSamples) {
+                sun_samples = new double[numSamples];
+            }
+            numSamples = SuntimesBatchCalculatorBridge.from(calculator).getSunPositions(lmt.getTimeInMillis(), interval * 60 * 1000L, numSamples, null, sun_samples, null, null);
+
+            double elevation;
             double elevation_prev = -90;   // sun elevation (previous iteration)
             elevation_min = elevation_max = 0;
             float x = 0, y = 0;
 
             Path path = null;
-            int minute = 0;
-            while (minute < path_width)
+            for (int i=0; i<numSamples; i++)
             {
-                position = calculator.getSunPosition(lmt);
-                if (position.elevation < elevation_min) {
-                    elevation_min = position.elevation;
-                } else if (position.elevation > elevation_max) {
-                    elevation_max = position.elevation;
+                elevation = sun_samples[i];
+                if (elevation < elevation_min) {
+                    elevation_min = elevation;
+                } else if (elevation > elevation_max) {
+                    elevation_max = elevation;
                 }
 
-                int d = (int)(minute / MINUTES_IN_DAY);
-                double m = (d * MINUTES_IN_DAY) + (lmt.get(Calendar.HOUR_OF_DAY) * 60) + lmt.get(Calendar.MINUTE);
+                double m = i * interval;    // lmt is a fixed offset from start of day, so minutes from start are [0, path_width)
                 x = (float) minutesToBitmapCoords(c, m, options);
-                y = (float) degreesToBitmapCoords(c, position.elevation, options);
+                y = (float) degreesToBitmapCoords(c, elevation, options);
 
                 if (path != null
-                        && ((elevation_prev < 0 && position.elevation >= 0)
-                        || (elevation_prev >= 0 && position.elevation < 0))) {
+                        && ((elevation_prev < 0 && elevation >= 0)
+                        || (elevation_prev >= 0 && elevation < 0))) {
                     path.lineTo(x, y);
                     if (closed) {
                         path.close();
@@ -955,7 +990,7 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
                 {
                     path = new Path();
                     paths.add(path);
-                    elevations.put(path, position.elevation);
+                    elevations.put(path, elevation);
 
                     if (closed) {
                         path.moveTo(x, (float)degreesToBitmapCoords(c, 0, options));
@@ -968,12 +1003,10 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
                     path.lineTo(x, y);
                 }
 
-                elevation_prev = position.elevation;
-                lmt.add(Calendar.MINUTE, options.sunPath_interval);
-                minute += options.sunPath_interval;
+                elevation_prev = elevation;
             }
 
-            if (closed)
+            if (closed && !paths.isEmpty())
             {
                 path = paths.get(paths.size()-1);
                 path.lineTo(x, (float)degreesToBitmapCoords(c, 0, options));
@@ -1206,6 +1239,11 @@ public class LineGraphView extends android.support.v7.widget.AppCompatImageView
             c.drawCircle(x, y, radius, p);
         }
 
+        private BitmapPool bitmapPool = null;
+        public void setBitmapPool( BitmapPool pool ) {
+            this.bitmapPool = pool;
+        }
+
         private LineGraphTaskListener listener = null;
         public void setListener( LineGraphTaskListener listener )
         {
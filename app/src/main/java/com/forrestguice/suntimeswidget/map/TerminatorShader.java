@@ -0,0 +1,386 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.map;
+
+import android.graphics.Color;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shades the sun's shadow and the moon's light on an equirectangular map (the terminator); the dot product of the sun's
+ * unit vector and a pixel's unit vector is the sine of the sun's altitude at that pixel (<= 0 in shadow), and likewise
+ * for the moon. The map is shaded in twilight bands by looking the product up in a table of colors (see sunShadowLUT).
+ *
+ * Rows are independent of each other, so the matrix is split into stripes of rows that are shaded in parallel (on a
+ * shared pool of worker threads); the calling thread shades the first stripe, then waits for the others.
+ */
+public class TerminatorShader
+{
+    public static final String TAG = "TerminatorShader";
+
+    public static final int MIN_STRIPE_ROWS = 32;
+    public static final int MAX_THREADS = 4;
+    public static final long KEEP_ALIVE_SECONDS = 30;
+
+    protected final int numThreads;
+
+    public TerminatorShader() {
+        this(numThreads());
+    }
+
+    /**
+     * @param numThreads max number of threads (stripes) used to shade a matrix (including the calling thread)
+     */
+    public TerminatorShader(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Shades the map at its output size (w x h) through lookup tables of colors (see sunShadowLUT and moonLightLUT);
+     * the sun's shadow (or the night map, masked by the shadow's alpha), with the moon's light drawn over it. The matrix
+     * is sampled at the nearest pixel, and the colors are written straight into the output pixels.
+     *
+     * @param matrix unit vectors (see WorldMapEquirectangular.initMatrix)
+     * @param sunUp unit vector (toward the sun), or null (no shadow)
+     * @param sunLUT shadow colors (by lutIndex of the dot product)
+     * @param moonUp unit vector (toward the moon), or null (no light)
+     * @param moonLUT light colors (by lutIndex of the dot product)
+     * @param nightPixels the night map (w * h), or null
+     * @param pixels (w * h) assigned the shaded colors
+     */
+    public void shade(@NonNull final UnitVectorMatrix matrix, @Nullable final double[] sunUp, @NonNull final int[] sunLUT, @Nullable final double[] moonUp, @NonNull final int[] moonLUT,
+                      @Nullable final int[] nightPixels, @NonNull final int[] pixels, final int w, final int h)
+    {
+        shadeInStripes(h, new Rows()
+        {
+            @Override
+            public void shade(int j0, int j1) {
+                shadeRows(matrix, sunUp, sunLUT, moonUp, moonLUT, nightPixels, pixels, w, h, j0, j1);
+            }
+        });
+    }
+
+    /**
+     * Rows
+     */
+    protected interface Rows
+    {
+        void shade(int j0, int j1);    // shades rows [j0, j1)
+    }
+
+    /**
+     * Splits rows [0, h) into stripes; the calling thread shades the first stripe, then waits for the others.
+     */
+    protected void shadeInStripes(int h, Rows rows)
+    {
+        int n = Math.min(numThreads, Math.max(1, h / MIN_STRIPE_ROWS));
+        if (n <= 1) {
+            rows.shade(0, h);
+            return;
+        }
+
+        int stripeRows = (h + n - 1) / n;
+        CountDownLatch latch = new CountDownLatch(n - 1);
+        Stripe[] stripes = new Stripe[n - 1];
+        for (int i=0; i<stripes.length; i++)
+        {
+            int j0 = (i + 1) * stripeRows;
+            stripes[i] = new Stripe(rows, j0, Math.min(h, j0 + stripeRows), latch);
+            executor().execute(stripes[i]);
+        }
+        rows.shade(0, stripeRows);
+
+        boolean interrupted = false;
+        while (true)
+        {
+            try {
+                latch.await();    // (always wait for the other stripes; they are writing into the caller's pixels)
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (Stripe stripe : stripes) {
+            if (stripe.error != null) {
+                throw stripe.error;
+            }
+        }
+    }
+
+    /**
+     * Shades output rows [j0, j1) (see shade); rows that sample the same matrix row as the row above are copied.
+     */
+    public static void shadeRows(UnitVectorMatrix matrix, double[] sunUp, int[] sunLUT, double[] moonUp, int[] moonLUT, int[] nightPixels, int[] pixels, int w, int h, int j0, int j1)
+    {
+        int mw = matrix.getWidth(), mh = matrix.getHeight();
+        int[] column = new int[w];
+        for (int i=0; i<w; i++) {
+            column[i] = (int) (((long) i * mw) / w);
+        }
+
+        int[] sunRow = new int[mw], moonRow = new int[mw];    // colors of the sampled matrix row
+        int mj0 = -1;
+        for (int j = j0; j < j1; j++)
+        {
+            int mj = (int) (((long) j * mh) / h);
+            int p0 = w * j;
+            if (mj == mj0 && nightPixels == null) {
+                System.arraycopy(pixels, p0 - w, pixels, p0, w);
+                continue;
+            }
+
+            if (mj != mj0)
+            {
+                int z0 = mw * mj;
+                lookupRow(matrix, z0, mw, sunUp, sunLUT, sunRow);
+                lookupRow(matrix, z0, mw, moonUp, moonLUT, moonRow);
+                mj0 = mj;
+            }
+
+            for (int i=0; i<w; i++)
+            {
+                int p = p0 + i;
+                int shadow = sunRow[column[i]];
+                if (nightPixels != null) {
+                    shadow = withAlpha(nightPixels[p], ((nightPixels[p] >>> 24) * (shadow >>> 24)) / 255);
+                }
+                pixels[p] = over(moonRow[column[i]], shadow);
+            }
+        }
+    }
+
+    /**
+     * Looks up the colors of matrix pixels [z0, z0 + n) (a loop for each matrix format, reading its values directly).
+     * @param up unit vector, or null (TRANSPARENT)
+     * @param lut colors (by lutIndex of the dot product)
+     * @param out assigned the colors [0, n)
+     */
+    public static void lookupRow(UnitVectorMatrix matrix, int z0, int n, @Nullable double[] up, int[] lut, int[] out)
+    {
+        if (up == null) {
+            Arrays.fill(out, 0, n, Color.TRANSPARENT);
+
+        } else if (matrix instanceof UnitVectorMatrix.FloatMatrix) {
+            lookupRow(((UnitVectorMatrix.FloatMatrix) matrix).values, z0, n, up[0], up[1], up[2], lut, out);
+
+        } else if (matrix instanceof UnitVectorMatrix.Fixed16Matrix) {
+            lookupRow(((UnitVectorMatrix.Fixed16Matrix) matrix).values, z0, n, up[0], up[1], up[2], lut, out);
+
+        } else if (matrix instanceof UnitVectorMatrix.DoubleMatrix) {
+            lookupRow(((UnitVectorMatrix.DoubleMatrix) matrix).values, z0, n, up[0], up[1], up[2], lut, out);
+
+        } else {
+            for (int i=0; i<n; i++) {
+                out[i] = lut[lutIndex(matrix.dot(z0 + i, up[0], up[1], up[2]))];
+            }
+        }
+    }
+
+    protected static void lookupRow(float[] v, int z0, int n, double u0, double u1, double u2, int[] lut, int[] out)
+    {
+        float f0 = (float) u0, f1 = (float) u1, f2 = (float) u2;    // (float arithmetic; within a LUT step of FloatMatrix.dot)
+        for (int i=0, z = 3 * z0; i<n; i++, z += 3) {
+            out[i] = lut[lutIndex((f0 * v[z]) + (f1 * v[z + 1]) + (f2 * v[z + 2]))];
+        }
+    }
+
+    public static final int FIXED16_UP_SCALE = 1 << 14;    // (|dot| <= 3 * 2^14 * 2^15 fits an int)
+    public static final double FIXED16_DOT_SCALE = 1d / (FIXED16_UP_SCALE * UnitVectorMatrix.Fixed16Matrix.SCALE);
+
+    protected static void lookupRow(short[] v, int z0, int n, double u0, double u1, double u2, int[] lut, int[] out)
+    {
+        int k0 = (int) Math.round(u0 * FIXED16_UP_SCALE), k1 = (int) Math.round(u1 * FIXED16_UP_SCALE), k2 = (int) Math.round(u2 * FIXED16_UP_SCALE);    // (integer arithmetic; within a LUT step of Fixed16Matrix.dot)
+        for (int i=0, z = 3 * z0; i<n; i++, z += 3) {
+            out[i] = lut[lutIndex(((k0 * v[z]) + (k1 * v[z + 1]) + (k2 * v[z + 2])) * FIXED16_DOT_SCALE)];
+        }
+    }
+
+    protected static void lookupRow(double[] v, int z0, int n, double u0, double u1, double u2, int[] lut, int[] out)
+    {
+        for (int i=0, z = 3 * z0; i<n; i++, z += 3) {
+            out[i] = lut[lutIndex((u0 * v[z]) + (u1 * v[z + 1]) + (u2 * v[z + 2]))];    // (same as DoubleMatrix.dot)
+        }
+    }
+
+    /**
+     * Twilight bands; sun altitude (degrees) at the start of civil, nautical, and astronomical twilight, and night.
+     * The shadow is drawn a quarter darker in each band, its edges blended over +- TWILIGHT_EDGE degrees.
+     */
+    public static final double[] TWILIGHT = new double[] { 0, -6, -12, -18 };
+    public static final double TWILIGHT_EDGE = 0.5;
+
+    public static final int LUT_SIZE = 4096;    // dot product [-1, 1] in 4096 steps (~0.03 degrees near the horizon)
+
+    /**
+     * @param dot dot product [-1, 1]
+     * @return index into a lookup table (LUT_SIZE)
+     */
+    public static int lutIndex(double dot)
+    {
+        int k = (int) (((dot + 1) * ((LUT_SIZE - 1) / 2d)) + 0.5);
+        return (k < 0 ? 0 : (k >= LUT_SIZE ? LUT_SIZE - 1 : k));
+    }
+
+    /**
+     * @param k index into a lookup table
+     * @return dot product [-1, 1]
+     */
+    public static double lutValue(int k) {
+        return ((2d * k) / (LUT_SIZE - 1)) - 1;
+    }
+
+    /**
+     * @param color shadow color (at night)
+     * @return a lookup table of shadow colors (TRANSPARENT by day, then darker in each twilight band)
+     */
+    public static int[] sunShadowLUT(int color)
+    {
+        int[] lut = new int[LUT_SIZE];
+        for (int k=0; k<LUT_SIZE; k++)
+        {
+            double altitude = Math.toDegrees(Math.asin(lutValue(k)));
+            double f = 0;
+            for (double a : TWILIGHT) {
+                f += smoothstep(a + TWILIGHT_EDGE, a - TWILIGHT_EDGE, altitude);
+            }
+            lut[k] = withAlpha(color, (int) Math.round((color >>> 24) * (f / TWILIGHT.length)));
+        }
+        return lut;
+    }
+
+    /**
+     * @param color light color
+     * @return a lookup table of light colors (where the moon is up; TRANSPARENT otherwise)
+     */
+    public static int[] moonLightLUT(int color)
+    {
+        int[] lut = new int[LUT_SIZE];
+        for (int k=0; k<LUT_SIZE; k++)
+        {
+            double altitude = Math.toDegrees(Math.asin(lutValue(k)));
+            lut[k] = withAlpha(color, (int) Math.round((color >>> 24) * smoothstep(-TWILIGHT_EDGE, TWILIGHT_EDGE, altitude)));
+        }
+        return lut;
+    }
+
+    protected static double smoothstep(double edge0, double edge1, double x)
+    {
+        double t = Math.max(0, Math.min(1, (x - edge0) / (edge1 - edge0)));
+        return t * t * (3 - (2 * t));
+    }
+
+    protected static int withAlpha(int color, int alpha) {
+        return (alpha <= 0 ? Color.TRANSPARENT : (alpha << 24) | (color & 0x00ffffff));
+    }
+
+    /**
+     * @return src drawn over dst (see ColorUtils.compositeColors)
+     */
+    public static int over(int src, int dst)
+    {
+        int srcAlpha = src >>> 24;
+        int dstAlpha = dst >>> 24;
+        if (srcAlpha == 255 || dstAlpha == 0) {
+            return src;
+        } else if (srcAlpha == 0) {
+            return dst;
+        }
+
+        dstAlpha = (dstAlpha * (255 - srcAlpha)) / 255;
+        int alpha = srcAlpha + dstAlpha;
+        int r = ((((src >> 16) & 0xff) * srcAlpha) + (((dst >> 16) & 0xff) * dstAlpha)) / alpha;
+        int g = ((((src >> 8) & 0xff) * srcAlpha) + (((dst >> 8) & 0xff) * dstAlpha)) / alpha;
+        int b = (((src & 0xff) * srcAlpha) + ((dst & 0xff) * dstAlpha)) / alpha;
+        return (alpha << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Stripe
+     */
+    private static class Stripe implements Runnable
+    {
+        private final Rows rows;
+        private final int j0, j1;
+        private final CountDownLatch latch;
+        public RuntimeException error = null;
+
+        public Stripe(Rows rows, int j0, int j1, CountDownLatch latch)
+        {
+            this.rows = rows;
+            this.j0 = j0;
+            this.j1 = j1;
+            this.latch = latch;
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                rows.shade(j0, j1);
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                latch.countDown();
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor executor = null;
+    protected static synchronized ThreadPoolExecutor executor()
+    {
+        if (executor == null)
+        {
+            int n = Math.max(1, numThreads() - 1);    // (the calling thread shades a stripe too)
+            executor = new ThreadPoolExecutor(n, n, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(@NonNull Runnable r)
+                {
+                    Thread thread = new Thread(r, TAG + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+
+    public static int numThreads() {
+        return Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+    }
+}
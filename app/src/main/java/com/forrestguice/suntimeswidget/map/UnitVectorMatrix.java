@@ -0,0 +1,265 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.map;
+
+/**
+ * A w x h matrix of unit vectors (one per map pixel; the direction of the point on the earth's surface that is drawn there),
+ * used to shade the map (dot product with the sun or moon's unit vector).
+ *
+ * Vectors are stored interleaved (the three components of a pixel are adjacent), as doubles (24 bytes per pixel), floats
+ * (12 bytes), or 16-bit fixed point (6 bytes; a resolution of ~0.00003).
+ */
+public abstract class UnitVectorMatrix
+{
+    public static final int FORMAT_DOUBLE = 0;
+    public static final int FORMAT_FLOAT = 1;
+    public static final int FORMAT_FIXED16 = 2;
+
+    private static int defaultFormat = FORMAT_FLOAT;
+
+    /**
+     * @return the format used by the map projections
+     */
+    public static int getDefaultFormat() {
+        return defaultFormat;
+    }
+
+    /**
+     * Sets the format used by the map projections; applies to matrices created afterward (see WorldMapProjection.resetMatrix).
+     * @param format FORMAT_DOUBLE, FORMAT_FLOAT, or FORMAT_FIXED16
+     */
+    public static void setDefaultFormat(int format) {
+        defaultFormat = format;
+    }
+
+    /**
+     * @param format FORMAT_DOUBLE, FORMAT_FLOAT, or FORMAT_FIXED16
+     * @param w width (pixels)
+     * @param h height (pixels)
+     * @return a matrix of zero vectors
+     */
+    public static UnitVectorMatrix create(int format, int w, int h)
+    {
+        switch (format)
+        {
+            case FORMAT_DOUBLE: return new DoubleMatrix(w, h);
+            case FORMAT_FIXED16: return new Fixed16Matrix(w, h);
+            case FORMAT_FLOAT: default: return new FloatMatrix(w, h);
+        }
+    }
+
+    protected final int w, h;
+
+    protected UnitVectorMatrix(int w, int h)
+    {
+        this.w = w;
+        this.h = h;
+    }
+
+    public int getWidth() {
+        return w;
+    }
+    public int getHeight() {
+        return h;
+    }
+
+    public abstract int getFormat();
+
+    /**
+     * @return size of the stored vectors (bytes)
+     */
+    public abstract long sizeBytes();
+
+    /**
+     * @param p pixel index (i + w * j)
+     */
+    public abstract void set(int p, double v0, double v1, double v2);
+
+    /**
+     * @param p pixel index (i + w * j)
+     * @param k component [0, 2]
+     */
+    public abstract double get(int p, int k);
+
+    /**
+     * @param p pixel index (i + w * j)
+     * @return the dot product of the pixel's vector and (u0, u1, u2)
+     */
+    public abstract double dot(int p, double u0, double u1, double u2);
+
+    /**
+     * @return a copy of the matrix as a flattened double array [x * y * v(3)] (the layout of WorldMapProjection.getMatrix)
+     */
+    public double[] toArray()
+    {
+        int n = w * h;
+        double[] array = new double[n * 3];
+        for (int p=0; p<n; p++)
+        {
+            array[p] = get(p, 0);
+            array[p + n] = get(p, 1);
+            array[p + (2 * n)] = get(p, 2);
+        }
+        return array;
+    }
+
+    /**
+     * DoubleMatrix
+     */
+    public static class DoubleMatrix extends UnitVectorMatrix
+    {
+        protected final double[] values;
+
+        public DoubleMatrix(int w, int h)
+        {
+            super(w, h);
+            values = new double[w * h * 3];
+        }
+
+        @Override
+        public int getFormat() {
+            return FORMAT_DOUBLE;
+        }
+
+        @Override
+        public long sizeBytes() {
+            return values.length * 8L;
+        }
+
+        @Override
+        public void set(int p, double v0, double v1, double v2)
+        {
+            int z = 3 * p;
+            values[z] = v0;
+            values[z + 1] = v1;
+            values[z + 2] = v2;
+        }
+
+        @Override
+        public double get(int p, int k) {
+            return values[(3 * p) + k];
+        }
+
+        @Override
+        public double dot(int p, double u0, double u1, double u2)
+        {
+            int z = 3 * p;
+            return (u0 * values[z]) + (u1 * values[z + 1]) + (u2 * values[z + 2]);
+        }
+    }
+
+    /**
+     * FloatMatrix
+     */
+    public static class FloatMatrix extends UnitVectorMatrix
+    {
+        protected final float[] values;
+
+        public FloatMatrix(int w, int h)
+        {
+            super(w, h);
+            values = new float[w * h * 3];
+        }
+
+        @Override
+        public int getFormat() {
+            return FORMAT_FLOAT;
+        }
+
+        @Override
+        public long sizeBytes() {
+            return values.length * 4L;
+        }
+
+        @Override
+        public void set(int p, double v0, double v1, double v2)
+        {
+            int z = 3 * p;
+            values[z] = (float) v0;
+            values[z + 1] = (float) v1;
+            values[z + 2] = (float) v2;
+        }
+
+        @Override
+        public double get(int p, int k) {
+            return values[(3 * p) + k];
+        }
+
+        @Override
+        public double dot(int p, double u0, double u1, double u2)
+        {
+            int z = 3 * p;
+            return (u0 * values[z]) + (u1 * values[z + 1]) + (u2 * values[z + 2]);
+        }
+    }
+
+    /**
+     * Fixed16Matrix; components are stored as (short)round(v * SCALE).
+     */
+    public static class Fixed16Matrix extends UnitVectorMatrix
+    {
+        public static final double SCALE = Short.MAX_VALUE;
+
+        protected final short[] values;
+
+        public Fixed16Matrix(int w, int h)
+        {
+            super(w, h);
+            values = new short[w * h * 3];
+        }
+
+        @Override
+        public int getFormat() {
+            return FORMAT_FIXED16;
+        }
+
+        @Override
+        public long sizeBytes() {
+            return values.length * 2L;
+        }
+
+        @Override
+        public void set(int p, double v0, double v1, double v2)
+        {
+            int z = 3 * p;
+            values[z] = toFixed(v0);
+            values[z + 1] = toFixed(v1);
+            values[z + 2] = toFixed(v2);
+        }
+
+        protected static short toFixed(double v) {
+            return (short) Math.round(Math.max(-1, Math.min(1, v)) * SCALE);
+        }
+
+        @Override
+        public double get(int p, int k) {
+            return values[(3 * p) + k] / SCALE;
+        }
+
+        /**
+         * (the stored components are divided by SCALE; see TerminatorShader.lookupRow for a loop that reads them without the conversion)
+         */
+        @Override
+        public double dot(int p, double u0, double u1, double u2)
+        {
+            int z = 3 * p;
+            return ((u0 * values[z]) + (u1 * values[z + 1]) + (u2 * values[z + 2])) / SCALE;
+        }
+    }
+}
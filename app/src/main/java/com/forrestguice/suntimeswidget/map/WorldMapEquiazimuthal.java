@@ -31,13 +31,13 @@ import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
 import android.support.annotation.Nullable;
-import android.support.v4.graphics.ColorUtils;
 import android.util.Log;
 
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.settings.WidgetTimezones;
+import com.forrestguice.suntimeswidget.views.BitmapPool;
 
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -93,77 +93,29 @@ public class WorldMapEquiazimuthal extends WorldMapTask.WorldMapProjection
 
     protected int[] initPixels(int w, int h, double[] sunUp, double[] moonUp, WorldMapTask.WorldMapOptions options)
     {
-        int z = 0;
-        int j0, j1, j2;
-        double v0, v1, v2;
-        double sunIntensity, moonIntensity;
-        int[] pixels = new int[w * h];
-        double[] m = getMatrix();
+        int n = w * h;
+        int[] pixels = new int[n];
+        UnitVectorMatrix m = getUnitVectors();
+        int[] sunLUT = sunShadowLUT(options.sunShadowColor);    // (twilight bands by sun altitude)
+        int[] moonLUT = moonLightLUT(options.moonLightColor);
 
         if (options.showSunShadow && options.showMoonLight)
         {
-            int combinedColor = ColorUtils.compositeColors(options.moonLightColor, options.sunShadowColor);
-            for (int j = 0; j < h; j++)
+            for (int z = 0; z < n; z++)
             {
-                j0 = (360 * j);
-                j1 = (360 * (360 + j));
-                j2 = (360 * (720 + j));
-
-                for (int i = 0; i < w; i++)
-                {
-                    v0 = m[i + j0];
-                    v1 = m[i + j1];
-                    v2 = m[i + j2];
-
-                    sunIntensity = (sunUp[0] * v0) + (sunUp[1] * v1) + (sunUp[2] * v2);
-                    moonIntensity = (moonUp[0] * v0) + (moonUp[1] * v1) + (moonUp[2] * v2);
-                    if (sunIntensity <= 0 && moonIntensity > 0) {
-                        pixels[z] = combinedColor;
-                    } else if (sunIntensity <= 0) {
-                        pixels[z] = options.sunShadowColor;
-                    } else if (moonIntensity > 0) {
-                        pixels[z] = options.moonLightColor;
-                    }
-                    z++;
-                }
+                int shadow = sunLUT[TerminatorShader.lutIndex(m.dot(z, sunUp[0], sunUp[1], sunUp[2]))];
+                int light = moonLUT[TerminatorShader.lutIndex(m.dot(z, moonUp[0], moonUp[1], moonUp[2]))];
+                pixels[z] = TerminatorShader.over(light, shadow);
             }
 
         } else if (options.showSunShadow) {
-            for (int j = 0; j < h; j++)
-            {
-                j0 = (360 * j);
-                j1 = (360 * (360 + j));
-                j2 = (360 * (720 + j));
-
-                for (int i = 0; i < w; i++)
-                {
-                    v0 = m[i + j0];
-                    v1 = m[i + j1];
-                    v2 = m[i + j2];
-
-                    sunIntensity = (sunUp[0] * v0) + (sunUp[1] * v1) + (sunUp[2] * v2);
-                    pixels[z] = (sunIntensity <= 0) ? options.sunShadowColor : Color.TRANSPARENT;
-                    z++;
-                }
+            for (int z = 0; z < n; z++) {
+                pixels[z] = sunLUT[TerminatorShader.lutIndex(m.dot(z, sunUp[0], sunUp[1], sunUp[2]))];
             }
 
         } else if (options.showMoonLight) {
-            for (int j = 0; j < h; j++)
-            {
-                j0 = (360 * j);
-                j1 = (360 * (360 + j));
-                j2 = (360 * (720 + j));
-
-                for (int i = 0; i < w; i++)
-                {
-                    v0 = m[i + j0];
-                    v1 = m[i + j1];
-                    v2 = m[i + j2];
-
-                    moonIntensity = (moonUp[0] * v0) + (moonUp[1] * v1) + (moonUp[2] * v2);
-                    pixels[z] = (moonIntensity > 0) ? options.moonLightColor : Color.TRANSPARENT;
-                    z++;
-                }
+            for (int z = 0; z < n; z++) {
+                pixels[z] = moonLUT[TerminatorShader.lutIndex(m.dot(z, moonUp[0], moonUp[1], moonUp[2]))];
             }
         }
         return pixels;
@@ -254,7 +206,7 @@ public class WorldMapEquiazimuthal extends WorldMapTask.WorldMapProjection
         mid[0] = w/2d;
         mid[1] = h/2d;
 
-        Bitmap b = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Bitmap b = BitmapPool.acquire(bitmapPool, w, h, Bitmap.Config.ARGB_8888);
         Canvas c = new Canvas(b);
 
         if (!paintInitialized) {
@@ -321,14 +273,14 @@ public class WorldMapEquiazimuthal extends WorldMapTask.WorldMapProjection
             if (options.showSunPosition || options.showMoonPosition)
             {
                 int[] size = matrixSize();
-                Bitmap lightBitmap = Bitmap.createBitmap(size[0], size[1], Bitmap.Config.ARGB_8888);
+                Bitmap lightBitmap = BitmapPool.acquire(bitmapPool, size[0], size[1], Bitmap.Config.ARGB_8888);
                 int[] pixels = initPixels(size[0], size[1], sunUp, moonUp, options);
                 lightBitmap.setPixels(pixels, 0, size[0], 0, 0, size[0], size[1]);
 
                 Rect src = new Rect(0,0,size[0]-1, size[1]-1);
                 Rect dst = new Rect(0,0,w-1, h-1);
                 c.drawBitmap(lightBitmap, src, dst, paintScaled);
-                lightBitmap.recycle();
+                BitmapPool.release(bitmapPool, lightBitmap);
             }
 
             ////////////////
@@ -373,21 +325,21 @@ public class WorldMapEquiazimuthal extends WorldMapTask.WorldMapProjection
         }
 
         // mask final image to fit within a circle (fixes fuzzy edges from base maps)
-        Bitmap masked = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Bitmap masked = BitmapPool.acquire(bitmapPool, w, h, Bitmap.Config.ARGB_8888);
         Canvas maskedCanvas = new Canvas(masked);
         maskedCanvas.drawCircle((float)mid[0], (float)mid[1], (float)mid[0] - 2, paintMask_srcOver);
         maskedCanvas.drawBitmap(b, 0, 0, paintMask_srcIn);
-        b.recycle();
+        BitmapPool.release(bitmapPool, b);
 
         long bench_end = System.nanoTime();
         Log.d(WorldMapView.LOGTAG, "make equiazimuthal world map :: " + ((bench_end - bench_start) / 1000000.0) + " ms; " + w + ", " + h);
         return masked;
     }
 
-    private static double[] matrix = null;    // [x * y * v(3)]
+    private static UnitVectorMatrix matrix = null;
 
     @Override
-    public double[] getMatrix() {
+    public UnitVectorMatrix getUnitVectors() {
         return matrix;
     }
 
@@ -403,14 +355,14 @@ public class WorldMapEquiazimuthal extends WorldMapTask.WorldMapProjection
     }
 
     @Override
-    public double[] initMatrix()
+    public UnitVectorMatrix initMatrix()
     {
         long bench_start = System.nanoTime();
 
         int[] size = matrixSize();
         int w = size[0];
         int h = size[1];
-        double[] v = new double[w * h * 3];
+        UnitVectorMatrix v = UnitVectorMatrix.create(UnitVectorMatrix.getDefaultFormat(), w, h);
 
         double radLon, cosLon, sinLon;
         double radLat, cosLat;
@@ -443,9 +395,7 @@ public class WorldMapEquiazimuthal extends WorldMapTask.WorldMapProjection
                 cosLat = Math.cos(radLat);
                 cosLon = Math.cos(radLon);
 
-                v[i + (360 * j)] = cosLon * cosLat;
-                v[i + (360 * (360 + j))] = sinLon * cosLat;
-                v[i + (360 * (720 + j))] = Math.sin(radLat);
+                v.set(i + (360 * j), cosLon * cosLat, sinLon * cosLat, Math.sin(radLat));
             }
         }
 
@@ -35,6 +35,7 @@ import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.settings.WidgetTimezones;
+import com.forrestguice.suntimeswidget.views.BitmapPool;
 
 import java.util.Calendar;
 
@@ -56,10 +57,10 @@ public class WorldMapEquiazimuthal1 extends WorldMapEquiazimuthal
         return polar;
     }
 
-    private static double[] matrix = null;    // [x * y * v(3)]
+    private static UnitVectorMatrix matrix = null;
 
     @Override
-    public double[] getMatrix() {
+    public UnitVectorMatrix getUnitVectors() {
         return matrix;
     }
 
@@ -69,14 +70,14 @@ public class WorldMapEquiazimuthal1 extends WorldMapEquiazimuthal
     }
 
     @Override
-    public double[] initMatrix()
+    public UnitVectorMatrix initMatrix()
     {
         long bench_start = System.nanoTime();
 
         int[] size = matrixSize();
         int w = size[0];
         int h = size[1];
-        double[] v = new double[w * h * 3];
+        UnitVectorMatrix v = UnitVectorMatrix.create(UnitVectorMatrix.getDefaultFormat(), w, h);
 
         double squareR = (0.5 * w + 1) * (0.5 * w + 1);
         double negPiOver2 = -0.5 * Math.PI;
@@ -116,9 +117,7 @@ public class WorldMapEquiazimuthal1 extends WorldMapEquiazimuthal
                 cosLon = Math.cos(radLon);
                 sinLon = Math.sin(radLon);
 
-                v[i + (360 * j)] = cosLon * cosLat;
-                v[i + (360 * (360 + j))] = sinLon * cosLat;
-                v[i + (360 * (720 + j))] = Math.sin(radLat);
+                v.set(i + (360 * j), cosLon * cosLat, sinLon * cosLat, Math.sin(radLat));
             }
         }
 
@@ -144,7 +143,7 @@ public class WorldMapEquiazimuthal1 extends WorldMapEquiazimuthal
         mid[0] = w/2d;
         mid[1] = h/2d;
 
-        Bitmap b = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Bitmap b = BitmapPool.acquire(bitmapPool, w, h, Bitmap.Config.ARGB_8888);
         Canvas c = new Canvas(b);
 
         if (!paintInitialized) {
@@ -211,14 +210,14 @@ public class WorldMapEquiazimuthal1 extends WorldMapEquiazimuthal
             if (options.showSunPosition || options.showMoonPosition)
             {
                 int[] size = matrixSize();
-                Bitmap lightBitmap = Bitmap.createBitmap(size[0], size[1], Bitmap.Config.ARGB_8888);
+                Bitmap lightBitmap = BitmapPool.acquire(bitmapPool, size[0], size[1], Bitmap.Config.ARGB_8888);
                 int[] pixels = initPixels(size[0], size[1], sunUp, moonUp, options);
                 lightBitmap.setPixels(pixels, 0, size[0], 0, 0, size[0], size[1]);
 
                 Rect src = new Rect(0,0,size[0]-1, size[1]-1);
                 Rect dst = new Rect(0,0,w-1, h-1);
                 c.drawBitmap(lightBitmap, src, dst, paintScaled);
-                lightBitmap.recycle();
+                BitmapPool.release(bitmapPool, lightBitmap);
             }
 
             ////////////////
@@ -263,11 +262,11 @@ public class WorldMapEquiazimuthal1 extends WorldMapEquiazimuthal
         }
 
         // mask final image to fit within a circle (fixes fuzzy edges from base maps)
-        Bitmap masked = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Bitmap masked = BitmapPool.acquire(bitmapPool, w, h, Bitmap.Config.ARGB_8888);
         Canvas maskedCanvas = new Canvas(masked);
         maskedCanvas.drawCircle((float)mid[0], (float)mid[1], (float)mid[0] - 2, paintMask_srcOver);
         maskedCanvas.drawBitmap(b, 0, 0, paintMask_srcIn);
-        b.recycle();
+        BitmapPool.release(bitmapPool, b);
 
         long bench_end = System.nanoTime();
         Log.d(WorldMapView.LOGTAG, "make equiazimuthal world map :: " + ((bench_end - bench_start) / 1000000.0) + " ms; " + w + ", " + h);
@@ -35,6 +35,7 @@ import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.settings.WidgetTimezones;
+import com.forrestguice.suntimeswidget.views.BitmapPool;
 
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -68,10 +69,10 @@ public class WorldMapEquiazimuthal2 extends WorldMapEquiazimuthal
     }
 
     @Override
-    public double[] getMatrix() {
+    public UnitVectorMatrix getUnitVectors() {
         return matrix;
     }
-    private static double[] matrix = null;    // [x * y * v(3)]
+    private static UnitVectorMatrix matrix = null;
 
     @Override
     public void resetMatrix() {
@@ -79,7 +80,7 @@ public class WorldMapEquiazimuthal2 extends WorldMapEquiazimuthal
     }
 
     @Override
-    public double[] initMatrix()
+    public UnitVectorMatrix initMatrix()
     {
         long bench_start = System.nanoTime();
 
@@ -89,7 +90,7 @@ public class WorldMapEquiazimuthal2 extends WorldMapEquiazimuthal
 
         int w = size[0];
         int h = size[1];
-        double[] v = new double[w * h * 3];
+        UnitVectorMatrix v = UnitVectorMatrix.create(UnitVectorMatrix.getDefaultFormat(), w, h);
 
         double x, y;
         double c, sinC, cosC;
@@ -140,9 +141,7 @@ public class WorldMapEquiazimuthal2 extends WorldMapEquiazimuthal
                 cosLon = Math.cos(radLon);
                 sinLon = Math.sin(radLon);
 
-                v[i + (360 * j)] = cosLon * cosLat;
-                v[i + (360 * (360 + j))] = sinLon * cosLat;
-                v[i + (360 * (720 + j))] = Math.sin(radLat);
+                v.set(i + (360 * j), cosLon * cosLat, sinLon * cosLat, Math.sin(radLat));
             }
         }
 
@@ -232,7 +231,7 @@ public class WorldMapEquiazimuthal2 extends WorldMapEquiazimuthal
         mid[0] = w/2d;
         mid[1] = h/2d;
 
-        Bitmap b = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Bitmap b = BitmapPool.acquire(bitmapPool, w, h, Bitmap.Config.ARGB_8888);
         Canvas c = new Canvas(b);
 
         if (!paintInitialized) {
@@ -299,14 +298,14 @@ public class WorldMapEquiazimuthal2 extends WorldMapEquiazimuthal
             if (options.showSunPosition || options.showMoonPosition)
             {
                 int[] size = matrixSize();
-                Bitmap lightBitmap = Bitmap.createBitmap(size[0], size[1], Bitmap.Config.ARGB_8888);
+                Bitmap lightBitmap = BitmapPool.acquire(bitmapPool, size[0], size[1], Bitmap.Config.ARGB_8888);
                 int[] pixels = initPixels(size[0], size[1], sunUp, moonUp, options);    // TODO: double buffer?
                 lightBitmap.setPixels(pixels, 0, size[0], 0, 0, size[0], size[1]);
 
                 //Rect pixelSrc = new Rect(0,0,size[0]-1, size[1]-1);    // set by initMatrix
                 pixelDst.set(0,0,w-1, h-1);
                 c.drawBitmap(lightBitmap, pixelSrc, pixelDst, paintScaled);
-                lightBitmap.recycle();
+                BitmapPool.release(bitmapPool, lightBitmap);
             }
 
             ////////////////
@@ -351,11 +350,11 @@ public class WorldMapEquiazimuthal2 extends WorldMapEquiazimuthal
         }
 
         // mask final image to fit within a circle (fixes fuzzy edges from base maps)
-        Bitmap masked = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Bitmap masked = BitmapPool.acquire(bitmapPool, w, h, Bitmap.Config.ARGB_8888);
         Canvas maskedCanvas = new Canvas(masked);
         maskedCanvas.drawCircle((float)mid[0], (float)mid[1], (float)mid[0] - 2, paintMask_srcOver);
         maskedCanvas.drawBitmap(b, 0, 0, paintMask_srcIn);
-        b.recycle();
+        BitmapPool.release(bitmapPool, b);
 
         long bench_end = System.nanoTime();
         Log.d(WorldMapView.LOGTAG, "make equiazimuthal2 world map :: " + ((bench_end - bench_start) / 1000000.0) + " ms; " + w + ", " + h);
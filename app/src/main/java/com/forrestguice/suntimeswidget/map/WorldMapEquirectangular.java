@@ -27,6 +27,7 @@ import android.graphics.Paint;
 import android.graphics.PathEffect;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
+import android.graphics.drawable.Drawable;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
@@ -34,6 +35,7 @@ import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.settings.WidgetTimezones;
+import com.forrestguice.suntimeswidget.views.BitmapPool;
 
 import java.util.Calendar;
 
@@ -54,10 +56,7 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
     protected boolean paintInitialized = false;
     protected Paint paintBackground = null;
     protected Paint paintForeground = null;
-    protected Paint paintMoonlight = null;
-    protected Paint paintSunshadow = null;
     protected Paint paintLocation_fill = null, paintLocation_stroke = null;
-    protected Paint paintMask_srcIn = null;
     protected Paint paintMask_srcOver = null;
     protected Paint paintMoon_fill = null;
     protected Paint paintMoon_stroke = null;
@@ -79,18 +78,6 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
         paintMask_srcOver.setColor(Color.WHITE);
         paintMask_srcOver.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_OVER));
 
-        paintMask_srcIn = new Paint(Paint.ANTI_ALIAS_FLAG);      // to apply a mask
-        paintMask_srcIn.setColor(Color.WHITE);
-        paintMask_srcIn.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-
-        paintSunshadow = new Paint(Paint.ANTI_ALIAS_FLAG);
-        paintSunshadow.setColor(options.sunShadowColor);
-        paintSunshadow.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-
-        paintMoonlight = new Paint(Paint.ANTI_ALIAS_FLAG);
-        paintMoonlight.setColor(options.moonLightColor);
-        paintMoonlight.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-
         paintLocation_fill = new Paint(Paint.ANTI_ALIAS_FLAG);
         paintLocation_fill.setStyle(Paint.Style.FILL);
         paintLocation_fill.setColor(options.locationFillColor);
@@ -124,6 +111,7 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
         paintInitialized = true;
     }
 
+    @SuppressWarnings("deprecation")
     @Override
     public Bitmap makeBitmap(SuntimesRiseSetDataset data, int w, int h, WorldMapTask.WorldMapOptions options)
     {
@@ -140,7 +128,7 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
         mid[0] = w/2d;
         mid[1] = h/2d;
 
-        Bitmap b = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Bitmap b = BitmapPool.acquire(bitmapPool, w, h, Bitmap.Config.ARGB_8888);
         Canvas c = new Canvas(b);
 
         if (!paintInitialized) {
@@ -204,84 +192,17 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
             // algorithm described at https://gis.stackexchange.com/questions/17184/method-to-shade-or-overlay-a-raster-map-to-reflect-time-of-day-and-ambient-light
             if (options.showSunPosition || options.showMoonPosition)
             {
-                int[] size = matrixSize();
-                if (sunMaskBitmap == null || moonMaskBitmap == null) {
-                    initBitmap(size[0], size[1]);
-                }
-
-                int z = 0;
-                int k0, k1, k2;
-                double v0, v1, v2;
-                double sunIntensity, moonIntensity;
-                int[] sun_pixels = new int[size[0] * size[1]];
-                int[] moon_pixels = new int[size[0] * size[1]];
-                for (int j = 0; j < size[1]; j++)
-                {
-                    k0 = size[0] * j;
-                    k1 = size[0] * (size[1] + j);
-                    k2 = size[0] * ((size[1] * 2) + j);
-
-                    for (int i = 0; i < size[0]; i++)
-                    {
-                        v0 = matrix[i + k0];
-                        v1 = matrix[i + k1];
-                        v2 = matrix[i + k2];
-
-                        if (options.showSunShadow)
-                        {
-                            sunIntensity = (sunUp[0] * v0) + (sunUp[1] * v1) + (sunUp[2] * v2);    // intensity = up.dotProduct(v)
-                            if (sunIntensity <= 0) {
-                                sun_pixels[z] = Color.WHITE;
-                            }
-                        }
-
-                        if (options.showMoonLight)
-                        {
-                            moonIntensity = (moonUp[0] * v0) + (moonUp[1] * v1) + (moonUp[2] * v2);
-                            if (moonIntensity > 0) {
-                                moon_pixels[z] = Color.WHITE;
-                            }
-                        }
-                        z++;
-                    }
+                if (pixels == null || pixels.length != w * h) {
+                    pixels = new int[w * h];    // (pixels are reused between frames)
                 }
-                sunMaskBitmap.setPixels(sun_pixels, 0, size[0], 0, 0, size[0], size[1]);
-                moonMaskBitmap.setPixels(moon_pixels, 0, size[0], 0, 0, size[0], size[1]);
-
-                // draw sun shadow
-                Bitmap sunMask = Bitmap.createScaledBitmap(sunMaskBitmap, w, h, true);
-                Bitmap shadowBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
-                Canvas shadowCanvas = new Canvas(shadowBitmap);
-                shadowCanvas.drawBitmap(sunMask, 0, 0, paintMask_srcOver);
-
-                if (options.map_night != null)
-                {
-                    Bitmap nightBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
-                    Canvas nightCanvas = new Canvas(nightBitmap);
-                    options.map_night.setBounds(0, 0, nightCanvas.getWidth(), nightCanvas.getHeight());
-                    options.map_night.draw(nightCanvas);
-
-                    shadowCanvas.drawBitmap(nightBitmap, 0, 0, paintMask_srcIn);
-                    nightBitmap.recycle();
-
-                } else {
-                    shadowCanvas.drawPaint(paintSunshadow);
-                }
-
-                c.drawBitmap(shadowBitmap, 0, 0, paintMask_srcOver);
-                shadowBitmap.recycle();
-                sunMask.recycle();
-
-                // draw moon light
-                Bitmap moonMask = Bitmap.createScaledBitmap(moonMaskBitmap, w, h, true);
-                Bitmap moonBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
-                Canvas moonCanvas = new Canvas(moonBitmap);
-                moonCanvas.drawBitmap(moonMask, 0, 0, paintMask_srcOver);
-                moonCanvas.drawPaint(paintMoonlight);
 
-                c.drawBitmap(moonBitmap, 0, 0, paintMask_srcOver);
-                moonBitmap.recycle();
-                moonMask.recycle();
+                // (shaded at w x h through lookup tables of colors; twilight bands by sun altitude)
+                boolean hasNightMap = (options.showSunShadow && options.map_night != null);
+                int[] sunLUT = sunShadowLUT(hasNightMap ? Color.WHITE : options.sunShadowColor);
+                int[] moonLUT = moonLightLUT(options.moonLightColor);
+                shader.shade(matrix, (options.showSunShadow ? sunUp : null), sunLUT, (options.showMoonLight ? moonUp : null), moonLUT,
+                        (hasNightMap ? nightPixels(w, h, options.map_night) : null), pixels, w, h);
+                c.drawBitmap(pixels, 0, w, 0, 0, w, h, true, paintMask_srcOver);    // (software canvas; no intermediate bitmap)
             }
 
             ////////////////
@@ -318,7 +239,7 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
         return b;
     }
 
-    private static double[] matrix = null;    // [x * y * v(3)]
+    private static UnitVectorMatrix matrix = null;
 
     @Override
     public void resetMatrix() {
@@ -326,47 +247,74 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
     }
 
     @Override
-    public double[] initMatrix()
+    public UnitVectorMatrix initMatrix()
     {
         long bench_start = System.nanoTime();
-
         int[] size = matrixSize();
-        double[] v = new double[size[0] * size[1] * 3];
-        double iw0 = (1d / size[0]) * 360d;
-        double ih0 = (1d / size[1]) * 180d;
+        UnitVectorMatrix v = initMatrix(UnitVectorMatrix.getDefaultFormat(), size[0], size[1]);
+        long bench_end = System.nanoTime();
+        Log.d(WorldMapView.LOGTAG, "make equirectangular world map :: initMatrix :: " + ((bench_end - bench_start) / 1000000.0) + " ms; " + size[0] + ", " + size[1] + " (" + v.sizeBytes() + " bytes)");
+        return v;
+    }
+
+    /**
+     * @param format UnitVectorMatrix.FORMAT_DOUBLE, FORMAT_FLOAT, or FORMAT_FIXED16
+     * @param w matrix width (longitude)
+     * @param h matrix height (latitude)
+     * @return unit vectors
+     */
+    public static UnitVectorMatrix initMatrix(int format, int w, int h)
+    {
+        UnitVectorMatrix v = UnitVectorMatrix.create(format, w, h);
+        double iw0 = (1d / w) * 360d;
+        double ih0 = (1d / h) * 180d;
 
         double radLon, cosLon, sinLon;
         double radLat, cosLat;
 
-        for (int i = 0; i < size[0]; i++)
+        for (int i = 0; i < w; i++)
         {
             radLon = Math.toRadians(((double) i * iw0) - 180d);  // i in [0,w] to [0,360] to [-180,180]
             cosLon = Math.cos(radLon);
             sinLon = Math.sin(radLon);
 
-            for (int j = 0; j < size[1]; j++)
+            for (int j = 0; j < h; j++)
             {
                 radLat = Math.toRadians(-1 * (((double) j * ih0) - 90d));      // j in [0,h] to [0,180] to [-90,90] (inverted to canvas)
                 cosLat = Math.cos(radLat);
 
-                v[i + (size[0] * j)] = cosLon * cosLat;
-                v[i + (size[0] * (size[1] + j))] = sinLon * cosLat;
-                v[i + (size[0] * ((size[1] * 2) + j))] = Math.sin(radLat);
+                v.set(i + (w * j), cosLon * cosLat, sinLon * cosLat, Math.sin(radLat));
             }
         }
-
-        long bench_end = System.nanoTime();
-        Log.d(WorldMapView.LOGTAG, "make equirectangular world map :: initMatrix :: " + ((bench_end - bench_start) / 1000000.0) + " ms; " + size[0] + ", " + size[1]);
         return v;
     }
 
-    private Bitmap sunMaskBitmap = null;
-    private Bitmap moonMaskBitmap = null;
+    private int[] pixels = null;
+    private final TerminatorShader shader = new TerminatorShader();
+
+    private int[] nightPixels = null;
+    private int nightPixelsWidth = 0;
+    private Drawable nightPixelsSource = null;
 
-    private void initBitmap(int w, int h)
+    /**
+     * @return the night map drawn at w x h (kept between frames)
+     */
+    private int[] nightPixels(int w, int h, Drawable map_night)
     {
-        sunMaskBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_4444);
-        moonMaskBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_4444);
+        if (nightPixels == null || nightPixels.length != w * h || nightPixelsWidth != w || nightPixelsSource != map_night)
+        {
+            Bitmap nightBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+            Canvas nightCanvas = new Canvas(nightBitmap);
+            map_night.setBounds(0, 0, w, h);
+            map_night.draw(nightCanvas);
+
+            nightPixels = new int[w * h];
+            nightPixelsWidth = w;
+            nightPixelsSource = map_night;
+            nightBitmap.getPixels(nightPixels, 0, w, 0, 0, w, h);
+            nightBitmap.recycle();
+        }
+        return nightPixels;
     }
 
     @Override
@@ -376,7 +324,7 @@ public class WorldMapEquirectangular extends WorldMapTask.WorldMapProjection
     }
 
     @Override
-    public double[] getMatrix() {
+    public UnitVectorMatrix getUnitVectors() {
         return matrix;
     }
 
@@ -32,6 +32,8 @@ import android.util.Log;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.views.BitmapPool;
+import com.forrestguice.suntimeswidget.views.FrameScheduler;
 
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -85,8 +87,18 @@ public class WorldMapTask extends AsyncTask<Object, Bitmap, Bitmap>
             Log.w("WorldMapTask", "Invalid params; using [null, 0, 0]");
             return null;
         }
+        projection.setBitmapPool(bitmapPool);
 
-        long time0 = System.nanoTime();
+        FrameScheduler<Bitmap> scheduler = new FrameScheduler<>(frameDuration, new FrameScheduler.FrameCallback<Bitmap>()
+        {
+            @Override
+            public void onFrame(Bitmap frame)
+            {
+                if (!isCancelled()) {
+                    onProgressUpdate(frame);
+                }
+            }
+        });
         Bitmap frame = null;
         options.offsetMinutes = initialOffset;
 
@@ -98,20 +110,23 @@ public class WorldMapTask extends AsyncTask<Object, Bitmap, Bitmap>
             }
             frame = makeBitmap(data, w, h, options);
 
-            long time1 = System.nanoTime();
-            while ((time1 - time0) < frameDuration) {
-                time1 = System.nanoTime();
+            if (!scheduler.awaitFrame()) {
+                break;    // cancelled
+            }
+            Bitmap dropped = scheduler.publish(frame);
+            if (dropped != null && bitmapPool != null) {
+                bitmapPool.release(dropped);
             }
-
-            publishProgress(frame);
             if (listener != null) {
                 listener.afterFrame(frame, options.offsetMinutes);
             }
             options.offsetMinutes += options.anim_frameOffsetMinutes;
-            time0 = System.nanoTime();
             i++;
         }
         options.offsetMinutes -= options.anim_frameOffsetMinutes;
+        if (numFrames != 1) {
+            Log.d("WorldMapTask", "frames: " + scheduler.getStats());
+        }
         return frame;
     }
 
@@ -152,6 +167,11 @@ public class WorldMapTask extends AsyncTask<Object, Bitmap, Bitmap>
 
     /////////////////////////////////////////////
 
+    private BitmapPool bitmapPool = null;
+    public void setBitmapPool( BitmapPool pool ) {
+        this.bitmapPool = pool;
+    }
+
     private WorldMapTaskListener listener = null;
     public void setListener( WorldMapTaskListener listener ) {
         this.listener = listener;
@@ -224,14 +244,55 @@ public class WorldMapTask extends AsyncTask<Object, Bitmap, Bitmap>
          */
         public abstract Bitmap makeBitmap(SuntimesRiseSetDataset data, int w, int h, WorldMapTask.WorldMapOptions options);
         public abstract void initPaint(WorldMapTask.WorldMapOptions options);
-        public abstract double[] initMatrix();            // creates flattened multi-dimensional array; [lon][lat][v(3)]
-        public abstract double[] getMatrix();
+        public abstract UnitVectorMatrix initMatrix();    // creates a matrix of unit vectors (matrixSize; in UnitVectorMatrix.getDefaultFormat)
+        public abstract UnitVectorMatrix getUnitVectors();
         public abstract void resetMatrix();
+
+        /**
+         * @return a copy of the unit vectors as a flattened multi-dimensional array; [lon][lat][v(3)], or null (see getUnitVectors)
+         */
+        public double[] getMatrix()
+        {
+            UnitVectorMatrix m = getUnitVectors();
+            return (m != null ? m.toArray() : null);
+        }
         public abstract int[] matrixSize();               // [width(lon), height(lat)]
         protected abstract int k(int x, int y, int z);    // returns index into flattened array
         public abstract int[] toBitmapCoords(int w, int h, double[] mid, double lat, double lon);
         public double[] getCenter() { return new double[] {0,0}; }
 
+        protected BitmapPool bitmapPool = null;    // bitmaps are acquired from (and scratch bitmaps released to) the pool if set
+        public void setBitmapPool(BitmapPool pool) {
+            bitmapPool = pool;
+        }
+
+        private int[] sunShadowLUT = null, moonLightLUT = null;    // (kept until the color changes)
+        private int sunShadowLUTColor, moonLightLUTColor;
+
+        /**
+         * @return shadow colors by TerminatorShader.lutIndex (in twilight bands)
+         */
+        protected int[] sunShadowLUT(int color)
+        {
+            if (sunShadowLUT == null || sunShadowLUTColor != color) {
+                sunShadowLUT = TerminatorShader.sunShadowLUT(color);
+                sunShadowLUTColor = color;
+            }
+            return sunShadowLUT;
+        }
+
+        /**
+         * @return light colors by TerminatorShader.lutIndex
+         */
+        protected int[] moonLightLUT(int color)
+        {
+            if (moonLightLUT == null || moonLightLUTColor != color) {
+                moonLightLUT = TerminatorShader.moonLightLUT(color);
+                moonLightLUTColor = color;
+            }
+            return moonLightLUT;
+        }
+
         protected Calendar mapTime(SuntimesRiseSetDataset data, WorldMapTask.WorldMapOptions options)
         {
             Calendar mapTime;
@@ -41,6 +41,7 @@ import android.util.Log;
 import android.view.Display;
 import android.view.View;
 import android.view.WindowManager;
+import com.forrestguice.suntimeswidget.views.BitmapPool;
 import com.forrestguice.suntimeswidget.views.Toast;
 
 import com.forrestguice.suntimeswidget.ExportTask;
@@ -408,6 +409,7 @@ public class WorldMapView extends android.support.v7.widget.AppCompatImageView
 
             drawTask = new WorldMapTask();
             drawTask.setListener(drawListener);
+            drawTask.setBitmapPool(bitmapPool);
 
             Log.w(LOGTAG, "updateViews: " + w + ", " + h );
             drawTask.execute(data, w, h, options, projection, (animated ? 0 : 1), options.offsetMinutes);
@@ -442,7 +444,7 @@ public class WorldMapView extends android.support.v7.widget.AppCompatImageView
         {
             mapW = frame.getWidth();
             mapH = frame.getHeight();
-            setImageBitmap(frame);
+            setFrame(frame);
 
             if (mapListener != null) {
                 mapListener.onFrame(frame, offsetMinutes);
@@ -462,7 +464,7 @@ public class WorldMapView extends android.support.v7.widget.AppCompatImageView
         {
             mapW = frame.getWidth();
             mapH = frame.getHeight();
-            setImageBitmap(frame);
+            setFrame(frame);
 
             if (mapListener != null) {
                 mapListener.onFinished(frame);
@@ -537,6 +539,22 @@ public class WorldMapView extends android.support.v7.widget.AppCompatImageView
     }
 
     private Bitmap bitmap;
+
+    private final BitmapPool bitmapPool = new BitmapPool();
+    private Bitmap frame = null;
+
+    /**
+     * Displays the frame, returning the previous frame to the bitmap pool.
+     */
+    protected void setFrame(Bitmap frame)
+    {
+        Bitmap previous = this.frame;
+        this.frame = frame;
+        setImageBitmap(frame);
+        if (previous != null && previous != frame) {
+            bitmapPool.release(previous);
+        }
+    }
     private static WorldMapExportTask exportTask = null;
 
     public boolean isRecording() {
@@ -647,6 +665,7 @@ public class WorldMapView extends android.support.v7.widget.AppCompatImageView
     {
         super.onDetachedFromWindow();
         stopRunningTasks();
+        bitmapPool.clear();
     }
 
     @Override
@@ -171,6 +171,9 @@ public class AppSettings
     public static final String PREF_KEY_PLUGINS_ENABLESCAN = "app_plugins_enabled";
     public static final boolean PREF_DEF_PLUGINS_ENABLESCAN = false;
 
+    public static final String PREF_KEY_DEBUG_CALCULATORSTATS = "app_debug_calculatorstats";
+    public static final boolean PREF_DEF_DEBUG_CALCULATORSTATS = false;
+
     public static final String PREF_KEY_FIRST_LAUNCH = "app_first_launch";
     public static boolean isFirstLaunch( Context context ) {
         return PreferenceManager.getDefaultSharedPreferences(context).getBoolean(PREF_KEY_FIRST_LAUNCH, true);
@@ -194,7 +197,7 @@ public class AppSettings
             PREF_KEY_UI_SHOWMAPBUTTON, PREF_KEY_UI_SHOWDATASOURCE, PREF_KEY_UI_SHOWHEADER_ICON, PREF_KEY_UI_SHOWHEADER_TEXT,
             PREF_KEY_UI_EMPHASIZEFIELD, PREF_KEY_UI_SHOWFIELDS, PREF_KEY_ACCESSIBILITY_VERBOSE, PREF_KEY_UI_TIMEZONESORT,
             PREF_KEY_GETFIX_MINELAPSED, PREF_KEY_GETFIX_MAXELAPSED, PREF_KEY_GETFIX_MAXAGE, PREF_KEY_GETFIX_TIME, PREF_KEY_GETFIX_PASSIVE,
-            PREF_KEY_PLUGINS_ENABLESCAN, PREF_KEY_FIRST_LAUNCH, PREF_KEY_DIALOG, PREF_KEY_DIALOG_DONOTSHOWAGAIN
+            PREF_KEY_PLUGINS_ENABLESCAN, PREF_KEY_DEBUG_CALCULATORSTATS, PREF_KEY_FIRST_LAUNCH, PREF_KEY_DIALOG, PREF_KEY_DIALOG_DONOTSHOWAGAIN
     };
     public static final String[] INT_KEYS = new String[] {
             PREF_KEY_UI_SHOWFIELDS
@@ -206,7 +209,7 @@ public class AppSettings
     {
             PREF_KEY_UI_SHOWWARNINGS, PREF_KEY_UI_SHOWMAPBUTTON, PREF_KEY_UI_SHOWDATASOURCE, PREF_KEY_UI_SHOWHEADER_ICON,
             PREF_KEY_UI_SHOWLIGHTMAP, PREF_KEY_UI_SHOWEQUINOX, PREF_KEY_UI_SHOWCROSSQUARTER, PREF_KEY_UI_SHOWMOON, PREF_KEY_UI_SHOWLUNARNOON,
-            PREF_KEY_ACCESSIBILITY_VERBOSE, PREF_KEY_GETFIX_PASSIVE, PREF_KEY_PLUGINS_ENABLESCAN, PREF_KEY_FIRST_LAUNCH, PREF_KEY_DIALOG_DONOTSHOWAGAIN
+            PREF_KEY_ACCESSIBILITY_VERBOSE, PREF_KEY_GETFIX_PASSIVE, PREF_KEY_PLUGINS_ENABLESCAN, PREF_KEY_DEBUG_CALCULATORSTATS, PREF_KEY_FIRST_LAUNCH, PREF_KEY_DIALOG_DONOTSHOWAGAIN
     };
 
     private static Map<String,Class> types = null;
@@ -634,6 +637,12 @@ public class AppSettings
         return pref.getBoolean(PREF_KEY_PLUGINS_ENABLESCAN, PREF_DEF_PLUGINS_ENABLESCAN);
     }
 
+    public static boolean loadCalculatorStatsPref( Context context )
+    {
+        SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(context);
+        return pref.getBoolean(PREF_KEY_DEBUG_CALCULATORSTATS, PREF_DEF_DEBUG_CALCULATORSTATS);
+    }
+
     /**
      * Preference: the action that is performed when the clock ui is clicked/tapped
      */
@@ -32,6 +32,7 @@ import com.forrestguice.suntimeswidget.BuildConfig;
 import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.calculator.SuntimesCalculatorDescriptor;
+import com.forrestguice.suntimeswidget.calculator.SuntimesCalculatorFactory;
 import com.forrestguice.suntimeswidget.calendar.CalendarSettings;
 import com.forrestguice.suntimeswidget.events.EventSettings;
 import com.forrestguice.suntimeswidget.widgets.layouts.MoonLayout;
@@ -2201,6 +2202,7 @@ public class WidgetSettings
         String key = keyCalculatorModePref(appWidgetId, calculatorName);
         prefs.putString(key, mode.getName());
         prefs.apply();
+        SuntimesCalculatorFactory.clearCache();
     }
 
     public static String defaultCalculatorModePref(Context context, int appWidgetId, @NonNull String calculatorName)
@@ -2728,6 +2730,7 @@ public class WidgetSettings
         prefs.putString(prefs_prefix + PREF_KEY_LOCATION_LATITUDE, location.getLatitude());
         prefs.putString(prefs_prefix + PREF_KEY_LOCATION_LABEL, location.getLabel());
         prefs.apply();
+        SuntimesCalculatorFactory.clearCache();
     }
     public static Location loadLocationPref(Context context, int appWidgetId)
     {
@@ -2790,6 +2793,7 @@ public class WidgetSettings
         String prefs_prefix = PREF_PREFIX_KEY + appWidgetId + PREF_PREFIX_KEY_LOCATION;
         prefs.putBoolean(prefs_prefix + PREF_KEY_LOCATION_ALTITUDE_ENABLED, enabled);
         prefs.apply();
+        SuntimesCalculatorFactory.clearCache();
     }
     public static boolean loadLocationAltitudeEnabledPref(Context context, int appWidgetId)
     {
@@ -2870,6 +2874,7 @@ public class WidgetSettings
         String key = keyTimezonePref(appWidgetId, slotName);
         prefs.putString(key, timezone);
         prefs.apply();
+        SuntimesCalculatorFactory.clearCache();
     }
 
     public static String loadTimezonePref(Context context, int appWidgetId) {
@@ -26,6 +26,7 @@ import android.util.Log;
 import com.forrestguice.suntimeswidget.alarmclock.AlarmNotifications;
 import com.forrestguice.suntimeswidget.alarmclock.AlarmSettings;
 import com.forrestguice.suntimeswidget.calculator.CalculatorProvider;
+import com.forrestguice.suntimeswidget.calculator.CalculatorStats;
 import com.forrestguice.suntimeswidget.calculator.SuntimesCalculatorDescriptor;
 
 import java.security.InvalidParameterException;
@@ -59,6 +60,13 @@ public abstract class WidgetSettingsPreferenceHelper implements SharedPreference
             return;
         }
 
+        if (key.endsWith(AppSettings.PREF_KEY_DEBUG_CALCULATORSTATS))
+        {
+            CalculatorStats.setEnabled(AppSettings.loadCalculatorStatsPref(context));
+            CalculatorStats.reset();
+            return;
+        }
+
         if (key.endsWith(AlarmSettings.PREF_KEY_ALARM_UPCOMING))
         {
             Log.i(LOG_TAG, "onPreferenceChanged: " + AlarmSettings.PREF_KEY_ALARM_UPCOMING + ", rescheduling alarms..");
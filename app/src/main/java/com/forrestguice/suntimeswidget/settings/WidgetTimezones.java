@@ -20,6 +20,7 @@ package com.forrestguice.suntimeswidget.settings;
 
 import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.SuntimesUtils;
+import com.forrestguice.suntimeswidget.calculator.EquationOfTimeTable;
 import com.forrestguice.suntimeswidget.calculator.core.Location;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 
@@ -91,7 +92,7 @@ public class WidgetTimezones
             longitude = 0.0;
         }
         switch (tzId) {
-            case ApparentSolarTime.TIMEZONEID: return new ApparentSolarTime(longitude, tzId, calculator);
+            case ApparentSolarTime.TIMEZONEID: return ApparentSolarTime.getInstance(longitude, calculator);
             case LocalMeanTime.TIMEZONEID: case SiderealTime.TZID_LMST: return new LocalMeanTime(longitude, tzId);
             case SiderealTime.TZID_GMST: return new LocalMeanTime(0, tzId);
             case TZID_SYSTEM: case TZID_SUNTIMES: return TimeZone.getDefault();
@@ -188,7 +189,7 @@ public class WidgetTimezones
     }
 
     public static TimeZone apparentSolarTime(Context context, Location location, SuntimesCalculator calculator) {
-        return new ApparentSolarTime(location.getLongitudeAsDouble(), ApparentSolarTime.TIMEZONEID, calculator);
+        return ApparentSolarTime.getInstance(location.getLongitudeAsDouble(), calculator);
     }
 
     /**
@@ -265,11 +266,21 @@ public class WidgetTimezones
 
     /**
      * ApparentSolarTime : TimeZone
+     * The equation of time is looked up from a shared EquationOfTimeTable; each instance holds on to the table for the
+     * current year, and reuses it until a date crosses into the next. Instances are not shared (see getInstance).
      */
     public static class ApparentSolarTime extends LocalMeanTime
     {
         public static final String TIMEZONEID = "LTST";    // local true solar time
 
+        /**
+         * @return a new instance; instances are cheap to create (the equation of time table is shared, see EquationOfTimeTable),
+         * and each keeps its own state (the table of the current year, and the most recent offset; see getDSTSavings).
+         */
+        public static ApparentSolarTime getInstance(double longitude, @Nullable SuntimesCalculator calculator) {
+            return new ApparentSolarTime(longitude, TIMEZONEID, calculator);
+        }
+
         public ApparentSolarTime(double longitude, String name)
         {
             super(longitude, name);
@@ -305,32 +316,50 @@ public class WidgetTimezones
         @Override
         public int getOffset( long date )
         {
-            eotOffset = equationOfTimeOffset(date, calculator);
+            SuntimesCalculator calculator = this.calculator;
+            if (calculator != null)
+            {
+                EquationOfTimeTable.Year table = eotTable;
+                if (table == null || !table.contains(calculator, date)) {
+                    eotTable = table = EquationOfTimeTable.getYear(calculator, date);
+                }
+                eotOffset = equationOfTimeOffset(date, table.equationOfTime(calculator, date));
+            } else {
+                eotOffset = equationOfTimeOffset(date);
+            }
             return getRawOffset() + eotOffset;
         }
+        private EquationOfTimeTable.Year eotTable = null;
 
         public static int equationOfTimeOffset(long date, SuntimesCalculator calculator)
         {
             if (calculator != null)
             {
-                Calendar calendar = new GregorianCalendar();
-                calendar.setTimeInMillis(date);
-                double eotSeconds = calculator.equationOfTime(calendar);
-                if (eotSeconds != Double.POSITIVE_INFINITY)
-                {
-                    //Log.d("ApparentSolar", "equationOfTime: using " + calculator.name() + ": eot is: " + (eotSeconds / 60d) + " minutes" );
-                    return (int)(eotSeconds * 1000);
-
-                } else {
-                    //Log.d("ApparentSolar", "equationOfTime: not supported by " + calculator.name() + " using fallback: " + (equationOfTimeOffset(date) / 1000d / 60d) );
-                    return equationOfTimeOffset(date);    // not supported; use fall-back implementation
-                }
+                return equationOfTimeOffset(date, EquationOfTimeTable.equationOfTime(calculator, date));
             } else {
                 //Log.d("ApparentSolar", "equationOfTime: null calculator, using fallback: " + (equationOfTimeOffset(date) / 1000d / 60d) );
                 return equationOfTimeOffset(date);      // no calculator; use fall-back implementation
             }
         }
 
+        /**
+         * @param date a given date
+         * @param eotSeconds equation of time (seconds) from the calculator, or POSITIVE_INFINITY if not supported
+         * @return equation of time correction in milliseconds
+         */
+        protected static int equationOfTimeOffset(long date, double eotSeconds)
+        {
+            if (eotSeconds != Double.POSITIVE_INFINITY)
+            {
+                //Log.d("ApparentSolar", "equationOfTime: eot is: " + (eotSeconds / 60d) + " minutes" );
+                return (int)(eotSeconds * 1000);
+
+            } else {
+                //Log.d("ApparentSolar", "equationOfTime: not supported, using fallback: " + (equationOfTimeOffset(date) / 1000d / 60d) );
+                return equationOfTimeOffset(date);    // not supported; use fall-back implementation
+            }
+        }
+
         /**
          * @param date a given date
          * @return equation of time correction in milliseconds
@@ -400,17 +429,23 @@ public class WidgetTimezones
         public static final String TZID_GMST = "GMST";
         public static final String TZID_LMST = "LMST";
 
+        /**
+         * @param dateMillis a given date
+         * @return the offset of greenwich mean sidereal time from utc (milliseconds); Meeus (12.4)
+         */
         public static int gmstOffset(long dateMillis)
         {
-            double julianDay = julianDay(dateMillis);
-            double d = julianDay - 2451545d;
+            double d = (dateMillis / DAY_MILLIS) - 10957.5;    // days since J2000 (julianDay - 2451545)
             double t = (d / 36525d);
             double gmst_degrees = 280.46061837 + (360.98564736629 * d) + (0.000387933 * t * t) - ((t * t * t) / 38710000d);
-            double gmst_hours = gmst_degrees * (24 / 360d);
-            double utc_hours = dateMillis / (60d * 60d * 1000d);
-            double offset_hours = simplifyHours(gmst_hours - utc_hours);
-            return (int)(offset_hours * 60d * 60d * 1000d);
+            double utc_degrees = (dateMillis % (long) DAY_MILLIS) * (360d / DAY_MILLIS);
+            double offset_degrees = (gmst_degrees - utc_degrees) % 360d;
+            if (offset_degrees < 0) {
+                offset_degrees += 360d;
+            }
+            return (int)(offset_degrees * (DAY_MILLIS / 360d));
         }
+        private static final double DAY_MILLIS = 24d * 60d * 60d * 1000d;
 
         public static int lmstOffset(long dateMillis, double longitude) {
             return gmstOffset(dateMillis) + (int)((longitude * 24 / 360d) * 60 * 60 * 1000);
@@ -422,17 +457,6 @@ public class WidgetTimezones
         public static double julianDay(long dateMillis) {
             return (dateMillis / (24d * 60d * 60d * 1000d)) + 2440587.5;  // days + julianDay(epoch)
         }
-
-        private static double simplifyHours(double hours)
-        {
-            while (hours >= 24) {
-                hours -= 24;
-            }
-            while (hours < 0) {
-                hours += 24;
-            }
-            return hours;
-        }
     }
 
     ///////////////////////////////////////
@@ -21,9 +21,12 @@ package com.forrestguice.suntimeswidget.settings.fragments;
 import android.annotation.SuppressLint;
 import android.annotation.TargetApi;
 import android.app.Activity;
+import android.app.AlertDialog;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.res.TypedArray;
+import android.graphics.Typeface;
 import android.os.Build;
 import android.os.Bundle;
 import android.preference.CheckBoxPreference;
@@ -31,16 +34,22 @@ import android.preference.ListPreference;
 import android.preference.Preference;
 import android.preference.PreferenceFragment;
 import android.preference.PreferenceManager;
+import android.support.annotation.Nullable;
 import android.support.v4.content.ContextCompat;
 import android.text.SpannableString;
 import android.text.SpannableStringBuilder;
 import android.text.style.ImageSpan;
 import android.util.Log;
+import android.util.TypedValue;
+import android.widget.HorizontalScrollView;
+import android.widget.ScrollView;
+import android.widget.TextView;
 
 import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.SuntimesSettingsActivity;
 import com.forrestguice.suntimeswidget.SuntimesUtils;
 import com.forrestguice.suntimeswidget.WelcomeActivity;
+import com.forrestguice.suntimeswidget.calculator.CalculatorStats;
 import com.forrestguice.suntimeswidget.calculator.SuntimesCalculatorDescriptor;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 import com.forrestguice.suntimeswidget.settings.AppSettings;
@@ -175,6 +184,54 @@ public class GeneralPrefsFragment extends PreferenceFragment
                 }
             });
         }
+
+        initPref_calculatorStats(context, fragment.findPreference(AppSettings.PREF_KEY_DEBUG_CALCULATORSTATS + "_show"));
+    }
+
+    public static void initPref_calculatorStats(final Context context, @Nullable Preference showStatsPref)
+    {
+        if (showStatsPref != null)
+        {
+            showStatsPref.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener()
+            {
+                @Override
+                public boolean onPreferenceClick(Preference preference) {
+                    createCalculatorStatsDialog(context).show();
+                    return false;
+                }
+            });
+        }
+    }
+
+    /**
+     * A debug screen that lists CalculatorStats (call counts and p50/p95/p99/max latency by method and calling subsystem).
+     */
+    public static AlertDialog.Builder createCalculatorStatsDialog(final Context context)
+    {
+        String stats = (CalculatorStats.getEntries().isEmpty() ? context.getString(R.string.configLabel_general_calculatorStats_empty)
+                                                                : CalculatorStats.toDisplayString());
+        int padding = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 16, context.getResources().getDisplayMetrics());
+        TextView text = new TextView(context);
+        text.setTypeface(Typeface.MONOSPACE);
+        text.setTextSize(TypedValue.COMPLEX_UNIT_SP, 10);
+        text.setPadding(padding, padding, padding, padding);
+        text.setText(stats);
+
+        HorizontalScrollView horizontalScroll = new HorizontalScrollView(context);
+        horizontalScroll.addView(text);
+        ScrollView scroll = new ScrollView(context);
+        scroll.addView(horizontalScroll);
+
+        return new AlertDialog.Builder(context)
+                .setTitle(context.getString(R.string.configLabel_general_calculatorStats))
+                .setView(scroll)
+                .setPositiveButton(android.R.string.ok, null)
+                .setNeutralButton(context.getString(R.string.configAction_resetCalculatorStats), new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        CalculatorStats.reset();
+                    }
+                });
     }
 
     public static void initPref_calculator(Context context, final SummaryListPreference calculatorPref, String defaultCalculator)
@@ -34,6 +34,7 @@ import android.view.ContextThemeWrapper;
 
 import com.forrestguice.suntimeswidget.R;
 import com.forrestguice.suntimeswidget.SuntimesUtils;
+import com.forrestguice.suntimeswidget.calculator.SuntimesData;
 import com.forrestguice.suntimeswidget.calculator.SuntimesRiseSetDataset;
 import com.forrestguice.suntimeswidget.settings.AppSettings;
 import com.forrestguice.suntimeswidget.settings.WidgetSettings;
@@ -84,9 +85,11 @@ public class NextEventTileService extends ClockTileService
      */
     protected SuntimesRiseSetDataset initDataset(Context context)
     {
-        if (dataset == null) {
+        if (dataset == null || dataset.calendar() == null || SuntimesData.daysBetween(dataset.calendar(), Calendar.getInstance(dataset.timezone())) != 0)
+        {
+            SuntimesRiseSetDataset previous = dataset;
             dataset = new SuntimesRiseSetDataset(context, appWidgetId());
-            dataset.calculateData();
+            dataset.calculateData(previous);    // answered from the event table when available (see SunEventTable)
         }
         return dataset;
     }
@@ -0,0 +1,165 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.views;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.ArrayList;
+
+/**
+ * A pool of reusable bitmaps (matched by width, height, and config).
+ *
+ * Animated views (LightMapView, LineGraphView, WorldMapView) share a pool with their draw task; the task acquires each
+ * frame from the pool, and frames are released back to it when they are dropped (FrameScheduler.publish), or replaced by
+ * the view (the frame previously displayed). At most three frames are in use at a time (displayed, pending, and rendering),
+ * so an animation that has filled the pool no longer allocates bitmaps.
+ */
+public class BitmapPool
+{
+    public static final int DEF_MAX_PER_SIZE = 4;
+
+    protected final int maxPerSize, maxSize;
+    protected final ArrayList<Bitmap> free = new ArrayList<>();    // oldest first
+    protected long numCreated = 0, numReused = 0;
+
+    public BitmapPool() {
+        this(DEF_MAX_PER_SIZE);
+    }
+
+    /**
+     * @param maxPerSize max number of free bitmaps kept (of the same size and config)
+     */
+    public BitmapPool(int maxPerSize)
+    {
+        this.maxPerSize = Math.max(1, maxPerSize);
+        this.maxSize = 2 * this.maxPerSize;
+    }
+
+    /**
+     * @return a bitmap (mutable; cleared to transparent), reused from the pool if possible
+     */
+    public Bitmap acquire(int w, int h, Bitmap.Config config)
+    {
+        Bitmap bitmap = null;
+        synchronized (this)
+        {
+            for (int i=0; i<free.size(); i++)    // (reuse the least recently released)
+            {
+                Bitmap b = free.get(i);
+                if (matches(b, w, h, config))
+                {
+                    bitmap = free.remove(i);
+                    numReused++;
+                    break;
+                }
+            }
+            if (bitmap == null) {
+                numCreated++;
+            }
+        }
+
+        if (bitmap != null)
+        {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            return bitmap;
+        } else return Bitmap.createBitmap(w, h, config);
+    }
+
+    /**
+     * Returns a bitmap to the pool; the caller should no longer use it.
+     * @return true if the bitmap was kept for reuse, false otherwise (the pool is full, or the bitmap can't be reused)
+     */
+    public boolean release(Bitmap bitmap)
+    {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return false;
+        }
+
+        synchronized (this)
+        {
+            int count = 0;
+            for (Bitmap b : free)
+            {
+                if (b == bitmap) {
+                    return true;    // already released
+                }
+                if (matches(b, bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig())) {
+                    count++;
+                }
+            }
+            if (count >= maxPerSize) {
+                return false;
+            }
+
+            free.add(bitmap);
+            while (free.size() > maxSize) {
+                free.remove(0);    // (evict bitmaps of sizes no longer in use)
+            }
+            return true;
+        }
+    }
+
+    protected static boolean matches(Bitmap b, int w, int h, Bitmap.Config config) {
+        return (b.getWidth() == w && b.getHeight() == h && b.getConfig() == config && !b.isRecycled());
+    }
+
+    public synchronized int size() {
+        return free.size();
+    }
+
+    public synchronized void clear() {
+        free.clear();
+    }
+
+    /**
+     * @return number of bitmaps created by acquire
+     */
+    public synchronized long getNumCreated() {
+        return numCreated;
+    }
+
+    /**
+     * @return number of bitmaps reused by acquire
+     */
+    public synchronized long getNumReused() {
+        return numReused;
+    }
+
+    /**
+     * @param pool a BitmapPool (or null)
+     * @return a bitmap from the pool, or a new bitmap if pool is null
+     */
+    public static Bitmap acquire(BitmapPool pool, int w, int h, Bitmap.Config config) {
+        return (pool != null ? pool.acquire(w, h, config) : Bitmap.createBitmap(w, h, config));
+    }
+
+    /**
+     * @param pool a BitmapPool (or null)
+     * @param bitmap a bitmap that is no longer used; returned to the pool, or recycled if pool is null
+     */
+    public static void release(BitmapPool pool, Bitmap bitmap)
+    {
+        if (pool != null) {
+            pool.release(bitmap);
+        } else if (bitmap != null) {
+            bitmap.recycle();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.views;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces the frames of an animation produced by a background task (LightMapTask, LineGraphTask, WorldMapTask).
+ *
+ * The producing thread calls awaitFrame before each frame, which parks until the next deadline (deadlines are at a
+ * fixed rate; a late frame skips the deadlines it missed rather than hurrying to catch up). Frames are then handed to
+ * publish, and delivered on the main thread at the next vsync (Choreographer; api 16+). Only the most recent frame is
+ * delivered; a frame that is replaced before it is delivered is dropped (rather than queued).
+ */
+public class FrameScheduler<T>
+{
+    protected final long frameNanos;
+    protected final FrameCallback<T> callback;
+
+    protected long startNanos = -1, deadlineNanos = -1, wakeNanos = -1;
+
+    protected volatile long numPublished = 0, numDelivered = 0, numDropped = 0, numLate = 0;
+    protected volatile long workNanosTotal = 0, workNanosMax = 0;
+    protected volatile long firstDeliveredNanos = -1, lastDeliveredNanos = -1;
+
+    private final AtomicReference<T> pending = new AtomicReference<>(null);
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private Handler handler = null;
+
+    /**
+     * @param frameNanos frame duration (nanoseconds)
+     * @param callback called on the main thread with each delivered frame
+     */
+    public FrameScheduler(long frameNanos, FrameCallback<T> callback)
+    {
+        this.frameNanos = Math.max(1, frameNanos);
+        this.callback = callback;
+    }
+
+    public long getFrameNanos() {
+        return frameNanos;
+    }
+
+    /**
+     * Waits for the next frame deadline (called from the producing thread before publishing each frame).
+     * @return true if the frame should be published, false if the thread was interrupted (e.g. the task was cancelled)
+     */
+    public boolean awaitFrame()
+    {
+        long now = System.nanoTime();
+        if (startNanos < 0)
+        {
+            startNanos = now;
+            deadlineNanos = now;    // (the first frame is published immediately)
+
+        } else {
+            long work = now - wakeNanos;
+            workNanosTotal += work;
+            workNanosMax = Math.max(workNanosMax, work);
+        }
+
+        long late = now - deadlineNanos;
+        if (late >= frameNanos)
+        {
+            long missed = late / frameNanos;
+            deadlineNanos += missed * frameNanos;    // skip missed deadlines
+            numLate += missed;
+        }
+
+        while ((now = System.nanoTime()) < deadlineNanos)
+        {
+            LockSupport.parkNanos(this, deadlineNanos - now);
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+        deadlineNanos += frameNanos;
+        wakeNanos = System.nanoTime();
+        return !Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * Hands off a frame for delivery at the next vsync (called from the producing thread); replaces (and drops) any frame
+     * still waiting to be delivered.
+     * @return the dropped frame (which will not be delivered), or null
+     */
+    public T publish(T frame)
+    {
+        numPublished++;
+        T dropped = pending.getAndSet(frame);
+        if (dropped != null) {
+            numDropped++;
+        }
+        if (scheduled.compareAndSet(false, true)) {
+            scheduleDelivery();
+        }
+        return dropped;
+    }
+
+    /**
+     * Schedules a call to deliverFrame (at most one is outstanding); posts to the main thread, then waits for the next vsync.
+     */
+    protected void scheduleDelivery() {
+        handler().post(scheduleFrame);
+    }
+
+    /**
+     * Delivers the most recently published frame (if any) to the callback (called on the main thread).
+     */
+    protected void deliverFrame()
+    {
+        scheduled.set(false);
+        T frame = pending.getAndSet(null);
+        if (frame != null)
+        {
+            long now = System.nanoTime();
+            if (firstDeliveredNanos < 0) {
+                firstDeliveredNanos = now;
+            }
+            lastDeliveredNanos = now;
+            numDelivered++;
+            callback.onFrame(frame);
+        }
+    }
+
+    protected Handler handler()
+    {
+        if (handler == null) {
+            handler = new Handler(Looper.getMainLooper());
+        }
+        return handler;
+    }
+
+    private final Runnable scheduleFrame = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            if (Build.VERSION.SDK_INT >= 16) {
+                VsyncCompat.postFrameCallback(deliverFrame);
+            } else deliverFrame.run();
+        }
+    };
+
+    private final Runnable deliverFrame = new Runnable()
+    {
+        @Override
+        public void run() {
+            deliverFrame();
+        }
+    };
+
+    /**
+     * @return a snapshot of frame stats
+     */
+    public FrameStats getStats()
+    {
+        FrameStats stats = new FrameStats();
+        stats.published = numPublished;
+        stats.delivered = numDelivered;
+        stats.dropped = numDropped;
+        stats.late = numLate;
+        long work = numPublished - 1;    // (work is measured between frames)
+        stats.meanFrameMs = (work > 0 ? (workNanosTotal / (double) work) / 1000000d : 0);
+        stats.maxFrameMs = workNanosMax / 1000000d;
+        long elapsed = lastDeliveredNanos - firstDeliveredNanos;
+        stats.fps = (numDelivered > 1 && elapsed > 0 ? (numDelivered - 1) / (elapsed / 1000000000d) : 0);
+        stats.targetFps = 1000000000d / frameNanos;
+        return stats;
+    }
+
+    /**
+     * FrameStats
+     */
+    public static class FrameStats
+    {
+        public long published, delivered, dropped;
+        public long late;                   // deadlines missed by the producing thread
+        public double fps, targetFps;       // achieved (delivered) frame rate, and target frame rate
+        public double meanFrameMs, maxFrameMs;    // time spent producing a frame (milliseconds)
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%.1f fps (target %.1f); %d published, %d delivered, %d dropped, %d late; frame time: mean %.1f ms, max %.1f ms",
+                    fps, targetFps, published, delivered, dropped, late, meanFrameMs, maxFrameMs);
+        }
+    }
+
+    /**
+     * FrameCallback
+     */
+    public interface FrameCallback<T>
+    {
+        void onFrame(T frame);
+    }
+
+    @TargetApi(16)
+    private static class VsyncCompat
+    {
+        public static void postFrameCallback(final Runnable runnable)
+        {
+            Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback()
+            {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    runnable.run();
+                }
+            });
+        }
+    }
+}
@@ -34,6 +34,7 @@ import com.forrestguice.suntimeswidget.calendar.CalendarFormat;
 import com.forrestguice.suntimeswidget.calendar.CalendarMode;
 import com.forrestguice.suntimeswidget.calendar.CalendarSettings;
 import com.forrestguice.suntimeswidget.settings.WidgetSettings;
+import com.forrestguice.suntimeswidget.settings.WidgetTimezones;
 import com.forrestguice.suntimeswidget.themes.SuntimesTheme;
 
 import java.util.Calendar;
@@ -147,7 +148,7 @@ public class ClockLayout_1x1_0 extends ClockLayout
             {
                 stringResID = R.string.timezoneExtraApparentSolar_short;
                 if (WidgetSettings.loadSolarTimeModePref(context, appWidgetId) == WidgetSettings.SolarTimeMode.APPARENT_SOLAR_TIME) {
-                    offset = (long)data.calculator().equationOfTime(now) * 1000L;  //(long)WidgetTimezones.ApparentSolarTime.equationOfTimeOffset(now.getTimeInMillis());
+                    offset = (long)WidgetTimezones.ApparentSolarTime.equationOfTimeOffset(now.getTimeInMillis(), data.calculator());    // (from EquationOfTimeTable)
                 }
 
             } else {
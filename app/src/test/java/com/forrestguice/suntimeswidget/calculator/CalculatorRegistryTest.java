@@ -0,0 +1,154 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+import com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CalculatorRegistryTest
+{
+    public static class TestInitializer implements Callable<SuntimesCalculator>
+    {
+        public final AtomicInteger count = new AtomicInteger(0);
+
+        @Override
+        public SuntimesCalculator call() throws Exception
+        {
+            count.incrementAndGet();
+            Thread.sleep(50);
+            SuntimesCalculator calculator = new Time4A4JSuntimesCalculator();
+            calculator.init(new Location("test", "35", "-112"), TimeZone.getTimeZone("America/Phoenix"));
+            return calculator;
+        }
+    }
+
+    @Test
+    public void test_get()
+    {
+        CalculatorRegistry registry = new CalculatorRegistry();
+        TestInitializer initializer = new TestInitializer();
+
+        SuntimesCalculator calculator0 = registry.get(0, initializer);
+        assertNotNull(calculator0);
+        assertSame(calculator0, registry.get(0, initializer));
+        assertEquals(1, initializer.count.get());
+        assertTrue(registry.contains(0));
+
+        SuntimesCalculator calculator1 = registry.get(1, initializer);
+        assertNotSame(calculator0, calculator1);
+        assertEquals(2, initializer.count.get());
+        assertEquals(2, registry.size());
+
+        registry.invalidate(0);
+        assertFalse(registry.contains(0));
+        assertTrue(registry.contains(1));
+        assertNotSame(calculator0, registry.get(0, initializer));
+        assertEquals(3, initializer.count.get());
+
+        registry.clear();
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void test_get_singleFlight() throws InterruptedException
+    {
+        final CalculatorRegistry registry = new CalculatorRegistry();
+        final TestInitializer initializer = new TestInitializer();
+        final SuntimesCalculator[] results = new SuntimesCalculator[8];
+        final CountDownLatch start = new CountDownLatch(1);
+
+        Thread[] threads = new Thread[results.length];
+        for (int i=0; i<threads.length; i++)
+        {
+            final int j = i;
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try {
+                        start.await();
+                        results[j] = registry.get(0, initializer);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, initializer.count.get());
+        for (SuntimesCalculator result : results) {
+            assertNotNull(result);
+            assertSame(results[0], result);
+        }
+    }
+
+    @Test
+    public void test_get_bounded()
+    {
+        CalculatorRegistry registry = new CalculatorRegistry(4);
+        TestInitializer initializer = new TestInitializer();
+        for (int i=0; i<8; i++) {
+            registry.get(i, initializer);
+        }
+        assertEquals(4, registry.size());
+        assertFalse(registry.contains(0));
+        assertTrue(registry.contains(7));
+    }
+
+    @Test
+    public void test_get_failed()
+    {
+        CalculatorRegistry registry = new CalculatorRegistry();
+        Callable<SuntimesCalculator> failing = new Callable<SuntimesCalculator>()
+        {
+            @Override
+            public SuntimesCalculator call() throws Exception {
+                throw new IllegalStateException("test");
+            }
+        };
+        assertNull(registry.get(0, failing));
+        assertFalse(registry.contains(0));    // failed entries aren't retained
+
+        TestInitializer initializer = new TestInitializer();
+        assertNotNull(registry.get(0, initializer));
+        assertEquals(1, initializer.count.get());
+    }
+}
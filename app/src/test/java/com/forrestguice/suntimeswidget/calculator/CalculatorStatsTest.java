@@ -0,0 +1,125 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculator;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CalculatorStatsTest
+{
+    public static final TimeZone TIMEZONE = TimeZone.getTimeZone("America/Denver");
+    public static final Location LOCATION = new Location("test", "39.7392", "-104.9903", "1600");
+
+    @Test
+    public void test_histogram_buckets()
+    {
+        for (long value = 0; value < 1000000; value += (value < 64 ? 1 : 997))
+        {
+            int i = CalculatorStats.Histogram.bucket(value);
+            assertTrue(i >= 0 && i < CalculatorStats.Histogram.NUM_BUCKETS);
+            assertTrue(value + " >= lowerBound(" + i + ")", value >= CalculatorStats.Histogram.lowerBound(i));
+            assertTrue(value + " < lowerBound(" + (i+1) + ")", value < CalculatorStats.Histogram.lowerBound(i + 1));
+        }
+        assertEquals(CalculatorStats.Histogram.NUM_BUCKETS - 1, CalculatorStats.Histogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void test_histogram_percentiles()
+    {
+        CalculatorStats.Histogram histogram = new CalculatorStats.Histogram("test", CalculatorStats.SUBSYSTEM_OTHER);
+        assertEquals(0, histogram.percentile(0.5));
+        for (long i=1; i<=1000; i++) {
+            histogram.record(i * 1000);    // 1us .. 1ms
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500000, histogram.percentile(0.50), 500000 / 8d);
+        assertEquals(950000, histogram.percentile(0.95), 950000 / 8d);
+        assertEquals(990000, histogram.percentile(0.99), 990000 / 8d);
+        assertEquals(1000000, histogram.percentile(1));
+
+        CalculatorStats.Entry entry = histogram.toEntry();
+        assertEquals(1000, entry.count);
+        assertEquals(1000000, entry.max);
+        assertTrue(entry.p50 <= entry.p95 && entry.p95 <= entry.p99 && entry.p99 <= entry.max);
+    }
+
+    @Test
+    public void test_instrumentedCalculator()
+    {
+        CalculatorStats.setEnabled(true);
+        CalculatorStats.reset();
+        try {
+            SuntimesCalculator calculator = new SuntimesCalculatorFactory((Context)null, com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor()).createCalculator(LOCATION, TIMEZONE);
+            assertTrue(calculator instanceof InstrumentedCalculator);
+            assertSame(calculator, CalculatorStats.instrument(calculator));
+            assertTrue(calculator instanceof SuntimesBatchCalculator);
+
+            Calendar date = Calendar.getInstance(TIMEZONE);
+            int previous = CalculatorStats.enter(CalculatorStats.SUBSYSTEM_WIDGET);
+            try {
+                for (int i=0; i<10; i++) {
+                    assertNotNull(calculator.getSunPosition(date));
+                }
+            } finally {
+                CalculatorStats.exit(previous);
+            }
+            assertEquals(CalculatorStats.SUBSYSTEM_OTHER, CalculatorStats.currentSubsystem());
+            calculator.getSunPosition(date);
+
+            CalculatorStats.tag(calculator, CalculatorStats.SUBSYSTEM_PROVIDER);
+            calculator.getMoonTimesForDate(date);
+            CalculatorStats.tag(calculator, InstrumentedCalculator.SUBSYSTEM_NONE);
+
+            List<CalculatorStats.Entry> entries = CalculatorStats.getEntries();
+            assertEquals(3, entries.size());
+            assertEquals("getMoonTimesForDate", entries.get(0).method);
+            assertEquals(CalculatorStats.SUBSYSTEM_PROVIDER, entries.get(0).subsystem);
+            assertEquals(1, entries.get(0).count);
+            assertEquals("getSunPosition", entries.get(1).method);
+            assertEquals(CalculatorStats.SUBSYSTEM_OTHER, entries.get(1).subsystem);
+            assertEquals(1, entries.get(1).count);
+            assertEquals(CalculatorStats.SUBSYSTEM_WIDGET, entries.get(2).subsystem);
+            assertEquals(10, entries.get(2).count);
+            assertTrue(entries.get(2).max > 0);
+
+        } finally {
+            CalculatorStats.setEnabled(false);
+            CalculatorStats.reset();
+        }
+        SuntimesCalculator calculator = new SuntimesCalculatorFactory((Context)null, com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor()).createCalculator(LOCATION, TIMEZONE);
+        assertFalse(calculator instanceof InstrumentedCalculator);
+        calculator.getSunPosition(Calendar.getInstance(TIMEZONE));
+        assertTrue(CalculatorStats.getEntries().isEmpty());
+    }
+}
@@ -0,0 +1,97 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EquationOfTimeTableTest
+{
+    public static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    public static final TimeZone TIMEZONE = TimeZone.getTimeZone("America/Denver");
+    public static final Location LOCATION = new Location("test", "39.7392", "-104.9903", "1600");
+
+    protected SuntimesCalculator createCalculator() {
+        return new SuntimesCalculatorFactory((Context)null, com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor()).createCalculator(LOCATION, TIMEZONE);
+    }
+
+    @Test
+    public void test_utcYear()
+    {
+        Calendar calendar = new GregorianCalendar(UTC);
+        for (int year = 1601; year < 2400; year += 3)
+        {
+            calendar.clear();
+            calendar.set(year, Calendar.JANUARY, 1, 0, 0, 0);
+            long start = calendar.getTimeInMillis();
+            assertEquals(start, EquationOfTimeTable.utcYearStart(year));
+            assertEquals(year, EquationOfTimeTable.utcYear(start));
+            assertEquals(year - 1, EquationOfTimeTable.utcYear(start - 1));
+            assertEquals(year, EquationOfTimeTable.utcYear(start + 200 * EquationOfTimeTable.DAY_MILLIS));
+        }
+    }
+
+    @Test
+    public void test_equationOfTime()
+    {
+        EquationOfTimeTable.clear();
+        SuntimesCalculator calculator = createCalculator();
+        Calendar calendar = Calendar.getInstance(TIMEZONE);
+        calendar.set(2021, Calendar.DECEMBER, 20, 0, 0, 0);
+        for (int i=0; i<500; i++)
+        {
+            double expected = calculator.equationOfTime(calendar);
+            double result = EquationOfTimeTable.equationOfTime(calculator, calendar.getTimeInMillis());
+            assertEquals(expected, result, 0.05);    // seconds
+            calendar.add(Calendar.MINUTE, 149);
+        }
+        assertEquals(2, EquationOfTimeTable.size());    // 2021, 2022
+    }
+
+    @Test
+    public void test_year()
+    {
+        EquationOfTimeTable.clear();
+        SuntimesCalculator calculator = createCalculator();
+        long millis = EquationOfTimeTable.utcYearStart(2022) + 1000;
+        EquationOfTimeTable.Year year = EquationOfTimeTable.getYear(calculator, millis);
+        assertEquals(2022, year.getYear());
+        assertTrue(year.contains(calculator, millis));
+        assertTrue(year.contains(calculator, year.getEndMillis() - 1));
+        assertFalse(year.contains(calculator, year.getEndMillis()));
+        assertTrue(year == EquationOfTimeTable.getYear(calculator, year.getEndMillis() - 1));
+
+        for (int i=0; i<=EquationOfTimeTable.MAX_YEARS; i++) {
+            EquationOfTimeTable.getYear(calculator, EquationOfTimeTable.utcYearStart(1900 + i));
+        }
+        assertEquals(EquationOfTimeTable.MAX_YEARS, EquationOfTimeTable.size());
+    }
+}
@@ -0,0 +1,159 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MoonEventTableTest
+{
+    public static final TimeZone TIMEZONE = TimeZone.getTimeZone("America/Denver");
+    public static final Location LOCATION = new Location("test", "39.7392", "-104.9903", "1600");
+
+    protected SuntimesCalculator createCalculator() {
+        return new SuntimesCalculatorFactory((Context)null, com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor()).createCalculator(LOCATION, TIMEZONE);
+    }
+
+    protected MoonEventTable createTable(SuntimesCalculator calculator) {
+        return MoonEventTable.generate(calculator, MoonEventTable.key(calculator.name(), 1), MoonEventTable.startOfYear(2000), MoonEventTable.startOfYear(2030));
+    }
+
+    @Test
+    public void test_next()
+    {
+        SuntimesCalculator calculator = createCalculator();
+        MoonEventTable table = createTable(calculator);
+        for (SuntimesCalculator.MoonPhase phase : SuntimesCalculator.MoonPhase.values()) {
+            assertTrue(table.getCount(MoonEventTable.toType(phase)) > 30 * 12);
+        }
+        assertTrue(table.getCount(MoonEventTable.TYPE_PERIGEE) > 30 * 13);    // apsides are verified too
+        assertTrue(table.getCount(MoonEventTable.TYPE_APOGEE) > 30 * 13);
+        assertTrue(table.isComplete());
+
+        Calendar date = Calendar.getInstance(TIMEZONE);
+        date.setTimeInMillis(table.getStartMillis());
+        long step = (5 * 24 * 60 * 60 * 1000L) + (7 * 60 * 1000L);
+        while (date.getTimeInMillis() < table.getEndMillis())
+        {
+            for (int type=0; type<MoonEventTable.NUM_TYPES; type++)
+            {
+                Calendar expected = MoonEventTable.calculateNext(calculator, type, date);
+                Calendar result = (type == MoonEventTable.TYPE_PERIGEE ? MoonEventTable.nextPerigee(table, calculator, date)
+                                : type == MoonEventTable.TYPE_APOGEE ? MoonEventTable.nextApogee(table, calculator, date)
+                                : MoonEventTable.nextPhase(table, calculator, SuntimesCalculator.MoonPhase.values()[type], date));
+                assertNotNull(result);
+                assertEquals(expected.getTimeInMillis(), result.getTimeInMillis());
+                if (table.getCount(type) > 0) {
+                    assertEquals(expected.getTimeInMillis(), table.next(type, date.getTimeInMillis()));
+                }
+            }
+            date.add(Calendar.MILLISECOND, (int) step);
+        }
+    }
+
+    @Test
+    public void test_nextApsis()
+    {
+        SuntimesCalculator calculator = createCalculator();
+        Calendar date = Calendar.getInstance(TIMEZONE);
+        date.setTimeInMillis(MoonEventTable.startOfYear(2022));
+        for (int i=0; i<26; i++)
+        {
+            Calendar perigee = calculator.getMoonPerigeeNextDate(date);
+            Calendar apogee = calculator.getMoonApogeeNextDate(date);
+            assertTrue(perigee.after(date) && perigee.getTimeInMillis() - date.getTimeInMillis() < 29L * 24 * 60 * 60 * 1000);
+            assertTrue(apogee.after(date) && apogee.getTimeInMillis() - date.getTimeInMillis() < 29L * 24 * 60 * 60 * 1000);
+            assertTrue(isDistanceExtremum(calculator, perigee, -1));
+            assertTrue(isDistanceExtremum(calculator, apogee, 1));
+            date.add(Calendar.DAY_OF_MONTH, 14);
+        }
+    }
+
+    protected boolean isDistanceExtremum(SuntimesCalculator calculator, Calendar date, int sign)
+    {
+        double distance = calculator.getMoonPosition(date).distance;
+        for (int hours : new int[] { -1, 1 })
+        {
+            Calendar other = (Calendar) date.clone();
+            other.add(Calendar.HOUR_OF_DAY, hours);
+            if (sign * (calculator.getMoonPosition(other).distance - distance) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void test_next_bounds()
+    {
+        long[] events = new long[] { 100, 200, 300 };
+        MoonEventTable table = new MoonEventTable(0, 50, 250, new long[][] { events, events, events, events, new long[0], events });
+        assertEquals(MoonEventTable.NONE, table.next(MoonEventTable.TYPE_NEW, 49));        // before start
+        assertEquals(100, table.next(MoonEventTable.TYPE_NEW, 50));
+        assertEquals(200, table.next(MoonEventTable.TYPE_NEW, 100));                       // strictly after
+        assertEquals(200, table.next(MoonEventTable.TYPE_NEW, 199));
+        assertEquals(300, table.next(MoonEventTable.TYPE_NEW, 299));
+        assertEquals(MoonEventTable.NONE, table.next(MoonEventTable.TYPE_NEW, 300));       // after last
+        assertEquals(MoonEventTable.NONE, table.next(MoonEventTable.TYPE_PERIGEE, 150));   // unavailable
+        assertEquals(200, table.next(MoonEventTable.TYPE_APOGEE, 150));
+        assertTrue(!table.isComplete());
+    }
+
+    @Test
+    public void test_readWrite() throws IOException
+    {
+        SuntimesCalculator calculator = createCalculator();
+        MoonEventTable table = createTable(calculator);
+        File file = File.createTempFile("moontable", ".bin");
+        file.deleteOnExit();
+        MoonEventTable.write(file, table);
+
+        MoonEventTable table1 = MoonEventTable.read(file);
+        assertEquals(table.getKey(), table1.getKey());
+        assertEquals(table.getStartMillis(), table1.getStartMillis());
+        assertEquals(table.getEndMillis(), table1.getEndMillis());
+        for (int type=0; type<MoonEventTable.NUM_TYPES; type++) {
+            assertArrayEquals(table.events[type], table1.events[type]);
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.writeInt(0);                      // bad magic
+        raf.close();
+        try {
+            MoonEventTable.read(file);
+            fail("expected IOException (bad magic)");
+        } catch (IOException e) { /* EMPTY */ }
+    }
+}
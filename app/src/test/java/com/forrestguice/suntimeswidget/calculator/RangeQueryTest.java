@@ -0,0 +1,259 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+import com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RangeQueryTest
+{
+    public static final TimeZone TIMEZONE = TimeZone.getTimeZone("America/Phoenix");
+
+    public static RangeQuery.WorkerCalculator initializer = newWorkerCalculator();
+
+    public static RangeQuery.WorkerCalculator newWorkerCalculator()
+    {
+        return new RangeQuery.WorkerCalculator()
+        {
+            @Override
+            public SuntimesCalculator newCalculator()
+            {
+                SuntimesCalculator calculator = new Time4A4JSuntimesCalculator();
+                calculator.init(new Location("test", "35", "-112"), TIMEZONE);
+                return calculator;
+            }
+        };
+    }
+
+    @Test
+    public void test_countSteps()
+    {
+        Calendar start = Calendar.getInstance(TIMEZONE);
+        start.set(2022, 0, 1, 12, 0, 0);
+        Calendar end = (Calendar) start.clone();
+        assertEquals(1, RangeQuery.countSteps(start, Calendar.DAY_OF_YEAR, end));
+
+        end.add(Calendar.DAY_OF_YEAR, 1);
+        assertEquals(1, RangeQuery.countSteps(start, Calendar.DAY_OF_YEAR, end));
+
+        end.add(Calendar.SECOND, 1);
+        assertEquals(2, RangeQuery.countSteps(start, Calendar.DAY_OF_YEAR, end));
+
+        end.setTimeInMillis(start.getTimeInMillis());
+        end.add(Calendar.YEAR, 10);
+        assertEquals(10, RangeQuery.countSteps(start, Calendar.YEAR, end));
+    }
+
+    @Test
+    public void test_evaluate_order() throws Exception
+    {
+        Calendar start = Calendar.getInstance(TIMEZONE);
+        start.set(2022, 0, 1, 12, 0, 0);
+        RangeQuery query = new RangeQuery.DayRangeQuery(new String[] { "day" }, TIMEZONE, start.getTimeInMillis(), start.getTimeInMillis() + (1000L * 24 * 60 * 60 * 1000))
+        {
+            @Override
+            public Object[] getRow(SuntimesCalculator calculator, int position) {
+                return new Object[] { getStep(position).get(Calendar.DAY_OF_YEAR) };
+            }
+        };
+        Object[][] rows = RangeQuery.evaluate(query, initializer.call(), initializer);
+        assertEquals(1000, rows.length);
+
+        Calendar day = (Calendar) start.clone();
+        for (Object[] row : rows)
+        {
+            assertNotNull(row);
+            assertEquals(day.get(Calendar.DAY_OF_YEAR), row[0]);
+            day.add(Calendar.DAY_OF_YEAR, 1);
+        }
+    }
+
+    @Test
+    public void test_workerCalculator() throws Exception
+    {
+        final RangeQuery.WorkerCalculator workerCalculator = newWorkerCalculator();
+        SuntimesCalculator calculator = workerCalculator.call();
+        assertSame(calculator, workerCalculator.call());    // same thread, same calculator
+        assertEquals(1, workerCalculator.getNumCreated());
+
+        final SuntimesCalculator[] other = new SuntimesCalculator[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    other[0] = workerCalculator.call();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNotNull(other[0]);
+        assertNotSame(calculator, other[0]);    // other thread, other calculator
+        assertEquals(2, workerCalculator.getNumCreated());
+    }
+
+    @Test
+    public void test_evaluate_reusesWorkerCalculators() throws Exception
+    {
+        Calendar start = Calendar.getInstance(TIMEZONE);
+        start.set(2022, 0, 1, 12, 0, 0);
+        RangeQuery query = new RangeQuery.DayRangeQuery(new String[] { "day" }, TIMEZONE, start.getTimeInMillis(), start.getTimeInMillis() + (1000L * 24 * 60 * 60 * 1000))
+        {
+            @Override
+            public Object[] getRow(SuntimesCalculator calculator, int position) {
+                return new Object[] { calculator.getOfficialSunriseCalendarForDate(getStep(position)) };
+            }
+        };
+
+        RangeQuery.WorkerCalculator workerCalculator = newWorkerCalculator();
+        SuntimesCalculator calculator = workerCalculator.newCalculator();
+        int windowSize = 128;
+        for (int i=0; i<query.getCount(); i += windowSize) {    // like RangeCursor.loadWindow
+            Object[][] rows = RangeQuery.evaluate(query, calculator, workerCalculator, i, Math.min(i + windowSize, query.getCount()));
+            assertEquals(Math.min(windowSize, query.getCount() - i), rows.length);
+        }
+        assertTrue("one calculator per worker thread (not per chunk): " + workerCalculator.getNumCreated(),
+                workerCalculator.getNumCreated() <= RangeQuery.numThreads());
+    }
+
+    @Test
+    public void test_evaluate_moonPhases() throws Exception
+    {
+        Calendar start = Calendar.getInstance(TIMEZONE);
+        start.set(2000, 0, 1, 0, 0, 0);
+        Calendar end = Calendar.getInstance(TIMEZONE);
+        end.set(2020, 0, 1, 0, 0, 0);
+
+        String[][] projections = new String[][] {
+                CalculatorProviderContract.QUERY_MOONPHASE_PROJECTION,
+                new String[] { CalculatorProviderContract.COLUMN_MOON_FULL },
+                new String[] { CalculatorProviderContract.COLUMN_MOON_THIRD, CalculatorProviderContract.COLUMN_MOON_FIRST }
+        };
+        long[][] ranges = new long[][] {
+                new long[] { start.getTimeInMillis(), end.getTimeInMillis() },
+                new long[] { start.getTimeInMillis(), start.getTimeInMillis() + (40L * 24 * 60 * 60 * 1000) },
+                new long[] { start.getTimeInMillis(), start.getTimeInMillis() + 1000 },
+        };
+        SuntimesCalculator calculator = initializer.call();
+        MoonEventTable[] tables = new MoonEventTable[] { null, MoonEventTable.generate(calculator, MoonEventTable.key(calculator.name(), 1), MoonEventTable.startOfYear(1995), MoonEventTable.startOfYear(2025)) };
+        for (MoonEventTable table : tables)
+        {
+            for (long[] range : ranges)
+            {
+                for (String[] projection : projections)
+                {
+                    Object[][] expected = findMoonPhases(moonPhaseQuery(projection, range, table), calculator);
+                    Object[][] rows0 = RangeQuery.evaluate(moonPhaseQuery(projection, range, table), calculator, null);
+                    Object[][] rows1 = RangeQuery.evaluate(moonPhaseQuery(projection, range, table), calculator, initializer);
+                    assertTrue(expected.length > 0);
+                    assertEquals(expected.length, rows0.length);
+                    assertEquals(expected.length, rows1.length);
+                    for (int i=0; i<expected.length; i++) {
+                        assertArrayEquals(expected[i], rows0[i]);
+                        assertArrayEquals(expected[i], rows1[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    protected static RangeQuery.MoonPhaseRangeQuery moonPhaseQuery(String[] projection, long[] range, MoonEventTable table)
+    {
+        RangeQuery.MoonPhaseRangeQuery query = new RangeQuery.MoonPhaseRangeQuery(projection, TIMEZONE, range[0], range[1]);
+        query.setTable(table);
+        return query;
+    }
+
+    /**
+     * Finds rows in sequence (each row starts 1s after the latest phase of the previous row).
+     */
+    protected static Object[][] findMoonPhases(RangeQuery.MoonPhaseRangeQuery query, SuntimesCalculator calculator)
+    {
+        List<Object[]> rows = new ArrayList<>();
+        long date = query.startMillis;
+        do {
+            long[] events = query.findEvents(calculator, date);
+            Object[] row = new Object[query.getColumns().length];
+            for (int i=0; i<row.length; i++) {
+                long event = events[query.phases[i].ordinal()];
+                if (event == RangeQuery.MoonPhaseRangeQuery.NONE) {
+                    row[i] = null;
+
+                } else if (query.isDistance[i]) {
+                    Calendar calendar = Calendar.getInstance(TIMEZONE);
+                    calendar.setTimeInMillis(event);
+                    row[i] = calculator.getMoonPosition(calendar).distance;
+
+                } else {
+                    row[i] = event;
+                }
+            }
+            rows.add(row);
+            long latest = RangeQuery.MoonPhaseRangeQuery.latest(events);
+            date = (latest != RangeQuery.MoonPhaseRangeQuery.NONE ? latest + 1000 : query.endMillis);
+        } while (date < query.endMillis);
+        return rows.toArray(new Object[0][]);
+    }
+
+    @Test
+    public void test_prepare_moonPhases() throws Exception
+    {
+        Calendar start = Calendar.getInstance(TIMEZONE);
+        start.set(1900, 0, 1, 0, 0, 0);
+        Calendar end = Calendar.getInstance(TIMEZONE);
+        end.set(2100, 0, 1, 0, 0, 0);
+
+        final int[] numSearches = new int[] { 0 };
+        RangeQuery.MoonPhaseRangeQuery query = new RangeQuery.MoonPhaseRangeQuery(CalculatorProviderContract.QUERY_MOONPHASE_PROJECTION, TIMEZONE, start.getTimeInMillis(), end.getTimeInMillis())
+        {
+            @Override
+            protected long[] findEvents(SuntimesCalculator calculator, long date) {
+                numSearches[0]++;
+                return super.findEvents(calculator, date);
+            }
+
+            @Override
+            protected long occurrence(SuntimesCalculator calculator, int k) {
+                numSearches[0]++;
+                return super.occurrence(calculator, k);
+            }
+        };
+        query.prepare(initializer.call(), initializer);
+        assertTrue("~2473 rows: " + query.getCount(), query.getCount() >= 2472 && query.getCount() <= 2474);
+        assertTrue("prepare only searches near the start and end of the range: " + numSearches[0], numSearches[0] <= 5);
+    }
+}
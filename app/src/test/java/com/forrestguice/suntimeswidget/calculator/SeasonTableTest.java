@@ -0,0 +1,140 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SeasonTableTest
+{
+    public static final TimeZone TIMEZONE = TimeZone.getTimeZone("America/Denver");
+    public static final Location LOCATION_NORTH = new Location("test", "39.7392", "-104.9903", "1600");
+    public static final Location LOCATION_SOUTH = new Location("test", "-33.8688", "151.2093", "0");
+
+    protected SuntimesCalculator createCalculator(Location location) {
+        return new SuntimesCalculatorFactory((Context)null, com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor()).createCalculator(location, TIMEZONE);
+    }
+
+    @Test
+    public void test_getEvent()
+    {
+        SeasonTable.clear();
+        SuntimesCalculator calculator = createCalculator(LOCATION_NORTH);
+        Calendar date = Calendar.getInstance(TIMEZONE);
+        for (int year = 1850; year < 2150; year += 7)
+        {
+            date.set(Calendar.YEAR, year);
+            assertFalse(SeasonTable.contains(calculator, year));
+            for (int pass=0; pass<2; pass++)    // calculated, then cached
+            {
+                assertEquals(calculator.getSpringEquinoxForYear(date).getTimeInMillis(), SeasonTable.getSpringEquinoxForYear(calculator, date).getTimeInMillis());
+                assertEquals(calculator.getSummerSolsticeForYear(date).getTimeInMillis(), SeasonTable.getSummerSolsticeForYear(calculator, date).getTimeInMillis());
+                assertEquals(calculator.getAutumnalEquinoxForYear(date).getTimeInMillis(), SeasonTable.getAutumnalEquinoxForYear(calculator, date).getTimeInMillis());
+                assertEquals(calculator.getWinterSolsticeForYear(date).getTimeInMillis(), SeasonTable.getWinterSolsticeForYear(calculator, date).getTimeInMillis());
+                assertEquals(calculator.getTropicalYearLength(date), SeasonTable.getTropicalYearLength(calculator, date));
+            }
+            assertTrue(SeasonTable.contains(calculator, year));
+        }
+    }
+
+    @Test
+    public void test_containsRange()
+    {
+        SeasonTable.clear();
+        SuntimesCalculator calculator = createCalculator(LOCATION_NORTH);
+        Calendar date = Calendar.getInstance(TIMEZONE);
+        for (int year = 2021; year <= 2023; year++)
+        {
+            date.set(Calendar.YEAR, year);
+            for (int season = SeasonTable.SPRING_EQUINOX; season <= SeasonTable.WINTER_SOLSTICE; season++) {
+                SeasonTable.getEvent(calculator, season, date);
+            }
+        }
+        assertTrue(SeasonTable.contains(calculator, 2021, 2023));
+        assertFalse(SeasonTable.contains(calculator, 2020, 2023));
+        assertFalse(SeasonTable.contains(calculator, 2021, 2024));
+
+        date.set(Calendar.YEAR, 2024);
+        SeasonTable.getTropicalYearLength(calculator, date);    // (entry without seasons)
+        assertFalse(SeasonTable.contains(calculator, 2021, 2024));
+    }
+
+    @Test
+    public void test_prefetchOrder()
+    {
+        assertArrayEquals(new int[] { 2022, 2021, 2023, 2020, 2024 }, SeasonTable.prefetchOrder(2020, 2024));
+        assertArrayEquals(new int[] { 2021, 2020, 2022, 2023 }, SeasonTable.prefetchOrder(2020, 2023));
+        assertArrayEquals(new int[] { 2020 }, SeasonTable.prefetchOrder(2020, 2020));
+        assertEquals(0, SeasonTable.prefetchOrder(2020, 2019).length);
+
+        int[] order = SeasonTable.prefetchOrder(2022 - SeasonTable.PREFETCH_YEARS, 2022 + SeasonTable.PREFETCH_YEARS);
+        assertEquals(2 * SeasonTable.PREFETCH_YEARS + 1, order.length);
+        assertEquals(2022, order[0]);
+    }
+
+    @Test
+    public void test_hemisphere()
+    {
+        SeasonTable.clear();
+        SuntimesCalculator north = createCalculator(LOCATION_NORTH);
+        SuntimesCalculator south = createCalculator(LOCATION_SOUTH);
+        Calendar date = Calendar.getInstance(TIMEZONE);
+        date.set(Calendar.YEAR, 2022);
+
+        long springNorth = SeasonTable.getSpringEquinoxForYear(north, date).getTimeInMillis();
+        long springSouth = SeasonTable.getSpringEquinoxForYear(south, date).getTimeInMillis();
+        assertEquals(south.getSpringEquinoxForYear(date).getTimeInMillis(), springSouth);
+        assertNotEquals(springNorth, springSouth);
+        assertEquals(SeasonTable.getAutumnalEquinoxForYear(north, date).getTimeInMillis(), springSouth);
+    }
+
+    @Test
+    public void test_maxYears()
+    {
+        SeasonTable.clear();
+        SuntimesCalculator calculator = createCalculator(LOCATION_NORTH);
+        Calendar date = Calendar.getInstance(TIMEZONE);
+        int year0 = 1000;
+        for (int i=0; i<=SeasonTable.MAX_YEARS; i++)
+        {
+            date.set(Calendar.YEAR, year0 + i);
+            SeasonTable.getTropicalYearLength(calculator, date);
+        }
+        date.set(Calendar.YEAR, year0 + 1);
+        SeasonTable.getTropicalYearLength(calculator, date);    // (most recently used)
+
+        assertEquals(SeasonTable.MAX_YEARS, SeasonTable.size());
+        assertFalse(SeasonTable.hasEntry(calculator, year0));
+        assertTrue(SeasonTable.hasEntry(calculator, year0 + 1));
+        assertTrue(SeasonTable.hasEntry(calculator, year0 + SeasonTable.MAX_YEARS));
+    }
+}
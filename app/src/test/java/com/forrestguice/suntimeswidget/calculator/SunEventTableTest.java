@@ -0,0 +1,196 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculator;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculatorBridge;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SunEventTableTest
+{
+    public static final TimeZone TIMEZONE = TimeZone.getTimeZone("America/Denver");
+    public static final Location LOCATION = new Location("test", "39.7392", "-104.9903", "1600");
+
+    protected SuntimesCalculator createCalculator() {
+        return new SuntimesCalculatorFactory((Context)null, com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor()).createCalculator(LOCATION, TIMEZONE);
+    }
+
+    protected SunEventTable createTable(SuntimesCalculator calculator, Calendar startDay, int numDays) throws IOException
+    {
+        File file = File.createTempFile("eventtable", ".bin");
+        file.deleteOnExit();
+        SunEventTable.write(file, calculator, SunEventTable.key(calculator.name(), 1, LOCATION, TIMEZONE), TIMEZONE, startDay, numDays);
+        return SunEventTable.open(file, TIMEZONE);
+    }
+
+    @Test
+    public void test_getEventTime() throws IOException
+    {
+        SuntimesCalculator calculator = createCalculator();
+        Calendar startDay = Calendar.getInstance(TIMEZONE);
+        startDay.set(2022, 0, 1, 8, 0, 0);
+        SunEventTable table = createTable(calculator, startDay, SunEventTable.NUM_DAYS);
+        assertEquals(SunEventTable.key(calculator.name(), 1, LOCATION, TIMEZONE), table.getKey());
+        assertEquals(SunEventTable.NUM_DAYS, table.getNumDays());
+
+        long[] expected = new long[SunEventTable.EVENTS.length];
+        Calendar day = (Calendar) startDay.clone();
+        for (int i=0; i<SunEventTable.NUM_DAYS; i++)
+        {
+            assertEquals(i, table.indexOf(day));
+            SuntimesBatchCalculatorBridge.from(calculator).getEventTimes(day, 1, SunEventTable.EVENTS, expected);
+            for (int event : SunEventTable.EVENTS) {
+                assertEquals(expected[event], table.getEventTime(i, event));
+            }
+            day.add(Calendar.DAY_OF_YEAR, 1);
+        }
+        assertEquals(-1, table.indexOf(day));
+
+        day = (Calendar) startDay.clone();
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        assertEquals(0, table.indexOf(day));           // first millisecond of the day
+        day.add(Calendar.MILLISECOND, -1);
+        assertEquals(-1, table.indexOf(day));          // last millisecond of the day before
+
+        day.set(2022, 2, 13, 12, 0, 0);                // dst begins
+        assertEquals(71, table.indexOf(day));
+        day.set(2022, 10, 6, 23, 59, 59);              // dst ends
+        assertEquals(309, table.indexOf(day));
+    }
+
+    @Test
+    public void test_getDayEvents() throws IOException
+    {
+        SuntimesCalculator calculator = createCalculator();
+        Calendar startDay = Calendar.getInstance(TIMEZONE);
+        startDay.set(2022, 5, 1, 12, 0, 0);
+        SunEventTable table = createTable(calculator, startDay, 30);
+
+        double[] angles = new double[] { SuntimesBatchCalculator.ANGLE_OFFICIAL, SuntimesBatchCalculator.ANGLE_CIVIL, SuntimesBatchCalculator.ANGLE_NAUTICAL,
+                SuntimesBatchCalculator.ANGLE_ASTRONOMICAL, SuntimesBatchCalculator.ANGLE_GOLDEN, SuntimesBatchCalculator.ANGLE_BLUE8, SuntimesBatchCalculator.ANGLE_BLUE4 };
+        long[] expected = new long[1 + (2 * angles.length)];
+        long[] result = new long[expected.length];
+
+        Calendar day = (Calendar) startDay.clone();
+        for (int i=0; i<30; i++)
+        {
+            new SuntimesBatchCalculatorBridge(calculator).getDayEvents(day, angles, expected);
+            assertTrue(table.getDayEvents(day, angles, result));
+            assertArrayEquals(expected, result);
+            day.add(Calendar.DAY_OF_YEAR, 1);
+        }
+        assertFalse(table.getDayEvents(day, angles, result));                                     // not in table
+        assertFalse(table.getDayEvents(startDay, new double[] { -3.5 }, new long[3]));            // not a standard angle
+        assertFalse(table.getDayEvents(startDay, angles, new long[3]));                           // buffer too small
+    }
+
+    @Test
+    public void test_isStale() throws IOException
+    {
+        SuntimesCalculator calculator = createCalculator();
+        Calendar now = Calendar.getInstance(TIMEZONE);
+        Calendar startDay = (Calendar) now.clone();
+        startDay.add(Calendar.DAY_OF_MONTH, -SunEventTable.DAYS_BEFORE);
+        SunEventTable table = createTable(calculator, startDay, SunEventTable.NUM_DAYS);
+        assertTrue(table.contains(now));
+        assertFalse(table.isStale(now));
+
+        Calendar later = (Calendar) now.clone();
+        later.add(Calendar.DAY_OF_MONTH, SunEventTable.NUM_DAYS - SunEventTable.REFRESH_DAYS);
+        assertTrue(table.contains(later));
+        assertTrue(table.isStale(later));
+
+        Calendar earlier = (Calendar) startDay.clone();
+        earlier.add(Calendar.DAY_OF_MONTH, -1);
+        assertFalse(table.contains(earlier));
+        assertTrue(table.isStale(earlier));
+    }
+
+    @Test
+    public void test_open_invalid() throws IOException
+    {
+        File file = File.createTempFile("eventtable", ".bin");
+        file.deleteOnExit();
+        SunEventTable.write(file, createCalculator(), 1L, TIMEZONE, Calendar.getInstance(TIMEZONE), 2);
+        SunEventTable.open(file, TIMEZONE);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 8);      // truncated
+        raf.close();
+        try {
+            SunEventTable.open(file, TIMEZONE);
+            fail("expected IOException (truncated)");
+        } catch (IOException e) { /* EMPTY */ }
+
+        raf = new RandomAccessFile(file, "rw");
+        raf.writeInt(0);                      // bad magic
+        raf.close();
+        try {
+            SunEventTable.open(file, TIMEZONE);
+            fail("expected IOException (bad magic)");
+        } catch (IOException e) { /* EMPTY */ }
+    }
+
+    @Test
+    public void test_key()
+    {
+        long key = SunEventTable.key("time4a-time4j", 1, LOCATION, TIMEZONE);
+        assertEquals(key, SunEventTable.key("time4a-time4j", 1, new Location("other label", "39.7392", "-104.9903", "1600"), TIMEZONE));
+        assertNotEquals(key, SunEventTable.key("time4a-cc", 1, LOCATION, TIMEZONE));
+        assertNotEquals(key, SunEventTable.key("time4a-time4j", 2, LOCATION, TIMEZONE));
+        assertNotEquals(key, SunEventTable.key("time4a-time4j", 1, new Location("test", "39.7392", "-104.9903", "0"), TIMEZONE));
+        assertNotEquals(key, SunEventTable.key("time4a-time4j", 1, LOCATION, TimeZone.getTimeZone("UTC")));
+
+        Location noAltitude = new Location(LOCATION);
+        noAltitude.setUseAltitude(!LOCATION.useAltitude());
+        assertNotEquals(key, SunEventTable.key("time4a-time4j", 1, noAltitude, TIMEZONE));
+    }
+
+    @Test
+    public void test_epochDay()
+    {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        assertEquals(0, SunEventTable.epochDay(0, utc));
+        assertEquals(-1, SunEventTable.epochDay(-1, utc));
+        assertEquals(-1, SunEventTable.epochDay(-SunEventTable.DAY_MILLIS, utc));
+        assertEquals(1, SunEventTable.epochDay(SunEventTable.DAY_MILLIS, utc));
+        assertEquals(-1, SunEventTable.epochDay(0, TIMEZONE));      // 1969-12-31 17:00 (local)
+    }
+}
@@ -0,0 +1,236 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator;
+
+import android.content.Context;
+
+import com.forrestguice.suntimeswidget.FlakeyTest;
+import com.forrestguice.suntimeswidget.calculator.core.CalculatorProviderContract;
+import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SunQueryPlanTest
+{
+    public static final TimeZone TIMEZONE = TimeZone.getTimeZone("America/Phoenix");
+
+    /**
+     * QUERY_SUN_PROJECTION plus the _POSITION columns of every event.
+     */
+    public static String[] positionProjection()
+    {
+        List<String> columns = new ArrayList<>();
+        for (String column : CalculatorProviderContract.QUERY_SUN_PROJECTION)
+        {
+            columns.add(column);
+            for (int k=1; k<SunQueryPlan.FIELD_SUFFIX.length; k++) {
+                columns.add(column + SunQueryPlan.FIELD_SUFFIX[k]);
+            }
+        }
+        return columns.toArray(new String[0]);
+    }
+
+    public static final Location LOCATION = new Location("test", "35", "-112");
+    public static final Location LOCATION_POLAR = new Location("polar", "78.2", "15.6");    // (events that don't occur; NO_EVENT)
+
+    protected SuntimesCalculator createCalculator(SuntimesCalculatorDescriptor descriptor) {
+        return createCalculator(descriptor, LOCATION);
+    }
+    protected SuntimesCalculator createCalculator(SuntimesCalculatorDescriptor descriptor, Location location) {
+        return new SuntimesCalculatorFactory((Context)null, descriptor).createCalculator(location, TIMEZONE);
+    }
+
+    @Test
+    public void test_plan()
+    {
+        String[] projection = positionProjection();
+        SunQueryPlan plan = new SunQueryPlan(projection);
+        assertEquals(15, plan.getNumEvents());
+        assertEquals(15, plan.getNumPositions());
+        assertEquals(7, plan.getNumAngles());    // official, civil, nautical, astronomical, golden, blue8, blue4
+
+        plan = new SunQueryPlan(CalculatorProviderContract.QUERY_SUN_PROJECTION);
+        assertEquals(15, plan.getNumEvents());
+        assertEquals(0, plan.getNumPositions());
+
+        plan = new SunQueryPlan(new String[] { CalculatorProviderContract.COLUMN_SUN_BLUE8_RISE + CalculatorProviderContract._POSITION_AZ, CalculatorProviderContract.COLUMN_SUN_BLUE8_RISE,
+                CalculatorProviderContract.COLUMN_SUN_BLUE8_RISE + CalculatorProviderContract._POSITION_DEC, "unknown" });
+        assertEquals(1, plan.getNumEvents());
+        assertEquals(1, plan.getNumPositions());
+        assertEquals(1, plan.getNumAngles());
+
+        plan = new SunQueryPlan(new String[] { CalculatorProviderContract.COLUMN_SUN_NOON, CalculatorProviderContract.COLUMN_SUN_CIVIL_SET, CalculatorProviderContract.COLUMN_SUN_CIVIL_RISE });
+        assertEquals(3, plan.getNumEvents());
+        assertEquals(1, plan.getNumAngles());    // (noon is always computed)
+    }
+
+    @Test
+    public void test_getRow()
+    {
+        for (Location location : new Location[] { LOCATION, LOCATION_POLAR })
+        {
+            test_getRow(com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor(), location);
+            test_getRow(com.forrestguice.suntimeswidget.calculator.time4a.Time4AChebyshevSuntimesCalculator.getDescriptor(), location);
+            test_getRow(com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator.getDescriptor(), location);
+        }
+    }
+    public void test_getRow(SuntimesCalculatorDescriptor descriptor, Location location)
+    {
+        SuntimesCalculator calculator = createCalculator(descriptor, location);
+        String[] projection = positionProjection();
+        SunQueryPlan plan = new SunQueryPlan(projection);
+
+        Calendar day = Calendar.getInstance(TIMEZONE);
+        day.set(2022, 0, 1, 12, 0, 0);
+        for (int i=0; i<30; i++)
+        {
+            Object[] expected = columnAtATime(calculator, projection, day);
+            Object[] result = plan.getRow(calculator, day);
+            assertArrayEquals(expected, result);
+            day.add(Calendar.DAY_OF_YEAR, 12);
+        }
+
+        Object[] row = plan.getRow(calculator, day);
+        assertEquals(projection.length, row.length);
+        for (int i=0; i<row.length; i++)
+        {
+            if (row[i] != null) {
+                assertTrue((i % SunQueryPlan.FIELD_SUFFIX.length == SunQueryPlan.FIELD_TIME) ? row[i] instanceof Long : row[i] instanceof Double);
+            }
+        }
+    }
+
+    @Test
+    @Category(FlakeyTest.class)
+    public void test_getRow_executionTime()
+    {
+        SuntimesCalculator calculator = createCalculator(com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor());
+        String[][] projections = new String[][] { CalculatorProviderContract.QUERY_SUN_PROJECTION, positionProjection() };
+        for (String[] projection : projections)
+        {
+            SunQueryPlan plan = new SunQueryPlan(projection);
+            int n = 366;
+            Calendar day = Calendar.getInstance(TIMEZONE);
+            day.set(2022, 0, 1, 12, 0, 0);
+            for (int i=0; i<30; i++) {    // warm up
+                columnAtATime(calculator, projection, day);
+                plan.getRow(calculator, day);
+            }
+
+            long bench_start = System.nanoTime();
+            for (int i=0; i<n; i++) {
+                columnAtATime(calculator, projection, day);
+                day.add(Calendar.DAY_OF_YEAR, 1);
+            }
+            long bench_end = System.nanoTime();
+            double bench_columns = ((bench_end - bench_start) / 1000000.0);
+
+            day.set(2022, 0, 1, 12, 0, 0);
+            bench_start = System.nanoTime();
+            for (int i=0; i<n; i++) {
+                plan.getRow(calculator, day);
+                day.add(Calendar.DAY_OF_YEAR, 1);
+            }
+            bench_end = System.nanoTime();
+            double bench_plan = ((bench_end - bench_start) / 1000000.0);
+
+            assertTrue("plan should be at least twice as fast as evaluating a column at a time (transit and declination are shared by every event)", bench_plan * 2 < bench_columns);
+        }
+    }
+
+    /**
+     * The previous evaluation (each column independently; positions were shared per event, but not event times).
+     */
+    protected static Object[] columnAtATime(SuntimesCalculator calculator, String[] columns, Calendar day)
+    {
+        Map<String, SuntimesCalculator.SunPosition> positions = new HashMap<>();
+        Object[] row = new Object[columns.length];
+        for (int i=0; i<columns.length; i++)
+        {
+            row[i] = null;
+            for (String rootKey : SunQueryPlan.ROOT_KEYS)
+            {
+                if (!columns[i].startsWith(rootKey)) {
+                    continue;
+                }
+                String suffix = columns[i].substring(rootKey.length());
+                for (int k=0; k<SunQueryPlan.FIELD_SUFFIX.length; k++)
+                {
+                    if (suffix.equals(SunQueryPlan.FIELD_SUFFIX[k]))
+                    {
+                        Calendar event = eventCalendar(calculator, rootKey, day);
+                        if (k == SunQueryPlan.FIELD_TIME) {
+                            row[i] = (event != null ? event.getTimeInMillis() : null);
+
+                        } else {
+                            if (!positions.containsKey(rootKey)) {
+                                positions.put(rootKey, event != null ? calculator.getSunPosition(event) : null);
+                            }
+                            SuntimesCalculator.SunPosition position = positions.get(rootKey);
+                            switch (k)
+                            {
+                                case SunQueryPlan.FIELD_AZ: row[i] = (position != null ? position.azimuth : null); break;
+                                case SunQueryPlan.FIELD_ALT: row[i] = (position != null ? position.elevation : null); break;
+                                case SunQueryPlan.FIELD_RA: row[i] = (position != null ? position.rightAscension : null); break;
+                                case SunQueryPlan.FIELD_DEC: row[i] = (position != null ? position.declination : null); break;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return row;
+    }
+
+    protected static Calendar eventCalendar(SuntimesCalculator calculator, String rootKey, Calendar day)
+    {
+        switch (rootKey)
+        {
+            case CalculatorProviderContract.COLUMN_SUN_ACTUAL_RISE: return calculator.getOfficialSunriseCalendarForDate(day);
+            case CalculatorProviderContract.COLUMN_SUN_ACTUAL_SET: return calculator.getOfficialSunsetCalendarForDate(day);
+            case CalculatorProviderContract.COLUMN_SUN_CIVIL_RISE: return calculator.getCivilSunriseCalendarForDate(day);
+            case CalculatorProviderContract.COLUMN_SUN_CIVIL_SET: return calculator.getCivilSunsetCalendarForDate(day);
+            case CalculatorProviderContract.COLUMN_SUN_NAUTICAL_RISE: return calculator.getNauticalSunriseCalendarForDate(day);
+            case CalculatorProviderContract.COLUMN_SUN_NAUTICAL_SET: return calculator.getNauticalSunsetCalendarForDate(day);
+            case CalculatorProviderContract.COLUMN_SUN_ASTRO_RISE: return calculator.getAstronomicalSunriseCalendarForDate(day);
+            case CalculatorProviderContract.COLUMN_SUN_ASTRO_SET: return calculator.getAstronomicalSunsetCalendarForDate(day);
+            case CalculatorProviderContract.COLUMN_SUN_NOON: return calculator.getSolarNoonCalendarForDate(day);
+            case CalculatorProviderContract.COLUMN_SUN_GOLDEN_MORNING: return calculator.getMorningGoldenHourForDate(day);
+            case CalculatorProviderContract.COLUMN_SUN_GOLDEN_EVENING: return calculator.getEveningGoldenHourForDate(day);
+            case CalculatorProviderContract.COLUMN_SUN_BLUE8_RISE: return calculator.getMorningBlueHourForDate(day)[0];
+            case CalculatorProviderContract.COLUMN_SUN_BLUE4_RISE: return calculator.getMorningBlueHourForDate(day)[1];
+            case CalculatorProviderContract.COLUMN_SUN_BLUE4_SET: return calculator.getEveningBlueHourForDate(day)[0];
+            case CalculatorProviderContract.COLUMN_SUN_BLUE8_SET: return calculator.getEveningBlueHourForDate(day)[1];
+            default: return null;
+        }
+    }
+}
@@ -21,12 +21,26 @@ package com.forrestguice.suntimeswidget.calculator;
 import android.content.Context;
 
 import com.forrestguice.suntimeswidget.calculator.core.Location;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculator;
+import com.forrestguice.suntimeswidget.calculator.core.SuntimesBatchCalculatorBridge;
 import com.forrestguice.suntimeswidget.calculator.core.SuntimesCalculator;
 
+import net.time4j.TemporalType;
+import net.time4j.calendar.astro.LunarTime;
+import net.time4j.calendar.astro.MoonPosition;
+import net.time4j.tz.TZID;
+import net.time4j.tz.Timezone;
+
 import org.junit.Test;
+
+import java.util.Calendar;
 import java.util.TimeZone;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class SuntimesCalculatorTest
@@ -53,6 +67,7 @@ public class SuntimesCalculatorTest
             test_init(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator.getDescriptor());
             test_init(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4ACCSuntimesCalculator.getDescriptor());
             test_init(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor());
+            test_init(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4AChebyshevSuntimesCalculator.getDescriptor());
         }
     }
     public void test_init(Location location, TimeZone timezone, SuntimesCalculatorDescriptor descriptor)
@@ -63,4 +78,409 @@ public class SuntimesCalculatorTest
         assertTrue("calculator name (" + calculator.name() + ") should match descriptor (" + descriptor.getName() + ")", calculator.name().equals(descriptor.getName()));
     }
 
+    @Test
+    public void test_cache()
+    {
+        SuntimesCalculatorDescriptor descriptor = com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor();
+        SuntimesCalculatorFactory factory = new SuntimesCalculatorFactory((Context)null, descriptor);
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+
+        SuntimesCalculatorFactory.clearCache();
+        long hits = SuntimesCalculatorFactory.getCacheHits();
+        long misses = SuntimesCalculatorFactory.getCacheMisses();
+
+        SuntimesCalculator calculator0 = factory.createCalculator(TEST_LOCATIONS[3], timezone);
+        SuntimesCalculator calculator1 = factory.createCalculator(new Location("test3", "35", "-112", "14"), TimeZone.getTimeZone("America/Phoenix"));
+        assertSame(calculator0, calculator1);
+        assertEquals(hits + 1, SuntimesCalculatorFactory.getCacheHits());
+        assertEquals(misses + 1, SuntimesCalculatorFactory.getCacheMisses());
+
+        SuntimesCalculator calculator2 = factory.createCalculator(new Location("other", "35", "-112", "14"), timezone);    // same coordinates, different label
+        assertNotSame(calculator0, calculator2);
+        assertEquals("test3", calculator0.getLocation().getLabel());
+        assertEquals("other", calculator2.getLocation().getLabel());
+        assertEquals(misses + 2, SuntimesCalculatorFactory.getCacheMisses());
+
+        assertNotSame(calculator0, factory.createCalculator(TEST_LOCATIONS[1], timezone));
+        assertNotSame(calculator0, factory.createCalculator(TEST_LOCATIONS[3], TimeZone.getTimeZone("UTC")));
+        assertNotSame(calculator0, new SuntimesCalculatorFactory((Context)null, com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator.getDescriptor()).createCalculator(TEST_LOCATIONS[3], timezone));
+        assertEquals(misses + 5, SuntimesCalculatorFactory.getCacheMisses());
+
+        for (int i=0; i<SuntimesCalculatorFactory.MAX_CACHED_CALCULATORS * 2; i++) {
+            factory.createCalculator(new Location("test", Integer.toString(i), "0"), timezone);
+        }
+        assertEquals(SuntimesCalculatorFactory.MAX_CACHED_CALCULATORS, SuntimesCalculatorFactory.getCacheSize());
+
+        SuntimesCalculatorFactory.clearCache();
+        assertEquals(0, SuntimesCalculatorFactory.getCacheSize());
+        assertNotSame(calculator0, factory.createCalculator(TEST_LOCATIONS[3], timezone));
+    }
+
+    @Test
+    public void test_getEventTimes()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        for (Location location : TEST_LOCATIONS)
+        {
+            test_getEventTimes(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4ASimpleSuntimesCalculator.getDescriptor());
+            test_getEventTimes(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator.getDescriptor());
+            test_getEventTimes(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4ACCSuntimesCalculator.getDescriptor());
+            test_getEventTimes(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor());
+            test_getEventTimes(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4AChebyshevSuntimesCalculator.getDescriptor());
+        }
+    }
+    public void test_getEventTimes(Location location, TimeZone timezone, SuntimesCalculatorDescriptor descriptor)
+    {
+        SuntimesCalculatorFactory calculatorFactory = new SuntimesCalculatorFactory((Context)null, descriptor);
+        SuntimesCalculator calculator = calculatorFactory.createCalculator(location, timezone);
+        assertTrue(calculator instanceof SuntimesBatchCalculator);
+
+        int numDays = 7;
+        int[] events = SuntimesBatchCalculator.EVENTS_ALL;
+        long[] expected = new long[numDays * events.length];
+        long[] result = new long[numDays * events.length];
+
+        Calendar date = Calendar.getInstance(timezone);
+        assertEquals(numDays, new SuntimesBatchCalculatorBridge(calculator).getEventTimes(date, numDays, events, expected));
+        assertEquals(numDays, SuntimesBatchCalculatorBridge.from(calculator).getEventTimes(date, numDays, events, result));
+        assertArrayEquals("batch results (" + descriptor.getName() + ") should match calendar results", expected, result);
+    }
+
+    @Test
+    public void test_getDayEvents()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        Location[] locations = new Location[] { TEST_LOCATIONS[0], TEST_LOCATIONS[1], TEST_LOCATIONS[3], TEST_LOCATIONS[4], new Location("test6", "67.5", "25") };
+        for (Location location : locations)
+        {
+            test_getDayEvents(location, timezone, com.forrestguice.suntimeswidget.calculator.sunrisesunset_java.SunriseSunsetSuntimesCalculator.getDescriptor());
+            test_getDayEvents(location, timezone, com.forrestguice.suntimeswidget.calculator.ca.rmen.sunrisesunset.SunriseSunsetSuntimesCalculator.getDescriptor());
+            test_getDayEvents(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4ASimpleSuntimesCalculator.getDescriptor());
+            test_getDayEvents(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator.getDescriptor());
+            test_getDayEvents(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4ACCSuntimesCalculator.getDescriptor());
+            test_getDayEvents(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor());
+            test_getDayEvents(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4AChebyshevSuntimesCalculator.getDescriptor());
+        }
+    }
+    public void test_getDayEvents(Location location, TimeZone timezone, SuntimesCalculatorDescriptor descriptor)
+    {
+        SuntimesCalculatorFactory calculatorFactory = new SuntimesCalculatorFactory((Context)null, descriptor);
+        SuntimesCalculator calculator = calculatorFactory.createCalculator(location, timezone);
+
+        double[] angles = new double[] { SuntimesBatchCalculator.ANGLE_OFFICIAL, SuntimesBatchCalculator.ANGLE_CIVIL, SuntimesBatchCalculator.ANGLE_NAUTICAL, SuntimesBatchCalculator.ANGLE_ASTRONOMICAL,
+                SuntimesBatchCalculator.ANGLE_GOLDEN, SuntimesBatchCalculator.ANGLE_BLUE8, SuntimesBatchCalculator.ANGLE_BLUE4, -3.5, 10 };
+        long[] expected = new long[1 + (2 * angles.length)];
+        long[] result = new long[expected.length];
+
+        SuntimesBatchCalculator bridge = new SuntimesBatchCalculatorBridge(calculator);
+        SuntimesBatchCalculator batch = SuntimesBatchCalculatorBridge.from(calculator);
+
+        Calendar date = Calendar.getInstance(timezone);
+        date.set(2022, 0, 1, 12, 0, 0);
+        for (int i=0; i<73; i++)
+        {
+            assertEquals(expected.length, bridge.getDayEvents(date, angles, expected));
+            assertEquals(expected.length, batch.getDayEvents(date, angles, result));
+            assertArrayEquals("day events (" + descriptor.getName() + ", " + location.getLabel() + ", " + date.getTime() + ") should match calendar results", expected, result);
+            date.add(Calendar.DAY_OF_YEAR, 5);
+        }
+        assertEquals(0, batch.getDayEvents(date, angles, new long[2 * angles.length]));
+    }
+
+    @Test
+    public void test_eventTimes_sunriseSunsetJava() {
+        test_eventTimes_scalar(com.forrestguice.suntimeswidget.calculator.sunrisesunset_java.SunriseSunsetSuntimesCalculator.getDescriptor());
+    }
+
+    @Test
+    public void test_eventTimes_caRmen() {
+        test_eventTimes_scalar(com.forrestguice.suntimeswidget.calculator.ca.rmen.sunrisesunset.SunriseSunsetSuntimesCalculator.getDescriptor());
+    }
+
+    /**
+     * Compares getEventTimes and getDayEvents with the calculator's own Calendar getters (at a polar location, events that don't occur are NO_EVENT).
+     */
+    public void test_eventTimes_scalar(SuntimesCalculatorDescriptor descriptor)
+    {
+        test_eventTimes_scalar(TEST_LOCATIONS[3], TimeZone.getTimeZone("America/Phoenix"), descriptor, false);
+        test_eventTimes_scalar(new Location("test8", "78.2", "15.6"), TimeZone.getTimeZone("Europe/Oslo"), descriptor, true);
+    }
+    public void test_eventTimes_scalar(Location location, TimeZone timezone, SuntimesCalculatorDescriptor descriptor, boolean isPolar)
+    {
+        SuntimesCalculator calculator = new SuntimesCalculatorFactory((Context)null, descriptor).createCalculator(location, timezone);
+        assertTrue(calculator instanceof SuntimesBatchCalculator);
+        SuntimesBatchCalculator batch = (SuntimesBatchCalculator) calculator;
+
+        int numDays = 5;
+        int[] events = SuntimesBatchCalculator.EVENTS_ALL;
+        long[] result = new long[numDays * events.length];
+
+        double[] angles = new double[] { SuntimesBatchCalculator.ANGLE_OFFICIAL, SuntimesBatchCalculator.ANGLE_CIVIL, SuntimesBatchCalculator.ANGLE_NAUTICAL, SuntimesBatchCalculator.ANGLE_ASTRONOMICAL,
+                SuntimesBatchCalculator.ANGLE_GOLDEN, SuntimesBatchCalculator.ANGLE_BLUE8, SuntimesBatchCalculator.ANGLE_BLUE4, -3.5 };
+        long[] dayResult = new long[1 + (2 * angles.length)];
+
+        int noEvent = 0;
+        Calendar date = Calendar.getInstance(timezone);
+        date.set(2022, Calendar.JANUARY, 1, 12, 0, 0);
+        for (int i=0; i<15; i++)
+        {
+            String tag = descriptor.getName() + " (" + location.getLabel() + ", " + date.getTime() + ")";
+            assertEquals(numDays, batch.getEventTimes(date, numDays, events, result));
+
+            Calendar day = (Calendar) date.clone();
+            for (int d=0; d<numDays; d++)
+            {
+                for (int j=0; j<events.length; j++)
+                {
+                    long expected = toMillis(scalarEvent(calculator, events[j], day));
+                    assertEquals(tag + " day " + d + " event " + events[j] + " should match calendar result", expected, result[(d * events.length) + j]);
+                    if (expected == SuntimesBatchCalculator.NO_EVENT && events[j] == SuntimesBatchCalculator.EVENT_OFFICIAL_SUNRISE) {
+                        noEvent++;
+                    }
+                }
+
+                assertEquals(dayResult.length, batch.getDayEvents(day, angles, dayResult));
+                assertEquals(tag + " noon", toMillis(calculator.getSolarNoonCalendarForDate(day)), dayResult[0]);
+                for (int j=0; j<angles.length; j++)
+                {
+                    int rising = SuntimesBatchCalculatorBridge.toEvent(angles[j], true);
+                    int setting = SuntimesBatchCalculatorBridge.toEvent(angles[j], false);
+                    assertEquals(tag + " rising " + angles[j], toMillis(rising >= 0 ? scalarEvent(calculator, rising, day) : calculator.getSunriseCalendarForDate(day, angles[j])), dayResult[1 + (2 * j)]);
+                    assertEquals(tag + " setting " + angles[j], toMillis(setting >= 0 ? scalarEvent(calculator, setting, day) : calculator.getSunsetCalendarForDate(day, angles[j])), dayResult[2 + (2 * j)]);
+                }
+                day.add(Calendar.DAY_OF_YEAR, 1);
+            }
+            date.add(Calendar.DAY_OF_YEAR, 25);
+        }
+        assertEquals(descriptor.getName() + " (" + location.getLabel() + ") sunrise should be NO_EVENT during polar day/night", isPolar, noEvent > 0);
+    }
+    protected static Calendar scalarEvent(SuntimesCalculator calculator, int event, Calendar date)
+    {
+        switch (event)
+        {
+            case SuntimesBatchCalculator.EVENT_ASTRONOMICAL_SUNRISE: return calculator.getAstronomicalSunriseCalendarForDate(date);
+            case SuntimesBatchCalculator.EVENT_NAUTICAL_SUNRISE: return calculator.getNauticalSunriseCalendarForDate(date);
+            case SuntimesBatchCalculator.EVENT_BLUE8_MORNING: return blueHour(calculator.getMorningBlueHourForDate(date), 0);
+            case SuntimesBatchCalculator.EVENT_CIVIL_SUNRISE: return calculator.getCivilSunriseCalendarForDate(date);
+            case SuntimesBatchCalculator.EVENT_BLUE4_MORNING: return blueHour(calculator.getMorningBlueHourForDate(date), 1);
+            case SuntimesBatchCalculator.EVENT_OFFICIAL_SUNRISE: return calculator.getOfficialSunriseCalendarForDate(date);
+            case SuntimesBatchCalculator.EVENT_GOLDEN_MORNING: return calculator.getMorningGoldenHourForDate(date);
+            case SuntimesBatchCalculator.EVENT_SOLAR_NOON: return calculator.getSolarNoonCalendarForDate(date);
+            case SuntimesBatchCalculator.EVENT_GOLDEN_EVENING: return calculator.getEveningGoldenHourForDate(date);
+            case SuntimesBatchCalculator.EVENT_OFFICIAL_SUNSET: return calculator.getOfficialSunsetCalendarForDate(date);
+            case SuntimesBatchCalculator.EVENT_BLUE4_EVENING: return blueHour(calculator.getEveningBlueHourForDate(date), 0);
+            case SuntimesBatchCalculator.EVENT_CIVIL_SUNSET: return calculator.getCivilSunsetCalendarForDate(date);
+            case SuntimesBatchCalculator.EVENT_BLUE8_EVENING: return blueHour(calculator.getEveningBlueHourForDate(date), 1);
+            case SuntimesBatchCalculator.EVENT_NAUTICAL_SUNSET: return calculator.getNauticalSunsetCalendarForDate(date);
+            case SuntimesBatchCalculator.EVENT_ASTRONOMICAL_SUNSET: return calculator.getAstronomicalSunsetCalendarForDate(date);
+            default: return null;
+        }
+    }
+    protected static Calendar blueHour(Calendar[] events, int i) {
+        return (events != null ? events[i] : null);
+    }
+    protected static long toMillis(Calendar event) {
+        return (event != null ? event.getTimeInMillis() : SuntimesBatchCalculator.NO_EVENT);
+    }
+
+    @Test
+    public void test_getPositions()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        for (Location location : TEST_LOCATIONS) {
+            test_getPositions(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor());
+            test_getPositions(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4AChebyshevSuntimesCalculator.getDescriptor());
+        }
+    }
+    public void test_getPositions(Location location, TimeZone timezone, SuntimesCalculatorDescriptor descriptor)
+    {
+        SuntimesCalculatorFactory calculatorFactory = new SuntimesCalculatorFactory((Context)null, descriptor);
+        SuntimesCalculator calculator = calculatorFactory.createCalculator(location, timezone);
+
+        int count = 24;
+        long step = 60 * 60 * 1000;
+        long start = Calendar.getInstance(timezone).getTimeInMillis();
+        double[][] expected = new double[4][count];
+        double[][] result = new double[4][count];
+
+        SuntimesBatchCalculator bridge = new SuntimesBatchCalculatorBridge(calculator);
+        SuntimesBatchCalculator batch = SuntimesBatchCalculatorBridge.from(calculator);
+
+        assertEquals(count, bridge.getSunPositions(start, step, count, expected[0], expected[1], expected[2], expected[3]));
+        assertEquals(count, batch.getSunPositions(start, step, count, result[0], result[1], result[2], result[3]));
+        for (int i=0; i<expected.length; i++) {
+            assertArrayEquals(expected[i], result[i], 0.0001);
+        }
+
+        assertEquals(count, bridge.getMoonPositions(start, step, count, expected[0], expected[1], expected[2], expected[3]));
+        assertEquals(count, batch.getMoonPositions(start, step, count, result[0], result[1], result[2], null));
+        for (int i=0; i<expected.length-1; i++) {
+            assertArrayEquals(expected[i], result[i], 0.0001);
+        }
+    }
+
+    @Test
+    public void test_getPositions_scalar()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        for (Location location : new Location[] { TEST_LOCATIONS[0], TEST_LOCATIONS[3], new Location("test6", "67.5", "25"), new Location("test7", "-78.2", "15.6") })
+        {
+            test_getPositions_scalar(location, timezone, com.forrestguice.suntimeswidget.calculator.sunrisesunset_java.SunriseSunsetSuntimesCalculator.getDescriptor());
+            test_getPositions_scalar(location, timezone, com.forrestguice.suntimeswidget.calculator.ca.rmen.sunrisesunset.SunriseSunsetSuntimesCalculator.getDescriptor());
+            test_getPositions_scalar(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4ASimpleSuntimesCalculator.getDescriptor());
+            test_getPositions_scalar(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator.getDescriptor());
+            test_getPositions_scalar(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4ACCSuntimesCalculator.getDescriptor());
+            test_getPositions_scalar(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor());
+            test_getPositions_scalar(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4AChebyshevSuntimesCalculator.getDescriptor());
+        }
+    }
+    public void test_getPositions_scalar(Location location, TimeZone timezone, SuntimesCalculatorDescriptor descriptor)
+    {
+        SuntimesCalculator calculator = new SuntimesCalculatorFactory((Context)null, descriptor).createCalculator(location, timezone);
+        SuntimesBatchCalculator[] calculators = new SuntimesBatchCalculator[] { new SuntimesBatchCalculatorBridge(calculator), SuntimesBatchCalculatorBridge.from(calculator) };
+
+        int count = 48;
+        long step = 37 * 60 * 1000;
+        Calendar date = Calendar.getInstance(timezone);
+        date.clear();
+        date.set(2022, Calendar.MARCH, 13);
+        long start = date.getTimeInMillis();
+
+        for (SuntimesBatchCalculator batch : calculators)
+        {
+            String tag = descriptor.getName() + " (" + batch.getClass().getSimpleName() + ", " + location.getLabel() + ")";
+            double[][] sun = new double[4][count];
+            double[][] moon = new double[4][count];
+            int numSun = batch.getSunPositions(start, step, count, sun[0], sun[1], sun[2], sun[3]);
+            int numMoon = batch.getMoonPositions(start, step, count, moon[0], moon[1], moon[2], moon[3]);
+
+            for (int i=0; i<count; i++)
+            {
+                Calendar dateTime = Calendar.getInstance(timezone);
+                dateTime.setTimeInMillis(start + (i * step));
+
+                SuntimesCalculator.SunPosition sunPosition = calculator.getSunPosition(dateTime);
+                if (sunPosition == null) {
+                    assertEquals(tag + " sun samples should stop at the first unavailable position", i, numSun);    // 0 for calculators without positions (callers fall back)
+                    break;
+                }
+                assertPositionEquals(tag + " sun " + i, sunPosition, sun, i);
+            }
+
+            for (int i=0; i<count; i++)
+            {
+                Calendar dateTime = Calendar.getInstance(timezone);
+                dateTime.setTimeInMillis(start + (i * step));
+
+                SuntimesCalculator.MoonPosition moonPosition = calculator.getMoonPosition(dateTime);
+                if (moonPosition == null) {
+                    assertEquals(tag + " moon samples should stop at the first unavailable position", i, numMoon);
+                    break;
+                }
+                assertPositionEquals(tag + " moon " + i, moonPosition, moon, i);
+            }
+        }
+    }
+    protected static void assertPositionEquals(String tag, SuntimesCalculator.Position expected, double[][] result, int i)
+    {
+        double[] values = new double[] { expected.azimuth, expected.elevation, expected.rightAscension, expected.declination };
+        for (int j=0; j<values.length; j++)
+        {
+            double delta = Math.abs(values[j] - result[j][i]);
+            assertTrue(tag + " (" + j + ") should match scalar result: " + values[j] + " != " + result[j][i], Math.min(delta, 360 - delta) <= 0.0001);
+        }
+    }
+
+    @Test
+    public void test_chebyshevAccuracy()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        for (Location location : TEST_LOCATIONS) {
+            test_accuracy(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor(),
+                                              com.forrestguice.suntimeswidget.calculator.time4a.Time4AChebyshevSuntimesCalculator.getDescriptor(), 1000, 0.0001);
+        }
+    }
+    public void test_accuracy(Location location, TimeZone timezone, SuntimesCalculatorDescriptor expectedDescriptor, SuntimesCalculatorDescriptor descriptor, long eventTolerance, double positionTolerance)
+    {
+        SuntimesBatchCalculator expectedCalculator = SuntimesBatchCalculatorBridge.from(new SuntimesCalculatorFactory((Context)null, expectedDescriptor).createCalculator(location, timezone));
+        SuntimesBatchCalculator calculator = SuntimesBatchCalculatorBridge.from(new SuntimesCalculatorFactory((Context)null, descriptor).createCalculator(location, timezone));
+
+        int numDays = 366;
+        int[] events = SuntimesBatchCalculator.EVENTS_ALL;
+        long[] expected = new long[numDays * events.length];
+        long[] result = new long[numDays * events.length];
+        Calendar date = Calendar.getInstance(timezone);
+        assertEquals(numDays, expectedCalculator.getEventTimes(date, numDays, events, expected));
+        assertEquals(numDays, calculator.getEventTimes(date, numDays, events, result));
+        for (int i=0; i<expected.length; i++)
+        {
+            assertEquals(expected[i] == SuntimesBatchCalculator.NO_EVENT, result[i] == SuntimesBatchCalculator.NO_EVENT);
+            assertEquals(descriptor.getName() + " (event " + events[i % events.length] + ") should be within " + eventTolerance + "ms", expected[i], result[i], eventTolerance);
+        }
+
+        int count = numDays * 24;
+        long step = 60 * 60 * 1000;
+        double[][] expectedPosition = new double[4][count];
+        double[][] resultPosition = new double[4][count];
+        assertEquals(count, expectedCalculator.getSunPositions(date.getTimeInMillis(), step, count, expectedPosition[0], expectedPosition[1], expectedPosition[2], expectedPosition[3]));
+        assertEquals(count, calculator.getSunPositions(date.getTimeInMillis(), step, count, resultPosition[0], resultPosition[1], resultPosition[2], resultPosition[3]));
+        for (int j=0; j<expectedPosition.length; j++)
+        {
+            for (int i=0; i<count; i++)
+            {
+                double delta = Math.abs(expectedPosition[j][i] - resultPosition[j][i]);
+                assertTrue(descriptor.getName() + " position should be within " + positionTolerance + " degrees", Math.min(delta, 360 - delta) <= positionTolerance);
+            }
+        }
+    }
+
+    @Test
+    public void test_lunarEphemeris()
+    {
+        TimeZone timezone = TimeZone.getTimeZone("America/Phoenix");
+        for (Location location : TEST_LOCATIONS)
+        {
+            test_lunarEphemeris(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4AChebyshevSuntimesCalculator.getDescriptor(), 1000, 0.00001);    // ephemeris (opt-in)
+            test_lunarEphemeris(location, timezone, com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor(), 0, 0);    // time4j (unchanged)
+        }
+    }
+    public void test_lunarEphemeris(Location location, TimeZone timezone, SuntimesCalculatorDescriptor descriptor, long eventTolerance, double positionTolerance)
+    {
+        SuntimesCalculator calculator = new SuntimesCalculatorFactory((Context)null, descriptor).createCalculator(location, timezone);
+        TZID tzid = Timezone.of("java.util.TimeZone~" + timezone.getID()).getID();
+        LunarTime lunarTime = LunarTime.ofLocation(tzid, calculator.getLocation().getLatitudeAsDouble(), calculator.getLocation().getLongitudeAsDouble(),
+                com.forrestguice.suntimeswidget.calculator.time4a.Time4ASuntimesCalculator.clampAltitude(calculator.getLocation().getAltitudeAsInteger()));
+
+        Calendar date = Calendar.getInstance(timezone);
+        date.clear();
+        date.set(2022, Calendar.JANUARY, 1);
+        for (int i=0; i<60; i++)
+        {
+            LunarTime.Moonlight expected = lunarTime.on(TemporalType.JAVA_UTIL_DATE.translate(date.getTime()).toZonalTimestamp(tzid).toDate());
+            SuntimesCalculator.MoonTimes result = calculator.getMoonTimesForDate(date);
+            assertEquals(expected.moonrise() == null, result.riseTime == null);
+            assertEquals(expected.moonset() == null, result.setTime == null);
+            if (result.riseTime != null) {
+                assertEquals("moonrise should be within " + eventTolerance + "ms", TemporalType.MILLIS_SINCE_UNIX.from(expected.moonrise()), result.riseTime.getTimeInMillis(), eventTolerance);
+            }
+            if (result.setTime != null) {
+                assertEquals("moonset should be within " + eventTolerance + "ms", TemporalType.MILLIS_SINCE_UNIX.from(expected.moonset()), result.setTime.getTimeInMillis(), eventTolerance);
+            }
+
+            for (int hour=0; hour<24; hour+=3)
+            {
+                date.set(Calendar.HOUR_OF_DAY, hour);
+                MoonPosition expectedPosition = MoonPosition.at(TemporalType.JAVA_UTIL_DATE.translate(date.getTime()), lunarTime);
+                SuntimesCalculator.MoonPosition position = calculator.getMoonPosition(date);
+                double azimuthDelta = Math.abs(expectedPosition.getAzimuth() - position.azimuth) % 360;
+                assertTrue("azimuth should be within " + positionTolerance + " degrees", Math.min(azimuthDelta, 360 - azimuthDelta) <= positionTolerance);
+                assertEquals(expectedPosition.getElevation(), position.elevation, positionTolerance);
+                assertEquals(expectedPosition.getRightAscension(), position.rightAscension, positionTolerance);
+                assertEquals(expectedPosition.getDeclination(), position.declination, positionTolerance);
+                assertEquals(expectedPosition.getDistance(), position.distance, 1);
+            }
+            date.add(Calendar.DAY_OF_MONTH, 1);
+        }
+    }
+
 }
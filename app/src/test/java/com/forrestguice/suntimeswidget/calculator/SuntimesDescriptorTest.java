@@ -41,7 +41,7 @@ public class SuntimesDescriptorTest
         SuntimesCalculatorDescriptor.initCalculators((Context)null);
         SuntimesCalculatorDescriptor[] values0 = SuntimesCalculatorDescriptor.values((Context)null);
         assertNotNull(values0);
-        assertEquals(6, values0.length);
+        assertEquals(7, values0.length);
 
         ArrayList<SuntimesCalculatorDescriptor> descriptors0 = new ArrayList<>(Arrays.asList(values0));
         assertTrue(descriptors0.contains(com.forrestguice.suntimeswidget.calculator.sunrisesunset_java.SunriseSunsetSuntimesCalculator.getDescriptor()));
@@ -50,6 +50,7 @@ public class SuntimesDescriptorTest
         assertTrue(descriptors0.contains(com.forrestguice.suntimeswidget.calculator.time4a.Time4ANOAASuntimesCalculator.getDescriptor()));
         assertTrue(descriptors0.contains(com.forrestguice.suntimeswidget.calculator.time4a.Time4ACCSuntimesCalculator.getDescriptor()));
         assertTrue(descriptors0.contains(com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator.getDescriptor()));
+        assertTrue(descriptors0.contains(com.forrestguice.suntimeswidget.calculator.time4a.Time4AChebyshevSuntimesCalculator.getDescriptor()));
     }
 
     @Test
@@ -57,30 +58,30 @@ public class SuntimesDescriptorTest
     {
         SuntimesCalculatorDescriptor[] values0 = SuntimesCalculatorDescriptor.values((Context)null);    // values() calls initCalculators if uninitialized
         assertNotNull(values0);
-        assertEquals(6, values0.length);
+        assertEquals(7, values0.length);
 
         SuntimesCalculatorDescriptor.removeValue(com.forrestguice.suntimeswidget.calculator.sunrisesunset_java.SunriseSunsetSuntimesCalculator.getDescriptor());
         SuntimesCalculatorDescriptor[] values1 = SuntimesCalculatorDescriptor.values((Context)null);
-        assertEquals(5, values1.length);
+        assertEquals(6, values1.length);
 
         SuntimesCalculatorDescriptor.reinitCalculators((Context)null);
         SuntimesCalculatorDescriptor[] values3 = SuntimesCalculatorDescriptor.values((Context)null);
         assertNotNull(values3);
-        assertEquals(6, values3.length);
+        assertEquals(7, values3.length);
     }
 
     @Test
     public void test_addRemove()
     {
-        assertEquals(6, SuntimesCalculatorDescriptor.values((Context)null).length);
+        assertEquals(7, SuntimesCalculatorDescriptor.values((Context)null).length);
         SuntimesCalculatorDescriptor.removeValue(com.forrestguice.suntimeswidget.calculator.sunrisesunset_java.SunriseSunsetSuntimesCalculator.getDescriptor());
-        assertEquals(5, SuntimesCalculatorDescriptor.values((Context)null).length);
+        assertEquals(6, SuntimesCalculatorDescriptor.values((Context)null).length);
 
         SuntimesCalculatorDescriptor.addValue(com.forrestguice.suntimeswidget.calculator.sunrisesunset_java.SunriseSunsetSuntimesCalculator.getDescriptor());
-        assertEquals(6, SuntimesCalculatorDescriptor.values((Context)null).length);
+        assertEquals(7, SuntimesCalculatorDescriptor.values((Context)null).length);
 
         SuntimesCalculatorDescriptor.addValue(com.forrestguice.suntimeswidget.calculator.sunrisesunset_java.SunriseSunsetSuntimesCalculator.getDescriptor());  // was already added
-        assertEquals(6, SuntimesCalculatorDescriptor.values((Context)null).length);
+        assertEquals(7, SuntimesCalculatorDescriptor.values((Context)null).length);
     }
 
     @Test
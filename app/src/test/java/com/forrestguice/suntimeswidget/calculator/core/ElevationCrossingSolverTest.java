@@ -0,0 +1,157 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+import org.junit.Test;
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class ElevationCrossingSolverTest
+{
+    public static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * elevation = 40 * sin(2pi * t / day) - 10 ; rises through 0 at (asin(0.25) / 2pi) days
+     */
+    public static class TestElevation implements ElevationCrossingSolver.ElevationFunction
+    {
+        protected boolean useRate;
+        protected double rate = Double.NaN;
+
+        public TestElevation(boolean useRate) {
+            this.useRate = useRate;
+        }
+
+        @Override
+        public double elevation(long millis)
+        {
+            double x = 2 * Math.PI * millis / DAY_MILLIS;
+            rate = (useRate ? 40 * Math.cos(x) * (2 * Math.PI / 24d) : Double.NaN);
+            return 40 * Math.sin(x) - 10;
+        }
+
+        @Override
+        public double rate() {
+            return rate;
+        }
+
+        @Override
+        public double maxRate() {
+            return (useRate ? 40 * (2 * Math.PI / 24d) : Double.NaN);
+        }
+
+        public static long crossing(double degrees, boolean rising)
+        {
+            double x = Math.asin((degrees + 10) / 40d);
+            long millis = Math.round(((rising ? x : Math.PI - x) / (2 * Math.PI)) * DAY_MILLIS);
+            return (millis < 0 ? millis + DAY_MILLIS : millis);
+        }
+    }
+
+    @Test
+    public void test_findCrossing()
+    {
+        test_findCrossing(new TestElevation(false));
+        test_findCrossing(new TestElevation(true));
+    }
+
+    protected void test_findCrossing(TestElevation f)
+    {
+        ElevationCrossingSolver solver = new ElevationCrossingSolver();
+        for (double degrees : new double[] { -18, -6, 0, 10, 29 })
+        {
+            for (boolean rising : new boolean[] { true, false })
+            {
+                long expected = TestElevation.crossing(degrees, rising);
+                long result = solver.findCrossing(f, degrees, 0, DAY_MILLIS, rising);
+                assertTrue("expected " + expected + ", was " + result, Math.abs(expected - result) <= solver.getToleranceMillis());
+                assertTrue(solver.getLastIterations() > 0);
+                assertTrue(solver.getLastIterations() < solver.getMaxIterations());
+                assertTrue(solver.getLastEvaluations() >= solver.getLastIterations());
+            }
+        }
+        assertEquals(10, solver.getTotalCalls());
+        assertTrue(solver.getTotalEvaluations() >= solver.getTotalIterations());
+
+        solver.resetCounts();
+        assertEquals(0, solver.getTotalCalls());
+        assertEquals(0, solver.getTotalIterations());
+    }
+
+    @Test
+    public void test_findCrossing_tolerance()
+    {
+        TestElevation f = new TestElevation(false);
+        long expected = TestElevation.crossing(0, true);
+        for (long tolerance : new long[] { 1, 1000, 60 * 1000 })
+        {
+            ElevationCrossingSolver solver = new ElevationCrossingSolver(tolerance, ElevationCrossingSolver.DEF_BRACKET_STEP, ElevationCrossingSolver.DEF_MAX_ITERATIONS);
+            long result = solver.findCrossing(f, 0, 0, DAY_MILLIS, true);
+            assertTrue(Math.abs(expected - result) <= tolerance);
+        }
+    }
+
+    /**
+     * A target just below the maximum (or above the minimum) is crossed twice within a single bracket step.
+     */
+    @Test
+    public void test_findCrossing_nearExtremum()
+    {
+        for (boolean useRate : new boolean[] { false, true })
+        {
+            TestElevation f = new TestElevation(useRate);
+            ElevationCrossingSolver solver = new ElevationCrossingSolver();
+            long startMillis = 17 * 60 * 1000;    // (samples straddle the maximum at 6h, and the minimum at 18h)
+            long[] expected = new long[] { TestElevation.crossing(29.99, true), TestElevation.crossing(-49.99, false) };
+            long[] results = new long[] { solver.findCrossing(f, 29.99, startMillis, DAY_MILLIS, true), solver.findCrossing(f, -49.99, startMillis, DAY_MILLIS, false) };
+            for (int i=0; i<expected.length; i++) {
+                assertTrue("expected " + expected[i] + ", was " + results[i], Math.abs(expected[i] - results[i]) <= solver.getToleranceMillis());
+            }
+
+            assertEquals(TestElevation.crossing(29.99, false), solver.findCrossing(f, 29.99, startMillis, DAY_MILLIS, false), solver.getToleranceMillis());
+            assertEquals(ElevationCrossingSolver.NO_CROSSING, solver.findCrossing(f, 30.01, startMillis, DAY_MILLIS, true));    // (just above the maximum)
+            assertEquals(TestElevation.crossing(29.99, true), solver.findCrossing(f, 29.99, 5 * 60 * 60 * 1000 + 50 * 60 * 1000, DAY_MILLIS, true), solver.getToleranceMillis());    // (interval starts near the maximum)
+        }
+    }
+
+    @Test
+    public void test_findCrossing_none()
+    {
+        ElevationCrossingSolver solver = new ElevationCrossingSolver();
+        TestElevation f = new TestElevation(true);
+        assertEquals(ElevationCrossingSolver.NO_CROSSING, solver.findCrossing(f, 45, 0, DAY_MILLIS, true));     // never reaches 45
+        assertEquals(ElevationCrossingSolver.NO_CROSSING, solver.findCrossing(f, -60, 0, DAY_MILLIS, false));   // never falls below -60
+        assertEquals(ElevationCrossingSolver.NO_CROSSING, solver.findCrossing(f, 0, DAY_MILLIS / 2, DAY_MILLIS, true));    // interval only contains a setting
+        assertEquals(ElevationCrossingSolver.NO_CROSSING, solver.findCrossing(f, 0, DAY_MILLIS, 0, true));      // empty interval
+
+        ElevationCrossingSolver.ElevationFunction unavailable = new ElevationCrossingSolver.ElevationFunction()
+        {
+            public double elevation(long millis) {
+                return Double.NaN;
+            }
+            public double rate() {
+                return Double.NaN;
+            }
+            public double maxRate() {
+                return Double.NaN;
+            }
+        };
+        assertEquals(ElevationCrossingSolver.NO_CROSSING, solver.findCrossing(unavailable, 0, 0, DAY_MILLIS, true));
+    }
+}
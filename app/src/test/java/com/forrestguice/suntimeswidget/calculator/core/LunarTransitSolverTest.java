@@ -0,0 +1,232 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.calculator.core;
+
+import android.content.Context;
+
+import com.forrestguice.suntimeswidget.FlakeyTest;
+import com.forrestguice.suntimeswidget.calculator.SuntimesCalculatorFactory;
+import com.forrestguice.suntimeswidget.calculator.time4a.Time4A4JSuntimesCalculator;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class LunarTransitSolverTest
+{
+    public static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    public static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    public static final TimeZone TIMEZONE = TimeZone.getTimeZone("America/Denver");
+    public static final Location LOCATION = new Location("test", "39.7392", "-104.9903", "1600");
+
+    /**
+     * hour angle = 14.5 * hours + 2 * sin(2pi * t / 10 days) ; a rate that varies (like the moon's)
+     */
+    public static class TestHourAngle implements LunarTransitSolver.HourAngleFunction
+    {
+        @Override
+        public double hourAngle(long millis) {
+            return LunarTransitSolver.normalize360(unwrapped(millis));
+        }
+
+        public static double unwrapped(long millis) {
+            return 14.5 * millis / (double) HOUR_MILLIS + 2 * Math.sin(2 * Math.PI * millis / (10d * DAY_MILLIS));
+        }
+    }
+
+    @Test
+    public void test_nextTransit()
+    {
+        LunarTransitSolver solver = new LunarTransitSolver();
+        TestHourAngle f = new TestHourAngle();
+        for (boolean upper : new boolean[] { true, false })
+        {
+            long t = -HOUR_MILLIS;
+            for (int i=0; i<30; i++)
+            {
+                long result = solver.nextTransit(f, upper, t);
+                double h = LunarTransitSolver.normalize180(f.hourAngle(result) - (upper ? 0 : 180));
+                assertTrue(result >= t);
+                assertTrue("hour angle should be ~" + (upper ? 0 : 180) + " (" + h + ")", Math.abs(h) < 14.5 * solver.getToleranceMillis() / (double) HOUR_MILLIS);
+                assertTrue(solver.getLastEvaluations() <= 6);
+
+                assertTrue("should be the next transit", result - t < 26 * HOUR_MILLIS);    // (one cycle is ~24.8 hours)
+                t = result + (i % 2 == 0 ? 1 : 7 * HOUR_MILLIS);
+            }
+        }
+        assertEquals(60, solver.getTotalCalls());
+        solver.resetCounts();
+        assertEquals(0, solver.getTotalEvaluations());
+    }
+
+    @Test
+    public void test_findTransit_none()
+    {
+        LunarTransitSolver solver = new LunarTransitSolver();
+        TestHourAngle f = new TestHourAngle();
+        long noon = solver.nextTransit(f, true, HOUR_MILLIS);
+        assertEquals(noon, solver.findTransit(f, true, HOUR_MILLIS, noon));
+        assertEquals(LunarTransitSolver.NO_TRANSIT, solver.findTransit(f, true, noon + 1, noon + 12 * HOUR_MILLIS));    // next is ~24h later
+
+        LunarTransitSolver.HourAngleFunction unavailable = new LunarTransitSolver.HourAngleFunction()
+        {
+            public double hourAngle(long millis) {
+                return Double.NaN;
+            }
+        };
+        assertEquals(LunarTransitSolver.NO_TRANSIT, solver.nextTransit(unavailable, true, 0));
+    }
+
+    @Test
+    public void test_moonTransit()
+    {
+        SuntimesCalculator calculator = createCalculator();
+        LunarTransitSolver solver = new LunarTransitSolver();
+        LunarTransitSolver.MoonHourAngle f = new LunarTransitSolver.MoonHourAngle(calculator);
+        Calendar date = Calendar.getInstance(TIMEZONE);
+        date.set(2022, Calendar.JANUARY, 1, 0, 0, 0);
+
+        long t = date.getTimeInMillis();
+        for (int i=0; i<60; i++)
+        {
+            long noon = solver.nextTransit(f, true, t);
+            long midnight = solver.nextTransit(f, false, t);
+            assertTrue(noon >= t && noon < t + DAY_MILLIS + 2 * HOUR_MILLIS);
+            assertTrue(midnight >= t && midnight < t + DAY_MILLIS + 2 * HOUR_MILLIS);
+
+            SuntimesCalculator.MoonPosition position = position(calculator, noon);    // due south, and at its highest
+            assertTrue(Math.abs(meridianCrossing(calculator, noon, 180) - noon) < 60 * 1000);    // (calculator's sidereal time may differ by ~30s)
+            assertTrue(position(calculator, noon - 10 * 60 * 1000).elevation < position.elevation);
+            assertTrue(position(calculator, noon + 10 * 60 * 1000).elevation < position.elevation);
+
+            position = position(calculator, midnight);    // due north, and at its lowest
+            assertTrue(Math.abs(meridianCrossing(calculator, midnight, 0) - midnight) < 60 * 1000);
+            assertTrue(position(calculator, midnight - 10 * 60 * 1000).elevation > position.elevation);
+            assertTrue(position(calculator, midnight + 10 * 60 * 1000).elevation > position.elevation);
+
+            t += DAY_MILLIS;
+        }
+        double evaluations = solver.getTotalEvaluations() / (double) solver.getTotalCalls();
+        assertTrue(evaluations <= 5);
+    }
+
+    /**
+     * Compares the solver to the previous approach (the midpoint of moonrise and moonset; moon times for 3 days).
+     */
+    @Test
+    @Category(FlakeyTest.class)
+    public void test_moonTransit_executionTime()
+    {
+        SuntimesCalculator calculator = createCalculator();
+        LunarTransitSolver solver = new LunarTransitSolver();
+        LunarTransitSolver.MoonHourAngle f = new LunarTransitSolver.MoonHourAngle(calculator);
+        int n = 366;
+        Calendar day = Calendar.getInstance(TIMEZONE);
+        day.set(2022, Calendar.JANUARY, 1, 0, 0, 0);
+        long day0 = day.getTimeInMillis();
+        for (int i=0; i<10; i++) {    // warm up
+            midpointNoon(calculator, day);
+            solver.nextTransit(f, true, day.getTimeInMillis());
+        }
+
+        long[] midpoints = new long[n];
+        long bench_start = System.nanoTime();
+        for (int i=0; i<n; i++)
+        {
+            midpoints[i] = midpointNoon(calculator, day);
+            day.add(Calendar.DAY_OF_YEAR, 1);
+        }
+        long bench_end = System.nanoTime();
+        double bench_midpoint = ((bench_end - bench_start) / 1000000.0);
+
+        long[] transits = new long[n];
+        day.setTimeInMillis(day0);
+        bench_start = System.nanoTime();
+        for (int i=0; i<n; i++)
+        {
+            transits[i] = solver.nextTransit(f, true, day.getTimeInMillis());
+            day.add(Calendar.DAY_OF_YEAR, 1);
+        }
+        bench_end = System.nanoTime();
+        double bench_solver = ((bench_end - bench_start) / 1000000.0);
+
+        assertTrue("solver should not be slower than the midpoint approximation", bench_solver < bench_midpoint * 1.25);
+    }
+
+    /**
+     * @return the midpoint of moonrise and the following moonset (from moon times yesterday, today, and tomorrow)
+     */
+    protected static long midpointNoon(SuntimesCalculator calculator, Calendar day)
+    {
+        Calendar[] days = new Calendar[] { (Calendar) day.clone(), day, (Calendar) day.clone() };
+        days[0].add(Calendar.DAY_OF_YEAR, -1);
+        days[2].add(Calendar.DAY_OF_YEAR, 1);
+        SuntimesCalculator.MoonTimes[] riseSet = new SuntimesCalculator.MoonTimes[3];
+        for (int i=0; i<3; i++) {
+            riseSet[i] = calculator.getMoonTimesForDate(days[i]);
+        }
+        for (int i=1; i<3; i++)
+        {
+            Calendar rise = riseSet[i].riseTime;
+            if (rise != null)
+            {
+                Calendar set = riseSet[i].setTime;
+                if (set == null || !set.after(rise)) {
+                    set = (i + 1 < riseSet.length ? riseSet[i + 1].setTime : null);
+                }
+                if (set != null) {
+                    return (rise.getTimeInMillis() + set.getTimeInMillis()) / 2;
+                }
+            }
+        }
+        return LunarTransitSolver.NO_TRANSIT;
+    }
+
+    /**
+     * @return the time the moon's azimuth crosses north (0) or south (180) near millis (bisection)
+     */
+    protected static long meridianCrossing(SuntimesCalculator calculator, long millis, double azimuth)
+    {
+        long a = millis - 10 * 60 * 1000, b = millis + 10 * 60 * 1000;
+        while (b - a > 100)
+        {
+            long m = (a + b) / 2;
+            if (LunarTransitSolver.normalize180(position(calculator, m).azimuth - azimuth) < 0) {
+                a = m;
+            } else b = m;
+        }
+        return (a + b) / 2;
+    }
+
+    protected static SuntimesCalculator.MoonPosition position(SuntimesCalculator calculator, long millis)
+    {
+        Calendar calendar = Calendar.getInstance(TIMEZONE);
+        calendar.setTimeInMillis(millis);
+        return calculator.getMoonPosition(calendar);
+    }
+
+    protected static SuntimesCalculator createCalculator() {
+        return new SuntimesCalculatorFactory((Context)null, Time4A4JSuntimesCalculator.getDescriptor()).createCalculator(LOCATION, TIMEZONE);
+    }
+}
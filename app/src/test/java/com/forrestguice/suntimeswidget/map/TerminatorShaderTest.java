@@ -0,0 +1,270 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.map;
+
+import android.graphics.Color;
+
+import com.forrestguice.suntimeswidget.FlakeyTest;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TerminatorShaderTest
+{
+    public static final int MATRIX_W = 720, MATRIX_H = 360;
+
+    /**
+     * The compact formats should shade (nearly) the same pixels; only pixels right at a band edge may differ.
+     */
+    @Test
+    public void test_shade_lut_formats()
+    {
+        double[] sunUp = unitVector(23.4, -100);
+        double[] moonUp = unitVector(-5, 60);
+        int[] sunLUT = TerminatorShader.sunShadowLUT(0xc0000000);
+        int[] moonLUT = TerminatorShader.moonLightLUT(0x80c0c0c0);
+        int n = MATRIX_W * MATRIX_H;
+        int[] expected = new int[n];
+        TerminatorShader shader = new TerminatorShader(1);
+        shader.shade(WorldMapEquirectangular.initMatrix(UnitVectorMatrix.FORMAT_DOUBLE, MATRIX_W, MATRIX_H), sunUp, sunLUT, moonUp, moonLUT, null, expected, MATRIX_W, MATRIX_H);
+
+        for (int format : new int[] { UnitVectorMatrix.FORMAT_FLOAT, UnitVectorMatrix.FORMAT_FIXED16 })
+        {
+            int[] pixels = new int[n];
+            shader.shade(WorldMapEquirectangular.initMatrix(format, MATRIX_W, MATRIX_H), sunUp, sunLUT, moonUp, moonLUT, null, pixels, MATRIX_W, MATRIX_H);
+            int differ = 0;
+            for (int i=0; i<n; i++) {
+                differ += ((pixels[i] != expected[i]) ? 1 : 0);
+            }
+            assertTrue(differ <= n / 100);
+        }
+    }
+
+    @Test
+    @Category(FlakeyTest.class)
+    public void test_shade_stripes_executionTime()
+    {
+        int[] scales = new int[] { 1, 2, 4 };
+        int[] threads = new int[] { 1, TerminatorShader.numThreads() };
+        int numFrames = 20;
+        double[] sunUp = unitVector(23.4, -100);
+        double[] moonUp = unitVector(-5, 60);
+        int[] sunLUT = TerminatorShader.sunShadowLUT(0xc0000000);
+        int[] moonLUT = TerminatorShader.moonLightLUT(0x80c0c0c0);
+
+        for (int scale : scales)
+        {
+            int w = MATRIX_W * scale, h = MATRIX_H * scale;
+            UnitVectorMatrix matrix = WorldMapEquirectangular.initMatrix(UnitVectorMatrix.getDefaultFormat(), w, h);
+            int[] pixels = new int[w * h];
+
+            double[] ms = new double[threads.length];
+            for (int t=0; t<threads.length; t++)
+            {
+                TerminatorShader shader = new TerminatorShader(threads[t]);
+                for (int i=0; i<5; i++) {    // warm up
+                    shader.shade(matrix, sunUp, sunLUT, moonUp, moonLUT, null, pixels, w, h);
+                }
+
+                long bench_start = System.nanoTime();
+                for (int i=0; i<numFrames; i++) {
+                    shader.shade(matrix, sunUp, sunLUT, moonUp, moonLUT, null, pixels, w, h);
+                }
+                long bench_end = System.nanoTime();
+                ms[t] = ((bench_end - bench_start) / 1000000.0) / numFrames;
+            }
+            if (scale > 1 && threads[1] > 1) {
+                assertTrue("shading in stripes should not be slower", ms[1] < ms[0] * 1.1);
+            }
+        }
+    }
+
+    @Test
+    public void test_lut()
+    {
+        assertEquals(0, TerminatorShader.lutIndex(-1));
+        assertEquals(0, TerminatorShader.lutIndex(-1.5));
+        assertEquals(TerminatorShader.LUT_SIZE - 1, TerminatorShader.lutIndex(1));
+        assertEquals(TerminatorShader.LUT_SIZE - 1, TerminatorShader.lutIndex(1.5));
+        for (int k=0; k<TerminatorShader.LUT_SIZE; k++) {
+            assertEquals(k, TerminatorShader.lutIndex(TerminatorShader.lutValue(k)));
+        }
+
+        int shadowColor = 0xc0102030;
+        int[] sunLUT = TerminatorShader.sunShadowLUT(shadowColor);
+        assertEquals(Color.TRANSPARENT, sunLUT[lutIndex(1)]);
+        assertEquals(Color.TRANSPARENT, sunLUT[lutIndex(0.75)]);       // day
+        assertEquals(0xc0 / 4, sunLUT[lutIndex(-3)] >>> 24, 1);        // civil twilight
+        assertEquals(0xc0 / 2, sunLUT[lutIndex(-9)] >>> 24, 1);        // nautical twilight
+        assertEquals((3 * 0xc0) / 4, sunLUT[lutIndex(-15)] >>> 24, 1); // astronomical twilight
+        assertEquals(shadowColor, sunLUT[lutIndex(-30)]);              // night
+        assertEquals(shadowColor, sunLUT[lutIndex(-90)]);
+        for (int k=1; k<sunLUT.length; k++)
+        {
+            assertTrue((sunLUT[k] >>> 24) <= (sunLUT[k-1] >>> 24));    // lighter as the sun rises
+            assertTrue(sunLUT[k] == Color.TRANSPARENT || (sunLUT[k] & 0x00ffffff) == (shadowColor & 0x00ffffff));
+        }
+
+        int lightColor = 0x80c0c0c0;
+        int[] moonLUT = TerminatorShader.moonLightLUT(lightColor);
+        assertEquals(Color.TRANSPARENT, moonLUT[lutIndex(-1)]);        // (altitude in degrees)
+        assertEquals(lightColor, moonLUT[lutIndex(1)]);
+        assertEquals(lightColor, moonLUT[lutIndex(10)]);
+    }
+
+    protected static int lutIndex(double altitude) {
+        return TerminatorShader.lutIndex(Math.sin(Math.toRadians(altitude)));
+    }
+
+    @Test
+    public void test_over()
+    {
+        assertEquals(0xff112233, TerminatorShader.over(0xff112233, 0xff445566));
+        assertEquals(0xff445566, TerminatorShader.over(Color.TRANSPARENT, 0xff445566));
+        assertEquals(0x80112233, TerminatorShader.over(0x80112233, Color.TRANSPARENT));
+        assertEquals(0xff7f7f7f, TerminatorShader.over(0x80000000, 0xffffffff));
+        int c = TerminatorShader.over(0x80ffffff, 0x80000000);
+        assertEquals(0xbf, c >>> 24);
+        assertEquals(0xaa, c & 0xff, 1);
+    }
+
+    @Test
+    public void test_lookupRow()
+    {
+        int[] identity = new int[TerminatorShader.LUT_SIZE];    // (colors are the lut index)
+        for (int k=0; k<identity.length; k++) {
+            identity[k] = k;
+        }
+        double[][] up = new double[][] { unitVector(23.4, -100), unitVector(-5, 60), unitVector(0, 180), unitVector(90, 0) };
+
+        int[] out = new int[MATRIX_W];
+        for (int format : new int[] { UnitVectorMatrix.FORMAT_DOUBLE, UnitVectorMatrix.FORMAT_FLOAT, UnitVectorMatrix.FORMAT_FIXED16 })
+        {
+            UnitVectorMatrix matrix = WorldMapEquirectangular.initMatrix(format, MATRIX_W, MATRIX_H);
+            int tolerance = (format == UnitVectorMatrix.FORMAT_DOUBLE ? 0 : 1);
+            for (double[] u : up) {
+                for (int j=0; j<MATRIX_H; j++)
+                {
+                    int z0 = MATRIX_W * j;
+                    TerminatorShader.lookupRow(matrix, z0, MATRIX_W, u, identity, out);
+                    for (int i=0; i<MATRIX_W; i++) {
+                        assertEquals(TerminatorShader.lutIndex(matrix.dot(z0 + i, u[0], u[1], u[2])), out[i], tolerance);
+                    }
+                }
+            }
+
+            TerminatorShader.lookupRow(matrix, 0, MATRIX_W, null, identity, out);
+            for (int pixel : out) {
+                assertEquals(Color.TRANSPARENT, pixel);
+            }
+        }
+    }
+
+    @Test
+    public void test_shade_lut()
+    {
+        UnitVectorMatrix matrix = WorldMapEquirectangular.initMatrix(UnitVectorMatrix.FORMAT_DOUBLE, MATRIX_W, MATRIX_H);    // (see test_lookupRow for the other formats)
+        double[] sunUp = unitVector(23.4, -100);
+        double[] moonUp = unitVector(-5, 60);
+        int[] sunLUT = TerminatorShader.sunShadowLUT(0xc0000000);
+        int[] moonLUT = TerminatorShader.moonLightLUT(0x80c0c0c0);
+
+        for (int[] size : new int[][] { {MATRIX_W, MATRIX_H}, {MATRIX_W * 2, MATRIX_H * 2}, {1000, 333}, {300, 150} })
+        {
+            int w = size[0], h = size[1];
+            int[] night = new int[w * h];
+            for (int i=0; i<night.length; i++) {
+                night[i] = ((i % 7) == 0) ? 0x80102030 : 0xff405060;
+            }
+
+            for (int[] nightPixels : new int[][] { null, night })
+            {
+                int[] expected = new int[w * h];
+                for (int j=0; j<h; j++) {
+                    for (int i=0; i<w; i++)
+                    {
+                        int p = i + (w * j);
+                        int z = ((i * MATRIX_W) / w) + (MATRIX_W * ((j * MATRIX_H) / h));    // (nearest)
+                        int shadow = sunLUT[TerminatorShader.lutIndex(matrix.dot(z, sunUp[0], sunUp[1], sunUp[2]))];
+                        if (nightPixels != null) {
+                            shadow = ((((nightPixels[p] >>> 24) * (shadow >>> 24)) / 255) << 24) | (nightPixels[p] & 0x00ffffff);
+                        }
+                        expected[p] = TerminatorShader.over(moonLUT[TerminatorShader.lutIndex(matrix.dot(z, moonUp[0], moonUp[1], moonUp[2]))], shadow);
+                    }
+                }
+
+                for (int threads : new int[] { 1, 2, 3, 4, 7 })
+                {
+                    int[] pixels = new int[w * h];
+                    new TerminatorShader(threads).shade(matrix, sunUp, sunLUT, moonUp, moonLUT, nightPixels, pixels, w, h);
+                    assertArrayEquals(expected, pixels);
+                }
+            }
+
+            int[] pixels = new int[w * h];
+            new TerminatorShader(4).shade(matrix, null, sunLUT, null, moonLUT, null, pixels, w, h);
+            for (int pixel : pixels) {
+                assertEquals(Color.TRANSPARENT, pixel);
+            }
+        }
+    }
+
+    @Test
+    @Category(FlakeyTest.class)
+    public void test_shade_lut_executionTime()
+    {
+        UnitVectorMatrix matrix = WorldMapEquirectangular.initMatrix(UnitVectorMatrix.getDefaultFormat(), MATRIX_W, MATRIX_H);
+        double[] sunUp = unitVector(23.4, -100);
+        double[] moonUp = unitVector(-5, 60);
+        int[] sunLUT = TerminatorShader.sunShadowLUT(0xc0000000);
+        int[] moonLUT = TerminatorShader.moonLightLUT(0x80c0c0c0);
+        TerminatorShader shader = new TerminatorShader();
+        int numFrames = 20;
+
+        int[] scales = new int[] { 1, 2 };
+        double[] ms = new double[scales.length];
+        for (int s=0; s<scales.length; s++)
+        {
+            int w = MATRIX_W * scales[s], h = MATRIX_H * scales[s];
+            int[] pixels = new int[w * h];
+            for (int i=0; i<5; i++) {    // warm up
+                shader.shade(matrix, sunUp, sunLUT, moonUp, moonLUT, null, pixels, w, h);
+            }
+            long bench_start = System.nanoTime();
+            for (int i=0; i<numFrames; i++) {
+                shader.shade(matrix, sunUp, sunLUT, moonUp, moonLUT, null, pixels, w, h);
+            }
+            long bench_end = System.nanoTime();
+            ms[s] = ((bench_end - bench_start) / 1000000.0) / numFrames;
+        }
+        assertTrue("an upscaled map should cost less per pixel (sampled rows are copied)", ms[1] < ms[0] * 4);
+    }
+
+    protected static double[] unitVector(double lat, double lon)
+    {
+        double radLon = Math.toRadians(lon);
+        double radLat = Math.toRadians(lat);
+        double cosLat = Math.cos(radLat);
+        return new double[] { Math.cos(radLon) * cosLat, Math.sin(radLon) * cosLat, Math.sin(radLat) };
+    }
+}
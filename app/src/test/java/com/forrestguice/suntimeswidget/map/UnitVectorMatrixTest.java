@@ -0,0 +1,108 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.map;
+
+import com.forrestguice.suntimeswidget.FlakeyTest;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UnitVectorMatrixTest
+{
+    public static final int W = 720, H = 360;
+    public static final int[] FORMATS = new int[] { UnitVectorMatrix.FORMAT_DOUBLE, UnitVectorMatrix.FORMAT_FLOAT, UnitVectorMatrix.FORMAT_FIXED16 };
+    public static final double[] TOLERANCE = new double[] { 0, 1e-7, 1e-4 };
+
+    @Test
+    public void test_formats()
+    {
+        UnitVectorMatrix matrix0 = WorldMapEquirectangular.initMatrix(UnitVectorMatrix.FORMAT_DOUBLE, W, H);
+        double[] array0 = matrix0.toArray();
+        assertEquals(W * H * 3 * 8L, matrix0.sizeBytes());
+
+        for (int f=0; f<FORMATS.length; f++)
+        {
+            UnitVectorMatrix matrix = WorldMapEquirectangular.initMatrix(FORMATS[f], W, H);
+            assertEquals(FORMATS[f], matrix.getFormat());
+            assertEquals(W, matrix.getWidth());
+            assertEquals(H, matrix.getHeight());
+
+            double[] array = matrix.toArray();    // (adapter; same layout as before)
+            assertEquals(array0.length, array.length);
+            for (int i=0; i<array.length; i++) {
+                assertEquals(array0[i], array[i], TOLERANCE[f]);
+            }
+
+            double[] u = new double[] { 0.6, -0.48, 0.64 };
+            for (int p=0; p<W*H; p+=97) {
+                assertEquals(matrix0.dot(p, u[0], u[1], u[2]), matrix.dot(p, u[0], u[1], u[2]), 2 * TOLERANCE[f]);
+            }
+        }
+
+        assertEquals(matrix0.sizeBytes() / 2, UnitVectorMatrix.create(UnitVectorMatrix.FORMAT_FLOAT, W, H).sizeBytes());
+        assertEquals(matrix0.sizeBytes() / 4, UnitVectorMatrix.create(UnitVectorMatrix.FORMAT_FIXED16, W, H).sizeBytes());
+    }
+
+    @Test
+    public void test_fixed16_limits()
+    {
+        UnitVectorMatrix matrix = UnitVectorMatrix.create(UnitVectorMatrix.FORMAT_FIXED16, 2, 1);
+        matrix.set(0, 1, -1, 0);
+        matrix.set(1, 1.5, -1.5, 1e-6);    // (clamped)
+        assertEquals(1, matrix.get(0, 0), 0);
+        assertEquals(-1, matrix.get(0, 1), 0);
+        assertEquals(1, matrix.get(1, 0), 0);
+        assertEquals(-1, matrix.get(1, 1), 0);
+        assertEquals(0, matrix.get(1, 2), 0);
+    }
+
+    @Test
+    @Category(FlakeyTest.class)
+    public void test_shade_executionTime()
+    {
+        double[] sunUp = TerminatorShaderTest.unitVector(23.4, -100);
+        double[] moonUp = TerminatorShaderTest.unitVector(-5, 60);
+        int[] sunLUT = TerminatorShader.sunShadowLUT(0xc0000000);
+        int[] moonLUT = TerminatorShader.moonLightLUT(0x80c0c0c0);
+        int[] pixels = new int[W * H * 4];
+        TerminatorShader shader = new TerminatorShader(1);
+        int numFrames = 20;
+
+        double[] ms = new double[FORMATS.length];
+        for (int f=0; f<FORMATS.length; f++)
+        {
+            UnitVectorMatrix matrix = WorldMapEquirectangular.initMatrix(FORMATS[f], W * 2, H * 2);
+            for (int i=0; i<5; i++) {    // warm up
+                shader.shade(matrix, sunUp, sunLUT, moonUp, moonLUT, null, pixels, W * 2, H * 2);
+            }
+            long bench_start = System.nanoTime();
+            for (int i=0; i<numFrames; i++) {
+                shader.shade(matrix, sunUp, sunLUT, moonUp, moonLUT, null, pixels, W * 2, H * 2);
+            }
+            long bench_end = System.nanoTime();
+            ms[f] = ((bench_end - bench_start) / 1000000.0) / numFrames;
+        }
+        for (int f=1; f<FORMATS.length; f++) {
+            assertTrue("compact formats should not be much slower to shade", ms[f] < ms[0] * 1.5);
+        }
+    }
+}
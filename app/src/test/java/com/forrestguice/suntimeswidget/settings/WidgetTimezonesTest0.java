@@ -147,6 +147,62 @@ public class WidgetTimezonesTest0
         assertEquals(eot2, WidgetTimezones.ApparentSolarTime.equationOfTimeOffset(calendar.getTimeInMillis(), calculator));
     }
 
+    @Test
+    public void test_eot_table()
+    {
+        SuntimesCalculator calculator = new SuntimesCalculatorFactory((Context)null, Time4A4JSuntimesCalculator.getDescriptor()).createCalculator(TEST_LOCATION, TimeZone.getDefault());
+        WidgetTimezones.ApparentSolarTime timezone = WidgetTimezones.ApparentSolarTime.getInstance(TEST_LOCATION.getLongitudeAsDouble(), calculator);
+        TimeZone other = WidgetTimezones.getTimeZone(WidgetTimezones.ApparentSolarTime.TIMEZONEID, TEST_LOCATION.getLongitudeAsDouble(), calculator);
+        assertTrue(timezone != other);    // not shared
+
+        Calendar summer = Calendar.getInstance();
+        summer.set(2022, Calendar.JULY, 26, 12, 0, 0);
+        Calendar winter = Calendar.getInstance();
+        winter.set(2022, Calendar.NOVEMBER, 3, 12, 0, 0);
+        int eotSummer = timezone.getOffset(summer.getTimeInMillis()) - timezone.getRawOffset();
+        other.getOffset(winter.getTimeInMillis());
+        assertEquals(eotSummer, timezone.getDSTSavings());    // (unchanged by the other instance)
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(2021, Calendar.DECEMBER, 30, 13, 15, 0);
+        for (int i=0; i<200; i++)
+        {
+            int expected = (int)(calculator.equationOfTime(calendar) * 1000);
+            test_isApproximate(expected, WidgetTimezones.ApparentSolarTime.equationOfTimeOffset(calendar.getTimeInMillis(), calculator), 50);
+            test_isApproximate(expected + timezone.getRawOffset(), timezone.getOffset(calendar.getTimeInMillis()), 50);
+            calendar.add(Calendar.MINUTE, 97);
+        }
+    }
+
+    @Test
+    public void test_gmstOffset()
+    {
+        long millis = -5 * 365 * 24 * 60 * 60 * 1000L;
+        for (int i=0; i<1000; i++)
+        {
+            test_isApproximate(gmstOffset0(millis), WidgetTimezones.SiderealTime.gmstOffset(millis), 2);
+            millis += 3 * 24 * 60 * 60 * 1000L + 3671234L;
+        }
+    }
+
+    /**
+     * the previous implementation of gmstOffset
+     */
+    protected static int gmstOffset0(long dateMillis)
+    {
+        double d = WidgetTimezones.SiderealTime.julianDay(dateMillis) - 2451545d;
+        double t = (d / 36525d);
+        double gmst_degrees = 280.46061837 + (360.98564736629 * d) + (0.000387933 * t * t) - ((t * t * t) / 38710000d);
+        double offset_hours = (gmst_degrees * (24 / 360d)) - (dateMillis / (60d * 60d * 1000d));
+        while (offset_hours >= 24) {
+            offset_hours -= 24;
+        }
+        while (offset_hours < 0) {
+            offset_hours += 24;
+        }
+        return (int)(offset_hours * 60d * 60d * 1000d);
+    }
+
     protected void test_isApproximate(int value, int value1) {
         test_isApproximate(value, value1, 1);
     }
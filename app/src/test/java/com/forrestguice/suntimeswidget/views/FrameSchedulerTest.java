@@ -0,0 +1,199 @@
+/**
+    Copyright (C) 2022 Forrest Guice
+    This file is part of SuntimesWidget.
+
+    SuntimesWidget is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    SuntimesWidget is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with SuntimesWidget.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package com.forrestguice.suntimeswidget.views;
+
+import com.forrestguice.suntimeswidget.FlakeyTest;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FrameSchedulerTest
+{
+    public static final long FRAME_NANOS = 20 * 1000000L;    // 20 ms
+
+    protected FrameScheduler<Object> createScheduler(long frameNanos)
+    {
+        return new FrameScheduler<>(frameNanos, new FrameScheduler.FrameCallback<Object>() {
+            public void onFrame(Object frame) {}
+        });
+    }
+
+    @Test
+    public void test_publish()
+    {
+        final List<Object> delivered = new ArrayList<>();
+        final int[] numScheduled = new int[] { 0 };
+        FrameScheduler<Object> scheduler = new FrameScheduler<Object>(FRAME_NANOS, new FrameScheduler.FrameCallback<Object>() {
+            public void onFrame(Object frame) {
+                delivered.add(frame);
+            }
+        }) {
+            @Override
+            protected void scheduleDelivery() {
+                numScheduled[0]++;
+            }
+        };
+
+        Object[] frames = new Object[] { "frame0", "frame1", "frame2" };
+        assertNull(scheduler.publish(frames[0]));
+        assertSame(frames[0], scheduler.publish(frames[1]));    // replaces (drops) the pending frame
+        assertSame(frames[1], scheduler.publish(frames[2]));
+        assertEquals(1, numScheduled[0]);                        // a single delivery is scheduled
+
+        scheduler.deliverFrame();
+        assertEquals(1, delivered.size());                     // ... delivering only the latest frame
+        assertSame(frames[2], delivered.get(0));
+
+        scheduler.deliverFrame();                              // (nothing pending)
+        assertEquals(1, delivered.size());
+
+        Object frame3 = "frame3";
+        assertNull(scheduler.publish(frame3));                 // the next frame schedules another delivery
+        assertEquals(2, numScheduled[0]);
+        scheduler.deliverFrame();
+        assertEquals(2, delivered.size());
+        assertSame(frame3, delivered.get(1));
+
+        FrameScheduler.FrameStats stats = scheduler.getStats();
+        assertEquals(4, stats.published);
+        assertEquals(2, stats.delivered);
+        assertEquals(2, stats.dropped);
+    }
+
+    @Test
+    public void test_publish_concurrent() throws InterruptedException
+    {
+        final List<Object> delivered = new ArrayList<>();
+        final FrameScheduler<Object> scheduler = new FrameScheduler<Object>(FRAME_NANOS, new FrameScheduler.FrameCallback<Object>() {
+            public void onFrame(Object frame) {
+                delivered.add(frame);
+            }
+        }) {
+            @Override
+            protected void scheduleDelivery() {}    // (delivered by the test thread)
+        };
+
+        final int n = 10000;
+        final List<Object> dropped = new ArrayList<>();
+        Thread producer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (int i=0; i<n; i++)
+                {
+                    Object d = scheduler.publish(i);
+                    if (d != null) {
+                        dropped.add(d);
+                    }
+                }
+            }
+        });
+        producer.start();
+        while (producer.isAlive()) {
+            scheduler.deliverFrame();    // (consumer)
+        }
+        producer.join();
+        scheduler.deliverFrame();
+
+        assertEquals(n, delivered.size() + dropped.size());    // every frame is either delivered or dropped (exactly once)
+        assertEquals(n - 1, delivered.get(delivered.size() - 1));    // the latest frame is delivered last
+        for (int i=1; i<delivered.size(); i++) {
+            assertTrue((Integer) delivered.get(i) > (Integer) delivered.get(i - 1));    // (never an older frame)
+        }
+    }
+
+    @Test
+    @Category(FlakeyTest.class)
+    public void test_awaitFrame()
+    {
+        FrameScheduler<Object> scheduler = createScheduler(FRAME_NANOS);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long cpu0 = threads.getCurrentThreadCpuTime();
+        long time0 = System.nanoTime();
+
+        int n = 10;
+        for (int i=0; i<n; i++) {
+            assertTrue(scheduler.awaitFrame());
+        }
+
+        long elapsed = System.nanoTime() - time0;
+        long cpu = threads.getCurrentThreadCpuTime() - cpu0;
+        assertTrue(elapsed >= (n - 1) * FRAME_NANOS);    // (the first frame isn't delayed)
+        assertTrue(elapsed < (n + 2) * FRAME_NANOS);
+        assertTrue("should sleep between frames (not spin)", cpu < elapsed / 4);
+        assertEquals(0, scheduler.getStats().late);
+    }
+
+    @Test
+    @Category(FlakeyTest.class)
+    public void test_awaitFrame_late()
+    {
+        FrameScheduler<Object> scheduler = createScheduler(FRAME_NANOS);
+        assertTrue(scheduler.awaitFrame());
+        sleep(FRAME_NANOS * 3 + FRAME_NANOS / 2);    // a slow frame (misses 2 deadlines)
+
+        long time0 = System.nanoTime();
+        assertTrue(scheduler.awaitFrame());    // no waiting; missed deadlines are skipped
+        assertTrue(System.nanoTime() - time0 < FRAME_NANOS / 2);
+        assertEquals(2, scheduler.getStats().late);
+
+        time0 = System.nanoTime();
+        assertTrue(scheduler.awaitFrame());    // back on schedule (not hurrying to catch up)
+        long elapsed = System.nanoTime() - time0;
+        assertTrue(elapsed >= FRAME_NANOS / 4 && elapsed <= FRAME_NANOS + FRAME_NANOS / 2);
+
+        FrameScheduler.FrameStats stats = scheduler.getStats();
+        assertTrue(stats.maxFrameMs >= 3 * FRAME_NANOS / 1000000d);
+        assertEquals(50, stats.targetFps, 0.001);
+    }
+
+    @Test
+    public void test_awaitFrame_interrupted()
+    {
+        FrameScheduler<Object> scheduler = createScheduler(10 * 1000 * 1000000L);    // 10s
+        assertTrue(scheduler.awaitFrame());
+
+        Thread.currentThread().interrupt();
+        long time0 = System.nanoTime();
+        assertFalse(scheduler.awaitFrame());
+        assertTrue(System.nanoTime() - time0 < 1000 * 1000000L);
+        assertTrue(Thread.interrupted());
+    }
+
+    protected static void sleep(long nanos)
+    {
+        try {
+            Thread.sleep(nanos / 1000000L);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}